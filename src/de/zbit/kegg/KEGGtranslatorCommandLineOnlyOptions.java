@@ -48,12 +48,206 @@ public interface KEGGtranslatorCommandLineOnlyOptions extends KeyProvider {
       "Clear the cache of failed KEGG API queries (cases the application to retry those IDs).",Boolean.FALSE,
       Boolean.FALSE);
   
+  /**
+   * Keep the KEGG cache in an append-only, memory-mapped file.
+   */
+  public static final Option<Boolean> CACHE_STORE = new Option<Boolean>("CACHE_STORE",Boolean.class,
+      "Keep the cache of KEGG API entries in the append-only file 'keggdb.log' instead of 'keggdb.dat'. On " +
+      "startup, only the IDs are read; entries are read on demand and new entries are appended immediately. " +
+      "Entries of an existing 'keggdb.dat' are not imported.", Boolean.FALSE);
+  
+  /**
+   * Time to live of KEGG cache entries.
+   */
+  public static final Option<Integer> CACHE_TTL = new Option<Integer>("CACHE_TTL",Integer.class,
+      "Refresh KEGG API entries in the cache that have been fetched more than the given number of days ago. " +
+      "Expired entries are still used, but fetched again in the background when they are looked up. Zero never " +
+      "expires entries by age (default: 0).",
+      new Range<Integer>(Integer.class, "{[0,3650]}"), 0);
+  
+  /**
+   * Tag of the KEGG release the cache belongs to.
+   */
+  public static final Option<String> KEGG_RELEASE = new Option<String>("KEGG_RELEASE",String.class,
+      "The current KEGG release (e.g., '73.0'). If it differs from the release the cache has been tagged with, all " +
+      "cached KEGG API entries expire at once and are refreshed in the background when they are looked up.", "");
+  
+  /**
+   * Read all KEGG information from an annotation bundle.
+   */
+  public static final Option<String> KEGG_BUNDLE = new Option<String>("KEGG_BUNDLE",String.class,
+      "Read all KEGG API entries from this annotation bundle instead of KEGG and the cache. Entries that are not " +
+      "in the bundle are treated as not available, i.e., KEGG is never accessed. A bundle for all KGML files in a " +
+      "directory can be built with de.zbit.kegg.io.KeggBundleBuilder.", "");
+
+  /**
+   * Serve all KEGG API requests from recorded responses.
+   */
+  public static final Option<String> KEGG_RESPONSES = new Option<String>("KEGG_RESPONSES",String.class,
+      "Answer all requests to the KEGG API from the responses recorded in this directory instead of KEGG, e.g., " +
+      "for reproducible benchmarks. Entries of the cache are still used; use an empty cache to measure all " +
+      "requests.", "");
+
+  /**
+   * Record missing responses from KEGG.
+   */
+  public static final Option<Boolean> RECORD_KEGG_RESPONSES = new Option<Boolean>("RECORD_KEGG_RESPONSES",Boolean.class,
+      "Fetch requests that are not in the directory of recorded responses from KEGG and add them to this directory.",
+      Boolean.FALSE);
+
+  /**
+   * Simulated latency of recorded responses.
+   */
+  public static final Option<Integer> KEGG_RESPONSE_LATENCY = new Option<Integer>("KEGG_RESPONSE_LATENCY",Integer.class,
+      "Delay every request to the recorded responses by the given number of milliseconds on average, varied " +
+      "by up to 50% (default: 0).",
+      new Range<Integer>(Integer.class, "{[0,60000]}"), 0);
+
+  /**
+   * Simulated failures of recorded responses.
+   */
+  public static final Option<Integer> KEGG_RESPONSE_FAILURES = new Option<Integer>("KEGG_RESPONSE_FAILURES",Integer.class,
+      "Percentage of requests to the recorded responses that fail, like a request to KEGG that times out " +
+      "(default: 0).",
+      new Range<Integer>(Integer.class, "{[0,100]}"), 0);
+  
+  /**
+   * Interval to write the KEGG cache in the background in batch mode.
+   */
+  public static final Option<Integer> CACHE_FLUSH_INTERVAL = new Option<Integer>("CACHE_FLUSH_INTERVAL",Integer.class,
+      "If the input is a directory, write new KEGG API entries to the cache file in the background every given " +
+      "number of seconds (or earlier, if many entries have been fetched). Zero writes the cache after each " +
+      "directory instead (default: 30).",
+      new Range<Integer>(Integer.class, "{[0,86400]}"), 30);
+  
+  /**
+   * Number of files whose KEGG IDs are prefetched together in batch mode.
+   */
+  public static final Option<Integer> PREFETCH_WINDOW = new Option<Integer>("PREFETCH_WINDOW",Integer.class,
+      "If the input is a directory, collect the KEGG IDs of the given number of upcoming files and fetch all " +
+      "missing IDs at once, before these files are translated. Zero fetches the IDs of every pathway " +
+      "separately (default: 32).",
+      new Range<Integer>(Integer.class, "{[0,1024]}"), 32);
+  
+  /**
+   * Pathways, whose KEGG IDs are put into the cache at startup.
+   */
+  public static final Option<String> WARM_UP_CACHE = new Option<String>("WARM_UP_CACHE",String.class,
+      "An organism code (e.g., 'hsa') or a comma separated list of pathway IDs (e.g., 'path:hsa00010,hsa04010'). " +
+      "At startup, the KGML of these pathways (or of all pathways of the organism) is downloaded in the background " +
+      "and all KEGG IDs in it are fetched into the cache, before they are needed by a translation.", "");
+  
+  /**
+   * Number of pathways that are downloaded at once when warming the cache.
+   */
+  public static final Option<Integer> WARM_UP_THREADS = new Option<Integer>("WARM_UP_THREADS",Integer.class,
+      "Maximum number of pathways to download at once when warming the cache (default: 4).",
+      new Range<Integer>(Integer.class, "{[1,16]}"), 4);
+  
   /**
    * Causes a call to {@link InfoManagement#clearFailCache()} on startup.
    */
   public static final Option<Boolean> CREATE_JPG = new Option<Boolean>("CREATE_JPG",Boolean.class,
       "Create a visualization (as JPG) of the selected format. Always creates a JPG, even for SBML and others.",Boolean.FALSE);
   
+  /**
+   * Number of threads to use when translating all files in a directory.
+   */
+  public static final Option<Integer> BATCH_THREADS = new Option<Integer>("BATCH_THREADS",Integer.class,
+      "Number of files to translate in parallel if the input is a directory (default: 1).",
+      new Range<Integer>(Integer.class, "{[1,256]}"), 1, "-threads");
+
+  /**
+   * Heap budget for parallel batch translations.
+   */
+  public static final Option<Integer> MEMORY_BUDGET = new Option<Integer>("MEMORY_BUDGET",Integer.class,
+      "Percentage of the maximum heap that may be used by all files that are translated in parallel. Fewer files " +
+      "are translated at once if large pathways are among them (default: 60).",
+      new Range<Integer>(Integer.class, "{[10,95]}"), 60);
+
+  /**
+   * Comma separated list of further output formats for the batch mode.
+   */
+  public static final Option<String> ADDITIONAL_FORMATS = new Option<String>("ADDITIONAL_FORMATS",String.class,
+      "Comma separated list of further output formats (e.g., 'SBGN,GraphML'). If the input is a directory, every " +
+      "KGML file is parsed and preprocessed only once and then translated to all formats. The name of each output " +
+      "file is suffixed with its format.", (short) 2, "-af", "");
+
+  /**
+   * Glob patterns of files to translate in batch mode.
+   */
+  public static final Option<String> INCLUDE_FILES = new Option<String>("INCLUDE_FILES",String.class,
+      "Comma separated list of glob patterns (e.g., '*.xml,hsa/**'). If the input is a directory, only matching " +
+      "files are translated. Patterns without '/' are matched against the file name, others against the path " +
+      "relative to the input directory.", "");
+
+  /**
+   * Glob patterns of files and directories to skip in batch mode.
+   */
+  public static final Option<String> EXCLUDE_FILES = new Option<String>("EXCLUDE_FILES",String.class,
+      "Comma separated list of glob patterns (e.g., 'map*,old/**'). If the input is a directory, matching files " +
+      "and directories are skipped.", "");
+
+  /**
+   * Maximum depth of subdirectories in batch mode.
+   */
+  public static final Option<Integer> MAX_DEPTH = new Option<Integer>("MAX_DEPTH",Integer.class,
+      "Maximum depth of subdirectories to translate if the input is a directory. Zero translates only the files " +
+      "in the input directory (default: -1, i.e., no limit).",
+      new Range<Integer>(Integer.class, "{[-1,1000]}"), -1);
+
+  /**
+   * Timeout per pathway in batch mode.
+   */
+  public static final Option<Integer> TRANSLATION_TIMEOUT = new Option<Integer>("TRANSLATION_TIMEOUT",Integer.class,
+      "Maximum time in seconds to preprocess or translate one pathway if the input is a directory. Pathways that " +
+      "exceed this time are skipped and recorded as timed out (default: 0, i.e., no limit).",
+      new Range<Integer>(Integer.class, "{[0,86400]}"), 0);
+
+  /**
+   * Metrics of every file in batch mode.
+   */
+  public static final Option<String> METRICS_FILE = new Option<String>("METRICS_FILE",String.class,
+      "If the input is a directory, write the metrics of every translated file (time per stage, written bytes, " +
+      "pathway size and KEGG cache lookups) to this file. The format is JSON if the name ends with '.json', " +
+      "else CSV. A summary is always logged.", "");
+
+  /**
+   * Translate only a part of all files in the input directory. Allows
+   * to divide a directory between multiple processes.
+   */
+  public static final Option<String> SHARD = new Option<String>("SHARD",String.class,
+      "Translate only one shard of all files in the input directory, given as 'k/N' (e.g., '2/4'). Each file " +
+      "belongs to exactly one of N shards, determined by its path. Run N processes with k=1..N to divide a " +
+      "directory without duplicate work.", "");
+
+  /**
+   * Lease time of claim files in minutes. Zero disables claim files.
+   */
+  public static final Option<Integer> CLAIM_LEASE = new Option<Integer>("CLAIM_LEASE",Integer.class,
+      "If greater than zero, every file of the input directory is claimed by creating a claim file in the output " +
+      "directory before it is translated. Other processes skip claimed files, unless the claim has not been " +
+      "renewed for the given number of minutes (default: 0, i.e., no claim files).",
+      new Range<Integer>(Integer.class, "{[0,10080]}"), 0);
+
+  /**
+   * Write the translations of the KGML files in an archive to one zip archive.
+   */
+  public static final Option<Boolean> ARCHIVE_OUTPUT = new Option<Boolean>("ARCHIVE_OUTPUT",Boolean.class,
+      "If the input contains zip or tar archives, write the translations of all KGML files in an archive to one " +
+      "zip archive per output format (e.g., 'hsa.tar.gz' to 'hsa.zip'), instead of one file per pathway in a " +
+      "directory named after the archive. Each archive is then recorded in the journal and claimed as a whole.",
+      Boolean.FALSE);
+
+  /**
+   * Store of preprocessed pathways in batch mode.
+   */
+  public static final Option<String> PATHWAY_STORE = new Option<String>("PATHWAY_STORE",String.class,
+      "If the input is a directory, keep every parsed and preprocessed pathway in this file. A later batch run " +
+      "with the same store, e.g., to another output format or with other writer options, translates the stored " +
+      "pathways of unchanged input files without parsing and preprocessing them again. The store must not be " +
+      "used by several processes at once.", "");
+
   /**
    * Invisible option to adjust settings for path2models.
    * http://code.google.com/p/path2models/
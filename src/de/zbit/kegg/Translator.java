@@ -30,6 +30,8 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.prefs.BackingStoreException;
@@ -43,13 +45,25 @@ import de.zbit.io.FileTools;
 import de.zbit.kegg.api.KeggInfos;
 import de.zbit.kegg.api.cache.KeggFunctionManagement;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.cache.BundledKeggFunctionManagement;
+import de.zbit.kegg.cache.BundledKeggInfoManagement;
+import de.zbit.kegg.cache.CacheFlusher;
+import de.zbit.kegg.cache.ExpiringKeggInfoManagement;
+import de.zbit.kegg.cache.KeggBundle;
+import de.zbit.kegg.cache.KeggInfoStore;
+import de.zbit.kegg.cache.RecordedKeggAdaptor;
+import de.zbit.kegg.cache.StoredKeggInfoManagement;
+import de.zbit.kegg.cache.SynchronizedKeggInfoManagement;
 import de.zbit.kegg.ext.KEGGTranslatorPanelOptions;
 import de.zbit.kegg.gui.TranslatorUI;
 import de.zbit.kegg.io.AbstractKEGGtranslator;
 import de.zbit.kegg.io.BatchKEGGtranslator;
+import de.zbit.kegg.io.CacheWarmer;
 import de.zbit.kegg.io.KEGGtranslator;
 import de.zbit.kegg.io.KEGGtranslatorIOOptions;
 import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+import de.zbit.kegg.io.KGMLArchive;
+import de.zbit.kegg.io.KGMLSniffer;
 import de.zbit.util.ResourceManager;
 import de.zbit.util.prefs.KeyProvider;
 import de.zbit.util.prefs.SBPreferences;
@@ -88,6 +102,12 @@ public class Translator extends Launcher {
    */
   public final static String cacheFunctionFileName = "keggfc.dat";
   
+  /**
+   * {@link File} name of the append-only KEGG cache (see
+   * {@link KEGGtranslatorCommandLineOnlyOptions#CACHE_STORE}).
+   */
+  public final static String cacheStoreFileName = "keggdb.log";
+  
   /**
    * The {@link Logger} for this class.
    */
@@ -105,6 +125,24 @@ public class Translator extends Launcher {
    */
   private static KeggFunctionManagement managerFunction = null;
   
+  /**
+   * The annotation bundle (see {@link KEGGtranslatorCommandLineOnlyOptions#KEGG_BUNDLE}),
+   * if any. Access via {@link #getBundle()}.
+   */
+  private static KeggBundle annotationBundle = null;
+  
+  /**
+   * The stand-in for the KEGG API (see {@link KEGGtranslatorCommandLineOnlyOptions#KEGG_RESPONSES}),
+   * if any. Access via {@link #getRecordedResponses()}.
+   */
+  private static RecordedKeggAdaptor recordedResponses = null;
+  
+  /**
+   * Fills the cache in the background (see {@link KEGGtranslatorCommandLineOnlyOptions#WARM_UP_CACHE}),
+   * if started by {@link #warmUpCache(SBProperties)}.
+   */
+  private static CacheWarmer cacheWarmer = null;
+  
   /**
    * Adjusts a few methods in KEGGtranslator to generate an ouput for
    * the path2models project if true.
@@ -163,6 +201,11 @@ public class Translator extends Launcher {
    * @return
    */
   public synchronized static KeggFunctionManagement getFunctionManager() {
+    boolean newManagerLoadedOrInitialized = (managerFunction == null);
+    // Read everything from the annotation bundle
+    if ((managerFunction == null) && (getBundle() != null)) {
+      managerFunction = new BundledKeggFunctionManagement(5000, getBundle());
+    }
     
     // Try to load from cache file
     if (managerFunction == null
@@ -192,6 +235,12 @@ public class Translator extends Launcher {
       managerFunction = new KeggFunctionManagement(5000);
     }
     
+    // Answer all requests from recorded responses
+    if (newManagerLoadedOrInitialized && !(managerFunction instanceof BundledKeggFunctionManagement)
+        && (getRecordedResponses() != null)) {
+      managerFunction.setKeggAdaptor(getRecordedResponses());
+    }
+    
     return managerFunction;
   }
   
@@ -201,6 +250,22 @@ public class Translator extends Launcher {
    */
   public synchronized static KeggInfoManagement getManager() {
     boolean newManangerLoadedOrInitialized = (manager==null);
+    // Read everything from the annotation bundle
+    if ((manager == null) && (getBundle() != null)) {
+      manager = new BundledKeggInfoManagement(10000, getBundle());
+    }
+    
+    // Try to open the append-only cache
+    if ((manager == null) && isCacheStoreEnabled()) {
+      try {
+        manager = new StoredKeggInfoManagement(10000, new KeggInfoStore(new File(Translator.cacheStoreFileName)));
+      } catch (IOException e) {
+        logger.log(Level.WARNING, MessageFormat.format("Could not open {0}. Using {1} instead.",
+          Translator.cacheStoreFileName, Translator.cacheFileName), e);
+        manager = null;
+      }
+    }
+    
     // Try to load from cache file
     if ((manager == null) && new File(Translator.cacheFileName).exists() && new File(Translator.cacheFileName).length() > 1) {
       try {
@@ -223,7 +288,7 @@ public class Translator extends Launcher {
     
     // Create new, if loading failed
     if (manager == null) {
-      manager = new KeggInfoManagement(10000);
+      manager = new ExpiringKeggInfoManagement(10000);
     }
     
     // Set cache size and eventually remove some items from the cache
@@ -244,6 +309,14 @@ public class Translator extends Launcher {
         initialSize = 10000;
       }
       manager.setCacheSize(initialSize);
+      
+      // Refresh expired entries
+      configureExpiry(manager);
+      
+      // Answer all requests from recorded responses
+      if (!(manager instanceof BundledKeggInfoManagement) && (getRecordedResponses() != null)) {
+        manager.setKeggAdaptor(getRecordedResponses());
+      }
     }
     
     
@@ -252,6 +325,123 @@ public class Translator extends Launcher {
   }
   
   
+  /**
+   * Opens the annotation bundle, given by
+   * {@link KEGGtranslatorCommandLineOnlyOptions#KEGG_BUNDLE}, once.
+   * @return the bundle or {@code null} if none is given or it can not be opened.
+   */
+  private synchronized static KeggBundle getBundle() {
+    if (annotationBundle == null) {
+      String file = null;
+      try {
+        SBPreferences prefs = SBPreferences.getPreferencesFor(KEGGtranslatorCommandLineOnlyOptions.class);
+        file = KEGGtranslatorCommandLineOnlyOptions.KEGG_BUNDLE.getValue(prefs);
+        if ((file != null) && (file.trim().length() > 0)) {
+          annotationBundle = new KeggBundle(new File(file.trim()));
+          logger.info(MessageFormat.format("Reading all KEGG information from {0} ({1} entries).", file, annotationBundle.size()));
+        }
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, MessageFormat.format("Could not open the KEGG annotation bundle {0}.", file), e);
+      } catch (Exception e) {
+        logger.log(Level.FINE, e.getLocalizedMessage(), e);
+      }
+    }
+    return annotationBundle;
+  }
+  
+  /**
+   * Creates the stand-in for the KEGG API, given by
+   * {@link KEGGtranslatorCommandLineOnlyOptions#KEGG_RESPONSES}, once.
+   * @return the stand-in or {@code null} if no directory is given.
+   */
+  private synchronized static RecordedKeggAdaptor getRecordedResponses() {
+    if (recordedResponses == null) {
+      try {
+        SBPreferences prefs = SBPreferences.getPreferencesFor(KEGGtranslatorCommandLineOnlyOptions.class);
+        String dir = KEGGtranslatorCommandLineOnlyOptions.KEGG_RESPONSES.getValue(prefs);
+        if ((dir != null) && (dir.trim().length() > 0)) {
+          RecordedKeggAdaptor adaptor = new RecordedKeggAdaptor(new File(dir.trim()));
+          adaptor.setRecording(KEGGtranslatorCommandLineOnlyOptions.RECORD_KEGG_RESPONSES.getValue(prefs));
+          adaptor.setLatency(KEGGtranslatorCommandLineOnlyOptions.KEGG_RESPONSE_LATENCY.getValue(prefs));
+          adaptor.setFailureRate(KEGGtranslatorCommandLineOnlyOptions.KEGG_RESPONSE_FAILURES.getValue(prefs) / 100d);
+          recordedResponses = adaptor;
+          logger.info(MessageFormat.format("Answering all KEGG API requests from {0}.", adaptor.getDirectory()));
+        }
+      } catch (Exception e) {
+        logger.log(Level.FINE, e.getLocalizedMessage(), e);
+      }
+    }
+    return recordedResponses;
+  }
+  
+  /**
+   * Applies {@link KEGGtranslatorCommandLineOnlyOptions#CACHE_TTL} and
+   * {@link KEGGtranslatorCommandLineOnlyOptions#KEGG_RELEASE} to the given cache.
+   * @param manager
+   */
+  private static void configureExpiry(KeggInfoManagement manager) {
+    try {
+      SBPreferences prefs = SBPreferences.getPreferencesFor(KEGGtranslatorCommandLineOnlyOptions.class);
+      int ttl = KEGGtranslatorCommandLineOnlyOptions.CACHE_TTL.getValue(prefs);
+      String release = KEGGtranslatorCommandLineOnlyOptions.KEGG_RELEASE.getValue(prefs);
+      if (manager instanceof ExpiringKeggInfoManagement) {
+        ((ExpiringKeggInfoManagement) manager).setTimeToLive(TimeUnit.DAYS.toMillis(ttl));
+        ((ExpiringKeggInfoManagement) manager).setRelease(release);
+      } else if ((ttl > 0) || ((release != null) && (release.trim().length() > 0))) {
+        logger.info(MessageFormat.format("The KEGG cache {0} does not record when entries have been fetched; " +
+            "delete it to let entries expire.", Translator.cacheFileName));
+      }
+    } catch (Exception e) {
+      logger.log(Level.FINE, e.getLocalizedMessage(), e);
+    }
+  }
+  
+  /**
+   * Starts to fill the cache in the background with the IDs of the
+   * pathways, given by {@link KEGGtranslatorCommandLineOnlyOptions#WARM_UP_CACHE},
+   * once.
+   * @param props the command-line arguments.
+   * @return the running warm-up or {@code null} if no pathways are given.
+   */
+  public synchronized static CacheWarmer warmUpCache(SBProperties props) {
+    if (cacheWarmer != null) {
+      return cacheWarmer;
+    }
+    try {
+      String pathways = KEGGtranslatorCommandLineOnlyOptions.WARM_UP_CACHE.getValue(props);
+      if ((pathways == null) || (pathways.trim().length() == 0)) {
+        return null;
+      }
+      SBPreferences prefs = SBPreferences.getPreferencesFor(KEGGtranslatorOptions.class);
+      KeggInfoManagement manager = getManager();
+      if (KEGGtranslatorOptions.OFFLINE_MODE.getValue(prefs) || (manager instanceof BundledKeggInfoManagement)) {
+        logger.info("Not warming the KEGG cache, since KEGG is not accessed.");
+        return null;
+      }
+      cacheWarmer = new CacheWarmer(manager, pathways,
+        KEGGtranslatorCommandLineOnlyOptions.WARM_UP_THREADS.getValue(props),
+        KEGGtranslatorOptions.AUTOCOMPLETE_REACTIONS.getValue(prefs));
+      cacheWarmer.start();
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Could not warm the KEGG cache.", e);
+    }
+    return cacheWarmer;
+  }
+  
+  /**
+   * @return {@code true} if the KEGG cache should be kept in the
+   * append-only {@link #cacheStoreFileName}.
+   */
+  private static boolean isCacheStoreEnabled() {
+    try {
+      SBPreferences prefs = SBPreferences.getPreferencesFor(KEGGtranslatorCommandLineOnlyOptions.class);
+      return KEGGtranslatorCommandLineOnlyOptions.CACHE_STORE.getValue(prefs);
+    } catch (Exception e) {
+      logger.log(Level.FINE, e.getLocalizedMessage(), e);
+      return false;
+    }
+  }
+  
   /**
    * 
    * @param args
@@ -265,10 +455,23 @@ public class Translator extends Launcher {
    * Remember already queried KEGG objects (save cache)
    */
   public synchronized static void saveCache() {
-    if ((manager != null) && manager.hasChanged()) {
-      KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, manager);
+    if (manager instanceof BundledKeggInfoManagement) {
+      // Read-only
+    } else if (manager instanceof StoredKeggInfoManagement) {
+      // All entries have already been appended.
+      ((StoredKeggInfoManagement) manager).flush();
+    } else if ((manager != null) && manager.hasChanged()) {
+      // Replace the file only after it has been written completely.
+      ReentrantLock lock = SynchronizedKeggInfoManagement.getLock(manager);
+      lock.lock();
+      try {
+        CacheFlusher.save(manager, new File(Translator.cacheFileName));
+      } finally {
+        lock.unlock();
+      }
     }
-    if ((managerFunction != null) && managerFunction.isCacheChangedSinceLastLoading()) {
+    if ((managerFunction != null) && !(managerFunction instanceof BundledKeggFunctionManagement)
+        && managerFunction.isCacheChangedSinceLastLoading()) {
       InfoManagement.saveToFilesystem(Translator.cacheFunctionFileName, managerFunction);
     }
   }
@@ -284,7 +487,7 @@ public class Translator extends Launcher {
    */
   public static Object translate(Format format, File in) throws IOException {
     // Check and build input
-    if ((in == null) || !in.canRead() || in.isDirectory()) {
+    if ((in == null) || (!in.canRead() && !KGMLArchive.isEntryPath(in.getPath())) || in.isDirectory()) {
       logger.severe("Invalid or not-readable input file.");
       return null;
     }
@@ -316,11 +519,15 @@ public class Translator extends Launcher {
     
     // Check and build input
     File in = input == null ? null : new File(input);
-    if ((in == null) || !in.canRead()) {
+    // A file in an archive, e.g., 'hsa.tar.gz!/hsa00010.xml'
+    boolean entry = (in != null) && !in.exists() && KGMLArchive.isEntryPath(input);
+    if ((in == null) || (!in.canRead() && !entry)) {
       // in might also be a directory
       logger.severe("Invalid or not-readable input file.");
       return false;
     }
+    // All files in an archive are translated in batch-mode.
+    boolean archive = in.isFile() && (KGMLSniffer.sniff(in).getType() == KGMLSniffer.Type.ARCHIVE);
     
     // Initiate the manager
     KeggInfoManagement manager = getManager();
@@ -333,11 +540,18 @@ public class Translator extends Launcher {
     
     // Check and build output
     File out = output == null ? null : new File(output);
-    if (!in.isDirectory()) {
+    if (!in.isDirectory() && !archive) {
       // else: batch-mode
       if ((out == null) || (output.length() < 1) || out.isDirectory()) {
         String fileExtension = BatchKEGGtranslator.getFileExtension(translator);
-        out = new File(FileTools.removeFileExtension(input) + fileExtension);
+        if (entry) {
+          // Next to the archive
+          String name = input.substring(input.lastIndexOf('/') + 1);
+          out = new File(new File(input.substring(0, input.indexOf(KGMLArchive.ENTRY_SEPARATOR))).getAbsoluteFile().getParentFile(),
+            FileTools.removeFileExtension(name) + fileExtension);
+        } else {
+          out = new File(FileTools.removeFileExtension(input) + fileExtension);
+        }
         logger.info(MessageFormat.format("Writing to {0}.", out));
       }
       
@@ -353,9 +567,16 @@ public class Translator extends Launcher {
     }
     
     // Translate.
-    if (in.isDirectory()) {
+    if (in.isDirectory() || archive) {
       BatchKEGGtranslator batch = new BatchKEGGtranslator();
-      batch.setOrgOutdir(in.getPath());
+      if (archive) {
+        batch.setOrgOutdir(in.getAbsoluteFile().getParent());
+        batch.setIncludes(in.getName());
+        batch.setExcludes(null);
+        batch.setMaxDepth(0);
+      } else {
+        batch.setOrgOutdir(in.getPath());
+      }
       batch.setTranslator(translator);
       batch.setOutFormat(format);
       if (output != null && output.length() > 0) {
@@ -412,6 +633,9 @@ public class Translator extends Launcher {
       logger.log(Level.WARNING, "Could not process command-line-only options.", e);
     }
     
+    // Fill the cache in the background
+    warmUpCache(props);
+    
     // Initiate translation
     try {
       translate(KEGGtranslatorIOOptions.FORMAT.getValue(props),
@@ -550,6 +774,8 @@ public class Translator extends Launcher {
    */
   @Override
   public java.awt.Window initGUI(AppConf appConf) {
+    // Fill the cache in the background, before the first pathway is translated
+    warmUpCache(appConf.getCmdArgs());
     return new TranslatorUI(appConf);
   }
   
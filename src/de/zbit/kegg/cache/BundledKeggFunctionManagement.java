@@ -0,0 +1,110 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.kegg.api.cache.KeggFunctionManagement;
+import de.zbit.kegg.api.cache.KeggQuery;
+import de.zbit.util.objectwrapper.CustomObject;
+
+/**
+ * A {@link KeggFunctionManagement} that answers all queries from a
+ * {@link KeggBundle} and never accesses KEGG. Queries that are not in
+ * the bundle fail.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BundledKeggFunctionManagement extends KeggFunctionManagement {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 2907157214389441385L;
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BundledKeggFunctionManagement.class.getName());
+
+  /**
+   * The source of all results.
+   */
+  private final transient KeggBundle bundle;
+
+  /**
+   * @param maxListSize number of results to keep in memory.
+   * @param bundle
+   */
+  public BundledKeggFunctionManagement(int maxListSize, KeggBundle bundle) {
+    super(maxListSize);
+    if (bundle == null) {
+      throw new IllegalArgumentException("The KeggBundle must not be null.");
+    }
+    this.bundle = bundle;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggFunctionManagement#fetchInformation(de.zbit.kegg.api.cache.KeggQuery)
+   */
+  @Override
+  protected CustomObject<Object> fetchInformation(KeggQuery query) throws TimeoutException, UnsuccessfulRetrieveException {
+    CustomObject<Object> result = load(query);
+    if (result == null) {
+      throw new UnsuccessfulRetrieveException();
+    }
+    return result;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggFunctionManagement#fetchMultipleInformations(de.zbit.kegg.api.cache.KeggQuery[])
+   */
+  @Override
+  protected CustomObject<Object>[] fetchMultipleInformations(KeggQuery[] queries) throws TimeoutException, UnsuccessfulRetrieveException {
+    // Arrays of a generic type can only be created unchecked.
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    CustomObject<Object>[] results = new CustomObject[queries.length];
+    for (int i = 0; i < queries.length; i++) {
+      results[i] = load(queries[i]);
+    }
+    return results;
+  }
+
+  /**
+   * @param query
+   * @return the result from the bundle or {@code null}.
+   */
+  private CustomObject<Object> load(KeggQuery query) {
+    try {
+      return bundle.get(query);
+    } catch (IOException e) {
+      logger.log(Level.FINE, MessageFormat.format("Could not read the result of {0} from {1}.", query, bundle.getFile()), e);
+      return null;
+    }
+  }
+
+}
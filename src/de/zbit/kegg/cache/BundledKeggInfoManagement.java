@@ -0,0 +1,118 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A {@link KeggInfoManagement} that answers all queries from a
+ * {@link KeggBundle} and never accesses KEGG. IDs that are not in the
+ * bundle are treated as not retrievable.
+ *
+ * <p>This cache is read-only and must not be saved; there is nothing to save.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BundledKeggInfoManagement extends KeggInfoManagement {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -6210794584127553710L;
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BundledKeggInfoManagement.class.getName());
+
+  /**
+   * The source of all information.
+   */
+  private final transient KeggBundle bundle;
+
+  /**
+   * @param maxListSize number of IDs to keep in memory.
+   * @param bundle
+   */
+  public BundledKeggInfoManagement(int maxListSize, KeggBundle bundle) {
+    super(maxListSize);
+    if (bundle == null) {
+      throw new IllegalArgumentException("The KeggBundle must not be null.");
+    }
+    this.bundle = bundle;
+  }
+
+  /**
+   * @return the bundle, all information is read from.
+   */
+  public KeggBundle getBundle() {
+    return bundle;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchInformation(java.lang.String)
+   */
+  @Override
+  protected KeggInfos fetchInformation(String id) throws TimeoutException, UnsuccessfulRetrieveException {
+    KeggInfos infos = load(id);
+    if (infos == null) {
+      throw new UnsuccessfulRetrieveException();
+    }
+    return infos;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchMultipleInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  protected KeggInfos[] fetchMultipleInformations(String[] ids, AbstractProgressBar progress)
+      throws TimeoutException, UnsuccessfulRetrieveException {
+    KeggInfos[] infos = new KeggInfos[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      infos[i] = load(ids[i]);
+    }
+    return infos;
+  }
+
+  /**
+   * @param id
+   * @return the information from the bundle or {@code null}.
+   */
+  private KeggInfos load(String id) {
+    try {
+      return bundle.get(id);
+    } catch (IOException e) {
+      logger.log(Level.FINE, MessageFormat.format("Could not read the information of {0} from {1}.", id, bundle.getFile()), e);
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,319 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * Persists a {@link KeggInfoManagement} in the background, such that
+ * translating threads never wait for the cache to be written. The cache
+ * is written if new IDs have been fetched and either the given interval
+ * has passed or {@link #THRESHOLD} IDs have been fetched since the last
+ * write, and once more on {@link #close()} or when the JVM shuts down.
+ *
+ * <p>To write a consistent snapshot, the cache is serialized into memory
+ * while holding its lock, i.e., the cache must not be modified
+ * concurrently without holding
+ * {@link SynchronizedKeggInfoManagement#getLock(KeggInfoManagement)}. The snapshot is then written
+ * to a temporary file, which replaces the cache file. Thus, a killed
+ * process never leaves a corrupt cache file. A
+ * {@link StoredKeggInfoManagement} is not serialized; its appended
+ * records are just forced to the disk. A {@link BundledKeggInfoManagement}
+ * is read-only and never written.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class CacheFlusher implements Runnable {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(CacheFlusher.class.getName());
+
+  /**
+   * Number of fetched IDs that cause a write before the interval has passed.
+   */
+  public static final int THRESHOLD = 500;
+
+  /**
+   * Time in milliseconds between two checks for modifications.
+   */
+  private static final long POLL_INTERVAL = 1000;
+
+  /**
+   * The cache as used by the translators. Counts the fetched IDs, if it
+   * is a {@link SynchronizedKeggInfoManagement}.
+   */
+  private final KeggInfoManagement cache;
+
+  /**
+   * The cache to serialize. Also the lock for serialization.
+   */
+  private final KeggInfoManagement manager;
+
+  /**
+   * The cache file.
+   */
+  private final File file;
+
+  /**
+   * Minimum time in milliseconds between two writes.
+   */
+  private final long interval;
+
+  /**
+   * Modification count (see {@link #getModifications()}) at the last write.
+   */
+  private long written;
+
+  /**
+   * Time of the last write.
+   */
+  private long lastWrite = System.currentTimeMillis();
+
+  /**
+   *
+   */
+  private final Thread thread;
+
+  /**
+   * Writes the cache, if the JVM shuts down before {@link #close()}.
+   */
+  private final Thread shutdownHook;
+
+  /**
+   *
+   */
+  private volatile boolean closed = false;
+
+  /**
+   * Starts a flusher for the given cache.
+   * @param cache the cache, used by the translators.
+   * @param file the cache file (ignored for a {@link StoredKeggInfoManagement}).
+   * @param interval minimum time in milliseconds between two writes.
+   */
+  public CacheFlusher(KeggInfoManagement cache, File file, long interval) {
+    this.cache = cache;
+    this.manager = (cache instanceof SynchronizedKeggInfoManagement) ? ((SynchronizedKeggInfoManagement) cache).getWrappedManager() : cache;
+    this.file = file;
+    this.interval = interval;
+    written = getModifications();
+
+    thread = new Thread(this, "KEGG cache flusher");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    shutdownHook = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        flush(true);
+      }
+    }, "KEGG cache shutdown flusher");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    thread.start();
+  }
+
+  /**
+   * @return a counter that increases whenever IDs are added to the cache.
+   */
+  private long getModifications() {
+    if (manager instanceof StoredKeggInfoManagement) {
+      return ((StoredKeggInfoManagement) manager).getStore().getAppended();
+    } else if (cache instanceof SynchronizedKeggInfoManagement) {
+      return ((SynchronizedKeggInfoManagement) cache).getFetched();
+    }
+    ReentrantLock lock = SynchronizedKeggInfoManagement.getLock(manager);
+    lock.lock();
+    try {
+      // The size does not change, if the cache is full.
+      return manager.getNumberOfCachedIDs();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    while (!closed) {
+      try {
+        Thread.sleep(POLL_INTERVAL);
+      } catch (InterruptedException e) {
+        break;
+      }
+      long pending = getModifications() - written;
+      if ((pending != 0) && ((pending >= THRESHOLD) || (System.currentTimeMillis() - lastWrite >= interval))) {
+        flush(false);
+      }
+    }
+  }
+
+  /**
+   * Writes the cache, if it has been modified.
+   * @param force if {@code true}, the cache is written even if no
+   * modification has been detected (but has been marked as changed).
+   */
+  private synchronized void flush(boolean force) {
+    long modifications = getModifications();
+    if (manager instanceof BundledKeggInfoManagement) {
+      return;
+    } else if ((modifications == written) && !(force && manager.hasChanged())) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    try {
+      if (manager instanceof StoredKeggInfoManagement) {
+        ((StoredKeggInfoManagement) manager).getStore().flush();
+      } else {
+        byte[] snapshot;
+        ReentrantLock lock = SynchronizedKeggInfoManagement.getLock(manager);
+        lock.lock();
+        try {
+          snapshot = serialize(manager);
+        } finally {
+          lock.unlock();
+        }
+        write(snapshot, file);
+      }
+      written = modifications;
+      logger.fine(MessageFormat.format("Wrote the KEGG cache in {0} ms.", System.currentTimeMillis() - start));
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not write the KEGG cache to {0}.", file), t);
+    }
+    lastWrite = System.currentTimeMillis();
+  }
+
+  /**
+   * Stops the background thread. The caller should finally save the cache
+   * (e.g., with {@link #save(KeggInfoManagement, File)}).
+   */
+  public void close() {
+    closed = true;
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException e) {
+      // Already shutting down. The hook writes the cache.
+    }
+  }
+
+  /**
+   * @param manager
+   * @return the serialized cache.
+   * @throws IOException
+   */
+  private static byte[] serialize(KeggInfoManagement manager) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(manager);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Writes the given serialized cache gzipped (like
+   * {@link KeggInfoManagement#saveToFilesystem(String, KeggInfoManagement)})
+   * to a temporary file, which then replaces the given file.
+   * @param snapshot
+   * @param file
+   * @throws IOException
+   */
+  private static void write(byte[] snapshot, File file) throws IOException {
+    File tmp = getTemporaryFile(file);
+    OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.write(snapshot);
+    } catch (IOException e) {
+      out.close();
+      tmp.delete();
+      throw e;
+    }
+    out.close();
+    replace(tmp, file);
+  }
+
+  /**
+   * Saves the given cache to a temporary file, which then replaces the
+   * given file, and resets the changed flag of the cache. Must not be
+   * called while the cache is used by other threads.
+   * @param manager
+   * @param file
+   * @return {@code true} if the cache has been written.
+   */
+  public static boolean save(KeggInfoManagement manager, File file) {
+    File tmp = getTemporaryFile(file);
+    if (!KeggInfoManagement.saveToFilesystem(tmp.getPath(), manager)) {
+      tmp.delete();
+      return false;
+    }
+    try {
+      replace(tmp, file);
+      return true;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+      return false;
+    }
+  }
+
+  /**
+   * @param file
+   * @return a temporary file in the same directory.
+   */
+  static File getTemporaryFile(File file) {
+    return new File(file.getAbsoluteFile().getParentFile(), ".~" + file.getName());
+  }
+
+  /**
+   * @param tmp
+   * @param file
+   * @throws IOException
+   */
+  static void replace(File tmp, File file) throws IOException {
+    if (!tmp.renameTo(file)) {
+      // Windows does not replace existing files.
+      if (!file.delete() || !tmp.renameTo(file)) {
+        tmp.delete();
+        throw new IOException(MessageFormat.format("Could not replace {0}.", file));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,588 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.zbit.kegg.api.KeggInfos;
+
+/**
+ * A compact, pre-parsed copy of a successfully retrieved {@link KeggInfos}.
+ * Lists that the translators split on every access (pathways, pathway
+ * descriptions and EC codes) are split once, and their elements are
+ * interned, i.e., a pathway ID or description that occurs in many
+ * entries is kept only once in memory. Enzymes and synonyms are split
+ * on first access (see {@link #getEnzymes(KeggInfos)} and
+ * {@link #getSynonyms(KeggInfos)}). The EC codes are not extracted
+ * again by regular expressions on every call of {@link #getECcodes()}.
+ *
+ * <p>All getters return the same values as those of the original
+ * {@link KeggInfos}. Use the static methods, e.g.,
+ * {@link #getPathwayIDs(KeggInfos)}, to get the pre-split lists of any
+ * {@link KeggInfos}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class CompactKeggInfos extends KeggInfos {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 4153327095263181719L;
+
+  /**
+   * Interned list elements, shared by all instances.
+   */
+  private static final ConcurrentMap<String, String> pool = new ConcurrentHashMap<String, String>();
+
+  /**
+   *
+   */
+  private final String taxonomy, definition, description, names, name;
+  /**
+   *
+   */
+  private final String goId, reactionId, ensemblId, uniprotId, hgncId, omimId, entrezId;
+  /**
+   *
+   */
+  private final String formula, sameAs, mass, molecularWeight, equation;
+  /**
+   *
+   */
+  private final String pdbeChem, glycomeDB, lipidBank, pubchem, chebi, threeDmet, cas, drugbank;
+  /**
+   * Pathway IDs, split at ','.
+   */
+  private String[] pathways;
+  /**
+   * Pathway descriptions, split at ','.
+   */
+  private String[] pathwayDescriptions;
+  /**
+   * EC numbers of the enzymes, as given by {@link KeggInfos#getEnzymes()}.
+   */
+  private final String enzymes;
+  /**
+   * All EC codes (see {@link KeggInfos#getECcodes()}).
+   */
+  private String[] ecCodes;
+  /**
+   *
+   */
+  private final String[] geneEntry;
+  /**
+   * Synonyms, split from {@link #names} on first access.
+   */
+  private transient String[] synonyms;
+  /**
+   * EC numbers of the enzymes, split from {@link #enzymes} on first access.
+   */
+  private transient String[] enzymeList;
+
+  /**
+   * @param infos a successfully retrieved entry.
+   */
+  private CompactKeggInfos(KeggInfos infos) {
+    super(intern(infos.getKegg_ID()), (String) null);
+    taxonomy = infos.getTaxonomy();
+    definition = infos.getDefinition();
+    description = infos.getDescription();
+    names = infos.getNames();
+    name = infos.getName();
+    goId = infos.getGo_id();
+    reactionId = infos.getReaction_id();
+    ensemblId = infos.getEnsembl_id();
+    uniprotId = infos.getUniprot_id();
+    hgncId = infos.getHgnc_id();
+    omimId = infos.getOmim_id();
+    entrezId = infos.getEntrez_id();
+    formula = infos.getFormula();
+    sameAs = infos.getSameAs();
+    mass = infos.getMass();
+    molecularWeight = infos.getMolecularWeight();
+    equation = infos.getEquation();
+    pdbeChem = infos.getPDBeChem();
+    glycomeDB = infos.getGlycomeDB();
+    lipidBank = infos.getLipidBank();
+    pubchem = infos.getPubchem();
+    chebi = infos.getChebi();
+    threeDmet = infos.getThree_dmet();
+    cas = infos.getCas();
+    drugbank = infos.getDrugbank();
+    geneEntry = infos.getGeneEntry();
+    pathways = split(infos.getPathways(), ",");
+    pathwayDescriptions = split(infos.getPathwayDescriptions(), ",");
+    enzymes = infos.getEnzymes();
+    Collection<String> codes = infos.getECcodes();
+    ecCodes = codes != null ? internAll(codes.toArray(new String[codes.size()])) : null;
+  }
+
+  /**
+   * @param infos
+   * @return a compact copy of the given information, the given
+   * information itself if it is already compact, or {@code null} if the
+   * query was not successful (such entries are not worth copying).
+   */
+  public static KeggInfos compact(KeggInfos infos) {
+    if ((infos == null) || (infos instanceof CompactKeggInfos) || !infos.queryWasSuccessfull()) {
+      return infos;
+    }
+    return new CompactKeggInfos(infos);
+  }
+
+  /**
+   * @param s
+   * @return the shared instance of the given string.
+   */
+  private static String intern(String s) {
+    if (s == null) {
+      return null;
+    }
+    String shared = pool.putIfAbsent(s, s);
+    return shared != null ? shared : s;
+  }
+
+  /**
+   * @param a
+   * @return the given array with all elements interned.
+   */
+  private static String[] internAll(String[] a) {
+    if (a != null) {
+      for (int i = 0; i < a.length; i++) {
+        a[i] = intern(a[i]);
+      }
+    }
+    return a;
+  }
+
+  /**
+   * @param s
+   * @param regex
+   * @return the interned elements of {@code s.split(regex)} or
+   * {@code null}, if {@code s} is {@code null}.
+   */
+  private static String[] split(String s, String regex) {
+    return s != null ? internAll(s.split(regex)) : null;
+  }
+
+  /**
+   * @param s
+   * @return the interned, non-empty, white space separated tokens.
+   */
+  private static String[] splitEnzymes(String s) {
+    s = s.trim();
+    return s.length() > 0 ? internAll(s.split("\\s+")) : new String[0];
+  }
+
+  /**
+   * @param a
+   * @param separator
+   * @return the elements of the given array, separated by the given separator.
+   */
+  private static String join(String[] a, String separator) {
+    if (a == null) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < a.length; i++) {
+      if (i > 0) {
+        sb.append(separator);
+      }
+      sb.append(a[i]);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Interns all list elements again after loading a cache.
+   * @param in
+   * @throws IOException
+   * @throws ClassNotFoundException
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    pathways = internAll(pathways);
+    pathwayDescriptions = internAll(pathwayDescriptions);
+    ecCodes = internAll(ecCodes);
+  }
+
+  /**
+   * @param infos
+   * @return the IDs of all pathways of the given entry, split at ','
+   * (like {@code infos.getPathways().split(",")}), or {@code null}.
+   */
+  public static String[] getPathwayIDs(KeggInfos infos) {
+    if (infos instanceof CompactKeggInfos) {
+      return ((CompactKeggInfos) infos).pathways;
+    }
+    return infos.getPathways() != null ? infos.getPathways().split(",") : null;
+  }
+
+  /**
+   * @param infos
+   * @return the descriptions of all pathways of the given entry, split at
+   * ',' (like {@code infos.getPathwayDescriptions().split(",")}), or {@code null}.
+   */
+  public static String[] getPathwayDescriptions(KeggInfos infos) {
+    if (infos instanceof CompactKeggInfos) {
+      return ((CompactKeggInfos) infos).pathwayDescriptions;
+    }
+    return infos.getPathwayDescriptions() != null ? infos.getPathwayDescriptions().split(",") : null;
+  }
+
+  /**
+   * @param infos
+   * @return the non-empty, white space separated EC numbers of the
+   * enzymes of the given entry, or {@code null}.
+   */
+  public static String[] getEnzymes(KeggInfos infos) {
+    if (infos instanceof CompactKeggInfos) {
+      CompactKeggInfos compact = (CompactKeggInfos) infos;
+      if ((compact.enzymeList == null) && (compact.enzymes != null)) {
+        compact.enzymeList = splitEnzymes(compact.enzymes);
+      }
+      return compact.enzymeList;
+    }
+    return infos.getEnzymes() != null ? splitEnzymes(infos.getEnzymes()) : null;
+  }
+
+  /**
+   * @param infos
+   * @return all names of the given entry, split at ';' and ', ', or
+   * {@code null}. Elements may be empty.
+   */
+  public static String[] getSynonyms(KeggInfos infos) {
+    if (infos instanceof CompactKeggInfos) {
+      CompactKeggInfos compact = (CompactKeggInfos) infos;
+      if ((compact.synonyms == null) && (compact.names != null)) {
+        compact.synonyms = compact.names.split("((;)|(,\\s))");
+      }
+      return compact.synonyms;
+    }
+    return infos.getNames() != null ? infos.getNames().split("((;)|(,\\s))") : null;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#queryWasSuccessfull()
+   */
+  @Override
+  public boolean queryWasSuccessfull() {
+    // Only successful queries are compacted.
+    return true;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getInformationFromKeggAdaptor()
+   */
+  @Deprecated
+  @Override
+  public String getInformationFromKeggAdaptor() {
+    // Like KeggInfos, which drops the raw text after parsing it.
+    return "";
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#containsMultipleNames()
+   */
+  @Override
+  public boolean containsMultipleNames() {
+    return (names != null) && names.contains(";");
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getECcodes()
+   */
+  @Override
+  public Collection<String> getECcodes() {
+    // Like KeggInfos, a new set on every call
+    Set<String> codes = new HashSet<String>();
+    if (ecCodes != null) {
+      codes.addAll(Arrays.asList(ecCodes));
+    }
+    return codes;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#isSetECcodes()
+   */
+  @Override
+  public boolean isSetECcodes() {
+    return (ecCodes != null) && (ecCodes.length > 0);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getPathways()
+   */
+  @Override
+  public String getPathways() {
+    return join(pathways, ",");
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getPathwayDescriptions()
+   */
+  @Override
+  public String getPathwayDescriptions() {
+    return join(pathwayDescriptions, ",");
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getEnzymes()
+   */
+  @Override
+  public String getEnzymes() {
+    return enzymes;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getGeneEntry()
+   */
+  @Override
+  public String[] getGeneEntry() {
+    return geneEntry;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getTaxonomy()
+   */
+  @Override
+  public String getTaxonomy() {
+    return taxonomy;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getDefinition()
+   */
+  @Override
+  public String getDefinition() {
+    return definition;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getDescription()
+   */
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getNames()
+   */
+  @Override
+  public String getNames() {
+    return names;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getName()
+   */
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getGo_id()
+   */
+  @Override
+  public String getGo_id() {
+    return goId;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getReaction_id()
+   */
+  @Override
+  public String getReaction_id() {
+    return reactionId;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getEnsembl_id()
+   */
+  @Override
+  public String getEnsembl_id() {
+    return ensemblId;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getUniprot_id()
+   */
+  @Override
+  public String getUniprot_id() {
+    return uniprotId;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getHgnc_id()
+   */
+  @Override
+  public String getHgnc_id() {
+    return hgncId;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getOmim_id()
+   */
+  @Override
+  public String getOmim_id() {
+    return omimId;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getEntrez_id()
+   */
+  @Override
+  public String getEntrez_id() {
+    return entrezId;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getFormula()
+   */
+  @Override
+  public String getFormula() {
+    return formula;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getSameAs()
+   */
+  @Override
+  public String getSameAs() {
+    return sameAs;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getMass()
+   */
+  @Override
+  public String getMass() {
+    return mass;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getMolecularWeight()
+   */
+  @Override
+  public String getMolecularWeight() {
+    return molecularWeight;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getEquation()
+   */
+  @Override
+  public String getEquation() {
+    return equation;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getPDBeChem()
+   */
+  @Override
+  public String getPDBeChem() {
+    return pdbeChem;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getGlycomeDB()
+   */
+  @Override
+  public String getGlycomeDB() {
+    return glycomeDB;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getLipidBank()
+   */
+  @Override
+  public String getLipidBank() {
+    return lipidBank;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getPubchem()
+   */
+  @Override
+  public String getPubchem() {
+    return pubchem;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getPubchem_with_MiriamURN()
+   */
+  @Override
+  public String getPubchem_with_MiriamURN() {
+    return "urn:miriam:pubchem.substance:" + suffix(pubchem);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getChebi()
+   */
+  @Override
+  public String getChebi() {
+    return chebi;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getThree_dmet()
+   */
+  @Override
+  public String getThree_dmet() {
+    return threeDmet;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getCas()
+   */
+  @Override
+  public String getCas() {
+    return cas;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#getDrugbank()
+   */
+  @Override
+  public String getDrugbank() {
+    return drugbank;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggInfos#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format("[KEGGinfos for '%s' name:'%s' ...]", getKegg_ID(), names);
+  }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A {@link SynchronizedKeggInfoManagement} that collapses concurrent
+ * lookups of the same ID: only the first thread asks the wrapped cache
+ * (and possibly KEGG), all others wait for its result instead of sending
+ * the same request again. A thread that must not fetch from KEGG (see
+ * {@link OfflineKeggInfoManagement}) waits for the results of other
+ * threads, but nobody waits for its own.
+ *
+ * <p>The IDs that are currently looked up are kept in a
+ * {@link ConcurrentHashMap}, i.e., threads that look up different IDs
+ * only contend for one of its lock stripes. No values are kept here;
+ * every result comes from the wrapped cache, so that expiry and
+ * refreshes of an {@link ExpiringKeggInfoManagement}, as well as its
+ * memory limit, apply to all lookups.
+ *
+ * <p>If the wrapped cache is an {@link ExpiringKeggInfoManagement}, IDs
+ * in its {@link KeggFailIndex} are answered with {@code null} without
+ * any lock of the wrapped cache.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class ConcurrentKeggInfoManagement extends SynchronizedKeggInfoManagement {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 8541409771383921702L;
+
+  /**
+   * The result of a miss that is being fetched by one thread.
+   */
+  private static class Pending {
+    /**
+     * Released when {@link #value} has been set.
+     */
+    final CountDownLatch done = new CountDownLatch(1);
+    /**
+     *
+     */
+    volatile KeggInfos value;
+  }
+
+  /**
+   * IDs that are currently fetched by some thread.
+   */
+  private final transient ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+
+  /**
+   * IDs that could not be retrieved, or {@code null}.
+   */
+  private final transient KeggFailIndex failures;
+
+  /**
+   * @param manager the cache to wrap.
+   */
+  public ConcurrentKeggInfoManagement(KeggInfoManagement manager) {
+    super(manager);
+    failures = (manager instanceof ExpiringKeggInfoManagement) ? ((ExpiringKeggInfoManagement) manager).getFailIndex() : null;
+  }
+
+  /**
+   * @param id
+   * @return {@code true} if the given ID is known to be unretrievable.
+   */
+  private boolean isFailed(String id) {
+    return (failures != null) && failures.contains(id);
+  }
+
+  /**
+   * Fetches the given IDs from the wrapped cache. IDs that are already
+   * being fetched by another thread are not fetched again, instead this
+   * thread waits for the other one.
+   * @param ids IDs to look up (may contain duplicates).
+   * @param progress may be {@code null}.
+   * @return the information for all given IDs (in the same order).
+   */
+  private KeggInfos[] load(String[] ids, AbstractProgressBar progress) {
+    Map<String, Pending> own = new LinkedHashMap<String, Pending>();
+    Map<String, Pending> others = new HashMap<String, Pending>();
+    // The result of an offline lookup is not the result for anybody else.
+    boolean offline = OfflineKeggInfoManagement.isOffline();
+    for (String id : ids) {
+      if ((id == null) || own.containsKey(id) || others.containsKey(id)) {
+        continue;
+      }
+      Pending p = new Pending();
+      Pending existing = offline ? pending.get(id) : pending.putIfAbsent(id, p);
+      if (existing == null) {
+        own.put(id, p);
+      } else {
+        others.put(id, existing);
+      }
+    }
+
+    if (!own.isEmpty()) {
+      try {
+        String[] toFetch = own.keySet().toArray(new String[own.size()]);
+        KeggInfos[] fetched = progress != null ? super.getInformations(toFetch, progress) : super.getInformations(toFetch);
+        for (int i = 0; i < toFetch.length; i++) {
+          KeggInfos infos = (fetched != null) && (i < fetched.length) ? fetched[i] : null;
+          own.get(toFetch[i]).value = infos;
+        }
+      } finally {
+        for (Map.Entry<String, Pending> e : own.entrySet()) {
+          pending.remove(e.getKey(), e.getValue());
+          e.getValue().done.countDown();
+        }
+      }
+    }
+
+    // Answered by another thread (or duplicates).
+    countHits(ids.length - own.size());
+    boolean interrupted = false;
+    for (Pending p : others.values()) {
+      while (true) {
+        try {
+          p.done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    KeggInfos[] result = new KeggInfos[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      if (ids[i] != null) {
+        Pending p = own.get(ids[i]);
+        if (p == null) {
+          p = others.get(ids[i]);
+        }
+        result[i] = p.value;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Answers IDs that are known to be unretrievable with {@code null} and
+   * all others via {@link #load(String[], AbstractProgressBar)}.
+   * @param ids
+   * @param progress may be {@code null}.
+   * @return the information for all given IDs (in the same order).
+   */
+  private KeggInfos[] get(String[] ids, AbstractProgressBar progress) {
+    KeggInfos[] result = new KeggInfos[ids.length];
+    List<Integer> missing = new ArrayList<Integer>();
+    for (int i = 0; i < ids.length; i++) {
+      if ((ids[i] != null) && !isFailed(ids[i])) {
+        missing.add(Integer.valueOf(i));
+      }
+    }
+    countHits(ids.length - missing.size());
+    if (!missing.isEmpty()) {
+      String[] toLoad = new String[missing.size()];
+      for (int i = 0; i < toLoad.length; i++) {
+        toLoad[i] = ids[missing.get(i).intValue()];
+      }
+      KeggInfos[] loaded = load(toLoad, progress);
+      for (int i = 0; i < toLoad.length; i++) {
+        result[missing.get(i).intValue()] = loaded[i];
+      }
+    }
+    return result;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#getInformation(java.lang.String)
+   */
+  @Override
+  public KeggInfos getInformation(String id) {
+    if (id == null) {
+      return null;
+    }
+    if (isFailed(id)) {
+      countHits(1);
+      return null;
+    }
+    return load(new String[] {id}, null)[0];
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#getInformations(java.lang.String[])
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids) {
+    return get(ids, null);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#getInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids, AbstractProgressBar progress) {
+    return get(ids, progress);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#precacheIDs(java.lang.String[])
+   */
+  @Override
+  public void precacheIDs(String[] ids) {
+    get(ids, null);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#precacheIDs(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public void precacheIDs(String[] ids, AbstractProgressBar progress) {
+    get(ids, progress);
+  }
+
+}
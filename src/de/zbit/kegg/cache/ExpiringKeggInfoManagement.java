@@ -0,0 +1,640 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A {@link KeggInfoManagement} that remembers when every entry has been
+ * fetched from KEGG and refreshes entries that are older than a given
+ * time to live. The fetch times are saved together with the cache.
+ *
+ * <p>Expired entries are not dropped. They are still returned, but are
+ * fetched again in the background when they are looked up. Thus, only
+ * entries that are actually used are refreshed and lookups never wait
+ * for KEGG because of an expired entry. If a refresh fails, the old entry
+ * is kept.
+ *
+ * <p>Further, the cache can be tagged with a KEGG release (see
+ * {@link #setRelease(String)}). If the tag changes, all entries that have
+ * been fetched before are expired at once, regardless of their age.
+ *
+ * <p>IDs that could not be retrieved are also kept in a
+ * {@link KeggFailIndex}, which is saved with the cache. Lookups of these
+ * IDs are answered with {@code null} before the cache itself is asked.
+ * The index is cleared together with the fail cache (see
+ * {@link #clearFailCache()}).
+ *
+ * <p>Successfully retrieved entries are kept as {@link CompactKeggInfos}.
+ *
+ * <p>All public methods hold the lock of this instance (see
+ * {@link SynchronizedKeggInfoManagement#getLock(KeggInfoManagement)}),
+ * since refreshed entries are added by a background thread. Just like
+ * in a {@link SynchronizedKeggInfoManagement}, the lock is released
+ * while waiting for KEGG.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class ExpiringKeggInfoManagement extends KeggInfoManagement {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 6829015524731160375L;
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(ExpiringKeggInfoManagement.class.getName());
+
+  /**
+   * Maximum number of IDs that are refreshed with one request.
+   */
+  private static final int BATCH_SIZE = 100;
+
+  /**
+   * Time in milliseconds when every entry has been fetched.
+   */
+  private final Map<String, Long> fetched = new HashMap<String, Long>();
+
+  /**
+   * The KEGG release the cache is tagged with, or {@code null}.
+   */
+  private String release = null;
+
+  /**
+   * Entries that have been fetched before this time are expired.
+   */
+  private long invalidated = 0;
+
+  /**
+   * IDs that could not be retrieved.
+   */
+  private KeggFailIndex failures = new KeggFailIndex();
+
+  /**
+   * Time to live of every entry in milliseconds. Zero or less never
+   * expires an entry by age.
+   */
+  private transient long timeToLive = 0;
+
+  /**
+   * IDs that are waiting to be refreshed or have been refreshed (or
+   * failed) since this instance has been created or loaded. Every ID is
+   * refreshed at most once per session.
+   */
+  private transient Set<String> refreshed;
+
+  /**
+   * IDs that are waiting to be refreshed.
+   */
+  private transient Set<String> queue;
+
+  /**
+   * Refreshes expired entries.
+   */
+  private transient ExecutorService refresher;
+
+  /**
+   * @param maxListSize number of IDs to keep in memory.
+   */
+  public ExpiringKeggInfoManagement(int maxListSize) {
+    super(maxListSize);
+  }
+
+  /**
+   * @param in
+   * @throws IOException
+   * @throws ClassNotFoundException
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    if (failures == null) {
+      // Saved before the index has been introduced
+      failures = new KeggFailIndex();
+    }
+  }
+
+  /**
+   * Acquires the lock of this instance. Must be followed by
+   * {@link #unlock()} in a finally block.
+   */
+  private void lock() {
+    SynchronizedKeggInfoManagement.lock(this);
+  }
+
+  /**
+   * Releases the lock, acquired by {@link #lock()}.
+   */
+  private void unlock() {
+    SynchronizedKeggInfoManagement.getLock(this).unlock();
+  }
+
+  /**
+   * @return the IDs that could not be retrieved. The index is thread-safe
+   * and may be asked without holding the lock of this cache.
+   */
+  public KeggFailIndex getFailIndex() {
+    return failures;
+  }
+
+  /**
+   * @param timeToLive time in milliseconds after which an entry is
+   * refreshed. Zero or less never expires an entry by age.
+   */
+  public void setTimeToLive(long timeToLive) {
+    lock();
+    try {
+      this.timeToLive = timeToLive;
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * @return time to live of every entry in milliseconds.
+   */
+  public long getTimeToLive() {
+    lock();
+    try {
+      return timeToLive;
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Tags this cache with the given KEGG release. If the tag differs from
+   * the current one, all entries that have been fetched so far are
+   * expired. An untagged cache just adopts the tag.
+   * @param release e.g., '73.0'. {@code null} or an empty tag keeps the
+   * current tag.
+   */
+  public void setRelease(String release) {
+    lock();
+    try {
+      if ((release == null) || (release.trim().length() == 0) || release.trim().equals(this.release)) {
+        return;
+      }
+      if (this.release != null) {
+        logger.info(MessageFormat.format("KEGG release changed from {0} to {1}; expiring all cached entries.",
+          this.release, release.trim()));
+        invalidated = System.currentTimeMillis();
+      }
+      this.release = release.trim();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * @return the KEGG release this cache is tagged with, or {@code null}.
+   */
+  public String getRelease() {
+    lock();
+    try {
+      return release;
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * @param id
+   * @return {@code true} if the entry of the given ID should be refreshed.
+   */
+  private boolean isExpired(String id) {
+    Long time = fetched.get(id);
+    // Unknown, if the time has been dropped (see prune())
+    long t = time != null ? time.longValue() : 0;
+    return (t < invalidated) || ((timeToLive > 0) && (System.currentTimeMillis() - t > timeToLive));
+  }
+
+  /**
+   * Records that the given IDs have just been fetched.
+   * @param ids
+   * @param infos
+   */
+  private void record(String[] ids, KeggInfos[] infos) {
+    lock();
+    try {
+      Long now = Long.valueOf(System.currentTimeMillis());
+      for (int i = 0; i < ids.length; i++) {
+        if ((ids[i] != null) && (infos != null) && (i < infos.length) && (infos[i] != null)) {
+          fetched.put(ids[i], now);
+        }
+      }
+      prune();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * @return the number of IDs whose fetch time is known (see {@link #prune()}).
+   */
+  int getFetchTimeCount() {
+    lock();
+    try {
+      return fetched.size();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Keeps the fetch times of at most twice the cache size. Times of IDs
+   * that have been evicted from the cache are not removed otherwise, so
+   * the oldest times are dropped.
+   */
+  private void prune() {
+    int max = Math.max(2 * getCacheSize(), 1000);
+    if (fetched.size() <= max) {
+      return;
+    }
+    long[] times = new long[fetched.size()];
+    int i = 0;
+    for (Long time : fetched.values()) {
+      times[i++] = time.longValue();
+    }
+    Arrays.sort(times);
+    long cutoff = times[times.length - getCacheSize()];
+    Iterator<Long> it = fetched.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().longValue() < cutoff) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Schedules all given IDs that are expired for a refresh. Nothing is
+   * scheduled while the current thread is offline (see
+   * {@link OfflineKeggInfoManagement#isOffline()}).
+   * @param ids
+   * @param infos the cached information, IDs without information are ignored.
+   */
+  private void refreshExpired(String[] ids, KeggInfos[] infos) {
+    if (((timeToLive <= 0) && (invalidated <= 0)) || OfflineKeggInfoManagement.isOffline()) {
+      return;
+    }
+    if (refreshed == null) {
+      refreshed = new HashSet<String>();
+      queue = new LinkedHashSet<String>();
+    }
+    boolean added = false;
+    for (int i = 0; i < ids.length; i++) {
+      if ((ids[i] != null) && (infos != null) && (i < infos.length) && (infos[i] != null)
+          && !refreshed.contains(ids[i]) && isExpired(ids[i])) {
+        refreshed.add(ids[i]);
+        queue.add(ids[i]);
+        added = true;
+      }
+    }
+    if (added) {
+      if (refresher == null) {
+        refresher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "KEGG cache refresher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+          }
+        });
+      }
+      refresher.execute(new Runnable() {
+        @Override
+        public void run() {
+          refresh();
+        }
+      });
+    }
+  }
+
+  /**
+   * Refreshes up to {@link #BATCH_SIZE} queued IDs. Fetching is done
+   * without holding the lock of this instance.
+   */
+  private void refresh() {
+    String[] ids;
+    lock();
+    try {
+      if (queue.isEmpty()) {
+        return;
+      }
+      List<String> batch = new ArrayList<String>();
+      Iterator<String> it = queue.iterator();
+      while (it.hasNext() && (batch.size() < BATCH_SIZE)) {
+        batch.add(it.next());
+        it.remove();
+      }
+      ids = batch.toArray(new String[batch.size()]);
+    } finally {
+      unlock();
+    }
+    KeggInfos[] infos;
+    try {
+      infos = super.fetchMultipleInformations(ids, null);
+    } catch (Exception e) {
+      logger.log(Level.FINE, MessageFormat.format("Could not refresh {0} expired KEGG entries.", ids.length), e);
+      return;
+    }
+    lock();
+    try {
+      int refreshedEntries = 0;
+      for (int i = 0; (infos != null) && (i < ids.length) && (i < infos.length); i++) {
+        if (infos[i] != null) {
+          super.addInformation(ids[i], CompactKeggInfos.compact(infos[i]));
+          refreshedEntries++;
+        }
+      }
+      record(ids, infos);
+      logger.fine(MessageFormat.format("Refreshed {0} of {1} expired KEGG entries.", refreshedEntries, ids.length));
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchInformation(java.lang.String)
+   */
+  @Override
+  protected KeggInfos fetchInformation(String id) throws TimeoutException, UnsuccessfulRetrieveException {
+    if (OfflineKeggInfoManagement.isOffline()) {
+      throw new TimeoutException();
+    }
+    KeggInfos infos;
+    try {
+      infos = super.fetchInformation(id);
+    } catch (UnsuccessfulRetrieveException e) {
+      failures.add(id);
+      throw e;
+    }
+    if (infos == null) {
+      failures.add(id);
+    }
+    infos = CompactKeggInfos.compact(infos);
+    record(new String[] {id}, new KeggInfos[] {infos});
+    return infos;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchMultipleInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  protected KeggInfos[] fetchMultipleInformations(String[] ids, AbstractProgressBar progress)
+      throws TimeoutException, UnsuccessfulRetrieveException {
+    if (OfflineKeggInfoManagement.isOffline()) {
+      throw new TimeoutException();
+    }
+    KeggInfos[] infos;
+    try {
+      infos = super.fetchMultipleInformations(ids, progress);
+    } catch (UnsuccessfulRetrieveException e) {
+      infos = null;
+    }
+    // Just like the super class marks IDs as unretrievable
+    for (int i = 0; i < ids.length; i++) {
+      if ((infos == null) || ((i < infos.length) && (infos[i] == null))) {
+        failures.add(ids[i]);
+      }
+    }
+    if (infos == null) {
+      throw new UnsuccessfulRetrieveException();
+    }
+    for (int i = 0; i < infos.length; i++) {
+      infos[i] = CompactKeggInfos.compact(infos[i]);
+    }
+    record(ids, infos);
+    return infos;
+  }
+
+  /**
+   * @param ids
+   * @return the indices of all IDs that are not known to be unretrievable.
+   */
+  private int[] getRetrievable(String[] ids) {
+    int[] retrievable = new int[ids.length];
+    int n = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (!failures.contains(ids[i])) {
+        retrievable[n++] = i;
+      }
+    }
+    return n < ids.length ? Arrays.copyOf(retrievable, n) : null;
+  }
+
+  /**
+   * @param ids
+   * @param indices
+   * @return the IDs at the given indices.
+   */
+  private static String[] select(String[] ids, int[] indices) {
+    String[] selected = new String[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      selected[i] = ids[indices[i]];
+    }
+    return selected;
+  }
+
+  /**
+   * Looks up all IDs that are not known to be unretrievable.
+   * @param ids
+   * @param progress may be {@code null}.
+   * @return the information for all given IDs (in the same order).
+   */
+  private KeggInfos[] lookup(String[] ids, AbstractProgressBar progress) {
+    int[] retrievable = getRetrievable(ids);
+    if (retrievable == null) {
+      KeggInfos[] infos = super.getInformations(ids, progress);
+      refreshExpired(ids, infos);
+      return infos;
+    }
+    KeggInfos[] infos = new KeggInfos[ids.length];
+    if (retrievable.length > 0) {
+      String[] toLookup = select(ids, retrievable);
+      KeggInfos[] found = super.getInformations(toLookup, progress);
+      refreshExpired(toLookup, found);
+      for (int i = 0; (found != null) && (i < found.length); i++) {
+        infos[retrievable[i]] = found[i];
+      }
+    }
+    return infos;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformation(java.lang.Comparable)
+   */
+  @Override
+  public KeggInfos getInformation(String id) {
+    lock();
+    try {
+      if (failures.contains(id)) {
+        return null;
+      }
+      KeggInfos infos = super.getInformation(id);
+      refreshExpired(new String[] {id}, new KeggInfos[] {infos});
+      return infos;
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformations(IDtype[])
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids) {
+    lock();
+    try {
+      return lookup(ids, null);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformations(IDtype[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids, AbstractProgressBar progress) {
+    lock();
+    try {
+      return lookup(ids, progress);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#precacheIDs(IDtype[])
+   */
+  @Override
+  public void precacheIDs(String[] ids) {
+    lock();
+    try {
+      int[] retrievable = getRetrievable(ids);
+      super.precacheIDs(retrievable != null ? select(ids, retrievable) : ids);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#precacheIDs(IDtype[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public void precacheIDs(String[] ids, AbstractProgressBar progress) {
+    lock();
+    try {
+      int[] retrievable = getRetrievable(ids);
+      super.precacheIDs(retrievable != null ? select(ids, retrievable) : ids, progress);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#addInformation(java.lang.Comparable, java.io.Serializable)
+   */
+  @Override
+  public void addInformation(String id, KeggInfos info) {
+    lock();
+    try {
+      if (info != null) {
+        failures.remove(id);
+      }
+      info = CompactKeggInfos.compact(info);
+      super.addInformation(id, info);
+      record(new String[] {id}, new KeggInfos[] {info});
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#removeInformation(java.lang.Comparable)
+   */
+  @Override
+  public boolean removeInformation(String id) {
+    lock();
+    try {
+      fetched.remove(id);
+      return super.removeInformation(id);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#clearCache()
+   */
+  @Override
+  public void clearCache() {
+    lock();
+    try {
+      fetched.clear();
+      failures.clear();
+      super.clearCache();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#clearFailCache()
+   */
+  @Override
+  public void clearFailCache() {
+    lock();
+    try {
+      failures.clear();
+      super.clearFailCache();
+    } finally {
+      unlock();
+    }
+  }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggFunctionManagement;
+import de.zbit.kegg.api.cache.KeggQuery;
+import de.zbit.util.objectwrapper.CustomObject;
+
+/**
+ * A read-only bundle of KEGG annotations, i.e., {@link KeggInfos} and
+ * results of the {@link KeggFunctionManagement}, that allows to translate
+ * with all annotations but without access to KEGG. A bundle is written
+ * once with a {@link Writer} and then memory-mapped for reading:
+ * <pre>
+ * header: int magic, int version, long indexPosition, int entries
+ * value:  int length, byte[] value (deflated, serialized object)
+ * index:  byte kind, int keyLength, byte[] key (UTF-8), long valuePosition
+ * </pre>
+ * A value length of -1 marks an ID that could not be retrieved from
+ * KEGG. Opening a bundle only reads the index; values are inflated
+ * lazily.
+ *
+ * <p>Reading is thread-safe.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KeggBundle {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(KeggBundle.class.getName());
+
+  /**
+   * 'KGAB'
+   */
+  private static final int MAGIC = 0x4B474142;
+
+  /**
+   * Version of the file format.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Size of the file header in bytes.
+   */
+  private static final int HEADER_SIZE = 20;
+
+  /**
+   * Value length of an ID that could not be retrieved.
+   */
+  private static final int UNRETRIEVABLE = -1;
+
+  /**
+   * Kind of an index entry for {@link KeggInfos}.
+   */
+  private static final byte INFOS = 0;
+
+  /**
+   * Kind of an index entry for a {@link KeggQuery}.
+   */
+  private static final byte FUNCTION = 1;
+
+  /**
+   * The bundle file.
+   */
+  private final File file;
+
+  /**
+   * Read-only view on the whole bundle.
+   */
+  private final MappedByteBuffer mapped;
+
+  /**
+   * Position of the value length per KEGG ID.
+   */
+  private final Map<String, Long> infos = new HashMap<String, Long>();
+
+  /**
+   * Position of the value length per {@link KeggQuery} (see {@link #getKey(KeggQuery)}).
+   */
+  private final Map<String, Long> functions = new HashMap<String, Long>();
+
+  /**
+   * Opens the given bundle.
+   * @param file
+   * @throws IOException if the file can not be read or is no bundle.
+   */
+  public KeggBundle(File file) throws IOException {
+    this.file = file;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(MessageFormat.format("{0} is too large.", file));
+      }
+      // The mapping remains valid after the channel has been closed.
+      mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      raf.close();
+    }
+    try {
+      readIndex();
+    } catch (BufferUnderflowException e) {
+      throw new IOException(MessageFormat.format("{0} is incomplete.", file));
+    }
+    logger.fine(MessageFormat.format("Opened {0} with {1} KEGG IDs and {2} function results.", file, infos.size(), functions.size()));
+  }
+
+  /**
+   * @throws IOException
+   */
+  private void readIndex() throws IOException {
+    ByteBuffer buffer = mapped.duplicate();
+    if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+      throw new IOException(MessageFormat.format("{0} is not a KEGG annotation bundle.", file));
+    }
+    long indexPosition = buffer.getLong();
+    int entries = buffer.getInt();
+    if ((indexPosition < HEADER_SIZE) || (indexPosition > buffer.limit())) {
+      throw new IOException(MessageFormat.format("{0} is incomplete.", file));
+    }
+    buffer.position((int) indexPosition);
+    byte[] key = new byte[256];
+    for (int i = 0; i < entries; i++) {
+      byte kind = buffer.get();
+      int keyLength = buffer.getInt();
+      if (key.length < keyLength) {
+        key = new byte[keyLength];
+      }
+      buffer.get(key, 0, keyLength);
+      Long position = Long.valueOf(buffer.getLong());
+      (kind == FUNCTION ? functions : infos).put(new String(key, 0, keyLength, "UTF-8"), position);
+    }
+  }
+
+  /**
+   * @param query
+   * @return the key of the given query in the index.
+   */
+  private static String getKey(KeggQuery query) {
+    return query.getJobToDo() + ":" + (query.getQuery() != null ? query.getQuery() : "");
+  }
+
+  /**
+   * @param position position of the value length
+   * @return the deserialized value or {@code null} if it has been stored
+   * as not retrievable.
+   * @throws IOException
+   */
+  private Object read(long position) throws IOException {
+    ByteBuffer buffer = mapped.duplicate();
+    buffer.position((int) position);
+    int length = buffer.getInt();
+    if (length == UNRETRIEVABLE) {
+      return null;
+    }
+    byte[] value = new byte[length];
+    buffer.get(value);
+    ObjectInputStream in = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(value)));
+    try {
+      return in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @param id
+   * @return {@code true} if the bundle contains the given ID (also if
+   * the ID could not be retrieved when the bundle was written).
+   */
+  public boolean contains(String id) {
+    return infos.containsKey(id);
+  }
+
+  /**
+   * @param id
+   * @return the information or {@code null} if the ID is not in the
+   * bundle or could not be retrieved (see {@link #contains(String)}).
+   * @throws IOException if the value can not be read.
+   */
+  public KeggInfos get(String id) throws IOException {
+    Long position = infos.get(id);
+    return position != null ? (KeggInfos) read(position.longValue()) : null;
+  }
+
+  /**
+   * @param query
+   * @return {@code true} if the bundle contains the result of the given query.
+   */
+  public boolean contains(KeggQuery query) {
+    return functions.containsKey(getKey(query));
+  }
+
+  /**
+   * @param query
+   * @return the result or {@code null} if the query is not in the bundle
+   * or failed (see {@link #contains(KeggQuery)}).
+   * @throws IOException if the value can not be read.
+   */
+  @SuppressWarnings("unchecked")
+  public CustomObject<Object> get(KeggQuery query) throws IOException {
+    Long position = functions.get(getKey(query));
+    return position != null ? (CustomObject<Object>) read(position.longValue()) : null;
+  }
+
+  /**
+   * @return the number of KEGG IDs in this bundle.
+   */
+  public int size() {
+    return infos.size();
+  }
+
+  /**
+   * @return the bundle file.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Writes a new {@link KeggBundle}. All values are written immediately,
+   * the index on {@link #close()}. The bundle is written to a temporary
+   * file, which replaces the bundle file on {@link #close()}.
+   *
+   * <p>This class is thread-safe.
+   */
+  public static class Writer {
+    /**
+     * The bundle file.
+     */
+    private final File file;
+    /**
+     * The temporary file.
+     */
+    private final File tmp;
+    /**
+     *
+     */
+    private final DataOutputStream out;
+    /**
+     * Position of the next value.
+     */
+    private long position = HEADER_SIZE;
+    /**
+     * Position of the value length per KEGG ID.
+     */
+    private final Map<String, Long> infos = new HashMap<String, Long>();
+    /**
+     * Position of the value length per {@link KeggQuery}.
+     */
+    private final Map<String, Long> functions = new HashMap<String, Long>();
+
+    /**
+     * @param file the bundle to write.
+     * @throws IOException
+     */
+    public Writer(File file) throws IOException {
+      this.file = file;
+      tmp = CacheFlusher.getTemporaryFile(file);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      // Completed on close
+      out.write(new byte[HEADER_SIZE]);
+    }
+
+    /**
+     * @param id
+     * @return {@code true} if the given ID has already been written.
+     */
+    public synchronized boolean contains(String id) {
+      return infos.containsKey(id);
+    }
+
+    /**
+     * Writes the information of the given ID, if not yet written.
+     * @param id
+     * @param infos {@code null} if the ID could not be retrieved.
+     * @throws IOException
+     */
+    public synchronized void put(String id, KeggInfos infos) throws IOException {
+      if (!this.infos.containsKey(id)) {
+        this.infos.put(id, Long.valueOf(write(infos)));
+      }
+    }
+
+    /**
+     * Writes the result of the given query, if not yet written.
+     * @param query
+     * @param result {@code null} if the query failed.
+     * @throws IOException
+     */
+    public synchronized void put(KeggQuery query, CustomObject<Object> result) throws IOException {
+      String key = getKey(query);
+      if (!functions.containsKey(key)) {
+        functions.put(key, Long.valueOf(write(result)));
+      }
+    }
+
+    /**
+     * @param value
+     * @return the position of the written value.
+     * @throws IOException
+     */
+    private long write(Serializable value) throws IOException {
+      long valuePosition = position;
+      if (value == null) {
+        out.writeInt(UNRETRIEVABLE);
+        position += 4;
+        return valuePosition;
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_COMPRESSION)));
+      oos.writeObject(value);
+      oos.close();
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+      position += 4 + bytes.size();
+      return valuePosition;
+    }
+
+    /**
+     * @return the number of written KEGG IDs.
+     */
+    public synchronized int size() {
+      return infos.size();
+    }
+
+    /**
+     * Writes the index and replaces the bundle file.
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+      long indexPosition = position;
+      try {
+        writeIndex(INFOS, infos);
+        writeIndex(FUNCTION, functions);
+      } finally {
+        out.close();
+      }
+      RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+      try {
+        raf.writeInt(MAGIC);
+        raf.writeInt(VERSION);
+        raf.writeLong(indexPosition);
+        raf.writeInt(infos.size() + functions.size());
+      } finally {
+        raf.close();
+      }
+      CacheFlusher.replace(tmp, file);
+    }
+
+    /**
+     * @param kind
+     * @param index
+     * @throws IOException
+     */
+    private void writeIndex(byte kind, Map<String, Long> index) throws IOException {
+      for (Map.Entry<String, Long> e : index.entrySet()) {
+        byte[] key = e.getKey().getBytes("UTF-8");
+        out.writeByte(kind);
+        out.writeInt(key.length);
+        out.write(key);
+        out.writeLong(e.getValue().longValue());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.Serializable;
+
+/**
+ * A compact set of KEGG IDs that could not be retrieved. Only a 64 bit
+ * hash of every ID is kept in an open addressing table of primitive
+ * {@code long}s, i.e., about 16 bytes per ID and no objects. Unlike a
+ * Bloom filter, false positives are practically impossible (two IDs would
+ * need the same 64 bit hash), so an ID that is contained can be rejected
+ * without asking the cache.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KeggFailIndex implements Serializable {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -3185403795413254780L;
+
+  /**
+   * Marks an empty slot.
+   */
+  private static final long EMPTY = 0L;
+
+  /**
+   * Initial number of slots (a power of two).
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * Hashes of all IDs, {@link #EMPTY} for free slots.
+   */
+  private long[] table = new long[INITIAL_CAPACITY];
+
+  /**
+   * Number of IDs.
+   */
+  private int size = 0;
+
+  /**
+   * @param id
+   * @return a 64 bit hash of the given ID (never {@link #EMPTY}).
+   */
+  static long hash(String id) {
+    // FNV-1a, then the finalizer of MurmurHash3 to spread the bits
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < id.length(); i++) {
+      h ^= id.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= (h >>> 33);
+    h *= 0xff51afd7ed558ccdL;
+    h ^= (h >>> 33);
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= (h >>> 33);
+    return h != EMPTY ? h : 1L;
+  }
+
+  /**
+   * @param h
+   * @return the slot of the given hash or of the empty slot where it
+   * would be inserted.
+   */
+  private int slot(long h) {
+    int mask = table.length - 1;
+    int i = (int) h & mask;
+    while ((table[i] != EMPTY) && (table[i] != h)) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  /**
+   * @param id
+   * @return {@code true} if the given ID could not be retrieved.
+   */
+  public synchronized boolean contains(String id) {
+    return (id != null) && (size > 0) && (table[slot(hash(id))] != EMPTY);
+  }
+
+  /**
+   * Marks the given ID as not retrievable.
+   * @param id
+   */
+  public synchronized void add(String id) {
+    if (id == null) {
+      return;
+    }
+    long h = hash(id);
+    int i = slot(h);
+    if (table[i] == EMPTY) {
+      table[i] = h;
+      size++;
+      if (2 * size > table.length) {
+        resize(2 * table.length);
+      }
+    }
+  }
+
+  /**
+   * Removes the given ID, e.g., if it has been retrieved after all.
+   * @param id
+   */
+  public synchronized void remove(String id) {
+    if ((id == null) || (size == 0)) {
+      return;
+    }
+    int mask = table.length - 1;
+    int i = slot(hash(id));
+    if (table[i] == EMPTY) {
+      return;
+    }
+    table[i] = EMPTY;
+    size--;
+    // Move following entries of the same cluster to keep them reachable.
+    int j = (i + 1) & mask;
+    while (table[j] != EMPTY) {
+      long h = table[j];
+      table[j] = EMPTY;
+      table[slot(h)] = h;
+      j = (j + 1) & mask;
+    }
+  }
+
+  /**
+   * @param capacity new number of slots (a power of two).
+   */
+  private void resize(int capacity) {
+    long[] old = table;
+    table = new long[capacity];
+    for (long h : old) {
+      if (h != EMPTY) {
+        table[slot(h)] = h;
+      }
+    }
+  }
+
+  /**
+   * Removes all IDs.
+   */
+  public synchronized void clear() {
+    table = new long[INITIAL_CAPACITY];
+    size = 0;
+  }
+
+  /**
+   * @return the number of IDs.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+}
@@ -0,0 +1,603 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.kegg.api.KeggInfos;
+
+/**
+ * A persistent, append-only store for {@link KeggInfos}. All records are
+ * appended to one log file, which is memory-mapped for reading:
+ * <pre>
+ * header: int magic, int version
+ * record: int keyLength, byte[] key (UTF-8), long time,
+ *         int valueLength, byte[] value (serialized KeggInfos)
+ * </pre>
+ * A value length of -1 marks an ID that could not be retrieved from
+ * KEGG. If an ID occurs multiple times, the last record is valid.
+ *
+ * <p>The index (the position of the latest record per ID) is saved next
+ * to the log (see {@link #getIndexFile()}) when the store is flushed or
+ * closed, together with the length of the log it covers. Opening the store reads
+ * this index and only scans the records appended after it, e.g., by a
+ * process that has been killed. Without a valid index, the keys of all
+ * records are read. Values are deserialized lazily on {@link #get(String)}.
+ * New records are appended immediately, hence saving only requires to
+ * {@link #flush()} the operating system buffers. An incomplete record
+ * at the end of the log (e.g., after a crash) is discarded on opening.
+ *
+ * <p>The log is mapped in segments: records that are appended after a
+ * segment has been mapped are mapped on their own, the log is never
+ * mapped from the start again (except to merge too many segments).
+ *
+ * <p>Appends hold an exclusive {@link FileLock} on the log. Thus,
+ * multiple processes can share one store: before appending, records of
+ * other processes are added to the index. A process does not see records
+ * that other processes append after its last own append. Within one
+ * process, only one instance per file may be open.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KeggInfoStore {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(KeggInfoStore.class.getName());
+
+  /**
+   * 'KGIS'
+   */
+  private static final int MAGIC = 0x4B474953;
+
+  /**
+   * 'KGIX'
+   */
+  private static final int INDEX_MAGIC = 0x4B474958;
+
+  /**
+   * Version of the file format.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Size of the file header in bytes.
+   */
+  private static final int HEADER_SIZE = 8;
+
+  /**
+   * Value length of an ID that could not be retrieved.
+   */
+  private static final int UNRETRIEVABLE = -1;
+
+  /**
+   * Maximum length of a key in bytes. Larger values indicate a corrupt record.
+   */
+  private static final int MAX_KEY_LENGTH = 4096;
+
+  /**
+   * Maximum number of mapped segments. More segments are merged into one.
+   */
+  private static final int MAX_SEGMENTS = 64;
+
+  /**
+   * The log file.
+   */
+  private final File file;
+
+  /**
+   *
+   */
+  private final RandomAccessFile raf;
+
+  /**
+   *
+   */
+  private final FileChannel channel;
+
+  /**
+   * Read-only views on the first {@link #mappedSize} bytes of the log,
+   * by the position of their first byte. Every record is contained in
+   * exactly one segment.
+   */
+  private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<Long, MappedByteBuffer>();
+
+  /**
+   *
+   */
+  private long mappedSize = HEADER_SIZE;
+
+  /**
+   * Length of the valid part of the log. New records are appended here.
+   */
+  private long size;
+
+  /**
+   * Length of the log, covered by the index file.
+   */
+  private long checkpoint = 0;
+
+  /**
+   * Position of the value length of the latest record per ID.
+   */
+  private final Map<String, Long> index = new HashMap<String, Long>();
+
+  /**
+   * Number of records, appended since the last {@link #flush()}.
+   */
+  private int unflushed = 0;
+
+  /**
+   * Number of records, appended since this store has been opened.
+   */
+  private long appended = 0;
+
+  /**
+   * Opens or creates the store in the given file.
+   * @param file
+   * @throws IOException if the file can not be opened or is no store.
+   */
+  public KeggInfoStore(File file) throws IOException {
+    this.file = file;
+    raf = new RandomAccessFile(file, "rw");
+    channel = raf.getChannel();
+    try {
+      FileLock lock = channel.lock();
+      try {
+        if (channel.size() < HEADER_SIZE) {
+          ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+          header.putInt(MAGIC).putInt(VERSION).flip();
+          channel.truncate(0);
+          write(header, 0);
+          size = HEADER_SIZE;
+          getIndexFile().delete();
+        } else {
+          ByteBuffer header = read(0, HEADER_SIZE);
+          if ((header.getInt() != MAGIC) || (header.getInt() != VERSION)) {
+            throw new IOException(MessageFormat.format("{0} is not a KEGG information store.", file));
+          }
+          long start = readIndex();
+          size = scan(start);
+          if (start > HEADER_SIZE) {
+            logger.fine(MessageFormat.format("Read the index of {0} and scanned {1} bytes.", file, size - start));
+          }
+        }
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      raf.close();
+      throw e;
+    }
+    logger.fine(MessageFormat.format("Opened {0} with {1} KEGG IDs.", file, index.size()));
+  }
+
+  /**
+   * @return the file, the index of this store is saved to.
+   */
+  public File getIndexFile() {
+    return new File(file.getPath() + ".idx");
+  }
+
+  /**
+   * Writes the whole buffer to the log.
+   * @param buffer
+   * @param position
+   * @throws IOException
+   */
+  private void write(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * @param position
+   * @param length
+   * @return the given region of the log.
+   * @throws IOException if the log ends before.
+   */
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException(MessageFormat.format("Unexpected end of {0}.", file));
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Reads the index file into the {@link #index}, if it matches the log.
+   * @return the length of the log that is covered by the index, i.e.,
+   * the position to continue scanning.
+   */
+  private long readIndex() {
+    File indexFile = getIndexFile();
+    if (!indexFile.exists()) {
+      return HEADER_SIZE;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+      try {
+        if ((in.readInt() != INDEX_MAGIC) || (in.readInt() != VERSION)) {
+          throw new IOException("Unknown format.");
+        }
+        long covered = in.readLong();
+        int count = in.readInt();
+        if ((covered < HEADER_SIZE) || (covered > channel.size()) || (count < 0)) {
+          throw new IOException("The index does not match the log.");
+        }
+        String last = null;
+        long lastPosition = -1;
+        for (int i = 0; i < count; i++) {
+          String id = in.readUTF();
+          long position = in.readLong();
+          if ((position < HEADER_SIZE) || (position >= covered)) {
+            throw new IOException("The index does not match the log.");
+          }
+          index.put(id, Long.valueOf(position));
+          if (position > lastPosition) {
+            last = id;
+            lastPosition = position;
+          }
+        }
+        if ((last != null) && !isRecordOf(last, lastPosition)) {
+          throw new IOException("The index does not match the log.");
+        }
+        checkpoint = covered;
+        return covered;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      logger.log(Level.FINE, MessageFormat.format("Ignoring the index {0}.", indexFile), e);
+      index.clear();
+      return HEADER_SIZE;
+    }
+  }
+
+  /**
+   * @param id
+   * @param position the position of the value length of a record.
+   * @return {@code true} if the record at the given position belongs to
+   * the given ID.
+   * @throws IOException
+   */
+  private boolean isRecordOf(String id, long position) throws IOException {
+    byte[] key = id.getBytes("UTF-8");
+    long start = position - 8 - key.length - 4;
+    if (start < HEADER_SIZE) {
+      return false;
+    }
+    ByteBuffer record = read(start, 4 + key.length);
+    if (record.getInt() != key.length) {
+      return false;
+    }
+    byte[] stored = new byte[key.length];
+    record.get(stored);
+    return Arrays.equals(key, stored);
+  }
+
+  /**
+   * Saves the {@link #index} to the index file. Must be called while
+   * holding the lock of the log.
+   * @throws IOException
+   */
+  private void writeIndex() throws IOException {
+    File indexFile = getIndexFile();
+    File tmp = CacheFlusher.getTemporaryFile(indexFile);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(INDEX_MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(size);
+      out.writeInt(index.size());
+      for (Map.Entry<String, Long> e : index.entrySet()) {
+        out.writeUTF(e.getKey());
+        out.writeLong(e.getValue().longValue());
+      }
+    } catch (IOException e) {
+      out.close();
+      tmp.delete();
+      throw e;
+    }
+    out.close();
+    CacheFlusher.replace(tmp, indexFile);
+    checkpoint = size;
+  }
+
+  /**
+   * Adds all records from the given position to the end of the log to the
+   * {@link #index} and discards an incomplete record at the end. Must be
+   * called while holding the lock of the log.
+   * @param start the position of the first record to read.
+   * @return the length of the valid part of the log.
+   * @throws IOException
+   */
+  private long scan(long start) throws IOException {
+    long length = channel.size();
+    if (length <= start) {
+      return start;
+    }
+    if (length - start > Integer.MAX_VALUE) {
+      throw new IOException(MessageFormat.format("{0} is too large.", file));
+    }
+    MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, length - start);
+    int valid = 0;
+    byte[] key = new byte[256];
+    try {
+      while (buffer.hasRemaining()) {
+        int keyLength = buffer.getInt();
+        if ((keyLength < 0) || (keyLength > MAX_KEY_LENGTH)) {
+          break;
+        }
+        if (key.length < keyLength) {
+          key = new byte[keyLength];
+        }
+        buffer.get(key, 0, keyLength);
+        buffer.getLong(); // time
+        int valuePosition = buffer.position();
+        int valueLength = buffer.getInt();
+        if ((valueLength < UNRETRIEVABLE) || (valueLength > buffer.remaining())) {
+          break;
+        }
+        if (valueLength > 0) {
+          buffer.position(buffer.position() + valueLength);
+        }
+        index.put(new String(key, 0, keyLength, "UTF-8"), Long.valueOf(start + valuePosition));
+        valid = buffer.position();
+      }
+    } catch (BufferUnderflowException e) {
+      // Incomplete record
+    }
+    if ((valid > 0) && (start == mappedSize)) {
+      // Else, the segments are extended by segment(long, int).
+      segments.put(Long.valueOf(start), buffer);
+      mappedSize = start + valid;
+    }
+    if (start + valid < length) {
+      logger.warning(MessageFormat.format("Discarding {0} bytes of an incomplete record at the end of {1}.", length - start - valid, file));
+      try {
+        channel.truncate(start + valid);
+      } catch (IOException e) {
+        // The record is overwritten anyway.
+        logger.fine(e.getLocalizedMessage());
+      }
+    }
+    return start + valid;
+  }
+
+  /**
+   * @return the number of stored IDs.
+   */
+  public synchronized int size() {
+    return index.size();
+  }
+
+  /**
+   * @param id
+   * @return {@code true} if a record for the given ID is stored (also if
+   * the ID has been stored as not retrievable).
+   */
+  public synchronized boolean contains(String id) {
+    return index.containsKey(id);
+  }
+
+  /**
+   * Reads the latest record of the given ID.
+   * @param id
+   * @return the stored information or {@code null} if the ID is not
+   * stored or has been stored as not retrievable (see {@link #contains(String)}).
+   * @throws IOException if the record can not be read.
+   */
+  public synchronized KeggInfos get(String id) throws IOException {
+    Long position = index.get(id);
+    if (position == null) {
+      return null;
+    }
+    long pos = position.longValue();
+    Map.Entry<Long, MappedByteBuffer> segment = segment(pos, 4);
+    int offset = (int) (pos - segment.getKey().longValue());
+    int valueLength = segment.getValue().getInt(offset);
+    if (valueLength == UNRETRIEVABLE) {
+      return null;
+    }
+    segment = segment(pos, 4 + valueLength);
+    offset = (int) (pos - segment.getKey().longValue());
+    ByteBuffer buffer = segment.getValue().duplicate();
+    buffer.position(offset + 4);
+    byte[] value = new byte[valueLength];
+    buffer.get(value);
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(value));
+    try {
+      return (KeggInfos) in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Appends a record for the given ID.
+   * @param id
+   * @param infos the information to store or {@code null} if the ID could
+   * not be retrieved.
+   * @throws IOException
+   */
+  public synchronized void put(String id, KeggInfos infos) throws IOException {
+    byte[] key = id.getBytes("UTF-8");
+    if (key.length > MAX_KEY_LENGTH) {
+      throw new IOException(MessageFormat.format("KEGG ID ''{0}'' is too long.", id));
+    }
+    byte[] value = null;
+    if (infos != null) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(infos);
+      out.close();
+      value = bytes.toByteArray();
+    }
+
+    ByteArrayOutputStream record = new ByteArrayOutputStream(key.length + (value != null ? value.length : 0) + 16);
+    DataOutputStream out = new DataOutputStream(record);
+    out.writeInt(key.length);
+    out.write(key);
+    out.writeLong(System.currentTimeMillis());
+    out.writeInt(value != null ? value.length : UNRETRIEVABLE);
+    if (value != null) {
+      out.write(value);
+    }
+    out.close();
+
+    FileLock lock = channel.lock();
+    try {
+      // Records of other processes
+      size = scan(size);
+      write(ByteBuffer.wrap(record.toByteArray()), size);
+      index.put(id, Long.valueOf(size + 4 + key.length + 8));
+      size += record.size();
+    } finally {
+      lock.release();
+    }
+    unflushed++;
+    appended++;
+  }
+
+  /**
+   * @param position
+   * @param length
+   * @return the segment that maps the given region of the log, with the
+   * position of its first byte as key.
+   * @throws IOException
+   */
+  private Map.Entry<Long, MappedByteBuffer> segment(long position, int length) throws IOException {
+    if (position + length > mappedSize) {
+      // Appended records are not yet mapped.
+      if (size - mappedSize > Integer.MAX_VALUE) {
+        throw new IOException(MessageFormat.format("{0} is too large.", file));
+      }
+      segments.put(Long.valueOf(mappedSize), channel.map(MapMode.READ_ONLY, mappedSize, size - mappedSize));
+      mappedSize = size;
+      if ((segments.size() > MAX_SEGMENTS) && (size <= Integer.MAX_VALUE)) {
+        segments.clear();
+        segments.put(Long.valueOf(0), channel.map(MapMode.READ_ONLY, 0, size));
+      }
+    }
+    Map.Entry<Long, MappedByteBuffer> segment = segments.floorEntry(Long.valueOf(position));
+    if ((segment == null) || (position + length > segment.getKey().longValue() + segment.getValue().capacity())) {
+      throw new IOException(MessageFormat.format("Corrupt record at position {0,number,#} of {1}.", position, file));
+    }
+    return segment;
+  }
+
+  /**
+   * Forces all appended records to the disk and saves the index.
+   * @throws IOException
+   */
+  public synchronized void flush() throws IOException {
+    if (unflushed > 0) {
+      channel.force(false);
+      unflushed = 0;
+    }
+    if (size != checkpoint) {
+      // Only after the records, it refers to, are on the disk.
+      FileLock lock = channel.lock();
+      try {
+        writeIndex();
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  /**
+   * @return the number of records, appended since the last {@link #flush()}.
+   */
+  public synchronized int getUnflushed() {
+    return unflushed;
+  }
+
+  /**
+   * @return the number of records, appended since this store has been opened.
+   */
+  public synchronized long getAppended() {
+    return appended;
+  }
+
+  /**
+   * Flushes the store, saves the index and closes the store.
+   * @throws IOException
+   */
+  public synchronized void close() throws IOException {
+    try {
+      FileLock lock = channel.lock();
+      try {
+        // Records of other processes
+        size = scan(size);
+      } finally {
+        lock.release();
+      }
+      flush();
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @return the log file of this store.
+   */
+  public File getFile() {
+    return file;
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A {@link SynchronizedKeggInfoManagement} that answers all lookups from
+ * the wrapped cache only, i.e., IDs that are not cached are never fetched
+ * from KEGG. Other views on the same cache are not affected, so
+ * translators with and without access to KEGG can share one cache.
+ *
+ * <p>Unlike {@link KeggInfoManagement#offlineMode}, the offline state is
+ * only set for the thread that is looking up IDs through this view (see
+ * {@link #isOffline()}). Every {@link SynchronizedKeggInfoManagement}
+ * routes the requests of the innermost cache through an
+ * {@link UnlockingKeggAdaptor}, which refuses all requests of an offline
+ * thread. Hence, this works for any wrapped cache.
+ * {@link ExpiringKeggInfoManagement}, {@link StoredKeggInfoManagement},
+ * {@link BundledKeggInfoManagement} and {@link ConcurrentKeggInfoManagement}
+ * additionally skip refreshing or loading information for an offline thread.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class OfflineKeggInfoManagement extends SynchronizedKeggInfoManagement {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 1958361738170924612L;
+
+  /**
+   * Set while the current thread is looking up IDs through any instance
+   * of this class.
+   */
+  private static final ThreadLocal<Boolean> offline = new ThreadLocal<Boolean>();
+
+  /**
+   * @param manager the cache to wrap.
+   */
+  public OfflineKeggInfoManagement(KeggInfoManagement manager) {
+    super(manager);
+  }
+
+  /**
+   * @return {@code true} if no ID must be fetched from KEGG in the
+   * current thread, because it is looking up IDs through an
+   * {@link OfflineKeggInfoManagement} or {@link KeggInfoManagement#offlineMode}
+   * is set.
+   */
+  public static boolean isOffline() {
+    return KeggInfoManagement.offlineMode || Boolean.TRUE.equals(offline.get());
+  }
+
+  /**
+   * Marks the current thread as offline. Must be followed by
+   * {@link #exit(boolean)} in a finally block.
+   * @return {@code true} if the current thread was already offline, i.e.,
+   * views are nested.
+   */
+  private static boolean enter() {
+    boolean before = Boolean.TRUE.equals(offline.get());
+    offline.set(Boolean.TRUE);
+    return before;
+  }
+
+  /**
+   * Ends a lookup started with {@link #enter()}.
+   * @param before the return value of {@link #enter()}.
+   */
+  private static void exit(boolean before) {
+    if (!before) {
+      offline.remove();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#getInformation(java.lang.String)
+   */
+  @Override
+  public KeggInfos getInformation(String id) {
+    boolean before = enter();
+    try {
+      return super.getInformation(id);
+    } finally {
+      exit(before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#getInformations(java.lang.String[])
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids) {
+    boolean before = enter();
+    try {
+      return super.getInformations(ids);
+    } finally {
+      exit(before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#getInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids, AbstractProgressBar progress) {
+    boolean before = enter();
+    try {
+      return super.getInformations(ids, progress);
+    } finally {
+      exit(before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#precacheIDs(java.lang.String[])
+   */
+  @Override
+  public void precacheIDs(String[] ids) {
+    // Nothing can be fetched.
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.cache.SynchronizedKeggInfoManagement#precacheIDs(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public void precacheIDs(String[] ids, AbstractProgressBar progress) {
+    // Nothing can be fetched.
+  }
+
+}
@@ -0,0 +1,465 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * A local stand-in for the KEGG REST API that serves recorded responses
+ * from a directory instead of accessing KEGG. Set it as adaptor of a
+ * {@link KeggInfoManagement} (see
+ * {@link KeggInfoManagement#setKeggAdaptor(KeggAdaptor)}) to translate
+ * reproducibly and offline, e.g., for benchmarks and regression tests.
+ *
+ * <p>Every request {@code <operation>/<argument>/...} is answered from
+ * the file with the same relative path in the directory, where all
+ * characters except letters, digits, '.' and '-' are replaced by '_'.
+ * Requests for multiple entries ({@code get/<id>+<id>+...}) are answered
+ * from one file per ID, e.g., {@code get/cpd_c00001}; IDs without a
+ * recorded entry are omitted, just like KEGG omits unknown IDs.
+ *
+ * <p>To simulate a network, every request can be delayed (the given
+ * latency, varied by up to 50%) and fail with a given probability. The
+ * pseudo-random numbers are seeded, i.e., a single-threaded run always
+ * fails at the same requests. Missing responses can be recorded from KEGG
+ * (see {@link #setRecording(boolean)}).
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class RecordedKeggAdaptor extends KeggAdaptor {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(RecordedKeggAdaptor.class.getName());
+
+  /**
+   * The operation to retrieve entries.
+   */
+  private static final String GET = "get";
+
+  /**
+   * Terminates every entry in KEGG flat files.
+   */
+  private static final String END_OF_ENTRY = "///";
+
+  /**
+   * Seed of the pseudo-random numbers for latency and failures.
+   */
+  public static final long DEFAULT_SEED = 4711L;
+
+  /**
+   * The directory with the recorded responses.
+   */
+  private final File directory;
+
+  /**
+   * Mean delay of every request in milliseconds.
+   */
+  private volatile int latency = 0;
+
+  /**
+   * Probability of every request to fail.
+   */
+  private volatile double failureRate = 0d;
+
+  /**
+   * If {@code true}, missing responses are fetched from KEGG and recorded.
+   */
+  private volatile boolean recording = false;
+
+  /**
+   * Source of the latency variation and failures.
+   */
+  private final Random random = new Random(DEFAULT_SEED);
+
+  /**
+   * Number of all requests.
+   */
+  private final AtomicInteger requests = new AtomicInteger();
+
+  /**
+   * Number of injected failures.
+   */
+  private final AtomicInteger failures = new AtomicInteger();
+
+  /**
+   * Number of requests and IDs without a recorded response.
+   */
+  private final AtomicInteger misses = new AtomicInteger();
+
+  /**
+   * @param directory the directory with the recorded responses.
+   */
+  public RecordedKeggAdaptor(File directory) {
+    super();
+    if (directory == null) {
+      throw new IllegalArgumentException("The directory must not be null.");
+    }
+    this.directory = directory;
+  }
+
+  /**
+   * @return the directory with the recorded responses.
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @param latency mean delay of every request in milliseconds.
+   */
+  public void setLatency(int latency) {
+    this.latency = Math.max(0, latency);
+  }
+
+  /**
+   * @return mean delay of every request in milliseconds.
+   */
+  public int getLatency() {
+    return latency;
+  }
+
+  /**
+   * @param failureRate probability of every request to fail, between 0 and 1.
+   */
+  public void setFailureRate(double failureRate) {
+    this.failureRate = Math.max(0d, Math.min(1d, failureRate));
+  }
+
+  /**
+   * @return probability of every request to fail.
+   */
+  public double getFailureRate() {
+    return failureRate;
+  }
+
+  /**
+   * @param recording if {@code true}, responses that are not in the
+   * directory are fetched from KEGG and written to the directory.
+   */
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+  }
+
+  /**
+   * @return {@code true} if missing responses are recorded from KEGG.
+   */
+  public boolean isRecording() {
+    return recording;
+  }
+
+  /**
+   * @param seed seed of the pseudo-random numbers for latency and failures.
+   */
+  public void setSeed(long seed) {
+    synchronized (random) {
+      random.setSeed(seed);
+    }
+  }
+
+  /**
+   * @return the number of all requests so far.
+   */
+  public int getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * @return the number of injected failures so far.
+   */
+  public int getFailureCount() {
+    return failures.get();
+  }
+
+  /**
+   * @return the number of requests and IDs without a recorded response so far.
+   */
+  public int getMissCount() {
+    return misses.get();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public String get(String operation, String... arguments) throws IOException {
+    requests.incrementAndGet();
+    simulateNetwork(operation, arguments);
+    if (GET.equals(operation) && (arguments != null) && (arguments.length == 1)) {
+      return getEntries(arguments[0]);
+    }
+
+    File file = getFile(operation, arguments);
+    if (file.exists()) {
+      return read(file);
+    }
+    if (!recording) {
+      misses.incrementAndGet();
+      throw new FileNotFoundException(MessageFormat.format("No recorded response for ''{0}''.", getRequest(operation, arguments)));
+    }
+    String response = super.get(operation, arguments);
+    write(file, response);
+    return response;
+  }
+
+  /**
+   * Delays the current thread and possibly fails.
+   * @param operation
+   * @param arguments
+   * @throws IOException if the request should fail.
+   */
+  private void simulateNetwork(String operation, String... arguments) throws IOException {
+    double delay;
+    boolean fail;
+    synchronized (random) {
+      delay = latency * (0.5d + random.nextDouble());
+      fail = random.nextDouble() < failureRate;
+    }
+    if (delay >= 1d) {
+      try {
+        Thread.sleep((long) delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(e.getMessage());
+      }
+    }
+    if (fail) {
+      failures.incrementAndGet();
+      throw new IOException(MessageFormat.format("Injected failure of ''{0}''.", getRequest(operation, arguments)));
+    }
+  }
+
+  /**
+   * Answers a request for multiple entries from one file per ID.
+   * @param query IDs, separated by '+'.
+   * @return all recorded entries of the given IDs.
+   * @throws IOException
+   */
+  private String getEntries(String query) throws IOException {
+    String[] ids = query.split("\\+");
+    if (recording) {
+      List<String> missing = new ArrayList<String>();
+      for (String id : ids) {
+        if ((id.length() > 0) && !getEntryFile(id).exists()) {
+          missing.add(id);
+        }
+      }
+      if (!missing.isEmpty()) {
+        record(missing);
+      }
+    }
+
+    StringBuilder response = new StringBuilder();
+    for (String id : ids) {
+      if (id.length() == 0) {
+        continue;
+      }
+      File file = getEntryFile(id);
+      if (file.exists()) {
+        response.append(read(file));
+      } else {
+        misses.incrementAndGet();
+      }
+    }
+    return response.toString();
+  }
+
+  /**
+   * Fetches the given IDs from KEGG and writes one file per ID. IDs that
+   * are unknown to KEGG are recorded as empty files.
+   * @param ids
+   * @throws IOException
+   */
+  private void record(List<String> ids) throws IOException {
+    StringBuilder query = new StringBuilder();
+    for (String id : ids) {
+      if (query.length() > 0) {
+        query.append('+');
+      }
+      query.append(id);
+    }
+    String response = super.get(GET, query.toString());
+
+    // KEGG returns the entries in the requested order, but omits unknown IDs.
+    Map<String, StringBuilder> entries = new LinkedHashMap<String, StringBuilder>();
+    for (String id : ids) {
+      entries.put(id, new StringBuilder());
+    }
+    StringBuilder entry = new StringBuilder();
+    int next = 0;
+    BufferedReader in = new BufferedReader(new StringReader(response != null ? response : ""));
+    String line;
+    while ((line = in.readLine()) != null) {
+      entry.append(line).append('\n');
+      if (line.startsWith(END_OF_ENTRY)) {
+        String name = getEntryName(entry);
+        for (int i = next; i < ids.size(); i++) {
+          if (name.equalsIgnoreCase(ids.get(i).substring(ids.get(i).indexOf(':') + 1))) {
+            entries.get(ids.get(i)).append(entry);
+            next = i + 1;
+            break;
+          }
+        }
+        entry.setLength(0);
+      }
+    }
+
+    for (Map.Entry<String, StringBuilder> e : entries.entrySet()) {
+      write(getEntryFile(e.getKey()), e.getValue().toString());
+    }
+    logger.fine(MessageFormat.format("Recorded {0} KEGG entries in {1}.", entries.size(), directory));
+  }
+
+  /**
+   * @param entry a KEGG flat file entry.
+   * @return the name of the entry, as given in the 'ENTRY' line, or an
+   * empty string.
+   */
+  private static String getEntryName(CharSequence entry) {
+    String[] tokens = entry.toString().split("\n", 2)[0].trim().split("\\s+");
+    if ((tokens.length < 2) || !tokens[0].equals("ENTRY")) {
+      return "";
+    }
+    // e.g., 'ENTRY       EC 1.1.1.1                  Enzyme'
+    if (tokens[1].equals("EC") && (tokens.length > 2)) {
+      return tokens[2];
+    }
+    return tokens[1];
+  }
+
+  /**
+   * @param id
+   * @return the file with the recorded entry of the given ID.
+   */
+  private File getEntryFile(String id) {
+    return getFile(GET, id);
+  }
+
+  /**
+   * @param operation
+   * @param arguments
+   * @return the file with the recorded response to the given request.
+   */
+  private File getFile(String operation, String... arguments) {
+    File file = new File(directory, sanitize(operation));
+    if (arguments != null) {
+      for (String argument : arguments) {
+        file = new File(file, sanitize(argument));
+      }
+    }
+    return file;
+  }
+
+  /**
+   * @param name
+   * @return the given name in lower case, with all characters except
+   * letters, digits, '.' and '-' replaced by '_'.
+   */
+  private static String sanitize(String name) {
+    if ((name == null) || (name.length() == 0) || name.equals(".")) {
+      return "_";
+    }
+    // '..' must not leave the directory.
+    return name.toLowerCase().replaceAll("[^a-z0-9.\\-]", "_").replace("..", "__");
+  }
+
+  /**
+   * @param operation
+   * @param arguments
+   * @return the request as relative URL, e.g., {@code list/organism}.
+   */
+  private static String getRequest(String operation, String... arguments) {
+    StringBuilder request = new StringBuilder(operation);
+    if (arguments != null) {
+      for (String argument : arguments) {
+        request.append('/').append(argument);
+      }
+    }
+    return request.toString();
+  }
+
+  /**
+   * @param file
+   * @return the content of the given file.
+   * @throws IOException
+   */
+  private static String read(File file) throws IOException {
+    StringBuilder content = new StringBuilder((int) file.length());
+    InputStreamReader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+    try {
+      char[] buffer = new char[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        content.append(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return content.toString();
+  }
+
+  /**
+   * Writes the given response via a temporary file.
+   * @param file
+   * @param content
+   * @throws IOException
+   */
+  private synchronized void write(File file, String content) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException(MessageFormat.format("Could not create {0}.", parent));
+    }
+    File tmp = CacheFlusher.getTemporaryFile(file);
+    Writer out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+    try {
+      out.write(content != null ? content : "");
+    } finally {
+      out.close();
+    }
+    CacheFlusher.replace(tmp, file);
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A {@link KeggInfoManagement} that is backed by a {@link KeggInfoStore}.
+ * The in-memory cache of the super class is used as first level. Missing
+ * IDs are looked up in the store and only IDs that are not stored are
+ * fetched from KEGG. Every fetched ID (or the fact that it could not be
+ * retrieved) is appended to the store immediately.
+ *
+ * <p>Hence, this cache must never be saved with
+ * {@link KeggInfoManagement#saveToFilesystem(String, KeggInfoManagement)};
+ * {@link #flush()} is sufficient.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class StoredKeggInfoManagement extends KeggInfoManagement {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 3391270418470236148L;
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(StoredKeggInfoManagement.class.getName());
+
+  /**
+   * The persistent second level.
+   */
+  private final transient KeggInfoStore store;
+
+  /**
+   * If {@code true}, IDs that are stored as not retrievable are fetched
+   * again (see {@link #clearFailCache()}).
+   */
+  private boolean retryFailed = false;
+
+  /**
+   * @param maxListSize number of IDs to keep in memory.
+   * @param store
+   */
+  public StoredKeggInfoManagement(int maxListSize, KeggInfoStore store) {
+    super(maxListSize);
+    if (store == null) {
+      throw new IllegalArgumentException("The KeggInfoStore must not be null.");
+    }
+    this.store = store;
+  }
+
+  /**
+   * @return the persistent store.
+   */
+  public KeggInfoStore getStore() {
+    return store;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchInformation(java.lang.String)
+   */
+  @Override
+  protected KeggInfos fetchInformation(String id) throws TimeoutException, UnsuccessfulRetrieveException {
+    KeggInfos infos = load(id);
+    if (infos != null) {
+      return infos;
+    } else if (!retryFailed && store.contains(id)) {
+      throw new UnsuccessfulRetrieveException();
+    } else if (OfflineKeggInfoManagement.isOffline()) {
+      throw new TimeoutException();
+    }
+
+    try {
+      infos = super.fetchInformation(id);
+    } catch (UnsuccessfulRetrieveException e) {
+      save(id, null);
+      throw e;
+    }
+    if (infos != null) {
+      save(id, infos);
+    }
+    return infos;
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchMultipleInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  protected KeggInfos[] fetchMultipleInformations(String[] ids, AbstractProgressBar progress)
+      throws TimeoutException, UnsuccessfulRetrieveException {
+    KeggInfos[] infos = new KeggInfos[ids.length];
+    List<Integer> missing = new ArrayList<Integer>();
+    for (int i = 0; i < ids.length; i++) {
+      infos[i] = load(ids[i]);
+      if ((infos[i] == null) && (retryFailed || !store.contains(ids[i]))) {
+        missing.add(Integer.valueOf(i));
+      }
+    }
+    if (missing.isEmpty() || OfflineKeggInfoManagement.isOffline()) {
+      return infos;
+    }
+
+    String[] toFetch = new String[missing.size()];
+    for (int i = 0; i < toFetch.length; i++) {
+      toFetch[i] = ids[missing.get(i).intValue()];
+    }
+    KeggInfos[] fetched = super.fetchMultipleInformations(toFetch, progress);
+    for (int i = 0; i < toFetch.length; i++) {
+      KeggInfos info = (fetched != null) && (i < fetched.length) ? fetched[i] : null;
+      infos[missing.get(i).intValue()] = info;
+      save(toFetch[i], info);
+    }
+    return infos;
+  }
+
+  /**
+   * @param id
+   * @return the stored information or {@code null} if the ID is not stored
+   * or the record can not be read.
+   */
+  private KeggInfos load(String id) {
+    try {
+      return store.get(id);
+    } catch (IOException e) {
+      logger.log(Level.FINE, MessageFormat.format("Could not read the stored information of {0}.", id), e);
+      return null;
+    }
+  }
+
+  /**
+   * @param id
+   * @param infos {@code null} if the ID could not be retrieved.
+   */
+  private void save(String id, KeggInfos infos) {
+    try {
+      store.put(id, infos);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not store the information of {0}.", id), e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#clearFailCache()
+   */
+  @Override
+  public void clearFailCache() {
+    super.clearFailCache();
+    retryFailed = true;
+  }
+
+  /**
+   * Forces all appended records to the disk.
+   */
+  public void flush() {
+    try {
+      store.flush();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not flush {0}.", store.getFile()), e);
+    }
+  }
+
+  /**
+   * Flushes and closes the store.
+   */
+  public void close() {
+    try {
+      store.close();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not close {0}.", store.getFile()), e);
+    }
+  }
+
+}
@@ -0,0 +1,479 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * A thread-safe view on a {@link KeggInfoManagement}. All calls are
+ * forwarded to the wrapped cache while holding its lock (see
+ * {@link #getLock(KeggInfoManagement)}). Thus, multiple translators,
+ * running in different threads, can share one cache.
+ *
+ * <p>The lock is only held while the wrapped cache is read or modified:
+ * an {@link UnlockingKeggAdaptor} is installed as
+ * {@link KeggAdaptor} of the wrapped cache, which releases the lock while
+ * waiting for KEGG. Hence, lookups of cached IDs are never blocked by
+ * other threads that fetch IDs from KEGG.
+ *
+ * <p>Since this class extends {@link KeggInfoManagement}, it can be
+ * given to any translator or to {@link KeggInfos#get(String, KeggInfoManagement)}.
+ * The wrapped instance should not be used concurrently without holding
+ * its lock, i.e., it is still the instance that should be saved to the
+ * file system (see {@link #getWrappedManager()}).
+ *
+ * <p>Further, this class counts all looked up IDs and how many of them
+ * had to be requested from KEGG, in total and per thread.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class SynchronizedKeggInfoManagement extends KeggInfoManagement {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -5016223856296127044L;
+
+  /**
+   * The {@link UnlockingKeggAdaptor} of every wrapped cache.
+   */
+  private static final Map<KeggInfoManagement, UnlockingKeggAdaptor> adaptors = new WeakHashMap<KeggInfoManagement, UnlockingKeggAdaptor>();
+
+  /**
+   * The actual cache.
+   */
+  private final KeggInfoManagement manager;
+
+  /**
+   * The adaptor of the innermost wrapped cache, which also provides the lock.
+   */
+  private final transient UnlockingKeggAdaptor adaptor;
+
+  /**
+   * Number of IDs, looked up in the cache.
+   */
+  private final AtomicLong lookups = new AtomicLong();
+
+  /**
+   * Number of IDs that have been requested from KEGG.
+   */
+  private final AtomicLong fetched = new AtomicLong();
+
+  /**
+   * Lookups and fetched IDs of the current thread.
+   */
+  private final transient ThreadLocal<long[]> threadCounts = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[2];
+    }
+  };
+
+  /**
+   * @param manager the cache to wrap.
+   */
+  public SynchronizedKeggInfoManagement(KeggInfoManagement manager) {
+    super(1);
+    if (manager == null) {
+      throw new IllegalArgumentException("The KeggInfoManagement to wrap must not be null.");
+    }
+    this.manager = manager;
+    adaptor = getAdaptor(manager);
+  }
+
+  /**
+   * @param manager
+   * @return the {@link UnlockingKeggAdaptor} of the innermost cache,
+   * wrapped by the given one.
+   */
+  private static UnlockingKeggAdaptor getAdaptor(KeggInfoManagement manager) {
+    while (manager instanceof SynchronizedKeggInfoManagement) {
+      manager = ((SynchronizedKeggInfoManagement) manager).getWrappedManager();
+    }
+    synchronized (adaptors) {
+      UnlockingKeggAdaptor adaptor = adaptors.get(manager);
+      if (adaptor == null) {
+        adaptor = new UnlockingKeggAdaptor(manager);
+        adaptors.put(manager, adaptor);
+      }
+      return adaptor;
+    }
+  }
+
+  /**
+   * Everybody who reads or modifies a cache that is shared by several
+   * threads must hold this lock, e.g., to save the cache. This includes
+   * the {@link SynchronizedKeggInfoManagement}s that wrap the cache.
+   * @param manager a cache or a {@link SynchronizedKeggInfoManagement}.
+   * @return the lock of the given cache.
+   */
+  public static ReentrantLock getLock(KeggInfoManagement manager) {
+    return getAdaptor(manager).getLock();
+  }
+
+  /**
+   * @return the wrapped, not thread-safe, cache.
+   */
+  public KeggInfoManagement getWrappedManager() {
+    return manager;
+  }
+
+  /**
+   * Acquires the lock of the given cache and makes sure that the lock is
+   * released while waiting for KEGG. Must be followed by an unlock of
+   * {@link #getLock(KeggInfoManagement)} in a finally block.
+   * @param manager a cache, but not a {@link SynchronizedKeggInfoManagement}.
+   */
+  static void lock(KeggInfoManagement manager) {
+    UnlockingKeggAdaptor adaptor = getAdaptor(manager);
+    adaptor.getLock().lock();
+    adaptor.install(manager);
+  }
+
+  /**
+   * Acquires the lock of the wrapped cache. Must be followed by
+   * {@link #unlock()} in a finally block.
+   */
+  protected void lock() {
+    adaptor.getLock().lock();
+    if (!(manager instanceof SynchronizedKeggInfoManagement)) {
+      adaptor.install(manager);
+    }
+  }
+
+  /**
+   * Releases the lock, acquired by {@link #lock()}.
+   */
+  protected void unlock() {
+    adaptor.getLock().unlock();
+  }
+
+  /**
+   * @param requested number of looked up IDs
+   * @param before number of IDs, requested from KEGG by the current
+   * thread, before the lookup.
+   */
+  private void count(int requested, long before) {
+    long added = adaptor.getRequested() - before;
+    lookups.addAndGet(requested);
+    fetched.addAndGet(added);
+    long[] counts = threadCounts.get();
+    counts[0] += requested;
+    counts[1] += added;
+  }
+
+  /**
+   * Counts lookups that have been answered without asking the wrapped
+   * cache (e.g., by a subclass).
+   * @param hits number of looked up IDs.
+   */
+  protected void countHits(int hits) {
+    lookups.addAndGet(hits);
+    threadCounts.get()[0] += hits;
+  }
+
+  /**
+   * @return the number of IDs looked up (in all threads) since this
+   * instance has been created.
+   */
+  public long getLookups() {
+    return lookups.get();
+  }
+
+  /**
+   * @return the number of IDs (in all threads) that were not cached and
+   * had to be requested from KEGG.
+   */
+  public long getFetched() {
+    return fetched.get();
+  }
+
+  /**
+   * @return the number of IDs, looked up by the current thread.
+   */
+  public long getThreadLookups() {
+    return threadCounts.get()[0];
+  }
+
+  /**
+   * @return the number of IDs, requested from KEGG by the current thread.
+   */
+  public long getThreadFetched() {
+    return threadCounts.get()[1];
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformation(java.lang.Comparable)
+   */
+  @Override
+  public KeggInfos getInformation(String id) {
+    long before = adaptor.getRequested();
+    lock();
+    try {
+      return manager.getInformation(id);
+    } finally {
+      unlock();
+      count(1, before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformations(IDtype[])
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids) {
+    long before = adaptor.getRequested();
+    lock();
+    try {
+      return manager.getInformations(ids);
+    } finally {
+      unlock();
+      count(ids.length, before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformations(IDtype[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public KeggInfos[] getInformations(String[] ids, AbstractProgressBar progress) {
+    long before = adaptor.getRequested();
+    lock();
+    try {
+      return manager.getInformations(ids, progress);
+    } finally {
+      unlock();
+      count(ids.length, before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#precacheIDs(IDtype[])
+   */
+  @Override
+  public void precacheIDs(String[] ids) {
+    long before = adaptor.getRequested();
+    lock();
+    try {
+      manager.precacheIDs(ids);
+    } finally {
+      unlock();
+      count(ids.length, before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#precacheIDs(IDtype[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public void precacheIDs(String[] ids, AbstractProgressBar progress) {
+    long before = adaptor.getRequested();
+    lock();
+    try {
+      manager.precacheIDs(ids, progress);
+    } finally {
+      unlock();
+      count(ids.length, before);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#addInformation(java.lang.Comparable, java.io.Serializable)
+   */
+  @Override
+  public void addInformation(String id, KeggInfos info) {
+    lock();
+    try {
+      manager.addInformation(id, info);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#removeInformation(java.lang.Comparable)
+   */
+  @Override
+  public boolean removeInformation(String id) {
+    lock();
+    try {
+      return manager.removeInformation(id);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#clearCache()
+   */
+  @Override
+  public void clearCache() {
+    lock();
+    try {
+      manager.clearCache();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#clearFailCache()
+   */
+  @Override
+  public void clearFailCache() {
+    lock();
+    try {
+      manager.clearFailCache();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getCacheSize()
+   */
+  @Override
+  public int getCacheSize() {
+    lock();
+    try {
+      return manager.getCacheSize();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#setCacheSize(int)
+   */
+  @Override
+  public void setCacheSize(int size) {
+    lock();
+    try {
+      manager.setCacheSize(size);
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getNumberOfCachedIDs()
+   */
+  @Override
+  public int getNumberOfCachedIDs() {
+    lock();
+    try {
+      return manager.getNumberOfCachedIDs();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getNumberOfCachedInfos()
+   */
+  @Override
+  public int getNumberOfCachedInfos() {
+    lock();
+    try {
+      return manager.getNumberOfCachedInfos();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#isCacheFull()
+   */
+  @Override
+  public boolean isCacheFull() {
+    lock();
+    try {
+      return manager.isCacheFull();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#isCacheChangedSinceLastLoading()
+   */
+  @Override
+  public boolean isCacheChangedSinceLastLoading() {
+    lock();
+    try {
+      return manager.isCacheChangedSinceLastLoading();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#hasChanged()
+   */
+  @Override
+  public boolean hasChanged() {
+    lock();
+    try {
+      return manager.hasChanged();
+    } finally {
+      unlock();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#getKeggAdaptor()
+   */
+  @Override
+  public KeggAdaptor getKeggAdaptor() {
+    return adaptor.getAdaptor();
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#setKeggAdaptor(de.zbit.kegg.api.KeggAdaptor)
+   */
+  @Override
+  public void setKeggAdaptor(KeggAdaptor adap) {
+    adaptor.setAdaptor(adap);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#removeUnnecessaryInfos(java.lang.String)
+   */
+  @Override
+  public String removeUnnecessaryInfos(String ret) {
+    lock();
+    try {
+      return manager.removeUnnecessaryInfos(ret);
+    } finally {
+      unlock();
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.MessageFormat;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * A {@link KeggAdaptor} that gives up on requests that take too long.
+ * The plain adaptor waits for KEGG without any limit, so a translation
+ * that hangs in a request never reaches its next check of the timeout
+ * (see {@link de.zbit.kegg.io.AbstractKEGGtranslator#setTimeout(long)}).
+ * This adaptor sets a connect and a read timeout on every connection
+ * and throws a {@link SocketTimeoutException}, if either is exceeded.
+ * The caller then treats the request like any other failed request.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class TimeoutKeggAdaptor extends KeggAdaptor {
+
+  /**
+   * The URL every request starts with.
+   */
+  private final String prefix;
+
+  /**
+   * Timeout in milliseconds to connect and between two reads.
+   */
+  private final int timeout;
+
+  /**
+   * @param timeout time in milliseconds to wait for a connection and for
+   * every read of the response.
+   */
+  public TimeoutKeggAdaptor(int timeout) {
+    this(KEGG_API_REST_PREFIX, timeout);
+  }
+
+  /**
+   * @param prefix the URL of the KEGG REST API, ending with '/'.
+   * @param timeout time in milliseconds to wait for a connection and for
+   * every read of the response.
+   */
+  TimeoutKeggAdaptor(String prefix, int timeout) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException(MessageFormat.format("Invalid timeout {0}.", timeout));
+    }
+    this.prefix = prefix;
+    this.timeout = timeout;
+  }
+
+  /**
+   * @return the timeout in milliseconds to connect and between two reads.
+   */
+  public int getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Makes a {@link TimeoutKeggAdaptor} the adaptor of the given cache, if
+   * it uses a plain {@link KeggAdaptor}. Other adaptors, e.g., a
+   * {@link RecordedKeggAdaptor}, are kept.
+   * @param manager a cache or a {@link SynchronizedKeggInfoManagement}.
+   * @param timeout see {@link #TimeoutKeggAdaptor(int)}.
+   */
+  public static void install(KeggInfoManagement manager, int timeout) {
+    while (manager instanceof SynchronizedKeggInfoManagement) {
+      manager = ((SynchronizedKeggInfoManagement) manager).getWrappedManager();
+    }
+    ReentrantLock lock = SynchronizedKeggInfoManagement.getLock(manager);
+    lock.lock();
+    try {
+      KeggAdaptor current = manager.getKeggAdaptor();
+      if (current instanceof UnlockingKeggAdaptor) {
+        UnlockingKeggAdaptor unlocking = (UnlockingKeggAdaptor) current;
+        if (isReplaceable(unlocking.getAdaptor())) {
+          unlocking.setAdaptor(new TimeoutKeggAdaptor(timeout));
+        }
+      } else if (isReplaceable(current)) {
+        manager.setKeggAdaptor(new TimeoutKeggAdaptor(timeout));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param adaptor
+   * @return {@code true} if the given adaptor is a plain
+   * {@link KeggAdaptor} or a {@link TimeoutKeggAdaptor}.
+   */
+  private static boolean isReplaceable(KeggAdaptor adaptor) {
+    return (adaptor == null) || (adaptor.getClass() == KeggAdaptor.class) || (adaptor instanceof TimeoutKeggAdaptor);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public String get(String operation, String... arguments) throws IOException {
+    StringBuilder url = new StringBuilder(prefix);
+    url.append(operation);
+    if (arguments != null) {
+      for (String argument : arguments) {
+        url.append('/').append(argument);
+      }
+    }
+    URLConnection connection = new URL(url.toString()).openConnection();
+    connection.setConnectTimeout(timeout);
+    connection.setReadTimeout(timeout);
+    try {
+      InputStream in = connection.getInputStream();
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          out.write(buffer, 0, read);
+        }
+        return out.toString();
+      } finally {
+        in.close();
+      }
+    } finally {
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection) connection).disconnect();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * The {@link KeggAdaptor} of a cache that is shared by several threads
+ * (see {@link SynchronizedKeggInfoManagement}). All requests are
+ * forwarded to the actual adaptor, but the lock of the cache is released
+ * while waiting for the response. Thus, the cache is only locked while
+ * it is read or modified and threads that look up cached IDs never wait
+ * for KEGG.
+ *
+ * <p>The cache replaces its adaptor by a new one whenever it is saved
+ * (see {@link KeggInfoManagement#getKeggAdaptor()}). Hence, this adaptor
+ * is installed again by {@link #install(KeggInfoManagement)} and keeps
+ * the actual adaptor, e.g., a {@link RecordedKeggAdaptor}.
+ *
+ * <p>Requests of a thread that is looking up IDs through an
+ * {@link OfflineKeggInfoManagement} are refused with a
+ * {@link TimeoutException}, like with {@link KeggInfoManagement#offlineMode}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+class UnlockingKeggAdaptor extends KeggAdaptor {
+
+  /**
+   * The lock of {@link #cache}.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * The cache this adaptor belongs to.
+   */
+  private final WeakReference<KeggInfoManagement> cache;
+
+  /**
+   * The actual adaptor or {@code null} if not yet known.
+   */
+  private volatile KeggAdaptor adaptor;
+
+  /**
+   * Number of IDs requested from KEGG by the current thread.
+   */
+  private final ThreadLocal<long[]> requested = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+
+  /**
+   * @param cache the cache this adaptor belongs to.
+   */
+  UnlockingKeggAdaptor(KeggInfoManagement cache) {
+    this.cache = new WeakReference<KeggInfoManagement>(cache);
+  }
+
+  /**
+   * @return the lock that must be held while the cache is read or modified.
+   */
+  ReentrantLock getLock() {
+    return lock;
+  }
+
+  /**
+   * @return the actual adaptor.
+   */
+  KeggAdaptor getAdaptor() {
+    if (adaptor == null) {
+      adaptor = new KeggAdaptor();
+    }
+    return adaptor;
+  }
+
+  /**
+   * @param adaptor the actual adaptor.
+   */
+  void setAdaptor(KeggAdaptor adaptor) {
+    this.adaptor = (adaptor instanceof UnlockingKeggAdaptor) ? ((UnlockingKeggAdaptor) adaptor).adaptor : adaptor;
+  }
+
+  /**
+   * Makes this the adaptor of the given cache, unless it already is. A
+   * plain {@link KeggAdaptor}, as created by the cache after it has been
+   * saved, does not replace the actual adaptor. Must be called while
+   * holding the {@link #getLock()}.
+   * @param cache
+   */
+  void install(KeggInfoManagement cache) {
+    KeggAdaptor current = cache.getKeggAdaptor();
+    if (current != this) {
+      if ((adaptor == null) || (current.getClass() != KeggAdaptor.class)) {
+        adaptor = current;
+      }
+      cache.setKeggAdaptor(this);
+    }
+  }
+
+  /**
+   * @return the number of IDs requested from KEGG by the current thread
+   * through this adaptor.
+   */
+  long getRequested() {
+    return requested.get()[0];
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggAdaptor#getWithReturnInformation(java.lang.String)
+   */
+  @Override
+  public String getWithReturnInformation(String query) throws TimeoutException {
+    if (OfflineKeggInfoManagement.isOffline()) {
+      throw new TimeoutException();
+    }
+    // Multiple IDs are separated by '+' or blanks
+    requested.get()[0] += query.trim().split("[+ ]+").length;
+    return super.getWithReturnInformation(query);
+  }
+
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public String get(String operation, String... arguments) throws IOException {
+    int holds = 0;
+    while (lock.isHeldByCurrentThread()) {
+      lock.unlock();
+      holds++;
+    }
+    try {
+      return getAdaptor().get(operation, arguments);
+    } finally {
+      if (holds > 0) {
+        for (int i = 0; i < holds; i++) {
+          lock.lock();
+        }
+        // The cache may have been saved in the meantime.
+        KeggInfoManagement c = cache.get();
+        if (c != null) {
+          install(c);
+        }
+      }
+    }
+  }
+
+}
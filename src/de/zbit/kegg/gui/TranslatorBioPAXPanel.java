@@ -40,6 +40,7 @@ import de.zbit.kegg.io.KEGG2BioPAX;
 import de.zbit.kegg.io.KEGG2yGraph;
 import de.zbit.kegg.io.KEGGImporter;
 import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+import de.zbit.kegg.io.PreprocessedPathway;
 import de.zbit.kegg.parser.pathway.Pathway;
 
 /**
@@ -89,9 +90,15 @@ public class TranslatorBioPAXPanel extends TranslatorGraphLayerPanel<Model> {
     if (sourcePW == null) {
       return null;
     }
-    KEGG2yGraph toGraph = KEGG2yGraph.createKEGG2GraphML(AbstractKEGGtranslator.getKeggInfoManager());
+    AbstractKEGGtranslator<?> translator = (AbstractKEGGtranslator<?>) getTranslator();
+    KEGG2yGraph toGraph = KEGG2yGraph.createKEGG2GraphML(translator.getCache());
     toGraph.setDrawArrowsForReactions(true);
-    return toGraph.translate(sourcePW);
+    // The pathway has already been preprocessed for the BioPAX translation.
+    PreprocessedPathway preprocessed = translator.asPreprocessed(sourcePW);
+    if (toGraph.isCompatible(preprocessed)) {
+      return toGraph.translate(preprocessed);
+    }
+    return toGraph.translate(preprocessed.getPathway());
   }
   
   /* (non-Javadoc)
@@ -23,6 +23,7 @@ package de.zbit.kegg.io;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -37,7 +38,7 @@ import de.zbit.kegg.KeggTools;
 import de.zbit.kegg.Translator;
 import de.zbit.kegg.api.KeggInfos;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
-import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.cache.OfflineKeggInfoManagement;
 import de.zbit.kegg.parser.pathway.Entry;
 import de.zbit.kegg.parser.pathway.EntryType;
 import de.zbit.kegg.parser.pathway.Pathway;
@@ -56,6 +57,12 @@ import de.zbit.util.progressbar.ProgressBar;
  * Abstract superclass for Kegg translators. All non-ouput-format specific
  * stuff should be implemented into this class.
  * 
+ * <p>Translators only keep their settings in fields. Everything that
+ * belongs to one translated document is kept in a {@link TranslationContext}
+ * (see {@link #getContext()}). Hence, one instance can translate
+ * multiple pathways at once in different threads, as long as its
+ * settings are not changed meanwhile.
+ * 
  * @author Clemens Wrzodek
  * @since 1.0
  * @version $Rev: 410 $
@@ -132,33 +139,63 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
   
   /**
    * This manager uses a cache and retrieved informations from the KeggDB. By
-   * using the cache, it is very fast in retrieving informations.
+   * using the cache, it is very fast in retrieving informations. If
+   * {@link #retrieveKeggAnnots} is false, this is an
+   * {@link OfflineKeggInfoManagement} on {@link #cache}.
+   */
+  protected KeggInfoManagement manager;
+  
+  /**
+   * The cache, given to the constructor or by {@link #setCache(KeggInfoManagement)}.
    */
-  protected static KeggInfoManagement manager;
+  private KeggInfoManagement cache;
   
   /**
-   * A flag, if the last sbml file that has been written by this class was
-   * overwritten. This variable is used by the BatchConverter.
+   * The cache for translators that are created without one, given by
+   * {@link #setKeggInfoManager(KeggInfoManagement)}.
    */
-  protected boolean lastFileWasOverwritten = false;
+  private static volatile KeggInfoManagement defaultCache = null;
   
   /**
-   * Remembers the last pathway that has been translated. Just remembers
-   * the core {@link Pathway} object, no {@link Entry}s, Reactions,
-   * Relations, etc. included.
+   * The context of the last translation that has been finished (in any
+   * thread), see {@link #getLastTranslatedPathway()}.
    */
-  protected Pathway lastTranslatedPathway = null;
+  private volatile TranslationContext last = null;
   
   /**
-   * Contains all ids already assigned to an element in, e.g., the sbml document.
-   * Used for avoiding giving the same id to two or more different elements.
+   * ProgressBar for KEGG translation, given by
+   * {@link #setProgressBar(AbstractProgressBar)}. It is only used by one
+   * translation at a time.
    */
-  protected Set<String> SIds = new HashSet<String>();
+  private AbstractProgressBar progress = null;
   
   /**
-   * ProgressBar for KEGG translation
+   * Maximum wall-clock time in milliseconds for one call to
+   * {@link #translate(Pathway)}, {@link #preProcessPathway(Pathway)} or
+   * {@link #translatePreprocessed(Pathway)}. Zero for no limit.
    */
-  protected AbstractProgressBar progress = null;
+  private long timeout = 0;
+  
+  /**
+   * The context of the translation that is running in the current thread.
+   */
+  private final ThreadLocal<TranslationContext> context = new ThreadLocal<TranslationContext>();
+  
+  /**
+   * The contexts of all running translations, used by {@link #cancel()}.
+   */
+  private final Set<TranslationContext> running = Collections.synchronizedSet(new HashSet<TranslationContext>());
+  
+  /**
+   * Set by {@link #cancel()}, if no translation is running.
+   */
+  private boolean cancelNext = false;
+  
+  /**
+   * Time in milliseconds spent for fetching KEGG information in the
+   * last call to {@link #preProcessPathway(Pathway)} of each thread.
+   */
+  private final ThreadLocal<Long> lastPrefetchTime = new ThreadLocal<Long>();
   
   
   /*===========================
@@ -169,11 +206,7 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
    * @param manage
    */
   public AbstractKEGGtranslator(KeggInfoManagement manage) {
-    if ((manager == null) && (manage == null)) {
-      Translator.getManager();
-    } else if (manage != null) {
-      setKeggInfoManager(manage);
-    }
+    cache = (manage != null) ? manage : getKeggInfoManager();
     
     loadPreferences();
   }
@@ -195,6 +228,7 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
    */
   public void setRetrieveKeggAnnots(boolean retrieveKeggAnnots) {
     this.retrieveKeggAnnots = retrieveKeggAnnots;
+    updateManager();
   }
   
   /**
@@ -272,40 +306,90 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
   }
   
   /**
-   * See {@link #manager}
+   * Sets the cache for all translators that are created afterwards
+   * without a cache. Existing translators keep their cache (see
+   * {@link #setCache(KeggInfoManagement)}).
    * @param manage
    */
   public static void setKeggInfoManager(KeggInfoManagement manage) {
-    manager = manage;
+    defaultCache = manage;
   }
   /**
-   * @return - see {@link #manager}.
+   * @return - the cache for translators that are created without a cache,
+   * i.e., the one given by {@link #setKeggInfoManager(KeggInfoManagement)}
+   * or else {@link Translator#getManager()}.
    */
   public static KeggInfoManagement getKeggInfoManager() {
-    return manager;
+    KeggInfoManagement manage = defaultCache;
+    return (manage != null) ? manage : Translator.getManager();
+  }
+  
+  /**
+   * See {@link #manager}
+   * @param manage the cache of this translator.
+   */
+  public void setCache(KeggInfoManagement manage) {
+    cache = manage;
+    updateManager();
+  }
+  /**
+   * @return - the cache, used by this translator (see {@link #manager}).
+   */
+  public KeggInfoManagement getCache() {
+    return cache;
+  }
+  
+  /**
+   * Sets {@link #manager} according to {@link #cache} and
+   * {@link #retrieveKeggAnnots}.
+   */
+  private void updateManager() {
+    if (retrieveKeggAnnots || (cache == null)) {
+      manager = cache;
+    } else if (!(manager instanceof OfflineKeggInfoManagement)
+        || (((OfflineKeggInfoManagement) manager).getWrappedManager() != cache)) {
+      manager = new OfflineKeggInfoManagement(cache);
+    }
   }
   /**
    * {@inheritDoc}
    */
   @Override
   public boolean isLastFileWasOverwritten() {
-    return lastFileWasOverwritten;
+    TranslationContext c = last;
+    return (c != null) && c.isFileOverwritten();
   }
   
   /**
-   * Returns the last pathway that has been translated. Just remembers
-   * the core {@link Pathway} object, no {@link Entry}s, Reactions,
-   * Relations, etc. included.
+   * Returns the last pathway that has been translated (in any thread).
    * @return the lastTranslatedPathway
    */
   @Override
   public Pathway getLastTranslatedPathway() {
-    return lastTranslatedPathway;
+    TranslationContext c = last;
+    return (c != null) ? c.getPathway() : null;
+  }
+  
+  /**
+   * Remembers that the current translation overwrote an existing file
+   * (see {@link #isLastFileWasOverwritten()}). If no translation is running
+   * in the current thread, the file belongs to the last translation.
+   */
+  protected void markFileOverwritten() {
+    TranslationContext c = context.get();
+    if (c == null) {
+      c = last;
+    }
+    if (c != null) {
+      c.setFileOverwritten(true);
+    }
   }
   
   /**
    * Set a progressBar that should be used to display the
-   * status of the conversion.
+   * status of the conversion. The bar is shared by all translations
+   * that are started afterwards. If none is set, every translation
+   * creates its own one.
    * @param progressBar
    */
   public synchronized void setProgressBar(AbstractProgressBar progressBar) {
@@ -320,6 +404,14 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
     this.progress = progressBar;
   }
   
+  /**
+   * @return the progress bar of the translation that is running in the
+   * current thread (see {@link #initProgressBar(Pathway, boolean, boolean)}).
+   */
+  protected AbstractProgressBar getProgressBar() {
+    return getContext().getProgressBar();
+  }
+  
   
   /*===========================
    * FUNCTIONS
@@ -335,9 +427,134 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
     nameToAssign = KEGGtranslatorOptions.GENE_NAMES.getValue(prefs);
     showFormulaForCompounds = KEGGtranslatorOptions.SHOW_FORMULA_FOR_COMPOUNDS.getValue(prefs);
     removePathwayReferences = KEGGtranslatorOptions.REMOVE_PATHWAY_REFERENCES.getValue(prefs);
+    updateManager();
   }
   
   
+  /**
+   * @param timeout maximum wall-clock time in milliseconds for one call to
+   * {@link #translate(Pathway)}, {@link #preProcessPathway(Pathway)} or
+   * {@link #translatePreprocessed(Pathway)}, zero for no limit. If the
+   * time is exceeded, a {@link TranslationCancelledException} is thrown
+   * at the next check (see {@link #checkCancelled()}).
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+  
+  /**
+   * @return the timeout in milliseconds (see {@link #setTimeout(long)}).
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+  
+  /**
+   * Cancels all running translations (or the next one, if none is running).
+   * May be called from any thread. The translations are aborted at the next
+   * check with a {@link TranslationCancelledException}.
+   */
+  public void cancel() {
+    synchronized (running) {
+      if (running.isEmpty()) {
+        cancelNext = true;
+      }
+      for (TranslationContext c : running) {
+        c.cancel();
+      }
+    }
+  }
+  
+  /**
+   * Creates the context for a new translation. Implementing classes that
+   * keep further state for one translated document should override this
+   * method and {@link #getContext()}.
+   * @return a new {@link TranslationContext}.
+   */
+  protected TranslationContext createContext() {
+    return new TranslationContext();
+  }
+  
+  /**
+   * @return the context of the translation that is running in the
+   * current thread.
+   * @throws IllegalStateException if no translation is running in the
+   * current thread.
+   */
+  protected TranslationContext getContext() {
+    TranslationContext c = context.get();
+    if (c == null) {
+      throw new IllegalStateException("No translation is running in the current thread.");
+    }
+    return c;
+  }
+  
+  /**
+   * Creates the context and starts the timeout of the outermost
+   * translation call in the current thread.
+   * @return the context of the current translation.
+   */
+  private TranslationContext begin() {
+    TranslationContext c = context.get();
+    if (c == null) {
+      c = createContext();
+      c.setDeadline(timeout > 0 ? System.currentTimeMillis() + timeout : 0);
+      synchronized (running) {
+        if (cancelNext) {
+          c.cancel();
+          cancelNext = false;
+        }
+        // Translations running at the same time create their own bar.
+        AbstractProgressBar bar = progress;
+        for (TranslationContext other : running) {
+          if (other.getProgressBar() == bar) {
+            bar = null;
+            break;
+          }
+        }
+        c.setProgressBar(bar);
+        running.add(c);
+      }
+      context.set(c);
+    }
+    c.depth++;
+    return c;
+  }
+  
+  /**
+   * Ends a call started with {@link #begin()}.
+   */
+  private void end() {
+    TranslationContext c = context.get();
+    if ((c != null) && (--c.depth == 0)) {
+      context.remove();
+      running.remove(c);
+      if (c.getPathway() != null) {
+        last = c;
+      }
+    }
+  }
+  
+  /**
+   * Aborts the current translation if it has been cancelled (see
+   * {@link #cancel()}), the current thread has been interrupted or the
+   * translation exceeded its timeout. Implementing classes should call
+   * this method regularly, e.g., in each iteration over entries,
+   * relations and reactions.
+   * @throws TranslationCancelledException
+   */
+  protected void checkCancelled() throws TranslationCancelledException {
+    TranslationContext c = context.get();
+    if (((c != null) && c.isCancelled()) || Thread.currentThread().isInterrupted()) {
+      throw new TranslationCancelledException("The translation has been cancelled.", false);
+    }
+    long deadline = (c != null) ? c.getDeadline() : 0;
+    if ((deadline > 0) && (System.currentTimeMillis() > deadline)) {
+      throw new TranslationCancelledException(MessageFormat.format(
+        "The translation exceeded its timeout of {0} seconds.", timeout / 1000d), true);
+    }
+  }
+  
   /**
    * Preprocesses the given pathway, according to current settings/options.
    * Eventually
@@ -347,38 +564,104 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
    * <li>remove white nodes</li>
    * <li>remove pathway-reference nodes</li>
    * </ul>
+   * The given pathway is modified in place. Translators that return
+   * the same {@link #getPreprocessingKey()} perform exactly the same
+   * preprocessing.
    * @param p {@link Pathway}
+   * @see #translatePreprocessed(Pathway)
+   * @see #preprocess(Pathway)
    */
-  private void preProcessPathway(Pathway p) {
+  public void preProcessPathway(Pathway p) {
+    TranslationContext c = begin();
+    try {
+      long before = c.getPrefetchTime();
+      preProcess(p);
+      lastPrefetchTime.set(Long.valueOf(c.getPrefetchTime() - before));
+    } finally {
+      end();
+    }
+  }
+  
+  /**
+   * Preprocesses a copy of the given pathway (see
+   * {@link #preProcessPathway(Pathway)}). The result can be translated
+   * by every translator with the same {@link #getPreprocessingKey()} as
+   * often as required, e.g., to several output formats, without
+   * preprocessing the pathway again.
+   * @param p {@link Pathway}, which is not modified.
+   * @return the preprocessed pathway.
+   * @see #translate(PreprocessedPathway)
+   */
+  public PreprocessedPathway preprocess(Pathway p) {
+    Pathway copy = PathwayCodec.copyOf(p);
+    preProcessPathway(copy);
+    return asPreprocessed(copy);
+  }
+  
+  /**
+   * @param p a pathway that has already been processed by
+   * {@link #preProcessPathway(Pathway)} of this translator, e.g., the
+   * {@link #getLastTranslatedPathway()}.
+   * @return an immutable copy of the given pathway, that can be translated
+   * by every translator with the same {@link #getPreprocessingKey()}.
+   */
+  public PreprocessedPathway asPreprocessed(Pathway p) {
+    // Synonyms are only registered if KEGG information has been fetched.
+    return new PreprocessedPathway(p, getPreprocessingKey(), retrieveKeggAnnots ? manager : null);
+  }
+  
+  /**
+   * @return the time in milliseconds that the last call to
+   * {@link #preProcessPathway(Pathway)} in the current thread spent for
+   * fetching (or looking up) information from KEGG. This is included in
+   * the preprocessing time.
+   */
+  public long getLastPrefetchTime() {
+    Long time = lastPrefetchTime.get();
+    return time != null ? time.longValue() : 0;
+  }
+  
+  /**
+   * Implements {@link #preProcessPathway(Pathway)}, checking for
+   * cancellation between all stages.
+   * @param p
+   */
+  private void preProcess(Pathway p) {
     boolean completeAndCacheReactions = considerReactions()&&autocompleteReactions;
+    TranslationContext c = getContext();
     //TODO: or should auto... be set in the qual class?
     
-    if (!retrieveKeggAnnots) {
-      KeggInfoManagement.offlineMode = true;
-    } else {
-      KeggInfoManagement.offlineMode = false;
-      
+    // Without retrieveKeggAnnots, the manager is offline (see updateManager()).
+    if (retrieveKeggAnnots) {
       // Remove pathway references
       if (removePathwayReferences) {
         KeggTools.removePathwayEntries(p);
       }
       
       // Prefetch kegg information (enormous speed improvement).
+      checkCancelled();
       log.info("Fetching information from KEGG online resources... ");
-      KeggTools.preFetchInformation(p,manager,completeAndCacheReactions, progress);
+      long start = System.currentTimeMillis();
+      KeggTools.preFetchInformation(p,manager,completeAndCacheReactions, c.getProgressBar());
+      c.addPrefetchTime(System.currentTimeMillis() - start);
       
       // Auto-complete the reaction by adding all substrates, products and enzymes.
       if (completeAndCacheReactions) {
+        checkCancelled();
         KeggTools.autocompleteReactions(p, manager, true);
         
         // Auto-completion requires API-infos and also adds new entries
         // => preFetch twice.
-        KeggTools.preFetchInformation(p,manager,completeAndCacheReactions, progress);
+        checkCancelled();
+        start = System.currentTimeMillis();
+        KeggTools.preFetchInformation(p,manager,completeAndCacheReactions, c.getProgressBar());
+        c.addPrefetchTime(System.currentTimeMillis() - start);
       }
       
       // In KGML, the stoichiometry of reaction components is missing.
       // The following completes the stoichiometry from the equation.
       if (considerReactions()) {
+        checkCancelled();
         KeggTools.parseStoichiometryFromEquations(p,manager);
       }
       
@@ -387,6 +670,7 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
     
     
     // Skip it, if it's white
+    checkCancelled();
     if (removeWhiteNodes) {
       KeggTools.removeWhiteNodes(p);
     }
@@ -397,16 +681,96 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
     }
   }
   
+  /**
+   * Returns a key that describes all settings of this translator that
+   * influence {@link #preProcessPathway(Pathway)}. Two translators with equal
+   * keys can share one preprocessed {@link Pathway} (but each translator
+   * should receive its own copy, because translators may attach custom
+   * objects to the entries, see {@link #preprocess(Pathway)}).
+   * @return a key for the preprocessing, performed by this translator.
+   */
+  public String getPreprocessingKey() {
+    StringBuilder key = new StringBuilder();
+    key.append("annotations=").append(retrieveKeggAnnots);
+    if (retrieveKeggAnnots) {
+      key.append(",removePathwayReferences=").append(removePathwayReferences);
+      key.append(",autocompleteReactions=").append(considerReactions() && autocompleteReactions);
+      key.append(",stoichiometry=").append(considerReactions());
+    }
+    key.append(",removeWhiteNodes=").append(removeWhiteNodes);
+    key.append(",removeOrphans=").append(removeOrphans);
+    if (removeOrphans) {
+      key.append(",relations=").append(considerRelations());
+      key.append(",reactions=").append(considerReactions());
+    }
+    return key.toString();
+  }
+  
   /* (non-Javadoc)
    * @see de.zbit.kegg.io.KEGGtranslator#translate(de.zbit.kegg.parser.pathway.Pathway, java.lang.String)
    */
   @Override
   public boolean translate(Pathway p, String outFile) {
-    OutputFormat doc = translate(p);
-    
+    // The written file belongs to the same translation.
+    begin();
+    try {
+      OutputFormat doc = translate(p);
+      return write(doc, outFile);
+    } finally {
+      end();
+    }
+  }
+  
+  /**
+   * Translates a pathway that has already been processed by
+   * {@link #preProcessPathway(Pathway)} and writes the result
+   * to the given file.
+   * @param p preprocessed pathway
+   * @param outFile
+   * @return true if and only if everything went fine.
+   * @see #translatePreprocessed(Pathway)
+   */
+  public boolean translatePreprocessed(Pathway p, String outFile) {
+    // The written file belongs to the same translation.
+    begin();
+    try {
+      OutputFormat doc = translatePreprocessed(p);
+      return write(doc, outFile);
+    } finally {
+      end();
+    }
+  }
+  
+  /**
+   * Translates a pathway that has been preprocessed with the same
+   * {@link #getPreprocessingKey()} and writes the result to the given file.
+   * @param p preprocessed pathway
+   * @param outFile
+   * @return true if and only if everything went fine.
+   * @see #translate(PreprocessedPathway)
+   */
+  public boolean translate(PreprocessedPathway p, String outFile) {
+    // The written file belongs to the same translation.
+    begin();
+    try {
+      OutputFormat doc = translate(p);
+      return write(doc, outFile);
+    } finally {
+      end();
+    }
+  }
+  
+  /**
+   * Writes the document to the given file and remembers if
+   * the file did already exist (see {@link #isLastFileWasOverwritten()}).
+   * @param doc
+   * @param outFile
+   * @return true if and only if everything went fine.
+   */
+  private boolean write(OutputFormat doc, String outFile) {
     if (new File(outFile).exists()) {
       // Remember that file was already there.
-      lastFileWasOverwritten = true;
+      markFileOverwritten();
     }
     
     return writeToFile(doc, outFile);
@@ -421,22 +785,69 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
   @Override
   public OutputFormat translate(Pathway p) {
     // REMARK: This class is and must be called by all other translate functions.
-    preProcessPathway(p);
-    
-    // Reset lists and buffers.
-    SIds = new HashSet<String>(); // Reset list of given SIDs. These are being remembered to avoid double ids.
-    
-    // Remember just the pathway object with core information for later information
-    //lastTranslatedPathway = new Pathway(p.getName(), p.getOrg(), p.getNumber(), p.getTitle(), p.getImage(), p.getLink());
-    // Since some methods really need the whole document, we now store it.
-    lastTranslatedPathway = p;
-    
+    begin();
+    try {
+      preProcessPathway(p);
+      
+      return translatePreprocessed(p);
+    } finally {
+      end();
+    }
+  }
+  
+  /**
+   * Translates a copy of a pathway that has been preprocessed by this or
+   * another translator with the same {@link #getPreprocessingKey()} (see
+   * {@link #preprocess(Pathway)}) to the target document.
+   * @param p the preprocessed Kegg Pathway.
+   * @return OutputFormat
+   * @throws IllegalArgumentException if the pathway has been preprocessed
+   * with other settings than those of this translator.
+   */
+  public OutputFormat translate(PreprocessedPathway p) {
+    if (!isCompatible(p)) {
+      throw new IllegalArgumentException(MessageFormat.format(
+        "Pathway {0} has been preprocessed with {1}, but this translator requires {2}.",
+        p.getName(), p.getPreprocessingKey(), getPreprocessingKey()));
+    }
+    return translatePreprocessed(p.getPathway());
+  }
+  
+  /**
+   * @param p
+   * @return {@code true} if the given pathway has been preprocessed with
+   * the same settings as this translator would use, i.e., it can be
+   * translated with {@link #translate(PreprocessedPathway)}.
+   */
+  public boolean isCompatible(PreprocessedPathway p) {
+    return getPreprocessingKey().equals(p.getPreprocessingKey());
+  }
+  
+  /**
+   * Translates a pathway that has already been processed by
+   * {@link #preProcessPathway(Pathway)} (of this or another
+   * translator with the same {@link #getPreprocessingKey()})
+   * to the target document.
+   * @param p - the preprocessed Kegg Pathway.
+   * @return OutputFormat
+   */
+  public OutputFormat translatePreprocessed(Pathway p) {
     OutputFormat doc = null;
+    // Lists and buffers (e.g., the given SIds) are kept in the context.
+    TranslationContext c = begin();
     try {
+      // Since some methods really need the whole document, the context
+      // keeps it, also for getLastTranslatedPathway().
+      c.setPathway(p);
+      checkCancelled();
       doc = translateWithoutPreprocessing(p);
+    } catch (TranslationCancelledException e) {
+      throw e;
     } catch (Throwable t) {
       t.printStackTrace();
       log.log(Level.SEVERE, "Unhandled exception during translation!", t);
+    } finally {
+      end();
     }
     
     // Remember already queried objects
@@ -460,10 +871,33 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
   @Override
   public void translate(String infile, String outfile) throws Exception {
     logger.fine("Reading kegg pathway...");
-    Pathway p = KeggParser.parse(infile).get(0);
+    Pathway p = readFirstPathway(new File(infile));
+    if (p == null) {
+      throw new IOException(MessageFormat.format("Empty or invalid input file {0}.", infile));
+    }
     translate(p, outfile);
   }
   
+  /**
+   * Reads only the first pathway of the given KGML file, i.e., any
+   * further pathways are neither parsed nor kept in memory. The file may
+   * be compressed, an archive or a file in an archive (see
+   * {@link KGMLSniffer#openAny(File)}).
+   * @param f
+   * @return the first pathway in the given file or {@code null} if it
+   * contains none.
+   * @throws IOException if the file can not be read.
+   * @throws XMLStreamException if the file is not well-formed.
+   */
+  private static Pathway readFirstPathway(File f) throws IOException, XMLStreamException {
+    KGMLReader reader = KGMLSniffer.openAny(f);
+    try {
+      return reader.read();
+    } finally {
+      reader.close();
+    }
+  }
+  
   /**
    * This method converts a given KGML file into the
    * specified {@code OutputFormat}.
@@ -474,16 +908,15 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
    */
   @Override
   public OutputFormat translate(File f) throws IOException {
-    if (f.exists() && f.isFile() && f.canRead()) {
-      List<Pathway> l;
+    if ((f.exists() && f.isFile() && f.canRead()) || KGMLArchive.isEntryPath(f.getPath())) {
+      Pathway p;
       try {
-        l = KeggParser.parse(f.getAbsolutePath());
-      } catch (Exception e) {
+        p = readFirstPathway(f);
+      } catch (XMLStreamException e) {
         throw new IOException(MessageFormat.format("Cannot translate input file {0}.", f.getAbsolutePath()), e);
       }
       
-      if (l.size() > 0) {
-        Pathway p = l.get(0);
+      if (p != null) {
         OutputFormat doc = translate(p);
         return doc;
       } else {
@@ -513,9 +946,12 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
       totalCalls += p.getReactions().size();
     }
     // if (!retrieveKeggAnnots) aufrufeGesamt+=p.getRelations().size();
+    TranslationContext c = getContext();
+    AbstractProgressBar progress = c.getProgressBar();
     if (progress == null) {
       progress = new ProgressBar(totalCalls + 1);
       ((ProgressBar) progress).setPrintInOneLine(true);
+      c.setProgressBar(progress);
     } else {
       progress.reset();
       progress.setNumberOfTotalCalls(totalCalls + 1);
@@ -861,6 +1297,7 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
      * letter = a-z,A-Z; digit = 0-9; idChar = (letter | digit | _ );
      * SId = ( letter | _ ) idChar*
      */
+    Set<String> SIds = getContext().getSIds();
     String ret;
     if (name == null || name.trim().length() == 0) {
       ret = incrementSIdSuffix("SId");
@@ -919,6 +1356,7 @@ public abstract class AbstractKEGGtranslator<OutputFormat> implements KEGGtransl
    * @return
    */
   private String incrementSIdSuffix(String prefix) {
+    Set<String> SIds = getContext().getSIds();
     int i = 1;
     String aktString = prefix + "_" + i;
     while (SIds.contains(aktString)) {
@@ -0,0 +1,184 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Collects the output files of a batch translation in a zip archive,
+ * instead of writing them to a directory. Translators write to files, so
+ * every output is first written to a temporary file (see
+ * {@link #createTemporaryFile(String)}) and then moved into the archive
+ * with {@link #add(String, File)}. The archive itself is written to a
+ * temporary file as well and only renamed by {@link #commit()}. Thus,
+ * an interrupted batch run never leaves an incomplete archive.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchArchiveWriter implements Closeable {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BatchArchiveWriter.class.getName());
+  
+  /**
+   * The archive to write.
+   */
+  private final File target;
+  
+  /**
+   * The archive, while it is being written.
+   */
+  private final File tmp;
+  
+  /**
+   * Writes {@link #tmp}.
+   */
+  private final ZipOutputStream out;
+  
+  /**
+   * Number of files in the archive.
+   */
+  private int entries = 0;
+  
+  /**
+   * Number of temporary files created by {@link #createTemporaryFile(String)}.
+   */
+  private int temporaryFiles = 0;
+  
+  /**
+   * {@code true} if the archive has been committed or closed.
+   */
+  private boolean closed = false;
+  
+  /**
+   * @param target the zip archive to write.
+   * @throws IOException if the temporary archive can not be created.
+   */
+  public BatchArchiveWriter(File target) throws IOException {
+    this.target = target;
+    tmp = BatchJournal.getTemporaryFile(target);
+    out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+  }
+  
+  /**
+   * @return the zip archive to write.
+   */
+  public File getFile() {
+    return target;
+  }
+  
+  /**
+   * @param name name of a file in the archive.
+   * @return a new temporary file in the directory of the archive, having
+   * the same extension as the given name.
+   */
+  public synchronized File createTemporaryFile(String name) {
+    return new File(target.getParentFile(), MessageFormat.format("{0}{1}-{2,number,#}-{3}", BatchJournal.TEMP_PREFIX,
+      target.getName(), ++temporaryFiles, new File(name).getName()));
+  }
+  
+  /**
+   * Moves the given file into the archive.
+   * @param name name of the file in the archive (with '/' as separator).
+   * @param file the file to move, which is deleted afterwards.
+   * @return the path of the file in the archive (see {@link KGMLArchive#ENTRY_SEPARATOR}).
+   * @throws IOException if the file could not be added.
+   */
+  public synchronized String add(String name, File file) throws IOException {
+    name = name.replace('\\', '/');
+    InputStream in = new FileInputStream(file);
+    try {
+      ZipEntry entry = new ZipEntry(name);
+      entry.setTime(file.lastModified());
+      out.putNextEntry(entry);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+      out.closeEntry();
+      entries++;
+    } finally {
+      in.close();
+      file.delete();
+    }
+    return target.getPath() + KGMLArchive.ENTRY_SEPARATOR + name;
+  }
+  
+  /**
+   * Finishes the archive and moves it to its final destination. An empty
+   * archive is discarded.
+   * @return {@code true} if the archive has been written.
+   * @throws IOException if the archive could not be written or moved.
+   */
+  public synchronized boolean commit() throws IOException {
+    if (closed) {
+      return false;
+    }
+    if (entries == 0) {
+      close(); // Older JREs refuse to write an empty zip archive.
+      return false;
+    }
+    closed = true;
+    try {
+      out.close();
+    } catch (IOException e) {
+      tmp.delete();
+      throw e;
+    }
+    if (!BatchJournal.commit(tmp, target)) {
+      throw new IOException(MessageFormat.format("Could not move {0} to {1}.", tmp, target));
+    }
+    return true;
+  }
+  
+  /**
+   * Discards the archive, if it has not been committed.
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      out.close();
+    } catch (IOException e) {
+      logger.fine(e.getLocalizedMessage());
+    }
+    tmp.delete();
+  }
+  
+}
@@ -0,0 +1,377 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Claim files allow multiple processes (possibly on different machines,
+ * sharing one file system) to divide the files of one input directory.
+ * Before an input file is translated, a claim file is created with
+ * {@link File#createNewFile()}, which is atomic. Only the process that
+ * created the claim file translates the input.
+ *
+ * <p>The owner of a claim periodically renews it (by updating the time of
+ * the last modification). If a process dies, its claims expire after
+ * the lease time and can be taken over by another process. Once the
+ * translation is finished, the claim is marked as done and never
+ * expires. Since the name of each claim file contains the hash of the
+ * input and the options, a changed input file is claimed again.
+ *
+ * <p>Every claim file contains a token that is unique for each time a
+ * file is claimed. A process only renews a claim, marks it as done or
+ * releases it, if the claim file still contains its token. Thus, a
+ * process that has been too slow to renew its claim and lost it to
+ * another process never modifies the claim of the new owner.
+ *
+ * <p>Claims that are marked as done are kept (one hidden file per input
+ * file and hash), so that processes, which start later, skip the input
+ * without reading the journals. They may be deleted once no process
+ * translates the directory anymore.
+ *
+ * <p>Please note that the take-over of expired claims relies on an
+ * atomic {@link File#renameTo(File)} and on roughly synchronized clocks
+ * of all machines.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchClaims {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BatchClaims.class.getName());
+  
+  /**
+   * File extension of claim files.
+   */
+  public static final String FILE_EXTENSION = ".claim";
+  
+  /**
+   * Content of a claim file whose translation is finished.
+   */
+  private static final String DONE = "DONE";
+  
+  /**
+   * Time in milliseconds after which a claim, that has not been
+   * renewed, expires.
+   */
+  private final long lease;
+  
+  /**
+   * Identifies this process (host and process id).
+   */
+  private final String owner;
+  
+  /**
+   * Makes the tokens of this process unique.
+   */
+  private final Random random = new Random();
+  
+  /**
+   * All claims currently held by this process and their tokens.
+   */
+  private final Map<File, String> held = new HashMap<File, String>();
+  
+  /**
+   * Periodically renews all {@link #held} claims.
+   */
+  private final Timer renewal;
+  
+  /**
+   * @param lease time in milliseconds after which a claim of a process,
+   * that has not been renewed, can be taken over by another process.
+   */
+  public BatchClaims(long lease) {
+    if (lease <= 0) {
+      throw new IllegalArgumentException("The lease time must be positive.");
+    }
+    this.lease = lease;
+    owner = getProcessName();
+    renewal = new Timer("Claim renewal", true);
+    long period = Math.max(1000, lease / 4);
+    renewal.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        renew();
+      }
+    }, period, period);
+  }
+  
+  /**
+   * @return an identifier of this process, usually 'pid@host'.
+   */
+  public static String getProcessName() {
+    return ManagementFactory.getRuntimeMXBean().getName();
+  }
+  
+  /**
+   * @param dir output directory
+   * @param fn name of the input file
+   * @param hash identifies the content of the input and all options
+   * @return the claim file for the given input file.
+   */
+  public static File getClaimFile(String dir, String fn, String hash) {
+    return new File(dir, BatchJournal.TEMP_PREFIX + fn + '.' + hash + FILE_EXTENSION);
+  }
+  
+  /**
+   * @param claim
+   * @param suffix
+   * @return a file next to the given claim, that is only used by this
+   * process.
+   */
+  private File getPrivateFile(File claim, String suffix) {
+    return new File(claim.getPath() + '.' + owner.replaceAll("\\W", "_") + suffix);
+  }
+  
+  /**
+   * Tries to claim the given file.
+   * @param claim see {@link #getClaimFile(String, String, String)}
+   * @return {@code true} if this process holds the claim and should
+   * translate the file, {@code false} if another process holds the
+   * claim or the translation is already done.
+   */
+  public boolean claim(File claim) {
+    try {
+      if (create(claim)) {
+        return true;
+      }
+      if (isDone(claim) || !isExpired(claim)) {
+        return false;
+      }
+      // Take over an expired claim. Only one process can successfully rename it.
+      File expired = getPrivateFile(claim, "");
+      if (!claim.renameTo(expired)) {
+        return false;
+      }
+      try {
+        // The renamed file keeps the time of the last modification.
+        if (!isExpired(expired)) {
+          // The owner renewed the claim in between.
+          if (!claim.exists()) {
+            expired.renameTo(claim);
+          }
+          return false;
+        }
+        logger.info(MessageFormat.format("Taking over expired claim {0}.", claim));
+        // The previous owner does not find its token anymore.
+        return create(claim);
+      } finally {
+        expired.delete();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not claim {0}.", claim), e);
+      return false;
+    }
+  }
+  
+  /**
+   * Atomically creates the claim file.
+   * @param claim
+   * @return {@code true} if the file has been created by this call.
+   * @throws IOException
+   */
+  private boolean create(File claim) throws IOException {
+    if (!claim.createNewFile()) {
+      return false;
+    }
+    String token;
+    synchronized (random) {
+      token = Long.toHexString(random.nextLong());
+    }
+    write(claim, owner + '\t' + token + '\t' + System.currentTimeMillis());
+    synchronized (held) {
+      held.put(claim, token);
+    }
+    return true;
+  }
+  
+  /**
+   * @param claim
+   * @return {@code true} if the claim has not been renewed within
+   * the {@link #lease} time.
+   */
+  private boolean isExpired(File claim) {
+    long lastModified = claim.lastModified();
+    return (lastModified > 0) && (System.currentTimeMillis() - lastModified > lease);
+  }
+  
+  /**
+   * @param claim
+   * @return the first line of the given claim file or {@code null}.
+   */
+  private static String read(File claim) {
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(claim), "UTF-8"));
+      try {
+        return reader.readLine();
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+  
+  /**
+   * @param claim
+   * @return {@code true} if the translation of the claimed file is finished.
+   */
+  private static boolean isDone(File claim) {
+    String line = read(claim);
+    return (line != null) && line.startsWith(DONE);
+  }
+  
+  /**
+   * @param claim
+   * @param token
+   * @return {@code true} if the given claim file still contains the given
+   * token, i.e., it has not been taken over by another process.
+   */
+  private boolean isOwner(File claim, String token) {
+    String line = read(claim);
+    return (token != null) && (line != null) && line.startsWith(owner + '\t' + token + '\t');
+  }
+  
+  /**
+   * Removes the given claim from the {@link #held} claims.
+   * @param claim
+   * @return {@code true} if this process still owns the claim.
+   */
+  private boolean remove(File claim) {
+    String token;
+    synchronized (held) {
+      token = held.remove(claim);
+    }
+    if (token == null) {
+      // Not held (anymore)
+      return false;
+    } else if (isOwner(claim, token)) {
+      return true;
+    }
+    logger.warning(MessageFormat.format("Claim {0} has been taken over by another process.", claim));
+    return false;
+  }
+  
+  /**
+   * Marks the claim as done. It will never expire. The claim is replaced
+   * atomically by a file, which states that the translation is done.
+   * @param claim
+   * @return {@code false} if the claim has been taken over by another
+   * process or could not be marked.
+   */
+  public boolean done(File claim) {
+    if (!remove(claim)) {
+      return false;
+    }
+    File tmp = getPrivateFile(claim, ".done");
+    try {
+      write(tmp, DONE + '\t' + owner + '\t' + System.currentTimeMillis());
+      if (BatchJournal.commit(tmp, claim)) {
+        return true;
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not mark {0} as done.", claim), e);
+    } finally {
+      tmp.delete();
+    }
+    return false;
+  }
+  
+  /**
+   * Releases the claim, e.g., because the translation failed. Other
+   * processes may claim the file again.
+   * @param claim
+   */
+  public void release(File claim) {
+    if (remove(claim)) {
+      claim.delete();
+    }
+  }
+  
+  /**
+   * Renews all claims of this process. Claims that have been taken over
+   * by another process are dropped.
+   */
+  private void renew() {
+    long now = System.currentTimeMillis();
+    synchronized (held) {
+      Iterator<Map.Entry<File, String>> it = held.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<File, String> e = it.next();
+        if (!isOwner(e.getKey(), e.getValue())) {
+          logger.warning(MessageFormat.format("Claim {0} has been taken over by another process.", e.getKey()));
+          it.remove();
+        } else if (!e.getKey().setLastModified(now)) {
+          logger.warning(MessageFormat.format("Could not renew claim {0}.", e.getKey()));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Stops the renewal and releases all claims that are still held.
+   */
+  public void close() {
+    renewal.cancel();
+    synchronized (held) {
+      for (Map.Entry<File, String> e : held.entrySet()) {
+        if (isOwner(e.getKey(), e.getValue())) {
+          e.getKey().delete();
+        }
+      }
+      held.clear();
+    }
+  }
+  
+  /**
+   * @param file
+   * @param content
+   * @throws IOException
+   */
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write((content + '\n').getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+  
+}
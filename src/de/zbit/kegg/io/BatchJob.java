@@ -0,0 +1,121 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+
+/**
+ * Results of the translation of one input file to all pending formats,
+ * i.e., the files written, the time spent and the failures per format, as
+ * well as the metrics of the input file.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+class BatchJob {
+  
+  /**
+   * MD5 of the input file, if a journal is written.
+   */
+  String contentHash;
+  
+  /**
+   * All files written per format.
+   */
+  final Map<Format, List<String>> outputs = new LinkedHashMap<Format, List<String>>();
+  
+  /**
+   * Time in milliseconds spent per format.
+   */
+  final Map<Format, Long> durations = new LinkedHashMap<Format, Long>();
+  
+  /**
+   * Formats for which the translation of at least one pathway failed.
+   */
+  final Set<Format> failed = new LinkedHashSet<Format>();
+  
+  /**
+   * Formats for which the translation of at least one pathway exceeded
+   * the timeout (subset of {@link #failed}).
+   */
+  final Set<Format> timedOut = new LinkedHashSet<Format>();
+  
+  /**
+   * Archives to write the output files to, per format (see
+   * {@link BatchKEGGtranslator#setArchiveOutput(boolean)}). {@code null} to write
+   * the output files to a directory.
+   */
+  Map<Format, BatchArchiveWriter> archives;
+  
+  /**
+   * Metrics of the input file.
+   */
+  BatchStatistics.Record record;
+  
+  /**
+   * @param formats all formats that are translated.
+   */
+  void init(Set<Format> formats) {
+    for (Format format : formats) {
+      outputs.put(format, new ArrayList<String>());
+      durations.put(format, Long.valueOf(0));
+    }
+  }
+  
+  /**
+   * Remembers successfully written files.
+   * @param format
+   * @param files
+   * @param start start time of the translation (see {@link System#currentTimeMillis()}).
+   */
+  void written(Format format, List<String> files, long start) {
+    outputs.get(format).addAll(files);
+    durations.put(format, durations.get(format) + (System.currentTimeMillis() - start));
+  }
+  
+  /**
+   * Remembers a failed translation.
+   * @param format
+   * @param t the cause of the failure.
+   */
+  void failed(Format format, Throwable t) {
+    failed.add(format);
+    if ((t instanceof TranslationCancelledException) && ((TranslationCancelledException) t).isTimeout()) {
+      timedOut.add(format);
+    }
+  }
+  
+  /**
+   * @param format
+   * @return time in milliseconds spent for the given format.
+   */
+  long getDuration(Format format) {
+    return durations.get(format).longValue();
+  }
+  
+}
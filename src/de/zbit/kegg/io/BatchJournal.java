@@ -0,0 +1,731 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.kegg.KEGGtranslatorOptions;
+import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+import de.zbit.util.prefs.KeyProvider;
+import de.zbit.util.prefs.Option;
+import de.zbit.util.prefs.SBPreferences;
+
+/**
+ * An append-only journal of a {@link BatchKEGGtranslator} run. For every
+ * input file and output format, one line is appended when the translation
+ * starts and one when it is finished (or failed). Each line contains the
+ * input path, the MD5 hash of the input, the format, a hash of all
+ * {@link KEGGtranslatorOptions}, the status and the duration.
+ *
+ * <p>When a batch run is restarted with the same output directory, the
+ * journal is read again and all files that have been translated
+ * successfully, with the same options, are skipped without looking at
+ * the output files. Since the hash of each input is recorded, this also
+ * allows to translate only those files of a new KEGG release that have
+ * actually changed.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchJournal {  
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BatchJournal.class.getName());
+  
+  /**
+   * Name of the journal file in the output directory.
+   */
+  public static final String FILE_NAME = ".keggtranslator-journal.tsv";
+  
+  /**
+   * Number of obsolete records that are kept in the journal before it
+   * is compacted.
+   */
+  private static final int COMPACT_THRESHOLD = 10000;
+  
+  /**
+   * Prefix of temporary output files (see {@link #getTemporaryFile(File)}).
+   */
+  public static final String TEMP_PREFIX = ".~";
+  
+  /**
+   * Suffix of backup files (see {@link #getBackupFile(File)}).
+   */
+  private static final String BACKUP_SUFFIX = ".bak";
+  
+  /**
+   * First line of every journal file.
+   */
+  private static final String HEADER = "# KEGGtranslator batch journal, version 1";
+  
+  /**
+   * Separates the columns of the journal.
+   */
+  private static final char SEPARATOR = '\t';
+  
+  /**
+   * Status of a journal {@link Record}.
+   */
+  public static enum Status {
+    /**
+     * The translation has been started.
+     */
+    STARTED,
+    /**
+     * All output files have been written successfully.
+     */
+    DONE,
+    /**
+     * The translation or writing failed.
+     */
+    FAILED,
+    /**
+     * The translation exceeded its timeout.
+     */
+    TIMEOUT;
+  }
+  
+  /**
+   * Result of comparing an input file with its latest {@link Record}
+   * (see {@link BatchJournal#compare(String, Format, String, String)}).
+   */
+  public static enum Change {
+    /**
+     * There is no record for the input and format.
+     */
+    NEW,
+    /**
+     * The input has been translated successfully, with the same
+     * options and the input file did not change since.
+     */
+    UNCHANGED,
+    /**
+     * The content of the input file changed since the last translation.
+     */
+    INPUT_CHANGED,
+    /**
+     * The input has been translated with other options.
+     */
+    OPTIONS_CHANGED,
+    /**
+     * The last translation has failed, exceeded its timeout or has not
+     * been finished.
+     */
+    INCOMPLETE,
+    /**
+     * There is no record, but the output file already exists (e.g.,
+     * from a batch run without journal).
+     */
+    OUTPUT_EXISTS,
+    /**
+     * The input file has been claimed by another process (see
+     * {@link BatchClaims}).
+     */
+    CLAIMED;
+  }
+  
+  /**
+   * One line of the journal.
+   */
+  public static class Record {
+    /**
+     * Time, when the record has been written.
+     */
+    long time;
+    /**
+     *
+     */
+    Status status;
+    /**
+     *
+     */
+    Format format;
+    /**
+     * Path of the input file, relative to the input directory.
+     */
+    String input;
+    /**
+     * MD5 of the input file.
+     */
+    String contentHash;
+    /**
+     * See {@link BatchJournal#hashOptions(SBPreferences)}.
+     */
+    String optionsHash;
+    /**
+     * Duration in milliseconds.
+     */
+    long duration;
+    /**
+     * Comma separated list of all written files.
+     */
+    String output;
+    
+    /**
+     * @return the {@link Status}
+     */
+    public Status getStatus() {
+      return status;
+    }
+    
+    /**
+     * @return the MD5 of the input file.
+     */
+    public String getContentHash() {
+      return contentHash;
+    }
+    
+    /**
+     * @return the hash of the translation options.
+     */
+    public String getOptionsHash() {
+      return optionsHash;
+    }
+    
+    /**
+     * @return comma separated list of all written files.
+     */
+    public String getOutput() {
+      return output;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      StringBuilder line = new StringBuilder();
+      line.append(time).append(SEPARATOR);
+      line.append(status).append(SEPARATOR);
+      line.append(format).append(SEPARATOR);
+      line.append(clean(input)).append(SEPARATOR);
+      line.append(clean(contentHash)).append(SEPARATOR);
+      line.append(clean(optionsHash)).append(SEPARATOR);
+      line.append(duration).append(SEPARATOR);
+      line.append(clean(output));
+      return line.toString();
+    }
+    
+    /**
+     * @param line
+     * @return the record in the given line or {@code null} if the line is
+     * invalid (e.g., written incompletely).
+     */
+    static Record parse(String line) {
+      String[] cols = line.split(String.valueOf(SEPARATOR), -1);
+      if (cols.length < 8) {
+        return null;
+      }
+      try {
+        Record r = new Record();
+        r.time = Long.parseLong(cols[0]);
+        r.status = Status.valueOf(cols[1]);
+        r.format = Format.valueOf(cols[2]);
+        r.input = cols[3];
+        r.contentHash = cols[4];
+        r.optionsHash = cols[5];
+        r.duration = Long.parseLong(cols[6]);
+        r.output = cols[7];
+        return r;
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+    }
+    
+    /**
+     * @param s
+     * @return a string without separators and line breaks.
+     */
+    private static String clean(String s) {
+      if (s == null) {
+        return "";
+      }
+      return s.replace(SEPARATOR, ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+  }
+  
+  /**
+   * The journal file.
+   */
+  private final File file;
+  
+  /**
+   * The latest record for every input file and format. This is the
+   * index of all input hashes, options hashes and outputs.
+   */
+  private final Map<String, Record> latest = new HashMap<String, Record>();
+  
+  /**
+   * Stream to append records (opened in append mode).
+   */
+  private OutputStream out;
+  
+  /**
+   * Opens (and reads) the journal in the given directory.
+   * @param dir the output directory of the batch run.
+   * @throws IOException if the journal can not be read or created.
+   */
+  public BatchJournal(File dir) throws IOException {
+    this(dir, null);
+  }
+  
+  /**
+   * Opens the journal of the given node (i.e., process) in the given
+   * directory. If multiple processes translate the same directory, each
+   * must write its own journal, since appending to a file on a shared
+   * file system is not atomic. Records are only written to the own
+   * journal, but the journals of all nodes are read.
+   * @param dir the output directory of the batch run.
+   * @param node name of this node or {@code null} for the default journal.
+   * @throws IOException if the journal can not be read or created.
+   */
+  public BatchJournal(File dir, String node) throws IOException {
+    dir.mkdirs();
+    file = new File(dir, getFileName(node));
+    restore(file);
+    boolean isNew = !file.exists() || (file.length() < 1);
+    if (!isNew) {
+      Map<String, Record> own = new HashMap<String, Record>();
+      int records = read(file, own);
+      if (records > 2 * own.size() + COMPACT_THRESHOLD) {
+        compact(own.values());
+      }
+    }
+    File[] others = dir.listFiles();
+    if (others != null) {
+      for (File other : others) {
+        if (isJournal(other.getName()) && !other.equals(file)) {
+          read(other, null);
+        }
+      }
+    }
+    out = new FileOutputStream(file, true);
+    if (isNew) {
+      append(HEADER);
+    }
+  }
+  
+  /**
+   * @param node
+   * @return the name of the journal file of the given node.
+   */
+  private static String getFileName(String node) {
+    if ((node == null) || (node.length() < 1)) {
+      return FILE_NAME;
+    }
+    return FILE_NAME.substring(0, FILE_NAME.lastIndexOf('.')) + '-' + node.replaceAll("[^\\w.-]", "_")
+        + FILE_NAME.substring(FILE_NAME.lastIndexOf('.'));
+  }
+  
+  /**
+   * @param fileName
+   * @return {@code true} if the given file name is the name of a journal
+   * (of any node).
+   */
+  public static boolean isJournal(String fileName) {
+    String prefix = FILE_NAME.substring(0, FILE_NAME.lastIndexOf('.'));
+    String suffix = FILE_NAME.substring(FILE_NAME.lastIndexOf('.'));
+    return fileName.startsWith(prefix) && fileName.endsWith(suffix);
+  }
+  
+  /**
+   * Reads all records from the given journal file. If several journals
+   * contain records for the same input and format, the most recent
+   * record is kept.
+   * @param file
+   * @param own if not {@code null}, the latest record for every input and
+   * format of this file is also put into this map.
+   * @return the number of records in the file.
+   * @throws IOException
+   */
+  private int read(File file, Map<String, Record> own) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    int records = 0;
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("#") || (line.trim().length() < 1)) {
+          continue;
+        }
+        Record r = Record.parse(line);
+        if (r != null) {
+          String key = key(r.input, r.format);
+          Record previous = latest.get(key);
+          if ((previous == null) || (previous.time <= r.time)) {
+            latest.put(key, r);
+          }
+          if (own != null) {
+            own.put(key, r);
+          }
+          records++;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    logger.info(MessageFormat.format("Read {0} records for {1} translations from journal {2}.", records, latest.size(), file));
+    return records;
+  }
+  
+  /**
+   * Replaces the journal by a file that only contains the given latest
+   * records of every input file and format. Obsolete records are kept until the
+   * journal contains at least {@link #COMPACT_THRESHOLD} of them, since
+   * they document the previous runs.
+   * @param latest
+   * @throws IOException
+   */
+  private void compact(Collection<Record> latest) throws IOException {
+    List<Record> records = new ArrayList<Record>(latest);
+    Collections.sort(records, new Comparator<Record>() {
+      @Override
+      public int compare(Record r1, Record r2) {
+        return r1.time < r2.time ? -1 : (r1.time == r2.time ? 0 : 1);
+      }
+    });
+    File tmp = getTemporaryFile(file);
+    Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+    try {
+      writer.write(HEADER);
+      writer.write('\n');
+      for (Record r : records) {
+        writer.write(r.toString());
+        writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+    if (commit(tmp, file)) {
+      logger.fine(MessageFormat.format("Compacted journal {0} to {1} records.", file, records.size()));
+    }
+  }
+  
+  /**
+   * @param input
+   * @param format
+   * @return key for {@link #latest}.
+   */
+  private static String key(String input, Format format) {
+    return format + File.pathSeparator + input;
+  }
+  
+  /**
+   * Appends one line to the journal. Each line is written with a single
+   * call, so that lines of concurrent writers are not interleaved.
+   * @param line
+   */
+  private synchronized void append(String line) {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.write((line + '\n').getBytes("UTF-8"));
+      out.flush();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not write to journal {0}.", file), e);
+    }
+  }
+  
+  /**
+   * @param input
+   * @param format
+   * @return the latest record for the given input file and format or
+   * {@code null} if there is none.
+   */
+  public synchronized Record getLatest(String input, Format format) {
+    return latest.get(key(input, format));
+  }
+  
+  /**
+   * @param input
+   * @param format
+   * @param contentHash current MD5 of the input file (see
+   * {@link #hashContent(File)}) or {@code null} to ignore the content.
+   * @param optionsHash
+   * @return {@code true} if the latest record for the given input and format
+   * states that the translation with the given options has been finished
+   * and the input file did not change since.
+   */
+  public boolean isDone(String input, Format format, String contentHash, String optionsHash) {
+    return compare(input, format, contentHash, optionsHash) == Change.UNCHANGED;
+  }
+  
+  /**
+   * Compares the given input file with its latest record.
+   * @param input
+   * @param format
+   * @param contentHash current MD5 of the input file (see
+   * {@link #hashContent(File)}) or {@code null} to ignore the content.
+   * @param optionsHash
+   * @return the {@link Change} since the last translation. Never
+   * {@link Change#OUTPUT_EXISTS} or {@link Change#CLAIMED}.
+   */
+  public synchronized Change compare(String input, Format format, String contentHash, String optionsHash) {
+    Record r = latest.get(key(input, format));
+    if (r == null) {
+      return Change.NEW;
+    } else if (r.status != Status.DONE) {
+      return Change.INCOMPLETE;
+    } else if ((contentHash != null) && !contentHash.equals(r.contentHash)) {
+      return Change.INPUT_CHANGED;
+    } else if (!r.optionsHash.equals(optionsHash)) {
+      return Change.OPTIONS_CHANGED;
+    }
+    return Change.UNCHANGED;
+  }
+  
+  /**
+   * Appends a comment (e.g., a summary of a batch run) to the journal.
+   * @param comment
+   */
+  public void comment(String comment) {
+    append("# " + comment.replace('\n', ' '));
+  }
+  
+  /**
+   * Appends a new record to the journal.
+   * @param status
+   * @param input
+   * @param format
+   * @param contentHash
+   * @param optionsHash
+   * @param duration in milliseconds.
+   * @param outputs all written files.
+   * @return the record.
+   */
+  public Record log(Status status, String input, Format format, String contentHash, String optionsHash, long duration, List<String> outputs) {
+    Record r = new Record();
+    r.time = System.currentTimeMillis();
+    r.status = status;
+    r.format = format;
+    r.input = input;
+    r.contentHash = contentHash;
+    r.optionsHash = optionsHash;
+    r.duration = duration;
+    StringBuilder output = new StringBuilder();
+    if (outputs != null) {
+      for (String o : outputs) {
+        if (output.length() > 0) {
+          output.append(',');
+        }
+        output.append(o);
+      }
+    }
+    r.output = output.toString();
+    synchronized (this) {
+      latest.put(key(input, format), r);
+      append(r.toString());
+    }
+    return r;
+  }
+  
+  /**
+   * Closes the journal.
+   */
+  public synchronized void close() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, e.getLocalizedMessage(), e);
+      }
+      out = null;
+    }
+  }
+  
+  /**
+   * @return the journal file.
+   */
+  public File getFile() {
+    return file;
+  }
+  
+  /**
+   * Calculates a hash over the values of all {@link KEGGtranslatorOptions}.
+   * @param prefs preferences for {@link KEGGtranslatorOptions}.
+   * @param further all further settings that influence the content or the
+   * names of the output files, as {@code NAME=value} (e.g., command-line
+   * only options).
+   * @return MD5 of all option values.
+   */
+  @SuppressWarnings("rawtypes")
+  public static String hashOptions(SBPreferences prefs, String... further) {
+    SortedMap<String, String> values = new TreeMap<String, String>();
+    for (Option option : KeyProvider.Tools.optionList(KEGGtranslatorOptions.class)) {
+      values.put(option.getOptionName(), String.valueOf(prefs.get(option)));
+    }
+    for (String setting : further) {
+      int pos = setting.indexOf('=');
+      values.put(setting.substring(0, Math.max(0, pos)), setting.substring(pos + 1));
+    }
+    MessageDigest md5 = createMD5();
+    try {
+      md5.update(values.toString().getBytes("UTF-8"));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return toHex(md5.digest());
+  }
+  
+  /**
+   * @param f
+   * @return MD5 of the given file.
+   * @throws IOException
+   */
+  public static String hashContent(File f) throws IOException {
+    MessageDigest md5 = createMD5();
+    InputStream in = new FileInputStream(f);
+    try {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        md5.update(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return toHex(md5.digest());
+  }
+  
+  /**
+   * @param content
+   * @return MD5 of the given content, e.g., of a file in an archive.
+   */
+  public static String hashContent(byte[] content) {
+    return toHex(createMD5().digest(content));
+  }
+  
+  /**
+   * @return a new MD5 {@link MessageDigest}.
+   */
+  private static MessageDigest createMD5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support MD5.
+      throw new RuntimeException(e);
+    }
+  }
+  
+  /**
+   * @param bytes
+   * @return lower case hex representation of the given bytes.
+   */
+  static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+  
+  /**
+   * Moves a completely written temporary file to its final destination.
+   * On most file systems, this is an atomic operation, i.e., the target
+   * file is either missing or complete. If the file system does not
+   * replace existing files, the existing target is first moved to its
+   * {@link #getBackupFile(File)}, which is only deleted after the new
+   * file is in place. If the process dies in between, the backup is
+   * recovered by {@link #restore(File)}.
+   * @param tmp
+   * @param target
+   * @return {@code true} if the file has been moved.
+   */
+  public static boolean commit(File tmp, File target) {
+    if (tmp.renameTo(target)) {
+      return true;
+    }
+    // E.g., on Windows, renaming fails if the target exists.
+    if (target.exists()) {
+      File backup = getBackupFile(target);
+      if ((!backup.exists() || backup.delete()) && target.renameTo(backup)) {
+        if (tmp.renameTo(target)) {
+          backup.delete();
+          return true;
+        }
+        // Put the old file back in place
+        backup.renameTo(target);
+      }
+    }
+    logger.warning(MessageFormat.format("Could not move {0} to {1}.", tmp, target));
+    return false;
+  }
+  
+  /**
+   * Moves the backup of the given file back in place, if the file is
+   * missing, because {@link #commit(File, File)} has been interrupted.
+   * @param target
+   * @return {@code true} if the backup has been restored.
+   */
+  public static boolean restore(File target) {
+    File backup = getBackupFile(target);
+    if (!target.exists() && backup.exists() && backup.renameTo(target)) {
+      logger.info(MessageFormat.format("Restored {0} from {1}.", target, backup));
+      return true;
+    }
+    return false;
+  }
+  
+  /**
+   * @param target
+   * @return the file that keeps the previous version of the given file
+   * while {@link #commit(File, File)} replaces it.
+   */
+  static File getBackupFile(File target) {
+    return new File(target.getParentFile(), TEMP_PREFIX + target.getName() + BACKUP_SUFFIX);
+  }
+  
+  /**
+   * @param target
+   * @return a temporary file in the directory of the given target file,
+   * having the same extension.
+   */
+  public static File getTemporaryFile(File target) {
+    return new File(target.getParentFile(), TEMP_PREFIX + target.getName());
+  }
+  
+}
@@ -20,23 +20,42 @@
  */
 package de.zbit.kegg.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import de.zbit.graph.io.Graph2Dwriteable.WriteableFileExtensions;
 import de.zbit.graph.io.Graph2Dwriter;
 import de.zbit.graph.io.SBGN2GraphML;
 import de.zbit.graph.io.SBML2GraphML;
-import de.zbit.io.DirectoryParser;
 import de.zbit.io.FileTools;
-import de.zbit.io.SerializableTools;
-import de.zbit.io.filefilter.SBFileFilter;
 import de.zbit.kegg.KEGGtranslatorCommandLineOnlyOptions;
+import de.zbit.kegg.KEGGtranslatorOptions;
 import de.zbit.kegg.Translator;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.cache.CacheFlusher;
+import de.zbit.kegg.cache.ConcurrentKeggInfoManagement;
+import de.zbit.kegg.cache.SynchronizedKeggInfoManagement;
+import de.zbit.kegg.cache.TimeoutKeggAdaptor;
 import de.zbit.kegg.gui.TranslatorPanelTools;
+import de.zbit.kegg.io.BatchJournal.Change;
+import de.zbit.kegg.io.BatchJournal.Status;
 import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
 import de.zbit.kegg.parser.pathway.Pathway;
 import de.zbit.util.prefs.SBPreferences;
@@ -81,191 +100,1673 @@ public class BatchKEGGtranslator {
    */
   SBPreferences prefs = SBPreferences.getPreferencesFor(KEGGtranslatorCommandLineOnlyOptions.class);
   
+  /**
+   * Number of files to translate in parallel. If one, all files
+   * are translated one after another on the calling thread.
+   */
+  private int numberOfThreads = KEGGtranslatorCommandLineOnlyOptions.BATCH_THREADS.getValue(prefs);
+  
+  /**
+   * Further output formats. If not empty, every pathway is parsed and
+   * preprocessed only once and then translated to {@link #outFormat}
+   * and all these formats.
+   */
+  private List<Format> additionalFormats = parseFormats(KEGGtranslatorCommandLineOnlyOptions.ADDITIONAL_FORMATS.getValue(prefs));
+  
+  /**
+   * The shard of all input files to translate (see {@link BatchShard}).
+   */
+  private BatchShard shard = parseShard(KEGGtranslatorCommandLineOnlyOptions.SHARD.getValue(prefs));
+  
+  /**
+   * Comma separated glob patterns of files to translate (see {@link DirectoryWalker}).
+   */
+  private String includes = KEGGtranslatorCommandLineOnlyOptions.INCLUDE_FILES.getValue(prefs);
+  
+  /**
+   * Comma separated glob patterns of files and directories to skip.
+   */
+  private String excludes = KEGGtranslatorCommandLineOnlyOptions.EXCLUDE_FILES.getValue(prefs);
+  
+  /**
+   * Maximum depth of subdirectories to translate. Negative for no limit.
+   */
+  private int maxDepth = KEGGtranslatorCommandLineOnlyOptions.MAX_DEPTH.getValue(prefs);
+  
+  /**
+   * Percentage of the maximum heap that may be used by all files, that
+   * are translated in parallel (see {@link BatchScheduler}).
+   */
+  private int memoryBudget = KEGGtranslatorCommandLineOnlyOptions.MEMORY_BUDGET.getValue(prefs);
+  
+  /**
+   * Number of files, the {@link BatchScheduler} chooses the largest from.
+   */
+  private static final int SCHEDULING_WINDOW = 1024;
+  
+  /**
+   * Maximum time in seconds to translate one pathway (per format and
+   * for preprocessing). Zero for no limit.
+   */
+  private int timeout = KEGGtranslatorCommandLineOnlyOptions.TRANSLATION_TIMEOUT.getValue(prefs);
+  
+  /**
+   * Number of translations in the current batch run that exceeded the {@link #timeout}.
+   */
+  private final AtomicInteger timeouts = new AtomicInteger();
+  
+  /**
+   * File to write the metrics of every translated file to (CSV or JSON).
+   * Empty for none.
+   */
+  private String metricsFile = KEGGtranslatorCommandLineOnlyOptions.METRICS_FILE.getValue(prefs);
+  
+  /**
+   * Metrics of the current batch run.
+   */
+  private BatchStatistics statistics;
+  
+  /**
+   * Interval in seconds to write the KEGG cache in the background. Zero
+   * to write it after each directory instead.
+   */
+  private int cacheFlushInterval = KEGGtranslatorCommandLineOnlyOptions.CACHE_FLUSH_INTERVAL.getValue(prefs);
+  
+  /**
+   * Number of upcoming files, whose KEGG IDs are fetched at once (see
+   * {@link BatchPrefetcher}). Zero to disable the prefetching.
+   */
+  private int prefetchWindow = KEGGtranslatorCommandLineOnlyOptions.PREFETCH_WINDOW.getValue(prefs);
+  
+  /**
+   * The KEGG cache, shared by all translators of the current batch run.
+   */
+  private SynchronizedKeggInfoManagement cache;
+  
+  /**
+   * Writes the {@link #cache} in the background, if {@link #cacheFlushInterval}
+   * is positive.
+   */
+  private CacheFlusher flusher;
+  
+  /**
+   * Lease time of claim files in minutes (see {@link BatchClaims}).
+   * Zero disables claim files.
+   */
+  private int claimLease = KEGGtranslatorCommandLineOnlyOptions.CLAIM_LEASE.getValue(prefs);
+  
+  /**
+   * If {@code true}, the KGML documents in an archive are translated as a
+   * whole and written to one zip archive per format (see {@link ArchiveInput}).
+   * Else, they are translated like single files.
+   */
+  private boolean archiveOutput = KEGGtranslatorCommandLineOnlyOptions.ARCHIVE_OUTPUT.getValue(prefs);
+  
+  /**
+   * File of the {@link PathwayStore} for preprocessed pathways. Empty for none.
+   */
+  private String pathwayStore = KEGGtranslatorCommandLineOnlyOptions.PATHWAY_STORE.getValue(prefs);
+  
+  /**
+   * The {@link PathwayStore} of the current run, if {@link #pathwayStore}
+   * is set. Inputs, whose preprocessed pathways are stored, are neither
+   * parsed nor preprocessed again.
+   */
+  private PathwayStore store;
+  
+  /**
+   * Claims of the current run, if {@link #claimLease} is positive.
+   */
+  private BatchClaims claims;
+  
+  /**
+   * Records all translations of the current run and allows to resume
+   * an interrupted run. {@code null} if not available.
+   */
+  private BatchJournal journal;
+  
+  /**
+   * Hash of all options of the current run (see
+   * {@link BatchJournal#hashOptions(SBPreferences, String...)}).
+   */
+  private String optionsHash;
+  
+  /**
+   * Number of translations (input file and format) per {@link Change}
+   * in the current batch run.
+   */
+  private final Map<Change, AtomicInteger> changes = new EnumMap<Change, AtomicInteger>(Change.class);
+  
+  /**
+   * Suffix of the second image that is created for
+   * {@link Format#SBML_CORE_AND_QUAL}.
+   */
+  private static final String QUAL_JPG_SUFFIX = "SBML_QUAL.jpg";
+  
   /**
    * 
    * @param dir
    * @return
    */
-  private String getAndCreateOutDir(String dir) {
-    String myDir = dir;
-    if ((changeOutdirTo != null) && (changeOutdirTo.length() > 0)) {
-      myDir = changeOutdirTo + myDir.substring(orgOutdir.length());
+  private String getAndCreateOutDir(String dir) {
+    String myDir = dir;
+    if ((changeOutdirTo != null) && (changeOutdirTo.length() > 0)) {
+      myDir = changeOutdirTo + myDir.substring(orgOutdir.length());
+      try {
+        new File(myDir).mkdirs();
+      } catch (Exception e) {} // already existing...
+    }
+    return myDir;
+  }
+  
+  /**
+   * 
+   * @param args
+   */
+  public static void main(String args[]) {
+    BatchKEGGtranslator batch = new BatchKEGGtranslator();
+    if (args != null && args.length > 0) {
+      batch.setOrgOutdir(args[0]);
+      if (args.length > 1) {
+        batch.setChangeOutdirTo(args[1]);
+      }
+      batch.parseDirAndSubDir();
+      return;
+    }
+    logger.info("Demo Mode:");
+    batch.setOrgOutdir(System.getProperty("user.home"));
+    batch.setChangeOutdirTo(System.getProperty("user.home"));
+    batch.parseDirAndSubDir();
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  public String getChangeOutdirTo() {
+    return changeOutdirTo;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  public KEGGtranslator<?> getConverter() {
+    return translator;
+  }
+  
+  /**
+   * @return the number of files that are translated in parallel.
+   */
+  public int getNumberOfThreads() {
+    return numberOfThreads;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  public String getOrgOutdir() {
+    return orgOutdir;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  public Format getOutFormat() {
+    return outFormat;
+  }
+  
+  /**
+   * @return further output formats (see {@link #additionalFormats}).
+   */
+  public List<Format> getAdditionalFormats() {
+    return additionalFormats;
+  }
+  
+  /**
+   * @return {@link #outFormat}, followed by all {@link #additionalFormats}
+   * (without duplicates).
+   */
+  public List<Format> getOutFormats() {
+    Set<Format> formats = new LinkedHashSet<Format>();
+    formats.add(outFormat);
+    formats.addAll(additionalFormats);
+    return new ArrayList<Format>(formats);
+  }
+  
+  /**
+   * Parses a comma separated list of {@link Format}s.
+   * @param formats
+   * @return all valid formats, invalid ones are reported and skipped.
+   */
+  public static List<Format> parseFormats(String formats) {
+    List<Format> list = new ArrayList<Format>();
+    if (formats == null) {
+      return list;
+    }
+    for (String format : formats.split(",")) {
+      format = format.trim();
+      if (format.length() < 1) {
+        continue;
+      }
+      try {
+        list.add(Format.valueOf(format));
+      } catch (IllegalArgumentException e) {
+        logger.warning(MessageFormat.format("Unknown output format ''{0}''.", format));
+      }
+    }
+    return list;
+  }
+  
+  /**
+   * If called without a specific directory, uses
+   * the {@link #orgOutdir} as input directory.
+   */
+  public void parseDirAndSubDir() {
+    openJournal();
+    openPathwayStore();
+    changes.clear();
+    for (Change change : Change.values()) {
+      changes.put(change, new AtomicInteger());
+    }
+    if (claimLease > 0) {
+      claims = new BatchClaims(TimeUnit.MINUTES.toMillis(claimLease));
+    }
+    timeouts.set(0);
+    statistics = new BatchStatistics();
+    // Wrapped to share it between threads and to count lookups (see BatchStatistics).
+    KeggInfoManagement manager = Translator.getManager();
+    cache = new ConcurrentKeggInfoManagement(manager);
+    if (cacheFlushInterval > 0) {
+      flusher = new CacheFlusher(cache, new File(Translator.cacheFileName), TimeUnit.SECONDS.toMillis(cacheFlushInterval));
+    }
+    if (timeout > 0) {
+      // Translators check their timeout between the stages of a translation,
+      // which a request that hangs would never reach.
+      TimeoutKeggAdaptor.install(manager, (int) TimeUnit.SECONDS.toMillis(timeout));
+    }
+    try {
+      if (numberOfThreads > 1) {
+        parseDirAndSubDirInParallel(orgOutdir);
+      } else {
+        parseDirAndSubDir(orgOutdir);
+      }
+      reportChanges();
+      reportStatistics();
+    } finally {
+      if (journal != null) {
+        journal.close();
+        journal = null;
+      }
+      if (claims != null) {
+        claims.close();
+        claims = null;
+      }
+      if (store != null) {
+        closeQuietly(store);
+        store = null;
+      }
+      if (flusher != null) {
+        flusher.close();
+        flusher = null;
+      }
+      cache = null;
+      // Remember already queried objects (save cache)
+      Translator.saveCache();
+    }
+  }
+  
+  /**
+   * @return all settings, besides the {@link KEGGtranslatorOptions}, that
+   * influence the content or the names of the output files, as
+   * {@code NAME=value}. The output format is not included, since the
+   * journal keeps a record per format.
+   */
+  private String[] getOutputSettings() {
+    return new String[] {
+      KEGGtranslatorCommandLineOnlyOptions.CREATE_JPG + "=" + KEGGtranslatorCommandLineOnlyOptions.CREATE_JPG.getValue(prefs),
+      // Several formats get a format suffix
+      "MULTIPLE_FORMATS=" + (getOutFormats().size() > 1),
+      KEGGtranslatorCommandLineOnlyOptions.ARCHIVE_OUTPUT + "=" + archiveOutput,
+      // Annotations depend on the KEGG release
+      KEGGtranslatorCommandLineOnlyOptions.KEGG_RELEASE + "=" + KEGGtranslatorCommandLineOnlyOptions.KEGG_RELEASE.getValue(prefs),
+      KEGGtranslatorCommandLineOnlyOptions.PATH2MODELS + "=" + Translator.path2models
+    };
+  }
+  
+  /**
+   * Opens the {@link BatchJournal} in the output directory. If this fails,
+   * the batch run continues without journal.
+   */
+  private void openJournal() {
+    String outDir = ((changeOutdirTo != null) && (changeOutdirTo.length() > 0)) ? changeOutdirTo : orgOutdir;
+    optionsHash = BatchJournal.hashOptions(SBPreferences.getPreferencesFor(KEGGtranslatorOptions.class), getOutputSettings());
+    // Every process writes its own journal if a directory is shared.
+    String node = shard.getNodeName();
+    if ((node == null) && (claimLease > 0)) {
+      node = BatchClaims.getProcessName();
+    }
+    try {
+      journal = new BatchJournal(new File(outDir), node);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not open journal in {0}. Interrupted runs can not be resumed.", outDir), e);
+      journal = null;
+    }
+  }
+  
+  /**
+   * Opens the {@link PathwayStore}, if {@link #pathwayStore} is set. If
+   * this fails, the batch run continues without store.
+   */
+  private void openPathwayStore() {
+    store = null;
+    if ((pathwayStore != null) && (pathwayStore.length() > 0)) {
+      try {
+        store = new PathwayStore(new File(pathwayStore));
+      } catch (IOException e) {
+        logger.log(Level.WARNING, MessageFormat.format("Could not open pathway store {0}. All pathways are parsed and preprocessed.", pathwayStore), e);
+      }
+    }
+  }
+  
+  /**
+   * Appends a file separator to the given directory, if
+   * not already present.
+   * @param dir
+   * @return
+   */
+  private static String appendSeparator(String dir) {
+    if (!dir.endsWith("/") && !dir.endsWith("\\")) {
+      if (dir.contains("\\")) {
+        dir+="\\";
+      } else {
+        dir +="/";
+      }
+    }
+    return dir;
+  }
+  
+  /**
+   * @param dir
+   * @return a {@link DirectoryWalker} for the given directory, configured
+   * with {@link #includes}, {@link #excludes} and {@link #maxDepth}.
+   */
+  private DirectoryWalker createWalker(String dir) {
+    DirectoryWalker walker = new DirectoryWalker(new File(dir));
+    walker.setIncludes(includes);
+    walker.setExcludes(excludes);
+    walker.setMaxDepth(maxDepth);
+    return walker;
+  }
+  
+  /**
+   * Automatic batch translation of all KGML files in dir
+   * and all subdirectories.
+   * @param dir
+   */
+  private void parseDirAndSubDir(String dir) {
+    KeggInfoManagement manager = cache;
+    
+    dir = appendSeparator(dir);
+    logger.info("Parsing directory " + dir);
+    
+    
+    if (translator == null) {
+      translator = getTranslator(outFormat, manager);
+    }
+    Map<Format, KEGGtranslator<?>> translators = createTranslators(manager, translator);
+    
+    String lastDir = null;
+    DirectoryWalker.Walk walk = createWalker(dir).iterator();
+    Iterator<File> files = prefetch(walk, translators);
+    try {
+      while (files.hasNext()) {
+        File inFile = files.next();
+        String fileDir = appendSeparator(inFile.getParent());
+        if ((lastDir != null) && !lastDir.equals(fileDir) && (flusher == null)) {
+          // Remember already queried objects (save cache) after each directory
+          Translator.saveCache();
+        }
+        lastDir = fileDir;
+        translateFile(fileDir, inFile.getName(), take(files, inFile), translators);
+      }
+    } finally {
+      if (files instanceof BatchPrefetcher) {
+        ((BatchPrefetcher) files).close();
+      }
+      walk.close();
+    }
+  }
+  
+  /**
+   * Translates all KGML files in dir and all subdirectories, using
+   * {@link #numberOfThreads} worker threads. All workers share one
+   * translator, created by {@link #getTranslator(Format, KeggInfoManagement)},
+   * for each of the {@link #getOutFormats()} (see {@link TranslationContext})
+   * and one {@link ConcurrentKeggInfoManagement}. Translators that must not
+   * be shared get one instance per worker (see
+   * {@link #createWorkerTranslators(Map, KeggInfoManagement)}). Hence, a translator,
+   * given via {@link #setTranslator(KEGGtranslator)} is not used in this mode.
+   * Files are submitted to a {@link BatchWorkerPool} while the directory
+   * is still being walked. Its {@link BatchScheduler} submits the largest
+   * files first and limits the concurrency, such that the estimated heap
+   * of all running translations stays within {@link #memoryBudget}. The KEGG information
+   * of upcoming files is fetched by a {@link BatchPrefetcher}.
+   * @param dir
+   */
+  private void parseDirAndSubDirInParallel(String dir) {
+    final Map<Format, KEGGtranslator<?>> translators = createTranslators(cache, null);
+    final ThreadLocal<Map<Format, KEGGtranslator<?>>> workerTranslators = new ThreadLocal<Map<Format, KEGGtranslator<?>>>() {
+      /* (non-Javadoc)
+       * @see java.lang.ThreadLocal#initialValue()
+       */
+      @Override
+      protected Map<Format, KEGGtranslator<?>> initialValue() {
+        return createWorkerTranslators(translators, cache);
+      }
+    };
+    
+    dir = appendSeparator(dir);
+    logger.info(MessageFormat.format("Translating files in {0} with {1} threads.", dir, numberOfThreads));
+    BatchWorkerPool workers = new BatchWorkerPool(numberOfThreads,
+      new BatchScheduler(BatchScheduler.getHeapBudget(memoryBudget), SCHEDULING_WINDOW));
+    // The prefetcher uses the translators only to decide which files are translated.
+    DirectoryWalker.Walk walk = createWalker(dir).iterator();
+    Iterator<File> files = prefetch(walk, translators);
+    try {
+      BatchScheduler.Task task;
+      while ((task = workers.next(files)) != null) {
+        final File inFile = task.getFile();
+        final BatchPrefetcher.Prefetched prefetched = take(files, inFile);
+        workers.execute(task, new Runnable() {
+          @Override
+          public void run() {
+            translateFile(appendSeparator(inFile.getParent()), inFile.getName(), prefetched, workerTranslators.get());
+          }
+        });
+      }
+    } catch (InterruptedException e) {
+      logger.warning("Interrupted while walking the input directory.");
+      Thread.currentThread().interrupt();
+    } finally {
+      workers.shutdown();
+      if (files instanceof BatchPrefetcher) {
+        ((BatchPrefetcher) files).close();
+      }
+      walk.close();
+    }
+    workers.awaitTermination();
+  }
+  
+  /**
+   * Creates one translator for each of the {@link #getOutFormats()}.
+   * @param manager the cache for all translators (also set on the given
+   * translator).
+   * @param translator an already existing translator for {@link #outFormat}
+   * or {@code null}.
+   * @return translators for all output formats (in the order of
+   * {@link #getOutFormats()}).
+   */
+  private Map<Format, KEGGtranslator<?>> createTranslators(KeggInfoManagement manager, KEGGtranslator<?> translator) {
+    Map<Format, KEGGtranslator<?>> translators = new LinkedHashMap<Format, KEGGtranslator<?>>();
+    for (Format format : getOutFormats()) {
+      KEGGtranslator<?> t = ((format == outFormat) && (translator != null)) ? translator : getTranslator(format, manager);
+      if (t != null) {
+        translators.put(format, configure(t, manager));
+      }
+    }
+    return translators;
+  }
+  
+  /**
+   * Sets the cache and the timeout of this batch run on the given translator.
+   * @param translator
+   * @param manager the cache for the translator.
+   * @return the given translator.
+   */
+  private KEGGtranslator<?> configure(KEGGtranslator<?> translator, KeggInfoManagement manager) {
+    if (translator instanceof AbstractKEGGtranslator) {
+      ((AbstractKEGGtranslator<?>) translator).setCache(manager);
+      ((AbstractKEGGtranslator<?>) translator).setTimeout(TimeUnit.SECONDS.toMillis(timeout));
+    }
+    return translator;
+  }
+  
+  /**
+   * Creates the translators for one worker thread. Translators that keep
+   * all per-document state in their {@link TranslationContext} are shared
+   * with all other workers. A {@link KEGG2yGraph}, however, writes through
+   * its own {@link Graph2Dwriter}, whose {@link y.io.IOHandler} is not
+   * thread-safe. Hence, each worker gets its own instance for the yGraph
+   * formats.
+   * @param translators the shared translators for all output formats (see
+   * {@link #createTranslators(KeggInfoManagement, KEGGtranslator)}).
+   * @param manager the cache for the new translators.
+   * @return translators for all output formats, to be used only by the
+   * current thread.
+   */
+  Map<Format, KEGGtranslator<?>> createWorkerTranslators(Map<Format, KEGGtranslator<?>> translators, KeggInfoManagement manager) {
+    Map<Format, KEGGtranslator<?>> worker = new LinkedHashMap<Format, KEGGtranslator<?>>(translators);
+    for (Map.Entry<Format, KEGGtranslator<?>> e : worker.entrySet()) {
+      if (e.getValue() instanceof KEGG2yGraph) {
+        e.setValue(configure(getTranslator(e.getKey(), manager), manager));
+      }
+    }
+    return worker;
+  }
+  
+  /**
+   * Wraps the given files in a {@link BatchPrefetcher}, if any of the
+   * given translators fetches information from KEGG.
+   * @param files
+   * @param translators translators for all output formats.
+   * @return the files in the same order.
+   */
+  private Iterator<File> prefetch(Iterator<File> files, final Map<Format, KEGGtranslator<?>> translators) {
+    if ((prefetchWindow < 1) || !BatchPrefetcher.isPrefetching(translators.values())) {
+      return files;
+    }
+    return new BatchPrefetcher(files, cache, prefetchWindow, BatchPrefetcher.isCompletingReactions(translators.values()),
+      new BatchPrefetcher.Filter() {
+      @Override
+      public boolean accept(BatchPrefetcher.Prefetched file) {
+        return isPending(file, translators);
+      }
+    });
+  }
+  
+  /**
+   * @param files the files, returned by {@link #prefetch(Iterator, Map)}.
+   * @param file the last file returned by the given iterator.
+   * @return what the {@link BatchPrefetcher} has learned about the given
+   * file or {@code null}.
+   */
+  private static BatchPrefetcher.Prefetched take(Iterator<File> files, File file) {
+    return (files instanceof BatchPrefetcher) ? ((BatchPrefetcher) files).take(file) : null;
+  }
+  
+  /**
+   * @param format
+   * @param translator the translator for the given format
+   * @param multipleFormats whether more than one format is written.
+   * @return the suffix (including the file extension) to append to
+   * the name of the input file (without extension).
+   */
+  private static String getOutputSuffix(Format format, KEGGtranslator<?> translator, boolean multipleFormats) {
+    String fileExtension = getFileExtension(translator);
+    if (multipleFormats) {
+      // Multiple formats may have the same file extension.
+      return "_" + format.toString() + fileExtension;
+    }
+    return fileExtension;
+  }
+  
+  /**
+   * Translates one file with the given translators, if it is a KGML file
+   * and it has not yet been translated.
+   * The KGML documents in an archive are translated like single files
+   * (see {@link #translateArchive(String, String, Map)}), unless
+   * {@link #archiveOutput} is set. Then, the archive is translated as a
+   * whole (see {@link ArchiveInput}).
+   * @param dir directory of the file, with trailing separator
+   * @param fn file name
+   * @param prefetched what the {@link BatchPrefetcher} has learned about
+   * the file, may be {@code null}.
+   * @param translators translators for all output formats
+   */
+  private void translateFile(String dir, String fn, BatchPrefetcher.Prefetched prefetched, Map<Format, KEGGtranslator<?>> translators) {
+    if (!isInput(dir, fn)) {
+      return;
+    }
+    File inFile = new File(dir + fn);
+    
+    // KGML, possibly compressed or in an archive.
+    KGMLSniffer sniffed;
+    String contentHash = null;
+    List<Pathway> pathways = null;
+    if (prefetched != null) {
+      sniffed = prefetched.getSniffed();
+      contentHash = prefetched.getContentHash();
+      pathways = prefetched.getPathways();
+    } else {
+      try {
+        sniffed = KGMLSniffer.sniff(inFile);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, MessageFormat.format("Could not read {0}.", inFile), e);
+        return;
+      }
+    }
+    
+    if (sniffed.getType() == KGMLSniffer.Type.ARCHIVE) {
+      if (archiveOutput) {
+        translateInput(new ArchiveInput(dir, fn, contentHash), translators);
+      } else {
+        translateArchive(dir, fn, translators);
+      }
+    } else if (sniffed.isPathway()) {
+      translateInput(new FileInput(dir, fn, sniffed, contentHash, pathways), translators);
+    }
+  }
+  
+  /**
+   * Translates every KGML document in the given archive like a single
+   * file, i.e., with its own journal records and output files. The output
+   * files are written to a directory, named after the archive. Every
+   * document is streamed from the archive into the parser. Only if a
+   * journal, claims or a {@link PathwayStore} are written, a document is
+   * read into memory first, to compute its hash.
+   * @param dir directory of the archive, with trailing separator
+   * @param fn file name of the archive
+   * @param translators translators for all output formats
+   */
+  private void translateArchive(String dir, String fn, Map<Format, KEGGtranslator<?>> translators) {
+    File inFile = new File(dir + fn);
+    KGMLArchive archive = null;
+    try {
+      archive = new KGMLArchive(inFile);
+      while (archive.next()) {
+        InputStream content = archive.getInputStream();
+        if (!KGMLSniffer.isKGML(KGMLSniffer.peekHeader(content))) {
+          continue;
+        }
+        String contentHash = null;
+        if ((journal != null) || (claims != null) || (store != null)) {
+          byte[] bytes = toByteArray(content);
+          contentHash = BatchJournal.hashContent(bytes);
+          content = new ByteArrayInputStream(bytes);
+        }
+        EntryInput entry = new EntryInput(dir, fn, archive.getName(), content, contentHash);
+        new File(entry.outDir).mkdirs();
+        translateInput(entry, translators);
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not read archive {0}.", inFile), e);
+    } finally {
+      closeQuietly(archive);
+    }
+  }
+  
+  /**
+   * Translates one input with the given translators, if it has not yet
+   * been translated. If a {@link #journal} is available, it decides which
+   * formats are still required. Else (or if the journal has no record for
+   * a format), a format is skipped if the output file exists.
+   * If multiple translators are given, every {@link Pathway} is parsed only
+   * once and preprocessed only once per distinct
+   * {@link AbstractKEGGtranslator#getPreprocessingKey()}.
+   * @param in
+   * @param translators translators for all output formats
+   */
+  private void translateInput(Input in, Map<Format, KEGGtranslator<?>> translators) {
+    boolean multipleFormats = translators.size() > 1;
+    
+    BatchJob job = new BatchJob();
+    if ((journal != null) || (claims != null) || (store != null)) {
+      try {
+        job.contentHash = in.hash();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+      }
+    }
+    
+    List<Change> changes = new ArrayList<Change>();
+    Map<Format, KEGGtranslator<?>> pending = getPendingFormats(in, job.contentHash, translators, changes);
+    Set<Change> reasons = new LinkedHashSet<Change>();
+    for (Change change : changes) {
+      count(change);
+      reasons.add(change);
+    }
+    if (pending.isEmpty()) {
+      logger.info(MessageFormat.format("Skipping ''{0}'' ({1}).", in.name, describe(reasons)));
+      return; // Skip already converted files.
+    }
+    File claim = null;
+    if (claims != null) {
+      claim = BatchClaims.getClaimFile(in.outDir, in.fn, Integer.toHexString((job.contentHash + optionsHash).hashCode()));
+      if (!claims.claim(claim)) {
+        for (int i = 0; i < pending.size(); i++) {
+          count(Change.CLAIMED);
+        }
+        logger.info(MessageFormat.format("Skipping ''{0}'' ({1}).", in.name, describe(Change.CLAIMED)));
+        return;
+      }
+    }
+    reasons.remove(Change.UNCHANGED);
+    reasons.remove(Change.OUTPUT_EXISTS);
+    logger.info(MessageFormat.format("Converting ''{0}'' ({1})...", in.name, describe(reasons)));
+    
+    job.init(pending.keySet());
+    job.record = new BatchStatistics.Record(in.path);
+    job.record.formats = pending.size();
+    long lookups = cache != null ? cache.getThreadLookups() : 0;
+    long fetched = cache != null ? cache.getThreadFetched() : 0;
+    if (journal != null) {
+      for (Format format : pending.keySet()) {
+        journal.log(Status.STARTED, in.path, format, job.contentHash, optionsHash, 0, null);
+      }
+    }
+    
+    in.translate(pending, multipleFormats, job);
+    
+    if (cache != null) {
+      job.record.lookups = cache.getThreadLookups() - lookups;
+      job.record.misses = cache.getThreadFetched() - fetched;
+    }
+    job.record.status = !job.timedOut.isEmpty() ? Status.TIMEOUT : (!job.failed.isEmpty() ? Status.FAILED : Status.DONE);
+    statistics.add(job.record);
+    
+    for (Format format : job.timedOut) {
+      logger.warning(MessageFormat.format("Translation of ''{0}'' to {1} exceeded the timeout of {2} seconds.", in.name, format, timeout));
+      timeouts.incrementAndGet();
+    }
+    if (claim != null) {
+      if (job.failed.isEmpty()) {
+        claims.done(claim);
+      } else {
+        claims.release(claim);
+      }
+    }
+    if (journal != null) {
+      for (Format format : pending.keySet()) {
+        Status status = job.timedOut.contains(format) ? Status.TIMEOUT : (job.failed.contains(format) ? Status.FAILED : Status.DONE);
+        journal.log(status, in.path, format, job.contentHash, optionsHash, job.getDuration(format), job.outputs.get(format));
+      }
+    }
+  }
+  
+  /**
+   * Parses and translates all pathways of the given input, one at a time.
+   * If a {@link PathwayStore} is available and contains all preprocessed
+   * pathways of the input, these are translated instead (see
+   * {@link #translateStored(String, String, Map, boolean, BatchJob)}).
+   * Else, all preprocessed pathways are added to the store.
+   * @param in
+   * @param outFileBase output file name, without format suffix and extension.
+   * @param pending translators for all pending formats
+   * @param multipleFormats whether more than one format is written.
+   * @param job collects all written files and failures.
+   */
+  private void translatePathways(Input in, String outFileBase, Map<Format, KEGGtranslator<?>> pending, boolean multipleFormats, BatchJob job) {
+    String source = (store != null) ? in.getSource(job) : null;
+    if ((source != null) && translateStored(source, outFileBase, pending, multipleFormats, job)) {
+      return;
+    }
+    
+    KGMLReader reader = null;
+    Pathway p = null, next = null;
+    long start = System.currentTimeMillis();
+    try {
+      reader = in.open();
+      p = reader.read();
+      // Read ahead to know whether the output files need numbers.
+      next = (p != null) ? reader.read() : null;
+    } catch (Throwable t) {
+      // Show must go on...
+      logger.log(Level.SEVERE, MessageFormat.format("Could not read {0}.", in.path), t);
+    }
+    job.record.parse += System.currentTimeMillis() - start;
+    if (p == null) {
+      job.failed.addAll(pending.keySet());
+    } else {
+      boolean appendNumber = (next != null);
+      for (int i = 0; p != null; i++) {
+        job.record.entries += p.getEntries().size();
+        job.record.relations += p.getRelations().size();
+        job.record.reactions += p.getReactions().size();
+        String outFile = outFileBase + (appendNumber?"-"+(i+1):"");
+        
+        // XXX: Main Part
+        if (multipleFormats || (store != null)) {
+          translateToFormats(p, source, i, (next == null), outFile, pending, multipleFormats, job);
+        } else {
+          Format format = pending.keySet().iterator().next();
+          KEGGtranslator<?> translator = pending.get(format);
+          start = System.currentTimeMillis();
+          try {
+            job.written(format, translateAndWrite(translator, p, outFile + getOutputSuffix(format, translator, false), format, false, job), start);
+          } catch (Exception e) {
+            job.failed(format, e);
+            if (!(e instanceof TranslationCancelledException)) {
+              logger.log(Level.SEVERE, MessageFormat.format("Could not translate {0} to {1}.", in.path, format), e);
+            }
+          }
+        }
+        
+        p = next;
+        if (p != null) {
+          start = System.currentTimeMillis();
+          try {
+            next = reader.read();
+          } catch (Throwable t) {
+            logger.log(Level.SEVERE, MessageFormat.format("Could not read pathway {0,number,integer} of {1}.", i + 2, in.path), t);
+            job.failed.addAll(pending.keySet());
+            next = null;
+          }
+          job.record.parse += System.currentTimeMillis() - start;
+        }
+      }
+    }
+    closeQuietly(reader);
+  }
+  
+  /**
+   * Translates all preprocessed pathways of the given source from the
+   * {@link #store}, i.e., without parsing and preprocessing them again.
+   * Every translator receives its own decoded copy of a pathway.
+   * @param source the source of the pathways (see {@link Input#getSource(BatchJob)}).
+   * @param outFileBase output file name, without format suffix and extension.
+   * @param pending translators for all pending formats. Must be
+   * {@link AbstractKEGGtranslator}s.
+   * @param multipleFormats whether more than one format is written.
+   * @param job collects all written files and failures.
+   * @return {@code false} if not all pathways of the source are stored
+   * for every preprocessing of the pending formats. Then, nothing has
+   * been translated.
+   */
+  private boolean translateStored(String source, String outFileBase, Map<Format, KEGGtranslator<?>> pending, boolean multipleFormats, BatchJob job) {
+    int count = -1;
+    for (KEGGtranslator<?> translator : pending.values()) {
+      if (!(translator instanceof AbstractKEGGtranslator)) {
+        return false;
+      }
+      int stored = store.count(source, ((AbstractKEGGtranslator<?>) translator).getPreprocessingKey());
+      if ((stored < 1) || ((count >= 0) && (stored != count))) {
+        return false;
+      }
+      count = stored;
+    }
+    logger.fine(MessageFormat.format("Reading {0,number,integer} preprocessed pathways from {1}.", count, store.getFile()));
+    
+    boolean appendNumber = (count > 1);
+    for (int i = 0; i < count; i++) {
+      String outFile = outFileBase + (appendNumber?"-"+(i+1):"");
+      boolean first = true;
+      for (Map.Entry<Format, KEGGtranslator<?>> e : pending.entrySet()) {
+        Format format = e.getKey();
+        long start = System.currentTimeMillis();
+        try {
+          PreprocessedPathway stored = store.get(source, ((AbstractKEGGtranslator<?>) e.getValue()).getPreprocessingKey(), i);
+          if (stored == null) {
+            throw new IOException(MessageFormat.format("Pathway {0,number,integer} of {1} has been removed from {2}.", i + 1, source, store.getFile()));
+          }
+          Pathway p = stored.getPathway();
+          job.record.parse += System.currentTimeMillis() - start;
+          if (first) {
+            job.record.entries += p.getEntries().size();
+            job.record.relations += p.getRelations().size();
+            job.record.reactions += p.getReactions().size();
+            first = false;
+          }
+          job.written(format, translateAndWrite(e.getValue(), p, outFile + getOutputSuffix(format, e.getValue(), multipleFormats), format, true, job), start);
+        } catch (Exception exc) {
+          logger.log(Level.SEVERE, MessageFormat.format("Could not translate stored pathway {0,number,integer} of {1} to {2}.", i + 1, outFileBase, format), exc);
+          job.failed(format, exc);
+        }
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * @param dir directory of the file, with trailing separator
+   * @param fn file name
+   * @return {@code false} if the given file is one of our own files or
+   * is translated by another process.
+   */
+  private boolean isInput(String dir, String fn) {
+    if (fn.startsWith(BatchJournal.TEMP_PREFIX) || BatchJournal.isJournal(fn)) {
+      return false; // Our own files.
+    }
+    return shard.contains(getRelativePath(dir + fn)); // Else translated by another process.
+  }
+  
+  /**
+   * Determines all formats that still need to be translated.
+   * @param in
+   * @param contentHash MD5 of the input, if a {@link #journal} is written.
+   * @param translators translators for all output formats
+   * @param changes collects the {@link Change} of every format.
+   * @return the translators for all pending formats.
+   */
+  private Map<Format, KEGGtranslator<?>> getPendingFormats(Input in, String contentHash,
+    Map<Format, KEGGtranslator<?>> translators, List<Change> changes) {
+    boolean multipleFormats = translators.size() > 1;
+    Map<Format, KEGGtranslator<?>> pending = new LinkedHashMap<Format, KEGGtranslator<?>>();
+    for (Map.Entry<Format, KEGGtranslator<?>> e : translators.entrySet()) {
+      Change change = Change.NEW;
+      if (journal != null) {
+        change = journal.compare(in.path, e.getKey(), contentHash, optionsHash);
+      }
+      if (change == Change.NEW) {
+        // No journal entry. Test if outFile already exists. Assumes: 1 Pathway per file.
+        // (should be true for all files... not crucial if assumption is wrong)
+        if (new File(in.getOutputFile(e.getKey(), e.getValue(), multipleFormats)).exists()) {
+          change = Change.OUTPUT_EXISTS;
+        }
+      }
+      changes.add(change);
+      if ((change != Change.UNCHANGED) && (change != Change.OUTPUT_EXISTS)) {
+        pending.put(e.getKey(), e.getValue());
+      }
+    }
+    return pending;
+  }
+  
+  /**
+   * Decides, like {@link #translateFile(String, String, BatchPrefetcher.Prefetched, Map)},
+   * whether any format of the given file still needs to be translated (but
+   * ignores claims of other processes). The documents in an archive are
+   * only decided upon when the archive is translated. The content hash is
+   * handed to the translation of the file.
+   * @param file a sniffed file
+   * @param translators translators for all output formats
+   * @return {@code true} if the file will be translated.
+   */
+  private boolean isPending(BatchPrefetcher.Prefetched file, Map<Format, KEGGtranslator<?>> translators) {
+    String dir = appendSeparator(file.getFile().getParent());
+    String fn = file.getFile().getName();
+    if (!isInput(dir, fn)) {
+      return false;
+    }
+    Input in;
+    if (file.getSniffed().getType() != KGMLSniffer.Type.ARCHIVE) {
+      in = new FileInput(dir, fn, file.getSniffed(), null, null);
+    } else if (archiveOutput) {
+      in = new ArchiveInput(dir, fn, null);
+    } else {
+      return true;
+    }
+    String contentHash = null;
+    if ((journal != null) || (claims != null) || (store != null)) {
+      // Also required by the translation
+      try {
+        contentHash = in.hash();
+      } catch (IOException e) {
+        return true;
+      }
+      file.setContentHash(contentHash);
+    }
+    return !getPendingFormats(in, contentHash, translators, new ArrayList<Change>()).isEmpty();
+  }
+  
+  /**
+   * @param fn name of an input file
+   * @return the name without extension (and without the extension of
+   * a compressed file or archive, e.g., '.xml.gz' or '.tar.gz').
+   */
+  private static String getBaseName(String fn) {
+    fn = fn.trim();
+    String lower = fn.toLowerCase();
+    if (lower.endsWith(".gz") || lower.endsWith(".zip")) {
+      fn = FileTools.removeFileExtension(fn);
+    }
+    return FileTools.removeFileExtension(fn);
+  }
+  
+  /**
+   * @param name path of a file in an archive (with '/' as separator)
+   * @return the path without the extension of the file.
+   */
+  private static String getEntryBaseName(String name) {
+    int pos = name.lastIndexOf('/') + 1;
+    return name.substring(0, pos) + getBaseName(name.substring(pos));
+  }
+  
+  /**
+   * @param in
+   * @return the remaining content of the given stream.
+   * @throws IOException
+   */
+  private static byte[] toByteArray(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * @param c may be {@code null}.
+   */
+  private static void closeQuietly(Closeable c) {
+    if (c != null) {
       try {
-        new File(myDir).mkdirs();
-      } catch (Exception e) {} // already existing...
+        c.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, e.getLocalizedMessage(), e);
+      }
     }
-    return myDir;
   }
   
   /**
-   * 
-   * @param args
+   * @param file path of an input file
+   * @return the path, relative to {@link #orgOutdir}, with '/' as separator.
    */
-  public static void main(String args[]) {
-    BatchKEGGtranslator batch = new BatchKEGGtranslator();
-    if (args != null && args.length > 0) {
-      batch.setOrgOutdir(args[0]);
-      if (args.length > 1) {
-        batch.setChangeOutdirTo(args[1]);
+  private String getRelativePath(String file) {
+    String root = appendSeparator(orgOutdir);
+    if (file.startsWith(root)) {
+      file = file.substring(root.length());
+    }
+    return file.replace('\\', '/');
+  }
+  
+  /**
+   * Counts the given change for the summary of the current batch run.
+   * @param change
+   */
+  private void count(Change change) {
+    changes.get(change).incrementAndGet();
+  }
+  
+  /**
+   * @param reasons
+   * @return a human readable description of the given changes.
+   */
+  private static String describe(Set<Change> reasons) {
+    StringBuilder sb = new StringBuilder();
+    for (Change change : reasons) {
+      if (sb.length() > 0) {
+        sb.append(", ");
       }
-      batch.parseDirAndSubDir();
-      return;
+      sb.append(describe(change));
     }
-    logger.info("Demo Mode:");
-    batch.setOrgOutdir(System.getProperty("user.home"));
-    batch.setChangeOutdirTo(System.getProperty("user.home"));
-    batch.parseDirAndSubDir();
+    return sb.toString();
   }
   
   /**
-   * 
-   * @return
+   * @param change
+   * @return a human readable description of the given change.
    */
-  public String getChangeOutdirTo() {
-    return changeOutdirTo;
+  private static String describe(Change change) {
+    switch (change) {
+      case NEW:
+        return "new";
+      case UNCHANGED:
+        return "unchanged";
+      case INPUT_CHANGED:
+        return "input changed";
+      case OPTIONS_CHANGED:
+        return "options changed";
+      case INCOMPLETE:
+        return "previous translation incomplete or failed";
+      case OUTPUT_EXISTS:
+        return "output exists";
+      case CLAIMED:
+        return "claimed by another process";
+      default:
+        return change.toString();
+    }
   }
   
   /**
-   * 
-   * @return
+   * Logs (and records in the {@link #journal}) how many translations have
+   * been performed or skipped for which reason in the current batch run.
    */
-  public KEGGtranslator<?> getConverter() {
-    return translator;
+  private void reportChanges() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<Change, AtomicInteger> e : changes.entrySet()) {
+      if (e.getValue().get() > 0) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(e.getValue().get()).append(' ').append(describe(e.getKey()));
+      }
+    }
+    if (sb.length() < 1) {
+      sb.append("no KGML files found");
+    }
+    if (timeouts.get() > 0) {
+      sb.append(MessageFormat.format(", {0} timed out", timeouts.get()));
+    }
+    String summary = MessageFormat.format("Batch translation of {0} finished: {1}.", orgOutdir, sb);
+    logger.info(summary);
+    if (journal != null) {
+      journal.comment(summary);
+    }
   }
   
   /**
-   * 
-   * @return
+   * Logs a summary of the {@link #statistics} and writes them to the
+   * {@link #metricsFile}, if set.
    */
-  public String getOrgOutdir() {
-    return orgOutdir;
+  private void reportStatistics() {
+    statistics.finish();
+    if (statistics.size() > 0) {
+      logger.info(statistics.getSummary());
+    }
+    if ((metricsFile != null) && (metricsFile.length() > 0)) {
+      try {
+        statistics.write(new File(metricsFile));
+      } catch (IOException e) {
+        logger.log(Level.WARNING, MessageFormat.format("Could not write metrics to {0}.", metricsFile), e);
+      }
+    }
   }
   
   /**
-   * 
-   * @return
+   * One input of a batch run, i.e., a file, a KGML document in an archive
+   * or (see {@link #archiveOutput}) a whole archive.
    */
-  public Format getOutFormat() {
-    return outFormat;
+  private abstract class Input {
+    /**
+     * Path of the input, used in messages.
+     */
+    final String name;
+    /**
+     * Output directory, with trailing separator.
+     */
+    final String outDir;
+    /**
+     * File name of the input, the names of the output files are derived from.
+     */
+    final String fn;
+    /**
+     * Path of the input, relative to {@link #orgOutdir}, as recorded in the journal.
+     */
+    final String path;
+    
+    /**
+     * @param name
+     * @param outDir
+     * @param fn
+     * @param path
+     */
+    Input(String name, String outDir, String fn, String path) {
+      this.name = name;
+      this.outDir = outDir;
+      this.fn = fn;
+      this.path = path;
+    }
+    
+    /**
+     * @return MD5 of the input.
+     * @throws IOException
+     */
+    abstract String hash() throws IOException;
+    
+    /**
+     * @return a reader for all pathways of this input.
+     * @throws Exception
+     */
+    abstract KGMLReader open() throws Exception;
+    
+    /**
+     * @param job the job that translates this input.
+     * @return the source of the pathways of this input in the
+     * {@link PathwayStore}, i.e., the {@link BatchJob#contentHash}, or
+     * {@code null} if unknown.
+     */
+    String getSource(BatchJob job) {
+      return job.contentHash;
+    }
+    
+    /**
+     * @param format
+     * @param translator the translator for the given format
+     * @param multipleFormats whether more than one format is written.
+     * @return the output file for the given format (if the input contains
+     * only one pathway).
+     */
+    String getOutputFile(Format format, KEGGtranslator<?> translator, boolean multipleFormats) {
+      return outDir + getBaseName(fn) + getOutputSuffix(format, translator, multipleFormats);
+    }
+    
+    /**
+     * Translates all pathways of this input.
+     * @param pending translators for all pending formats
+     * @param multipleFormats whether more than one format is written.
+     * @param job collects all written files and failures.
+     */
+    void translate(Map<Format, KEGGtranslator<?>> pending, boolean multipleFormats, BatchJob job) {
+      translatePathways(this, outDir + getBaseName(fn), pending, multipleFormats, job);
+    }
   }
   
   /**
-   * If called without a specific directory, uses
-   * the {@link #orgOutdir} as input directory.
+   * A (possibly compressed) KGML file.
    */
-  public void parseDirAndSubDir() {
-    parseDirAndSubDir(orgOutdir);
+  private class FileInput extends Input {
+    /**
+     *
+     */
+    private final File file;
+    /**
+     *
+     */
+    private final KGMLSniffer sniffed;
+    /**
+     * MD5 of the file or {@code null} if not yet computed.
+     */
+    private final String contentHash;
+    /**
+     * All pathways in the file, if already parsed, else {@code null}.
+     */
+    private List<Pathway> pathways;
+    
+    /**
+     * @param dir directory of the file, with trailing separator
+     * @param fn file name
+     * @param sniffed the type of the file.
+     * @param contentHash MD5 of the file, may be {@code null}.
+     * @param pathways all pathways in the file, may be {@code null}.
+     */
+    FileInput(String dir, String fn, KGMLSniffer sniffed, String contentHash, List<Pathway> pathways) {
+      super(dir + fn, getAndCreateOutDir(dir), fn, getRelativePath(dir + fn));
+      this.file = new File(dir + fn);
+      this.sniffed = sniffed;
+      this.contentHash = contentHash;
+      this.pathways = pathways;
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#hash()
+     */
+    @Override
+    String hash() throws IOException {
+      return (contentHash != null) ? contentHash : BatchJournal.hashContent(file);
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#open()
+     */
+    @Override
+    KGMLReader open() throws Exception {
+      if (pathways != null) {
+        // Parsed by the prefetcher, can only be translated once.
+        KGMLReader reader = new KGMLReader(pathways);
+        pathways = null;
+        return reader;
+      }
+      return sniffed.open(file);
+    }
   }
   
   /**
-   * Automatic batch translation of all KGML files in dir
-   * and all subdirectories.
-   * @param dir
+   * A KGML document in an archive. Its output files are written to a
+   * directory, named after the archive.
    */
-  private void parseDirAndSubDir(String dir) {
-    KeggInfoManagement manager = Translator.getManager();
+  private class EntryInput extends Input {
+    /**
+     * The (remaining) content of the document.
+     */
+    private final InputStream content;
+    /**
+     * MD5 of the document or {@code null}.
+     */
+    private final String contentHash;
+    /**
+     * Path of the document in the archive.
+     */
+    private final String entry;
     
-    if (!dir.endsWith("/") && !dir.endsWith("\\")) {
-      if (dir.contains("\\")) {
-        dir+="\\";
-      } else {
-        dir +="/";
+    /**
+     * @param dir directory of the archive, with trailing separator
+     * @param fn file name of the archive
+     * @param entry path of the document in the archive
+     * @param content the content of the document, which is read only once.
+     * @param contentHash MD5 of the document, if required.
+     */
+    EntryInput(String dir, String fn, String entry, InputStream content, String contentHash) {
+      super(dir + fn + KGMLArchive.ENTRY_SEPARATOR + entry,
+        getAndCreateOutDir(dir) + getBaseName(fn) + File.separator + entry.substring(0, entry.lastIndexOf('/') + 1).replace('/', File.separatorChar),
+        entry.substring(entry.lastIndexOf('/') + 1), getRelativePath(dir + fn) + KGMLArchive.ENTRY_SEPARATOR + entry);
+      this.content = content;
+      this.contentHash = contentHash;
+      this.entry = entry;
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#hash()
+     */
+    @Override
+    String hash() throws IOException {
+      return contentHash;
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#getSource(de.zbit.kegg.io.BatchJob)
+     */
+    @Override
+    String getSource(BatchJob job) {
+      if (contentHash != null) {
+        return contentHash;
       }
+      // Translated as part of an archive (see ArchiveInput).
+      return (job.contentHash != null) ? job.contentHash + KGMLArchive.ENTRY_SEPARATOR + entry : null;
     }
-    logger.info("Parsing directory " + dir);
     
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#open()
+     */
+    @Override
+    KGMLReader open() throws Exception {
+      return new KGMLReader(content, new File(name).toURI().toString());
+    }
+  }
+  
+  /**
+   * An archive, whose KGML documents are translated as a whole. The output
+   * files of every format are written to one zip archive (see
+   * {@link BatchArchiveWriter}), named after the input archive. Hence, the
+   * archive is also recorded in the journal and claimed as a whole.
+   */
+  private class ArchiveInput extends Input {
+    /**
+     *
+     */
+    private final File file;
+    /**
+     * MD5 of the archive or {@code null} if not yet computed.
+     */
+    private final String contentHash;
     
-    if (translator == null) {
-      translator = getTranslator(outFormat, manager);
+    /**
+     * @param dir directory of the archive, with trailing separator
+     * @param fn file name of the archive
+     * @param contentHash MD5 of the archive, may be {@code null}.
+     */
+    ArchiveInput(String dir, String fn, String contentHash) {
+      super(dir + fn, getAndCreateOutDir(dir), fn, getRelativePath(dir + fn));
+      this.file = new File(dir + fn);
+      this.contentHash = contentHash;
     }
-    String fileExtension = getFileExtension(translator);
     
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#hash()
+     */
+    @Override
+    String hash() throws IOException {
+      return (contentHash != null) ? contentHash : BatchJournal.hashContent(file);
+    }
     
-    DirectoryParser dp = new DirectoryParser(dir);
-    while (dp.hasNext()) {
-      String fn = dp.next();
-      File inFile = new File(dir+fn);
-      
-      //if (fn.equals("gml")|| fn.equals("metabolic")) continue;
-      
-      if (inFile.isDirectory()) {
-        inFile = null; // There are errors when parsing large dirs "too many open files".
-        parseDirAndSubDir(dir + fn);
-        
-      } else {
-        
-        // Maybe we have a serialized pathway
-        // (This is just used by us...)
-        Object loaded = null;
-        try {
-          loaded = SerializableTools.loadObjectAutoDetectZIP(inFile);
-          if (!(loaded instanceof Pathway)) {
-            loaded = null;
-          }
-        } catch (Exception e1) {}
-        
-        if (loaded!=null || SBFileFilter.isKGML(inFile)) {
-          // Test if outFile already exists. Assumes: 1 Pathway per file. (should be true for all files... not crucial if assumption is wrong)
-          String myDir = getAndCreateOutDir(dir);
-          String outFileTemp = myDir + FileTools.removeFileExtension(fn) + fileExtension;
-          if (new File(outFileTemp).exists()) {
-            logger.info("Skipping '"+inFile+"' file already exists.");
-            continue; // Skip already converted files.
-          } else {
-            logger.info("Converting '"+inFile+"' ...");
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#open()
+     */
+    @Override
+    KGMLReader open() throws Exception {
+      return new KGMLArchive(file).openAll();
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#getOutputFile(de.zbit.kegg.io.KEGGtranslatorIOOptions.Format, de.zbit.kegg.io.KEGGtranslator, boolean)
+     */
+    @Override
+    String getOutputFile(Format format, KEGGtranslator<?> translator, boolean multipleFormats) {
+      return outDir + getBaseName(fn) + (multipleFormats ? "_" + format.toString() : "") + ".zip";
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.BatchKEGGtranslator.Input#translate(java.util.Map, boolean, de.zbit.kegg.io.BatchJob)
+     */
+    @Override
+    void translate(Map<Format, KEGGtranslator<?>> pending, boolean multipleFormats, BatchJob job) {
+      job.archives = new EnumMap<Format, BatchArchiveWriter>(Format.class);
+      KGMLArchive archive = null;
+      try {
+        for (Map.Entry<Format, KEGGtranslator<?>> e : pending.entrySet()) {
+          job.archives.put(e.getKey(), new BatchArchiveWriter(new File(getOutputFile(e.getKey(), e.getValue(), multipleFormats))));
+        }
+        archive = new KGMLArchive(file);
+        while (archive.next()) {
+          InputStream content = archive.getInputStream();
+          if (KGMLSniffer.isKGML(KGMLSniffer.peekHeader(content))) {
+            EntryInput entry = new EntryInput(appendSeparator(file.getParent()), fn, archive.getName(), content, null);
+            translatePathways(entry, getEntryBaseName(archive.getName()), pending, multipleFormats, job);
           }
-          
-          // Parse and convert all Pathways in XML file.
-          List<Pathway> pw=null;
-          if (loaded!=null) {
-            pw = new LinkedList<Pathway>();
-            pw.add((Pathway) loaded);
-          } else {
-            try {
-              pw = de.zbit.kegg.parser.KeggParser.parse(dir+fn);
-            } catch (Throwable t) {t.printStackTrace();} // Show must go on...
+        }
+        for (Map.Entry<Format, BatchArchiveWriter> e : job.archives.entrySet()) {
+          try {
+            if (e.getValue().commit()) {
+              // Record the archive, not every file in it.
+              job.outputs.get(e.getKey()).clear();
+              job.outputs.get(e.getKey()).add(e.getValue().getFile().getPath());
+            } else {
+              job.failed.add(e.getKey()); // No pathway in the archive.
+            }
+          } catch (IOException exc) {
+            logger.log(Level.SEVERE, MessageFormat.format("Could not write {0}.", e.getValue().getFile()), exc);
+            job.failed(e.getKey(), exc);
           }
-          if (pw == null || pw.size()<1) {
-            continue;
+        }
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, MessageFormat.format("Could not read archive {0}.", file), e);
+        job.failed.addAll(pending.keySet());
+      } finally {
+        for (BatchArchiveWriter writer : job.archives.values()) {
+          writer.close(); // Discards all archives that have not been committed.
+        }
+        closeQuietly(archive);
+      }
+    }
+  }
+  
+  /**
+   * Translates one pathway to all formats. The pathway is preprocessed
+   * only once for all translators that share the same
+   * {@link AbstractKEGGtranslator#getPreprocessingKey()} and every
+   * translator receives its own copy of this preprocessed pathway (see
+   * {@link PreprocessedPathway}). If a {@link #store} is available,
+   * preprocessed pathways are taken from and added to it.
+   * @param p parsed, not yet preprocessed pathway (is modified, if only
+   * one preprocessing is required).
+   * @param source the source of the pathway in the {@link #store} or {@code null}.
+   * @param ordinal position of the pathway in its input, starting with zero.
+   * @param last whether it is the last pathway of its input.
+   * @param outFileBase output file name, without format suffix and extension.
+   * @param translators translators for all pending formats. Must be
+   * {@link AbstractKEGGtranslator}s.
+   * @param multipleFormats whether more than one format is written.
+   * @param job collects all written files and failures.
+   */
+  private void translateToFormats(Pathway p, String source, int ordinal, boolean last, String outFileBase,
+    Map<Format, KEGGtranslator<?>> translators, boolean multipleFormats, BatchJob job) {
+    // Group all formats that require the same preprocessing
+    Map<String, List<Format>> groups = new LinkedHashMap<String, List<Format>>();
+    for (Map.Entry<Format, KEGGtranslator<?>> e : translators.entrySet()) {
+      String key = ((AbstractKEGGtranslator<?>) e.getValue()).getPreprocessingKey();
+      List<Format> group = groups.get(key);
+      if (group == null) {
+        group = new ArrayList<Format>();
+        groups.put(key, group);
+      }
+      group.add(e.getKey());
+    }
+    
+    String name = p.getName();
+    for (Map.Entry<String, List<Format>> g : groups.entrySet()) {
+      List<Format> group = g.getValue();
+      // Either a pathway that has just been preprocessed or null, if it has been stored before.
+      Pathway preprocessed = null;
+      // Required for the store and for every further format of the group.
+      PreprocessedPathway shared = null;
+      // Preprocessing time is attributed to the first format of the group.
+      long start = System.currentTimeMillis();
+      AbstractKEGGtranslator<?> preprocessor = (AbstractKEGGtranslator<?>) translators.get(group.get(0));
+      try {
+        if (source != null) {
+          // Stored by an interrupted run or for other formats.
+          shared = store.get(source, g.getKey(), ordinal);
+        }
+        if (shared == null) {
+          preprocessed = (groups.size() > 1) ? PathwayCodec.copyOf(p) : p;
+          long preprocessStart = System.currentTimeMillis();
+          preprocessor.preProcessPathway(preprocessed);
+          job.record.preprocess += System.currentTimeMillis() - preprocessStart;
+          job.record.prefetch += preprocessor.getLastPrefetchTime();
+          if ((store != null) || (group.size() > 1)) {
+            shared = preprocessor.asPreprocessed(preprocessed);
           }
-          
-          boolean appendNumber=(pw.size()>1);
-          for (int i = 0; i<pw.size(); i++) {
-            String outFile = myDir + fn.trim().substring(0, fn.trim().length()-4) + (appendNumber?"-"+(i+1):"") + fileExtension;
-            if (new File(outFile).exists())
-            {
-              continue; // Skip already converted files.
-            }
-            
-            // XXX: Main Part
+          if (store != null) {
             try {
-              if (KEGGtranslatorCommandLineOnlyOptions.CREATE_JPG.getValue(prefs)) {
-                // Translate, but create image from translated document
-                Object translateDoc = translator.translate(pw.get(i));
-                writeAsJPG(translateDoc, pw.get(i), outFile, outFormat);
-                
-              } else {
-                // Translate to output file
-                translator.translate(pw.get(i), outFile);
-              }
-              
-            } catch (Exception e) {
-              e.printStackTrace();
-            }
-            
-            if (translator.isLastFileWasOverwritten()) { // Datei war oben noch nicht da, spaeter aber schon => ein anderer prozess macht das selbe bereits.
-              logger.warning("It looks like another instance is processing the same files. Going to next subfolder.");
-              return; // Function is recursive.
+              store.put(shared, source, ordinal, last);
+            } catch (IOException e) {
+              logger.log(Level.WARNING, MessageFormat.format("Could not store pathway {0} in {1}.", name, store.getFile()), e);
             }
           }
-          
-          
         }
+      } catch (Exception e) {
+        logger.log(Level.SEVERE, MessageFormat.format("Could not preprocess pathway {0} for {1}.", name, group), e);
+        for (Format format : group) {
+          job.failed(format, e);
+        }
+        continue;
+      }
+      
+      for (int i = 0; i < group.size(); i++) {
+        Format format = group.get(i);
+        KEGGtranslator<?> translator = translators.get(format);
+        String outFile = outFileBase + getOutputSuffix(format, translator, multipleFormats);
+        try {
+          // The last format of the group may modify the preprocessed pathway itself.
+          Pathway copy = ((preprocessed != null) && (i == group.size() - 1)) ? preprocessed : shared.getPathway();
+          job.written(format, translateAndWrite(translator, copy, outFile, format, true, job), start);
+        } catch (Exception e) {
+          logger.log(Level.SEVERE, MessageFormat.format("Could not translate pathway {0} to {1}.", name, format), e);
+          job.failed(format, e);
+        }
+        start = System.currentTimeMillis();
       }
     }
-    
-    // Remember already queried objects (save cache)
-    Translator.saveCache();
+  }
+  
+  /**
+   * Translates the given pathway and writes the result (or an image of
+   * the result if {@link KEGGtranslatorCommandLineOnlyOptions#CREATE_JPG}
+   * is set). All files are first written to a temporary file (see
+   * {@link BatchJournal#getTemporaryFile(File)}), which is then renamed.
+   * Thus, an interrupted translation never leaves an incomplete output file.
+   * @param translator
+   * @param p
+   * @param outFile
+   * @param format
+   * @param preprocessed if {@code true}, the pathway has already been
+   * preprocessed and the translator must be an {@link AbstractKEGGtranslator}.
+   * @param job the time spent in each stage is added to its record.
+   * @return all files that have been written.
+   * @throws Exception
+   */
+  private List<String> translateAndWrite(KEGGtranslator<?> translator, Pathway p, String outFile, Format format, boolean preprocessed, BatchJob job) throws Exception {
+    List<String> written = new ArrayList<String>(2);
+    if (KEGGtranslatorCommandLineOnlyOptions.CREATE_JPG.getValue(prefs)) {
+      // Translate, but create image from translated document
+      Object translateDoc = translate(translator, p, preprocessed, job);
+      String jpgFile = FileTools.removeFileExtension(outFile) + ".jpg";
+      File tmp = getTemporaryFile(jpgFile, format, job);
+      long start = System.currentTimeMillis();
+      boolean success = writeAsJPG(translateDoc, p, tmp.getPath(), format);
+      job.record.write += System.currentTimeMillis() - start;
+      if (!success) {
+        tmp.delete();
+        throw new IOException(MessageFormat.format("Could not write {0}.", jpgFile));
+      }
+      commit(tmp, jpgFile, format, job, written);
+      if (format == Format.SBML_CORE_AND_QUAL) {
+        commit(new File(FileTools.removeFileExtension(tmp.getPath()) + QUAL_JPG_SUFFIX),
+          FileTools.removeFileExtension(jpgFile) + QUAL_JPG_SUFFIX, format, job, written);
+      }
+      
+    } else {
+      // Translate to output file
+      File tmp = getTemporaryFile(outFile, format, job);
+      boolean success;
+      if (translator instanceof AbstractKEGGtranslator) {
+        Object doc = translate(translator, p, preprocessed, job);
+        long start = System.currentTimeMillis();
+        success = (doc != null) && writeToFile((AbstractKEGGtranslator<?>) translator, doc, tmp.getPath());
+        job.record.write += System.currentTimeMillis() - start;
+      } else {
+        long start = System.currentTimeMillis();
+        success = translator.translate(p, tmp.getPath());
+        job.record.translate += System.currentTimeMillis() - start;
+      }
+      if (!success) {
+        tmp.delete();
+        throw new IOException(MessageFormat.format("Could not write {0}.", outFile));
+      }
+      commit(tmp, outFile, format, job, written);
+    }
+    return written;
+  }
+  
+  /**
+   * Translates (and preprocesses, if required) the given pathway and
+   * measures the time of each stage.
+   * @param translator
+   * @param p
+   * @param preprocessed if {@code true}, the pathway has already been
+   * preprocessed and the translator must be an {@link AbstractKEGGtranslator}.
+   * @param job the time spent in each stage is added to its record.
+   * @return the translated document.
+   */
+  private static Object translate(KEGGtranslator<?> translator, Pathway p, boolean preprocessed, BatchJob job) {
+    long start = System.currentTimeMillis();
+    if (!(translator instanceof AbstractKEGGtranslator)) {
+      Object doc = translator.translate(p);
+      job.record.translate += System.currentTimeMillis() - start;
+      return doc;
+    }
+    AbstractKEGGtranslator<?> t = (AbstractKEGGtranslator<?>) translator;
+    if (!preprocessed) {
+      t.preProcessPathway(p);
+      job.record.preprocess += System.currentTimeMillis() - start;
+      job.record.prefetch += t.getLastPrefetchTime();
+      start = System.currentTimeMillis();
+    }
+    Object doc = t.translatePreprocessed(p);
+    job.record.translate += System.currentTimeMillis() - start;
+    return doc;
+  }
+  
+  /**
+   * Writes a document, created by the given translator.
+   * @param translator
+   * @param doc the result of {@link AbstractKEGGtranslator#translatePreprocessed(Pathway)}
+   * of the same translator.
+   * @param outFile
+   * @return true if and only if everything went fine.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> boolean writeToFile(AbstractKEGGtranslator<T> translator, Object doc, String outFile) {
+    return translator.writeToFile((T) doc, outFile);
+  }
+  
+  /**
+   * @param outFile
+   * @param format
+   * @param job
+   * @return a temporary file for the given output file, in the output
+   * directory or the directory of the archive to write.
+   */
+  private static File getTemporaryFile(String outFile, Format format, BatchJob job) {
+    BatchArchiveWriter archive = (job.archives != null) ? job.archives.get(format) : null;
+    return (archive != null) ? archive.createTemporaryFile(outFile) : BatchJournal.getTemporaryFile(new File(outFile));
+  }
+  
+  /**
+   * Moves a temporary file to its final destination, i.e., the output
+   * directory or the archive of the given format (see {@link BatchJob#archives}).
+   * @param tmp
+   * @param outFile the final file or its name in the archive.
+   * @param format
+   * @param job the size of the file is added to its record.
+   * @param written the final file is appended to this list.
+   * @throws IOException if the file could not be moved.
+   */
+  private static void commit(File tmp, String outFile, Format format, BatchJob job, List<String> written) throws IOException {
+    job.record.bytes += tmp.length();
+    BatchArchiveWriter archive = (job.archives != null) ? job.archives.get(format) : null;
+    if (archive != null) {
+      written.add(archive.add(outFile, tmp));
+      return;
+    }
+    if (!BatchJournal.commit(tmp, new File(outFile))) {
+      throw new IOException(MessageFormat.format("Could not move {0} to {1}.", tmp, outFile));
+    }
+    written.add(outFile);
   }
   
   /**
@@ -323,7 +1824,7 @@ public class BatchKEGGtranslator {
         
         // Write qual_graph immediately
         Object myGraph2 = new SBML2GraphML(true).createGraph((org.sbml.jsbml.SBMLDocument) translatedDoc);
-        writer.writeToFile((y.view.Graph2D)myGraph2, FileTools.removeFileExtension(outFile) + "SBML_QUAL.jpg");
+        writer.writeToFile((y.view.Graph2D)myGraph2, FileTools.removeFileExtension(outFile) + QUAL_JPG_SUFFIX);
         break;
         
       default:
@@ -442,6 +1943,129 @@ public class BatchKEGGtranslator {
     this.translator = translator;
   }
   
+  /**
+   * @param numberOfThreads number of files to translate in parallel.
+   * Values smaller than two translate all files sequentially.
+   */
+  public void setNumberOfThreads(int numberOfThreads) {
+    this.numberOfThreads = numberOfThreads;
+  }
+  
+  /**
+   * Translate only the files of one shard, e.g., to divide a directory
+   * between multiple processes. Each file belongs to exactly one shard,
+   * determined by its path relative to {@link #orgOutdir}.
+   * @param shardIndex the shard to translate (1 to {@code shardCount}).
+   * @param shardCount the number of shards or zero to translate all files.
+   */
+  public void setShard(int shardIndex, int shardCount) {
+    this.shard = new BatchShard(shardIndex, shardCount);
+  }
+  
+  /**
+   * @param shard the {@link KEGGtranslatorCommandLineOnlyOptions#SHARD} option.
+   * @return the given shard or {@link BatchShard#ALL}, if the option is
+   * empty or invalid.
+   */
+  private static BatchShard parseShard(String shard) {
+    try {
+      return BatchShard.parse(shard);
+    } catch (IllegalArgumentException e) {
+      logger.warning(MessageFormat.format("{0} Translating all files.", e.getLocalizedMessage()));
+      return BatchShard.ALL;
+    }
+  }
+  
+  /**
+   * @param includes comma separated glob patterns of files to translate
+   * (e.g., {@code *.xml}). Empty for all files.
+   */
+  public void setIncludes(String includes) {
+    this.includes = includes;
+  }
+  
+  /**
+   * @param excludes comma separated glob patterns of files and
+   * directories to skip.
+   */
+  public void setExcludes(String excludes) {
+    this.excludes = excludes;
+  }
+  
+  /**
+   * @param maxDepth maximum depth of subdirectories to translate (zero
+   * for only the input directory). Negative for no limit.
+   */
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+  
+  /**
+   * @param memoryBudget percentage of the maximum heap that may be used by
+   * all files, that are translated in parallel.
+   */
+  public void setMemoryBudget(int memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+  
+  /**
+   * @param timeout maximum time in seconds to translate one pathway (per
+   * format and for preprocessing), zero for no limit. Translations that
+   * exceed the timeout are recorded as such and skipped.
+   */
+  public void setTimeout(int timeout) {
+    this.timeout = timeout;
+  }
+  
+  /**
+   * @param metricsFile file to write the metrics of every translated file
+   * to, as JSON if the name ends with '.json', else as CSV. Empty or
+   * {@code null} for none. A summary is always logged.
+   */
+  public void setMetricsFile(String metricsFile) {
+    this.metricsFile = metricsFile;
+  }
+  
+  /**
+   * @param cacheFlushInterval interval in seconds to write the KEGG cache
+   * in the background, zero to write it after each directory instead.
+   */
+  public void setCacheFlushInterval(int cacheFlushInterval) {
+    this.cacheFlushInterval = cacheFlushInterval;
+  }
+  
+  /**
+   * @param prefetchWindow number of upcoming files, whose KEGG IDs are
+   * fetched at once, zero to fetch the IDs of every pathway separately.
+   */
+  public void setPrefetchWindow(int prefetchWindow) {
+    this.prefetchWindow = prefetchWindow;
+  }
+  
+  /**
+   * @param claimLease lease time of claim files in minutes or zero
+   * to disable claim files (see {@link BatchClaims}).
+   */
+  public void setClaimLease(int claimLease) {
+    this.claimLease = claimLease;
+  }
+  
+  /**
+   * @param archiveOutput if {@code true}, the KGML documents in an archive
+   * are written to one zip archive per format.
+   */
+  public void setArchiveOutput(boolean archiveOutput) {
+    this.archiveOutput = archiveOutput;
+  }
+  
+  /**
+   * @param pathwayStore file of a {@link PathwayStore} for preprocessed
+   * pathways. Empty or {@code null} for none.
+   */
+  public void setPathwayStore(String pathwayStore) {
+    this.pathwayStore = pathwayStore;
+  }
+  
   /**
    * 
    * @param orgOutdir
@@ -450,6 +2074,13 @@ public class BatchKEGGtranslator {
     this.orgOutdir = orgOutdir;
   }
   
+  /**
+   * @param additionalFormats further output formats (see {@link #additionalFormats}).
+   */
+  public void setAdditionalFormats(List<Format> additionalFormats) {
+    this.additionalFormats = additionalFormats == null ? new ArrayList<Format>() : additionalFormats;
+  }
+  
   /**
    * @param outFormat - "graphml" or "sbml".
    */
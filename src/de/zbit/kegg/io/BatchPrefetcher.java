@@ -0,0 +1,564 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import de.zbit.kegg.KeggTools;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.cache.CompactKeggInfos;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+
+/**
+ * Prefetches the KEGG information of many files at once in batch mode.
+ * {@link AbstractKEGGtranslator#preProcessPathway(Pathway)} fetches the
+ * information of every pathway separately, although pathways of one
+ * organism share most of their IDs. This iterator reads a window of
+ * upcoming files in a background thread, parses them and fetches the
+ * union of their IDs with one call to
+ * {@link KeggInfoManagement#precacheIDs(String[])}, i.e., in as few
+ * queries as possible. The files of a window are returned only after
+ * their IDs have been fetched, while the next window is already being
+ * prefetched.
+ *
+ * <p>The IDs are the same as those of
+ * {@link KeggTools#preFetchInformation(Pathway, KeggInfoManagement, boolean, de.zbit.util.progressbar.AbstractProgressBar)},
+ * including the compounds and enzymes of all reactions if any translator
+ * autocompletes reactions. What has been learned about a file, i.e., its
+ * type, its content hash and its parsed pathways, is handed to the
+ * translation of the file (see {@link #take(File)}), such that it is not
+ * read again. The parsed pathways are only softly referenced, i.e., the
+ * file is parsed again if the memory is required otherwise.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchPrefetcher implements Iterator<File>, Runnable {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BatchPrefetcher.class.getName());
+  
+  /**
+   * Decides which files will be translated, i.e., are worth prefetching.
+   */
+  public static interface Filter {
+    /**
+     * @param file a file that contains at least one {@link Pathway}. The
+     * filter may set its {@link Prefetched#setContentHash(String)}.
+     * @return {@code true} if the file will be translated.
+     */
+    public boolean accept(Prefetched file);
+  }
+  
+  /**
+   * What the prefetcher has learned about one file.
+   */
+  public static class Prefetched {
+    
+    /**
+     *
+     */
+    private final File file;
+    
+    /**
+     * The type of {@link #file}.
+     */
+    private final KGMLSniffer sniffed;
+    
+    /**
+     * MD5 of {@link #file} or {@code null} if not computed.
+     */
+    private volatile String contentHash = null;
+    
+    /**
+     * All pathways in {@link #file} or {@code null} if not parsed.
+     */
+    private volatile SoftReference<List<Pathway>> pathways = null;
+    
+    /**
+     * @param file
+     * @param sniffed the type of the given file.
+     */
+    Prefetched(File file, KGMLSniffer sniffed) {
+      this.file = file;
+      this.sniffed = sniffed;
+    }
+    
+    /**
+     * @return the file.
+     */
+    public File getFile() {
+      return file;
+    }
+    
+    /**
+     * @return the type of the file.
+     */
+    public KGMLSniffer getSniffed() {
+      return sniffed;
+    }
+    
+    /**
+     * @return MD5 of the file or {@code null} if not computed.
+     */
+    public String getContentHash() {
+      return contentHash;
+    }
+    
+    /**
+     * @param contentHash MD5 of the file.
+     */
+    public void setContentHash(String contentHash) {
+      this.contentHash = contentHash;
+    }
+    
+    /**
+     * @return all pathways in the file or {@code null} if the file has not
+     * been parsed or the pathways have been reclaimed by the garbage
+     * collector.
+     */
+    public List<Pathway> getPathways() {
+      SoftReference<List<Pathway>> ref = pathways;
+      return (ref != null) ? ref.get() : null;
+    }
+    
+    /**
+     * @param pathways all pathways in the file.
+     */
+    void setPathways(List<Pathway> pathways) {
+      this.pathways = new SoftReference<List<Pathway>>(pathways);
+    }
+  }
+  
+  /**
+   * Marks the end of {@link #ready}.
+   */
+  private static final File END = new File("");
+  
+  /**
+   * Separator of the reactants in a KEGG equation.
+   */
+  private static final String REACTANT_SEPARATOR = Pattern.quote(" + ");
+  
+  /**
+   * The files to translate.
+   */
+  private final Iterator<File> files;
+  
+  /**
+   * The cache to prefetch the information into.
+   */
+  private final KeggInfoManagement manager;
+  
+  /**
+   * Number of files, whose IDs are fetched at once.
+   */
+  private final int window;
+  
+  /**
+   * If {@code true}, the compounds and enzymes of all reactions are
+   * fetched in a second round.
+   */
+  private final boolean reactions;
+  
+  /**
+   * May be {@code null}.
+   */
+  private final Filter filter;
+  
+  /**
+   * Files, whose IDs have been fetched, followed by {@link #END}.
+   */
+  private final BlockingQueue<File> ready;
+  
+  /**
+   * What has been learned about every file, that has been returned by
+   * {@link #next()}, but not yet been taken by {@link #take(File)}.
+   */
+  private final Map<File, Prefetched> prefetched = new ConcurrentHashMap<File, Prefetched>();
+  
+  /**
+   * The next file to return or {@code null} if not yet taken from {@link #ready}.
+   */
+  private File next = null;
+  
+  /**
+   *
+   */
+  private final Thread thread;
+  
+  /**
+   *
+   */
+  private volatile boolean closed = false;
+  
+  /**
+   * Number of prefetched files, IDs and calls to the cache.
+   */
+  private int prefetchedFiles = 0, prefetchedIDs = 0, rounds = 0;
+  
+  /**
+   * Starts prefetching.
+   * @param files the files to translate.
+   * @param manager the cache of all translators.
+   * @param window number of files, whose IDs are fetched at once.
+   * @param reactions whether the compounds and enzymes of all reactions
+   * should be fetched, too (see {@link AbstractKEGGtranslator#isAutocompleteReactions()}).
+   * @param filter decides which files are prefetched, may be {@code null}
+   * for all files that contain a {@link Pathway}.
+   */
+  public BatchPrefetcher(Iterator<File> files, KeggInfoManagement manager, int window, boolean reactions, Filter filter) {
+    this.files = files;
+    this.manager = manager;
+    this.window = Math.max(1, window);
+    this.reactions = reactions;
+    this.filter = filter;
+    // The current window, the next one and the end marker.
+    ready = new ArrayBlockingQueue<File>(2 * this.window + 1);
+    
+    thread = new Thread(this, "KEGG prefetcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+  
+  /**
+   * @param translators
+   * @return {@code true} if any of the given translators fetches
+   * information from KEGG.
+   */
+  public static boolean isPrefetching(Collection<? extends KEGGtranslator<?>> translators) {
+    for (KEGGtranslator<?> translator : translators) {
+      if ((translator instanceof AbstractKEGGtranslator) && ((AbstractKEGGtranslator<?>) translator).isRetrieveKeggAnnots()) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * @param translators
+   * @return {@code true} if any of the given translators autocompletes
+   * reactions, i.e., fetches all reactants and enzymes of all reactions.
+   */
+  public static boolean isCompletingReactions(Collection<? extends KEGGtranslator<?>> translators) {
+    for (KEGGtranslator<?> translator : translators) {
+      if (translator instanceof AbstractKEGGtranslator) {
+        AbstractKEGGtranslator<?> t = (AbstractKEGGtranslator<?>) translator;
+        if (t.isRetrieveKeggAnnots() && t.considerReactions() && t.isAutocompleteReactions()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    List<File> batch = new ArrayList<File>(window);
+    Set<String> ids = new LinkedHashSet<String>();
+    Set<String> reactionIDs = new LinkedHashSet<String>();
+    int pathways = 0;
+    try {
+      while (!closed && files.hasNext()) {
+        File file = files.next();
+        batch.add(file);
+        if (collectIDs(file, ids, reactionIDs)) {
+          pathways++;
+        }
+        if ((batch.size() >= window) || !files.hasNext()) {
+          prefetch(ids, reactionIDs, pathways);
+          for (File f : batch) {
+            ready.put(f);
+          }
+          batch.clear();
+          ids.clear();
+          reactionIDs.clear();
+          pathways = 0;
+        }
+      }
+    } catch (InterruptedException e) {
+      return;
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Prefetching KEGG information failed.", t);
+    }
+    
+    // Return all remaining files without prefetching them.
+    try {
+      for (File f : batch) {
+        ready.put(f);
+      }
+      while (!closed && files.hasNext()) {
+        ready.put(files.next());
+      }
+    } catch (InterruptedException e) {
+      return;
+    } catch (Throwable t) {
+      logger.log(Level.SEVERE, "Could not list all input files.", t);
+    }
+    try {
+      ready.put(END);
+    } catch (InterruptedException e) {
+      // Closed
+    }
+  }
+  
+  /**
+   * Parses the given file and collects the IDs of all pathways in it.
+   * @param file
+   * @param ids collects all IDs to fetch in the first round.
+   * @param reactionIDs collects the IDs of all reactions.
+   * @return {@code true} if the file contains at least one pathway that
+   * is accepted by the {@link #filter}.
+   */
+  private boolean collectIDs(File file, Collection<String> ids, Collection<String> reactionIDs) {
+    try {
+      Prefetched info = new Prefetched(file, KGMLSniffer.sniff(file));
+      prefetched.put(file, info);
+      if (!info.sniffed.isPathway() || ((filter != null) && !filter.accept(info))) {
+        return false;
+      }
+      KGMLReader reader = info.sniffed.open(file);
+      // The documents of an archive are read again one by one.
+      List<Pathway> pathways = (info.sniffed.getType() != KGMLSniffer.Type.ARCHIVE) ? new ArrayList<Pathway>(1) : null;
+      boolean any = false;
+      try {
+        Pathway p;
+        while ((p = reader.read()) != null) {
+          collectIDs(p, ids, reactionIDs);
+          if (pathways != null) {
+            pathways.add(p);
+          }
+          any = true;
+        }
+      } finally {
+        reader.close();
+      }
+      if (any && (pathways != null)) {
+        info.setPathways(pathways);
+      }
+      return any;
+    } catch (Throwable t) {
+      // The translation reports the error.
+      logger.log(Level.FINE, MessageFormat.format("Could not prefetch {0}.", file), t);
+      return false;
+    }
+  }
+  
+  /**
+   * Collects the IDs, fetched in the first round of
+   * {@link KeggTools#preFetchInformation(Pathway, KeggInfoManagement, boolean, de.zbit.util.progressbar.AbstractProgressBar)}.
+   * @param p
+   * @param ids collects the IDs of the organism, the pathway, all entries
+   * and all reactions.
+   * @param reactionIDs collects the IDs of all reactions.
+   */
+  public static void collectIDs(Pathway p, Collection<String> ids, Collection<String> reactionIDs) {
+    if (p.getOrg() != null) {
+      ids.add("gn:" + p.getOrg());
+    }
+    if (p.getName() != null) {
+      ids.add(p.getName());
+    }
+    for (Entry entry : p.getEntries()) {
+      if (entry.getName() == null) {
+        continue;
+      }
+      for (String id : entry.getName().split(" ")) {
+        if (id.contains(":")) {
+          ids.add(id);
+        }
+      }
+    }
+    for (Reaction reaction : p.getReactions()) {
+      if (reaction.getName() == null) {
+        continue;
+      }
+      for (String id : reaction.getName().split(" ")) {
+        if (id.length() > 0) {
+          ids.add(id);
+          reactionIDs.add(id);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Collects the reactants and enzymes of the given (already fetched)
+   * reactions, like the second round of
+   * {@link KeggTools#preFetchInformation(Pathway, KeggInfoManagement, boolean, de.zbit.util.progressbar.AbstractProgressBar)}.
+   * @param reactionIDs
+   * @param manager
+   * @param ids collects the IDs of all reactants and enzymes.
+   */
+  static void collectReactantIDs(Collection<String> reactionIDs, KeggInfoManagement manager, Collection<String> ids) {
+    for (String id : reactionIDs) {
+      KeggInfos infos = KeggInfos.get(id, manager);
+      if (infos.getEquation() != null) {
+        for (String reactant : infos.getEquation().replace("<=>", " + ").trim().split(REACTANT_SEPARATOR)) {
+          reactant = KeggTools.removeReactantPrefixAndSuffix(reactant.trim());
+          if (reactant.length() > 0) {
+            ids.add(reactant.contains(":") ? reactant : KeggInfos.appendPrefix(reactant));
+          }
+        }
+      }
+      String[] enzymes = CompactKeggInfos.getEnzymes(infos);
+      if (enzymes != null) {
+        for (String ec : enzymes) {
+          if (ec.length() > 0) {
+            ids.add("EC:" + ec);
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * Fetches all given IDs (and the reactants and enzymes of the given
+   * reactions, if {@link #reactions} is set).
+   * @param ids
+   * @param reactionIDs
+   * @param pathways number of files, the IDs have been collected from.
+   */
+  private void prefetch(Set<String> ids, Set<String> reactionIDs, int pathways) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    int n = ids.size();
+    try {
+      manager.precacheIDs(ids.toArray(new String[ids.size()]));
+      rounds++;
+      if (reactions && !reactionIDs.isEmpty()) {
+        Set<String> reactants = new LinkedHashSet<String>();
+        collectReactantIDs(reactionIDs, manager, reactants);
+        reactants.removeAll(ids);
+        if (!reactants.isEmpty()) {
+          manager.precacheIDs(reactants.toArray(new String[reactants.size()]));
+          rounds++;
+          n += reactants.size();
+        }
+      }
+    } catch (RuntimeException e) {
+      // The translators fetch the missing information themselves.
+      logger.log(Level.WARNING, "Could not prefetch KEGG information.", e);
+    }
+    prefetchedFiles += pathways;
+    prefetchedIDs += n;
+    logger.fine(MessageFormat.format("Prefetched {0} KEGG IDs of {1} files in {2} ms.", n, pathways, System.currentTimeMillis() - start));
+  }
+  
+  /**
+   * @return {@code true} if {@link #next()} returns without waiting for
+   * the prefetching.
+   */
+  public boolean isReady() {
+    return (next != null) || !ready.isEmpty();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.util.Iterator#hasNext()
+   */
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = ready.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        next = END;
+      }
+    }
+    return next != END;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.util.Iterator#next()
+   */
+  @Override
+  public File next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    File file = next;
+    next = null;
+    return file;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.util.Iterator#remove()
+   */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+  
+  /**
+   * Hands what has been learned about the given file to its translation.
+   * @param file a file returned by {@link #next()}.
+   * @return the type, content hash and parsed pathways of the given file
+   * (as far as known) or {@code null} if the file has not been sniffed,
+   * e.g., because it is not readable or the prefetching failed.
+   */
+  public Prefetched take(File file) {
+    return prefetched.remove(file);
+  }
+  
+  /**
+   * Stops the background thread, e.g., if not all files are taken.
+   */
+  public void close() {
+    closed = true;
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    prefetched.clear();
+    logger.fine(MessageFormat.format("Prefetched {0} KEGG IDs of {1} files in {2} calls.", prefetchedIDs, prefetchedFiles, rounds));
+  }
+  
+}
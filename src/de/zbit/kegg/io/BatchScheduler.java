@@ -0,0 +1,287 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.MessageFormat;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Schedules the files of a parallel batch translation. The scheduler
+ * has two tasks:
+ * <ol>
+ * <li>It estimates the cost (i.e., required heap) of every file from its
+ * (uncompressed) size and, within a window of files found by the
+ * {@link DirectoryWalker}, starts the largest files first. Thus, large
+ * overview maps do not end up as a long tail at the end of a run.</li>
+ * <li>It admits files against a heap budget. If large pathways are
+ * being translated, fewer files are translated concurrently. A single
+ * file is always admitted, even if it exceeds the budget.</li>
+ * </ol>
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchScheduler {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BatchScheduler.class.getName());
+  
+  /**
+   * Rough estimate of the heap required for the translation per byte of
+   * (uncompressed) KGML. This includes the parsed pathway, the
+   * preprocessed copy, the target document and, e.g., the graph layout.
+   */
+  private static final long HEAP_PER_BYTE = 40;
+  
+  /**
+   * A file to translate and its estimated cost.
+   */
+  public static class Task implements Comparable<Task> {
+    /**
+     *
+     */
+    private final File file;
+    /**
+     * Estimated heap in bytes.
+     */
+    private final long cost;
+    
+    /**
+     * @param file
+     * @param cost
+     */
+    Task(File file, long cost) {
+      this.file = file;
+      this.cost = cost;
+    }
+    
+    /**
+     * @return the file to translate.
+     */
+    public File getFile() {
+      return file;
+    }
+    
+    /**
+     * @return the estimated heap in bytes, required to translate the file.
+     */
+    public long getCost() {
+      return cost;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(Task o) {
+      // Largest first
+      return cost > o.cost ? -1 : (cost == o.cost ? 0 : 1);
+    }
+  }
+  
+  /**
+   * Maximum heap in bytes for all running translations.
+   */
+  private final long budget;
+  
+  /**
+   * Maximum number of files to choose the largest from.
+   */
+  private final int window;
+  
+  /**
+   * Files found, but not yet scheduled.
+   */
+  private final PriorityQueue<Task> pending;
+  
+  /**
+   * Sum of the costs of all admitted, but not yet released tasks.
+   */
+  private long inFlight = 0;
+  
+  /**
+   * Number of admitted, but not yet released tasks.
+   */
+  private int running = 0;
+  
+  /**
+   * @param budget maximum heap in bytes for all running translations.
+   * @param window number of files to choose the largest from.
+   */
+  public BatchScheduler(long budget, int window) {
+    this.budget = budget;
+    this.window = Math.max(1, window);
+    pending = new PriorityQueue<Task>(this.window);
+  }
+  
+  /**
+   * @param percentage
+   * @return the given percentage of the maximum heap size.
+   */
+  public static long getHeapBudget(int percentage) {
+    return Runtime.getRuntime().maxMemory() / 100 * percentage;
+  }
+  
+  /**
+   * Fills the window from the given files and returns the most expensive.
+   * Files of a {@link BatchPrefetcher} that are still being prefetched are
+   * only waited for if the window is empty.
+   * @param files the files to translate (e.g., from a {@link DirectoryWalker}).
+   * @return the next task or {@code null} if all files have been scheduled.
+   */
+  public Task next(Iterator<File> files) {
+    while ((pending.size() < window) && (pending.isEmpty() || isReady(files)) && files.hasNext()) {
+      File file = files.next();
+      pending.add(new Task(file, estimateCost(file)));
+    }
+    return pending.poll();
+  }
+  
+  /**
+   * @param files
+   * @return {@code false} if the next file is not yet available.
+   */
+  private static boolean isReady(Iterator<File> files) {
+    return !(files instanceof BatchPrefetcher) || ((BatchPrefetcher) files).isReady();
+  }
+  
+  /**
+   * Blocks until the given task fits into the heap budget, or no other
+   * task is running.
+   * @param task
+   * @throws InterruptedException
+   */
+  public synchronized void admit(Task task) throws InterruptedException {
+    if ((running > 0) && (inFlight + task.cost > budget)) {
+      logger.fine(MessageFormat.format("Waiting for memory to translate {0}.", task.file));
+      while ((running > 0) && (inFlight + task.cost > budget)) {
+        wait();
+      }
+    }
+    inFlight += task.cost;
+    running++;
+  }
+  
+  /**
+   * Releases a task that has been {@link #admit(Task) admitted}.
+   * @param task
+   */
+  public synchronized void release(Task task) {
+    inFlight -= task.cost;
+    running--;
+    notifyAll();
+  }
+  
+  /**
+   * Estimates the heap required to translate the given file from its
+   * (uncompressed) size.
+   * @param file
+   * @return estimated heap in bytes.
+   */
+  public static long estimateCost(File file) {
+    long size = file.length();
+    try {
+      KGMLSniffer sniffed = KGMLSniffer.sniff(file);
+      if (!sniffed.isPathway()) {
+        return 0;
+      }
+      if (sniffed.getType() == KGMLSniffer.Type.ARCHIVE) {
+        // The files of an archive are translated one after another.
+        switch (sniffed.getCompression()) {
+          case GZIP:
+            // Rough estimate, the largest file is not known without decompressing all.
+            break;
+          case ZIP:
+            size = getUncompressedZIPSize(file);
+            break;
+          default:
+            size = KGMLArchive.getLargestEntrySize(file);
+            break;
+        }
+        return size * HEAP_PER_BYTE;
+      }
+      switch (sniffed.getCompression()) {
+        case GZIP:
+          size = getUncompressedGZIPSize(file);
+          break;
+        case ZIP:
+          size = getUncompressedZIPSize(file);
+          break;
+        default:
+          break;
+      }
+    } catch (IOException e) {
+      // Use the file size
+    }
+    return size * HEAP_PER_BYTE;
+  }
+  
+  /**
+   * @param file a gzip compressed file
+   * @return the uncompressed size, as stored at the end of the file (modulo
+   * 2^32).
+   * @throws IOException
+   */
+  private static long getUncompressedGZIPSize(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      raf.seek(raf.length() - 4);
+      // little endian
+      long size = raf.read() | (raf.read() << 8) | (raf.read() << 16) | ((long) raf.read() << 24);
+      return Math.max(size, raf.length());
+    } finally {
+      raf.close();
+    }
+  }
+  
+  /**
+   * @param file a zip archive
+   * @return the uncompressed size of the largest file in the archive.
+   * @throws IOException
+   */
+  private static long getUncompressedZIPSize(File file) throws IOException {
+    ZipFile zip = new ZipFile(file);
+    try {
+      long size = 0;
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (!entry.isDirectory()) {
+          size = Math.max(size, entry.getSize());
+        }
+      }
+      return (size > 0) ? size : file.length();
+    } finally {
+      zip.close();
+    }
+  }
+  
+}
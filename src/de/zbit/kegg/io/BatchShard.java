@@ -0,0 +1,136 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.text.MessageFormat;
+
+/**
+ * One of {@code N} shards of an input directory. Every input file belongs
+ * to exactly one shard, determined by its path relative to the input
+ * directory, so that {@code N} processes (with {@code k=1..N}) divide a
+ * directory without duplicate work.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+class BatchShard {
+  
+  /**
+   * Translates all files.
+   */
+  static final BatchShard ALL = new BatchShard(0, 0);
+  
+  /**
+   * The shard of this process (1-based).
+   */
+  private final int index;
+  
+  /**
+   * The number of shards or zero, if sharding is disabled.
+   */
+  private final int count;
+  
+  /**
+   * @param index the shard to translate (1 to {@code count}).
+   * @param count the number of shards or zero to translate all files.
+   * @throws IllegalArgumentException if {@code index} is not in 1 to
+   * {@code count}.
+   */
+  BatchShard(int index, int count) {
+    if ((count < 0) || ((count > 0) && ((index < 1) || (index > count)))) {
+      throw new IllegalArgumentException(MessageFormat.format("Invalid shard {0}/{1}.", index, count));
+    }
+    this.index = index;
+    this.count = count;
+  }
+  
+  /**
+   * @param shard a shard, given as {@code k/N}, or an empty string.
+   * @return the given shard or {@link #ALL}, if {@code shard} is empty.
+   * @throws IllegalArgumentException if {@code shard} is not of the form
+   * {@code k/N} with {@code 1 <= k <= N}.
+   */
+  static BatchShard parse(String shard) {
+    if ((shard == null) || (shard.trim().length() == 0)) {
+      return ALL;
+    }
+    String[] kn = shard.trim().split("/");
+    if (kn.length != 2) {
+      throw new IllegalArgumentException(MessageFormat.format("Invalid shard ''{0}'', expected ''k/N''.", shard));
+    }
+    try {
+      return new BatchShard(Integer.parseInt(kn[0].trim()), Integer.parseInt(kn[1].trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(MessageFormat.format("Invalid shard ''{0}'', expected ''k/N''.", shard), e);
+    }
+  }
+  
+  /**
+   * @param input path of an input file, relative to the input directory.
+   * @return {@code true} if sharding is disabled or the given input
+   * belongs to this shard.
+   */
+  boolean contains(String input) {
+    if (count < 1) {
+      return true;
+    }
+    // String#hashCode() is specified, i.e., equal on all machines.
+    return ((input.hashCode() & Integer.MAX_VALUE) % count) == (index - 1);
+  }
+  
+  /**
+   * @return {@code true} if only a part of all files is translated.
+   */
+  boolean isEnabled() {
+    return count > 0;
+  }
+  
+  /**
+   * @return the shard of this process (1-based).
+   */
+  int getIndex() {
+    return index;
+  }
+  
+  /**
+   * @return the number of shards or zero, if sharding is disabled.
+   */
+  int getCount() {
+    return count;
+  }
+  
+  /**
+   * @return a name for the shard that can be used in file names, e.g.,
+   * {@code shard-2-of-4}, or {@code null} if sharding is disabled.
+   */
+  String getNodeName() {
+    return isEnabled() ? MessageFormat.format("shard-{0,number,#}-of-{1,number,#}", index, count) : null;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return isEnabled() ? index + "/" + count : "";
+  }
+  
+}
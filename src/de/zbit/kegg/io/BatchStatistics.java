@@ -0,0 +1,308 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import de.zbit.kegg.io.BatchJournal.Status;
+
+/**
+ * Collects metrics of every file in a batch translation, i.e., the time
+ * spent in each stage (parsing, preprocessing including the prefetching
+ * of KEGG information, translation and writing), the written bytes, the
+ * size of the pathways and the lookups in the KEGG information cache.
+ * {@link #getSummary()} reports percentiles and the throughput, and
+ * {@link #write(File)} writes all metrics as CSV or JSON.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchStatistics {
+  
+  /**
+   * Column names of the CSV file and keys of the JSON file.
+   */
+  private static final String[] COLUMNS = new String[] {"input", "status", "formats", "parse_ms", "preprocess_ms",
+    "prefetch_ms", "translate_ms", "write_ms", "total_ms", "output_bytes", "entries", "relations", "reactions",
+    "cache_lookups", "cache_misses"};
+  
+  /**
+   * Metrics of one input file. All times are in milliseconds and summed
+   * up over all pathways in the file and all formats.
+   */
+  public static class Record {
+    /**
+     * Path of the input file, relative to the input directory.
+     */
+    final String input;
+    /**
+     * The result of the translation to all formats.
+     */
+    Status status = Status.DONE;
+    /**
+     * Number of translated formats.
+     */
+    int formats;
+    /**
+     *
+     */
+    long parse, preprocess, prefetch, translate, write;
+    /**
+     * Size of all written files.
+     */
+    long bytes;
+    /**
+     * Size of all pathways in the file.
+     */
+    int entries, relations, reactions;
+    /**
+     * IDs looked up in the KEGG information cache and IDs that had to
+     * be fetched.
+     */
+    long lookups, misses;
+    
+    /**
+     * @param input path of the input file, relative to the input directory.
+     */
+    Record(String input) {
+      this.input = input;
+    }
+    
+    /**
+     * @return the time in milliseconds spent in all stages.
+     */
+    public long getTotal() {
+      return parse + preprocess + translate + write;
+    }
+    
+    /**
+     * @return all values in the order of {@link BatchStatistics#COLUMNS}.
+     */
+    private Object[] values() {
+      return new Object[] {input, status, formats, parse, preprocess, prefetch, translate, write, getTotal(), bytes,
+        entries, relations, reactions, lookups, misses};
+    }
+  }
+  
+  /**
+   * All records in the order they have been added.
+   */
+  private final List<Record> records = new ArrayList<Record>();
+  
+  /**
+   * Start of the batch translation (see {@link System#currentTimeMillis()}).
+   */
+  private final long start = System.currentTimeMillis();
+  
+  /**
+   * End of the batch translation, set by {@link #finish()}.
+   */
+  private long end = 0;
+  
+  /**
+   * Adds the metrics of a translated file.
+   * @param record
+   */
+  public synchronized void add(Record record) {
+    records.add(record);
+  }
+  
+  /**
+   * Stops the clock of the batch translation.
+   */
+  public synchronized void finish() {
+    end = System.currentTimeMillis();
+  }
+  
+  /**
+   * @return the number of translated (or failed) files.
+   */
+  public synchronized int size() {
+    return records.size();
+  }
+  
+  /**
+   * @return a multi-line human readable summary with the throughput and
+   * the percentiles (50%, 90%, 99% and maximum) of the time per file in
+   * every stage.
+   */
+  public synchronized String getSummary() {
+    long wall = Math.max(1, (end > 0 ? end : System.currentTimeMillis()) - start);
+    int n = records.size();
+    int failed = 0;
+    long bytes = 0, lookups = 0, misses = 0;
+    long[] parse = new long[n], preprocess = new long[n], prefetch = new long[n], translate = new long[n],
+        write = new long[n], total = new long[n];
+    for (int i = 0; i < n; i++) {
+      Record r = records.get(i);
+      if (r.status != Status.DONE) {
+        failed++;
+      }
+      bytes += r.bytes;
+      lookups += r.lookups;
+      misses += r.misses;
+      parse[i] = r.parse;
+      preprocess[i] = r.preprocess;
+      prefetch[i] = r.prefetch;
+      translate[i] = r.translate;
+      write[i] = r.write;
+      total[i] = r.getTotal();
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(MessageFormat.format("Translated {0} files ({1} failed) in {2,number,0.0} s, i.e., {3,number,0.00} files/s, {4,number,0.0} MB written.",
+      n, failed, wall / 1000d, n * 1000d / wall, bytes / (1024d * 1024d)));
+    if (n > 0) {
+      sb.append("\nTime per file in ms (50% / 90% / 99% / max):");
+      appendPercentiles(sb, "total", total);
+      appendPercentiles(sb, "parse", parse);
+      appendPercentiles(sb, "preprocess", preprocess);
+      appendPercentiles(sb, "  thereof KEGG prefetch", prefetch);
+      appendPercentiles(sb, "translate", translate);
+      appendPercentiles(sb, "write", write);
+    }
+    if (lookups > 0) {
+      sb.append(MessageFormat.format("\nKEGG cache: {0} lookups, {1} misses (hit rate {2,number,0.0%}).",
+        lookups, misses, 1d - Math.min(misses, lookups) / (double) lookups));
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * @param sb
+   * @param name name of the stage
+   * @param values times per file (are sorted by this method).
+   */
+  private static void appendPercentiles(StringBuilder sb, String name, long[] values) {
+    Arrays.sort(values);
+    sb.append(MessageFormat.format("\n  {0}: {1,number,#} / {2,number,#} / {3,number,#} / {4,number,#}", name,
+      percentile(values, 50), percentile(values, 90), percentile(values, 99), values[values.length - 1]));
+  }
+  
+  /**
+   * @param sorted sorted values, not empty
+   * @param p percentile in (0,100]
+   * @return the p-th percentile (nearest rank) of the given values.
+   */
+  private static long percentile(long[] sorted, int p) {
+    int rank = (int) Math.ceil(p / 100d * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+  
+  /**
+   * Writes the metrics of all files. The format is JSON if the name of
+   * the given file ends with '.json', else CSV.
+   * @param file
+   * @throws IOException
+   */
+  public synchronized void write(File file) throws IOException {
+    boolean json = file.getName().toLowerCase(Locale.ENGLISH).endsWith(".json");
+    Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      if (json) {
+        writeJSON(out);
+      } else {
+        writeCSV(out);
+      }
+    } finally {
+      out.close();
+    }
+  }
+  
+  /**
+   * @param out
+   * @throws IOException
+   */
+  private void writeCSV(Writer out) throws IOException {
+    for (int i = 0; i < COLUMNS.length; i++) {
+      out.write(i > 0 ? "," : "");
+      out.write(COLUMNS[i]);
+    }
+    out.write('\n');
+    for (Record r : records) {
+      Object[] values = r.values();
+      for (int i = 0; i < values.length; i++) {
+        out.write(i > 0 ? "," : "");
+        if (values[i] instanceof String) {
+          out.write('"' + ((String) values[i]).replace("\"", "\"\"") + '"');
+        } else {
+          out.write(values[i].toString());
+        }
+      }
+      out.write('\n');
+    }
+  }
+  
+  /**
+   * @param out
+   * @throws IOException
+   */
+  private void writeJSON(Writer out) throws IOException {
+    out.write(String.format(Locale.ENGLISH, "{\n  \"wall_ms\": %d,\n  \"files\": [", Math.max(0, (end > 0 ? end : System.currentTimeMillis()) - start)));
+    for (int j = 0; j < records.size(); j++) {
+      Object[] values = records.get(j).values();
+      out.write(j > 0 ? ",\n    {" : "\n    {");
+      for (int i = 0; i < values.length; i++) {
+        out.write(i > 0 ? ", " : "");
+        out.write('"' + COLUMNS[i] + "\": ");
+        if (values[i] instanceof Number) {
+          out.write(values[i].toString());
+        } else {
+          out.write('"' + escapeJSON(values[i].toString()) + '"');
+        }
+      }
+      out.write('}');
+    }
+    out.write("\n  ]\n}\n");
+  }
+  
+  /**
+   * @param s
+   * @return the given string with all characters escaped that must not
+   * occur in a JSON string.
+   */
+  private static String escapeJSON(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if ((c == '"') || (c == '\\')) {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+  
+}
@@ -0,0 +1,144 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The worker threads of a parallel batch translation. Files are taken
+ * from a {@link BatchScheduler}, which chooses the largest files first
+ * and admits them against its heap budget. Independent of the budget,
+ * never more than twice the number of threads are submitted at once,
+ * such that the directory is walked only slightly ahead of the
+ * translation.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+class BatchWorkerPool {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BatchWorkerPool.class.getName());
+  
+  /**
+   * The worker threads.
+   */
+  private final ExecutorService pool;
+  
+  /**
+   * Limits the number of submitted, but not yet finished files.
+   */
+  private final Semaphore slots;
+  
+  /**
+   * Chooses and admits the files to translate.
+   */
+  private final BatchScheduler scheduler;
+  
+  /**
+   * @param threads number of worker threads.
+   * @param scheduler chooses and admits the files to translate.
+   */
+  BatchWorkerPool(int threads, BatchScheduler scheduler) {
+    this.pool = Executors.newFixedThreadPool(threads);
+    this.slots = new Semaphore(2 * threads);
+    this.scheduler = scheduler;
+  }
+  
+  /**
+   * @param files the files to translate.
+   * @return the next file to translate (see
+   * {@link BatchScheduler#next(Iterator)}) or {@code null} if all files
+   * have been scheduled.
+   */
+  BatchScheduler.Task next(Iterator<File> files) {
+    return scheduler.next(files);
+  }
+  
+  /**
+   * Blocks until the given task is admitted by the scheduler and a slot
+   * is free, and then translates it in a worker thread. Any error of the
+   * translation is logged and does not affect other files.
+   * @param task a task from {@link #next(Iterator)}.
+   * @param translation translates the file of the task.
+   * @throws InterruptedException if interrupted while waiting. The task
+   * is not executed in this case.
+   */
+  void execute(final BatchScheduler.Task task, final Runnable translation) throws InterruptedException {
+    scheduler.admit(task);
+    try {
+      slots.acquire();
+    } catch (InterruptedException e) {
+      scheduler.release(task);
+      throw e;
+    }
+    pool.execute(new Runnable() {
+      /* (non-Javadoc)
+       * @see java.lang.Runnable#run()
+       */
+      @Override
+      public void run() {
+        try {
+          translation.run();
+        } catch (Throwable t) {
+          logger.log(Level.SEVERE, MessageFormat.format("Could not translate {0}.", task.getFile()), t);
+        } finally {
+          slots.release();
+          scheduler.release(task);
+        }
+      }
+    });
+  }
+  
+  /**
+   * Accepts no further files. Already submitted files are still translated.
+   */
+  void shutdown() {
+    pool.shutdown();
+  }
+  
+  /**
+   * Blocks until all submitted files have been translated. If interrupted,
+   * running translations are interrupted as well.
+   */
+  void awaitTermination() {
+    try {
+      while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+        logger.fine("Waiting for running translations...");
+      }
+    } catch (InterruptedException e) {
+      logger.warning("Interrupted while waiting for running translations.");
+      pool.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+}
@@ -0,0 +1,327 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.ByteArrayInputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import de.zbit.kegg.KeggTools;
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * Fills the KEGG cache in the background, before the first pathway is
+ * translated. Given an organism code (e.g., 'hsa') or a list of pathway
+ * IDs (e.g., 'path:hsa00010,hsa04010'), the KGML of every pathway is
+ * downloaded and parsed, and all IDs that
+ * {@link KeggTools#preFetchInformation(Pathway, KeggInfoManagement, boolean, de.zbit.util.progressbar.AbstractProgressBar)}
+ * would fetch for this pathway are put into the cache.
+ *
+ * <p>At most a given number of pathways are downloaded at once. The IDs
+ * are fetched in chunks of {@link #CHUNK_SIZE}, so a translation that
+ * asks the cache at the same time waits for one chunk at most.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class CacheWarmer implements Runnable {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(CacheWarmer.class.getName());
+  
+  /**
+   * Maximum number of IDs to fetch with one call to the cache.
+   */
+  public static final int CHUNK_SIZE = 100;
+  
+  /**
+   * Organism codes, e.g., 'hsa', 'eco' or 'ko'.
+   */
+  private static final Pattern ORGANISM = Pattern.compile("[a-zA-Z]{2,4}");
+  
+  /**
+   * The cache to fill.
+   */
+  private final KeggInfoManagement manager;
+  
+  /**
+   * Organism codes and pathway IDs, as given by the user.
+   */
+  private final List<String> pathways;
+  
+  /**
+   * Maximum number of pathways to download at once.
+   */
+  private final int threads;
+  
+  /**
+   * If {@code true}, the compounds and enzymes of all reactions are
+   * fetched, too.
+   */
+  private final boolean reactions;
+  
+  /**
+   * All IDs that have already been passed to the cache.
+   */
+  private final Set<String> requested = Collections.synchronizedSet(new HashSet<String>());
+  
+  /**
+   * Number of warmed pathways and fetched IDs.
+   */
+  private final AtomicInteger warmedPathways = new AtomicInteger(), fetchedIDs = new AtomicInteger();
+  
+  /**
+   *
+   */
+  private volatile boolean cancelled = false;
+  
+  /**
+   *
+   */
+  private Thread thread = null;
+  
+  /**
+   * @param manager the cache to fill.
+   * @param pathways an organism code (e.g., 'hsa') or pathway IDs
+   * (e.g., 'path:hsa00010'), separated by commas or white spaces.
+   * @param threads maximum number of pathways to download at once.
+   * @param reactions whether the compounds and enzymes of all reactions
+   * should be fetched, too (see {@link AbstractKEGGtranslator#isAutocompleteReactions()}).
+   */
+  public CacheWarmer(KeggInfoManagement manager, String pathways, int threads, boolean reactions) {
+    this.manager = manager;
+    this.pathways = new ArrayList<String>();
+    for (String token : pathways.trim().split("[,\\s]+")) {
+      if (token.length() > 0) {
+        this.pathways.add(token);
+      }
+    }
+    this.threads = Math.max(1, threads);
+    this.reactions = reactions;
+  }
+  
+  /**
+   * Starts warming the cache in a background thread.
+   */
+  public synchronized void start() {
+    if (thread == null) {
+      thread = new Thread(this, "KEGG cache warm-up");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+    }
+  }
+  
+  /**
+   * Stops warming the cache. Chunks of IDs that are currently fetched are
+   * completed.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+  
+  /**
+   * @return {@code true} if the cache is being warmed.
+   */
+  public synchronized boolean isRunning() {
+    return (thread != null) && thread.isAlive();
+  }
+  
+  /**
+   * @return the number of pathways, whose IDs have been put into the cache.
+   */
+  public int getWarmedPathways() {
+    return warmedPathways.get();
+  }
+  
+  /**
+   * @return the number of IDs that have been passed to the cache.
+   */
+  public int getFetchedIDs() {
+    return fetchedIDs.get();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    long start = System.currentTimeMillis();
+    KeggAdaptor adaptor = manager.getKeggAdaptor();
+    if (adaptor == null) {
+      adaptor = new KeggAdaptor();
+    }
+    Set<String> ids = listPathways(adaptor);
+    logger.info(MessageFormat.format("Warming the KEGG cache with {0} pathways in the background.", ids.size()));
+    
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, ids.size())), new ThreadFactory() {
+      /* (non-Javadoc)
+       * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+       */
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "KEGG cache warm-up");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+      }
+    });
+    final KeggAdaptor api = adaptor;
+    for (final String id : ids) {
+      executor.execute(new Runnable() {
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+          if (!cancelled) {
+            warm(api, id);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      return;
+    }
+    logger.info(MessageFormat.format("Warmed the KEGG cache with {0} IDs of {1} pathways in {2} s.",
+      fetchedIDs.get(), warmedPathways.get(), (System.currentTimeMillis() - start) / 1000));
+  }
+  
+  /**
+   * @param adaptor
+   * @return the IDs (without 'path:' prefix) of all given pathways and
+   * of all pathways of the given organisms.
+   */
+  private Set<String> listPathways(KeggAdaptor adaptor) {
+    Set<String> ids = new LinkedHashSet<String>();
+    for (String token : pathways) {
+      if (token.startsWith("path:")) {
+        token = token.substring(5);
+      }
+      if (!ORGANISM.matcher(token).matches()) {
+        ids.add(token);
+        continue;
+      }
+      try {
+        String list = adaptor.get("list", "pathway", token.toLowerCase());
+        for (String line : list.split("\n")) {
+          int tab = line.indexOf('\t');
+          String id = (tab >= 0 ? line.substring(0, tab) : line).trim();
+          if (id.startsWith("path:")) {
+            id = id.substring(5);
+          }
+          if (id.length() > 0) {
+            ids.add(id);
+          }
+        }
+      } catch (Exception e) {
+        logger.log(Level.WARNING, MessageFormat.format("Could not list the pathways of {0}.", token), e);
+      }
+    }
+    return ids;
+  }
+  
+  /**
+   * Downloads and parses the given pathway and puts all its IDs into the cache.
+   * @param adaptor
+   * @param id a pathway ID without 'path:' prefix.
+   */
+  private void warm(KeggAdaptor adaptor, String id) {
+    List<Pathway> pw;
+    try {
+      String kgml = adaptor.get("get", id, "kgml");
+      if ((kgml == null) || (kgml.trim().length() == 0)) {
+        logger.fine(MessageFormat.format("No KGML for pathway {0}.", id));
+        return;
+      }
+      pw = KGMLReader.parse(new ByteArrayInputStream(kgml.getBytes("UTF-8")), null);
+    } catch (Exception e) {
+      logger.log(Level.FINE, MessageFormat.format("Could not download pathway {0}.", id), e);
+      return;
+    }
+    
+    Set<String> ids = new LinkedHashSet<String>();
+    Set<String> reactionIDs = new LinkedHashSet<String>();
+    for (Pathway p : pw) {
+      BatchPrefetcher.collectIDs(p, ids, reactionIDs);
+    }
+    try {
+      fetch(ids);
+      if (reactions && !reactionIDs.isEmpty() && !cancelled) {
+        Set<String> reactants = new LinkedHashSet<String>();
+        BatchPrefetcher.collectReactantIDs(reactionIDs, manager, reactants);
+        fetch(reactants);
+      }
+    } catch (RuntimeException e) {
+      logger.log(Level.FINE, MessageFormat.format("Could not warm the KEGG cache with pathway {0}.", id), e);
+      return;
+    }
+    warmedPathways.incrementAndGet();
+  }
+  
+  /**
+   * Puts all given IDs, that have not been requested before, into the
+   * cache, {@link #CHUNK_SIZE} IDs at a time.
+   * @param ids
+   */
+  private void fetch(Set<String> ids) {
+    List<String> chunk = new ArrayList<String>(CHUNK_SIZE);
+    for (String id : ids) {
+      if (cancelled) {
+        return;
+      }
+      if (requested.add(id)) {
+        chunk.add(id);
+      }
+      if (chunk.size() >= CHUNK_SIZE) {
+        manager.precacheIDs(chunk.toArray(new String[chunk.size()]));
+        fetchedIDs.addAndGet(chunk.size());
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty() && !cancelled) {
+      manager.precacheIDs(chunk.toArray(new String[chunk.size()]));
+      fetchedIDs.addAndGet(chunk.size());
+    }
+  }
+  
+}
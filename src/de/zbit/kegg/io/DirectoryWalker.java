@@ -0,0 +1,407 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Lists all files in a directory and its subdirectories. In contrast to
+ * a recursive listing, this walker keeps an explicit stack of pending
+ * directories and lists only one directory at a time. Thus, neither the
+ * call stack nor the number of open file handles grows with the size or
+ * depth of the tree.
+ *
+ * <p>{@link #iterator()} walks the tree in a background thread, which
+ * feeds a bounded queue. Hence, the first files can be processed before
+ * the walk finishes and the memory for files that have been found, but
+ * not yet been processed, is bounded.
+ *
+ * <p>Files can be selected with include and exclude glob patterns
+ * (see {@link #setIncludes(String)}). Each file is only listed, i.e.,
+ * checking its content (e.g., if it is a KGML file) is left to the caller.
+ *
+ * <p>Symbolic links to directories are followed, but every directory is
+ * walked only once (identified by its canonical path). Thus, links that
+ * point to one of their parent directories do not lead to an endless walk.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class DirectoryWalker implements Iterable<File> {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(DirectoryWalker.class.getName());
+  
+  /**
+   * Marks the end of the walk in the queue.
+   */
+  private static final File END = new File("");
+  
+  /**
+   * The root directory.
+   */
+  private final File root;
+  
+  /**
+   * Maximum depth of subdirectories to walk. Negative values for no limit.
+   */
+  private int maxDepth = -1;
+  
+  /**
+   * Only files matching one of these patterns are listed. All if empty.
+   */
+  private List<Pattern> includes = new ArrayList<Pattern>();
+  
+  /**
+   * Files and directories matching one of these patterns are skipped.
+   */
+  private List<Pattern> excludes = new ArrayList<Pattern>();
+  
+  /**
+   * Capacity of the queue between the walking thread and the consumer.
+   */
+  private int queueSize = 1024;
+  
+  /**
+   * @param root the directory to walk.
+   */
+  public DirectoryWalker(File root) {
+    this.root = root;
+  }
+  
+  /**
+   * @param maxDepth maximum depth of subdirectories to walk, i.e., zero
+   * lists only the files in the root directory. Negative values for no limit.
+   */
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+  
+  /**
+   * @param includes comma separated list of glob patterns (e.g.,
+   * {@code *.xml,hsa/**}). Only files matching at least one of the
+   * patterns are listed. Empty or {@code null} for all files.
+   * @see #toPattern(String)
+   */
+  public void setIncludes(String includes) {
+    this.includes = toPatterns(includes);
+  }
+  
+  /**
+   * @param excludes comma separated list of glob patterns. Files and
+   * directories (including all files therein) matching at least one of
+   * the patterns are skipped.
+   * @see #toPattern(String)
+   */
+  public void setExcludes(String excludes) {
+    this.excludes = toPatterns(excludes);
+  }
+  
+  /**
+   * @param queueSize maximum number of files that are found, but not
+   * yet returned by the {@link #iterator()}.
+   */
+  public void setQueueSize(int queueSize) {
+    this.queueSize = Math.max(1, queueSize);
+  }
+  
+  /**
+   * @param globs comma separated list of glob patterns.
+   * @return the corresponding regular expressions.
+   */
+  private static List<Pattern> toPatterns(String globs) {
+    List<Pattern> patterns = new ArrayList<Pattern>();
+    if (globs != null) {
+      for (String glob : globs.split(",")) {
+        glob = glob.trim();
+        if (glob.length() > 0) {
+          patterns.add(toPattern(glob));
+        }
+      }
+    }
+    return patterns;
+  }
+  
+  /**
+   * Converts a glob pattern to a regular expression. {@code *} matches any
+   * number of characters except '/', {@code **} any number of characters
+   * and {@code ?} any single character except '/'. Patterns without '/'
+   * are matched against the name of the file, all others against its path
+   * relative to the root directory (with '/' as separator).
+   * @param glob
+   * @return the regular expression for the given glob pattern.
+   */
+  public static Pattern toPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    if (glob.indexOf('/') < 0) {
+      regex.append("(?:.*/)?");
+    }
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '*') {
+        if ((i + 1 < glob.length()) && (glob.charAt(i + 1) == '*')) {
+          regex.append(".*");
+          i++;
+        } else {
+          regex.append("[^/]*");
+        }
+      } else if (c == '?') {
+        regex.append("[^/]");
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+  
+  /**
+   * @param patterns
+   * @param path relative path with '/' as separator
+   * @return {@code true} if any pattern matches the path.
+   */
+  private static boolean matches(List<Pattern> patterns, String path) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(path).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * A directory that still has to be listed.
+   */
+  private static class PendingDirectory {
+    /**
+     *
+     */
+    final File dir;
+    /**
+     * Path relative to the root, with trailing '/' (empty for the root).
+     */
+    final String path;
+    /**
+     * Depth below the root directory.
+     */
+    final int depth;
+    
+    /**
+     * @param dir
+     * @param path
+     * @param depth
+     */
+    PendingDirectory(File dir, String path, int depth) {
+      this.dir = dir;
+      this.path = path;
+      this.depth = depth;
+    }
+  }
+  
+  /**
+   * Walks the whole tree and puts every selected file into the queue.
+   * Files of a directory are put before those of its subdirectories.
+   * @param queue
+   * @throws InterruptedException if the walk is interrupted.
+   */
+  private void walk(BlockingQueue<File> queue) throws InterruptedException {
+    Deque<PendingDirectory> stack = new ArrayDeque<PendingDirectory>();
+    // Canonical paths of all walked directories
+    Set<String> visited = new HashSet<String>();
+    stack.push(new PendingDirectory(root, "", 0));
+    while (!stack.isEmpty()) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      PendingDirectory current = stack.pop();
+      try {
+        if (!visited.add(current.dir.getCanonicalPath())) {
+          logger.fine(MessageFormat.format("Skipping {0}, which has already been walked.", current.dir));
+          continue;
+        }
+      } catch (IOException e) {
+        logger.warning(MessageFormat.format("Could not resolve directory {0}: {1}", current.dir, e.getLocalizedMessage()));
+        continue;
+      }
+      String[] names = current.dir.list();
+      if (names == null) {
+        logger.warning(MessageFormat.format("Could not list directory {0}.", current.dir));
+        continue;
+      }
+      Arrays.sort(names);
+    
+      List<PendingDirectory> subdirectories = new ArrayList<PendingDirectory>();
+      for (String name : names) {
+        String path = current.path + name;
+        if (matches(excludes, path)) {
+          continue;
+        }
+        File file = new File(current.dir, name);
+        if (file.isDirectory()) {
+          if ((maxDepth < 0) || (current.depth < maxDepth)) {
+            subdirectories.add(new PendingDirectory(file, path + '/', current.depth + 1));
+          }
+        } else if (includes.isEmpty() || matches(includes, path)) {
+          queue.put(file);
+        }
+      }
+      // Push in reverse order to walk subdirectories in alphabetical order.
+      for (int i = subdirectories.size() - 1; i >= 0; i--) {
+        stack.push(subdirectories.get(i));
+      }
+    }
+  }
+  
+  /**
+   * Starts walking the tree in a background thread. The returned iterator
+   * blocks until the next file has been found. If not all files are
+   * consumed (e.g., because of an exception), the walk must be stopped
+   * with {@link Walk#close()}.
+   * @see java.lang.Iterable#iterator()
+   */
+  @Override
+  public Walk iterator() {
+    return new Walk();
+  }
+  
+  /**
+   * An iterator over all selected files, which are found by a background
+   * thread.
+   */
+  public class Walk implements Iterator<File>, Closeable {
+    
+    /**
+     * Files that have been found, but not yet been returned.
+     */
+    private final BlockingQueue<File> queue = new ArrayBlockingQueue<File>(queueSize);
+    
+    /**
+     * Walks the tree.
+     */
+    private final Thread walker;
+    
+    /**
+     * The next file or {@code null} if not yet taken from the queue.
+     */
+    private File next = null;
+    
+    /**
+     * Starts the background thread.
+     */
+    private Walk() {
+      walker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            walk(queue);
+          } catch (InterruptedException e) {
+            logger.fine("Directory walk has been interrupted.");
+            queue.clear();
+          } finally {
+            // The queue may be full, so the end marker must not be lost.
+            try {
+              queue.put(END);
+            } catch (InterruptedException e) {
+              queue.clear();
+              queue.offer(END);
+            }
+          }
+        }
+      }, "Directory walker " + root.getName());
+      walker.setDaemon(true);
+      walker.start();
+    }
+    
+    /* (non-Javadoc)
+     * @see java.util.Iterator#hasNext()
+     */
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        try {
+          next = queue.take();
+        } catch (InterruptedException e) {
+          walker.interrupt();
+          Thread.currentThread().interrupt();
+          next = END;
+        }
+      }
+      return next != END;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.util.Iterator#next()
+     */
+    @Override
+    public File next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      File file = next;
+      next = null;
+      return file;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.util.Iterator#remove()
+     */
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Stops the walk. Afterwards, no further files are returned.
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+      next = END;
+      walker.interrupt();
+      // Unblocks the walker, if it is waiting for space in the queue.
+      queue.clear();
+      try {
+        walker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    
+  }
+  
+}
@@ -82,6 +82,7 @@ import de.zbit.kegg.AtomBalanceCheck;
 import de.zbit.kegg.AtomBalanceCheck.AtomCheckResult;
 import de.zbit.kegg.api.KeggInfos;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.cache.CompactKeggInfos;
 import de.zbit.kegg.parser.pathway.Entry;
 import de.zbit.kegg.parser.pathway.EntryType;
 import de.zbit.kegg.parser.pathway.Pathway;
@@ -112,57 +113,101 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   public static final transient Logger log = Logger.getLogger(KEGG2BioPAX.class.getName());
   
   /**
-   * The current {@link BioPAXFactory}.
+   * The state of one translation.
    */
-  protected BioPAXFactory factory = null;
+  protected static class BioPAXContext extends TranslationContext {
+    /**
+     * The current {@link BioPAXFactory}.
+     */
+    private BioPAXFactory factory = null;
+    
+    /**
+     * The translated pathway.
+     */
+    private Model model = null;
+    
+    /**
+     * The actual translated pathway (real object diverges between L3 and L2)
+     */
+    private BioPAXElement pathway = null;
+    
+    /**
+     * This is for speed-improvement and saves the information if
+     * {@link Entry}s with {@link EntryType#reaction} are in the
+     * translated pathway.
+     */
+    private boolean entriesWithTypeReactionAvailable = false;
+  }
   
   /**
-   * The translated pathway.
+   * The {@link BioPAXLevel}.
    */
-  protected Model model = null;
+  protected BioPAXLevel level = BioPAXLevel.L3;
   
   /**
-   * The actual translated pathway (real object diverges between L3 and L2)
+   * @param manager
    */
-  protected BioPAXElement pathway = null;
+  public KEGG2BioPAX(BioPAXLevel level, KeggInfoManagement manager) {
+    super(manager);
+    this.level = level;
+  }
   
-  /**
-   * The {@link BioPAXLevel}.
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.AbstractKEGGtranslator#createContext()
    */
-  protected BioPAXLevel level = BioPAXLevel.L3;
+  @Override
+  protected TranslationContext createContext() {
+    return new BioPAXContext();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.AbstractKEGGtranslator#getContext()
+   */
+  @Override
+  protected BioPAXContext getContext() {
+    return (BioPAXContext) super.getContext();
+  }
   
   /**
-   * This is for speed-improvement and saves the information if
-   * {@link Entry}s with {@link EntryType#reaction} are in the
-   * last translated pathway.
+   * @return the current {@link BioPAXFactory}.
    */
-  private boolean entriesWithTypeReactionAvailable =false;
+  protected BioPAXFactory getFactory() {
+    return getContext().factory;
+  }
   
   /**
-   * @param manager
+   * @return the BioPAX model of the pathway that is being translated.
    */
-  public KEGG2BioPAX(BioPAXLevel level, KeggInfoManagement manager) {
-    super(manager);
-    this.level = level;
+  protected Model getModel() {
+    return getContext().model;
   }
   
+  /**
+   * @return the BioPAX pathway that has been created by
+   * {@link #createPathwayInstance(Pathway)} for the current translation.
+   */
+  protected BioPAXElement getPathway() {
+    return getContext().pathway;
+  }
   
   /* (non-Javadoc)
    * @see de.zbit.kegg.io.AbstractKEGGtranslator#translateWithoutPreprocessing(de.zbit.kegg.parser.pathway.Pathway)
    */
   @Override
   protected Model translateWithoutPreprocessing(Pathway p) {
+    BioPAXContext c = getContext();
     
     // Init the factory and model
-    factory = level.getDefaultFactory();
-    model = factory.createModel();
+    c.factory = level.getDefaultFactory();
+    c.model = c.factory.createModel();
     
     // Initialize a progress bar.
     initProgressBar(p,false,false);
     
     // The order of the following processes is important!
     log.fine("Creating the BioPAX pathway instance.");
-    pathway = createPathwayInstance(p);
+    c.pathway = createPathwayInstance(p);
     log.fine("Creating the BioPAX entities.");
     createPhysicalEntities(p);
     if(considerReactions()){
@@ -176,7 +221,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     // TODO: (eventuell) ???
     // pathway.addPATHWAY_COMPONENTS(pathwayComponent.class);
     
-    return model;
+    return c.model;
   }
   
   /**
@@ -210,12 +255,12 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   @Override
   public boolean writeToFile(Model model, String outFile) {
     if (new File(outFile).exists()) {
-      lastFileWasOverwritten =true;
+      markFileOverwritten();
     }
     try {
-      //      JenaIOHandler io = new JenaIOHandler(model.getLevel());
-      BioPAXIOHandler io = new SimpleIOHandler(model.getLevel());
-      model.setXmlBase("http://www.ra.cs.uni-tuebingen.de/software/KEGGtranslator/");
+      //      JenaIOHandler io = new JenaIOHandler(getModel().getLevel());
+      BioPAXIOHandler io = new SimpleIOHandler(getModel().getLevel());
+      getModel().setXmlBase("http://www.ra.cs.uni-tuebingen.de/software/KEGGtranslator/");
       io.convertToOWL(model, new FileOutputStream(outFile));
       
     } catch (Exception e) {
@@ -228,12 +273,12 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   
   public boolean writeToSIFFile(Model model, String outFile) {
     if (new File(outFile).exists()) {
-      lastFileWasOverwritten =true;
+      markFileOverwritten();
     }
     try {
       SimpleInteractionConverter sic =
           new SimpleInteractionConverter(SimpleInteractionConverter
-            .getRules(model.getLevel()).toArray(new InteractionRule[]{}));
+            .getRules(getModel().getLevel()).toArray(new InteractionRule[]{}));
       
       sic.writeInteractionsInSIF(model, new FileOutputStream(outFile));
       
@@ -291,12 +336,12 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     uri += "_" + type; // We need to create a different XRef for unifications or relationships!
     
     // Avoid creating duplicates.
-    if (model.getByID(uri) != null) {
-      return model.getByID(uri);
+    if (getModel().getByID(uri) != null) {
+      return getModel().getByID(uri);
     }
     
     BioPAXElement xr = null;
-    if (model.getLevel() == BioPAXLevel.L2) {
+    if (getModel().getLevel() == BioPAXLevel.L2) {
       
       Class<? extends BioPAXElement> instantiate = xref.class;
       if (type == 1) {
@@ -310,12 +355,12 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
         instantiate = relationshipXref.class;
       }
       
-      xr = model.addNew(instantiate, uri);
+      xr = getModel().addNew(instantiate, uri);
       pathwayComponentCreated(xr);
       ((xref) xr).setDB(db.getOfficialName());
       ((xref) xr).setID(formattedID);
       
-    } else if (model.getLevel() == BioPAXLevel.L3) {
+    } else if (getModel().getLevel() == BioPAXLevel.L3) {
       
       Class<? extends BioPAXElement> instantiate = Xref.class;
       if (type == 1) {
@@ -329,12 +374,12 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
         instantiate = RelationshipXref.class;
       }
       
-      xr = model.addNew(instantiate, uri);
+      xr = getModel().addNew(instantiate, uri);
       pathwayComponentCreated(xr);
       ((Xref) xr).setDb(db.getOfficialName());
       ((Xref) xr).setId(formattedID);
     } else {
-      log.severe(MessageFormat.format("Level {0} not supported.", factory.getLevel()));
+      log.severe(MessageFormat.format("Level {0} not supported.", getFactory().getLevel()));
     }
     
     return xr;
@@ -381,8 +426,8 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     }
     
     BioPAXElement biosource = null;
-    if (model.getLevel() ==BioPAXLevel.L2) {
-      bioSource bioSource = model.addNew(bioSource.class, '#'+NameToSId(speciesString));
+    if (getModel().getLevel() ==BioPAXLevel.L2) {
+      bioSource bioSource = getModel().addNew(bioSource.class, '#'+NameToSId(speciesString));
       bioSource.setNAME(speciesString);
       if (taxonID!=null && taxonID.length()>0) {
         unificationXref uxr = (unificationXref) createXRef(IdentifierDatabases.NCBI_Taxonomy, taxonID, 1);
@@ -392,8 +437,8 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       }
       biosource = bioSource;
       
-    } else if (model.getLevel() ==BioPAXLevel.L3) {
-      BioSource bioSource = model.addNew(BioSource.class, NameToSId(speciesString));
+    } else if (getModel().getLevel() ==BioPAXLevel.L3) {
+      BioSource bioSource = getModel().addNew(BioSource.class, NameToSId(speciesString));
       //bioSource.setName(Collections.singleton(speciesString));
       bioSource.setDisplayName(createDisplayName(speciesString));
       if (taxonID!=null && taxonID.length()>0) {
@@ -404,7 +449,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       }
       biosource = bioSource;
     } else {
-      log.severe(String.format("Level %s not supported.", factory.getLevel()));
+      log.severe(String.format("Level %s not supported.", getFactory().getLevel()));
     }
     pathwayComponentCreated(biosource);
     
@@ -448,15 +493,15 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   public Collection<BioPAXElement> createDataSources(Pathway p) {
     Collection<BioPAXElement> ret = new LinkedList<BioPAXElement>();
     
-    if (model.getLevel() ==BioPAXLevel.L2) {
-      dataSource ds = model.addNew(dataSource.class, NameToSId(System.getProperty("app.name"))+"_DataSource");
+    if (getModel().getLevel() ==BioPAXLevel.L2) {
+      dataSource ds = getModel().addNew(dataSource.class, NameToSId(System.getProperty("app.name"))+"_DataSource");
       pathwayComponentCreated(ds);
       ds.setNAME(Collections.singleton(System.getProperty("app.name")));
       ds.setCOMMENT(Collections.singleton("http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator/"));
       ds.addXREF((xref) getPublicationXref());
       ret.add(ds);
       
-      ds = model.addNew(dataSource.class, "KEGG_DataSource");
+      ds = getModel().addNew(dataSource.class, "KEGG_DataSource");
       pathwayComponentCreated(ds);
       ds.setNAME(Collections.singleton("KEGG Data"));
       ds.setCOMMENT(Collections.singleton("http://www.genome.jp/kegg/"));
@@ -464,13 +509,13 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       
       if (p!=null && p.getOriginFormatName()!=null && !p.getOriginFormatName().equalsIgnoreCase("kgml")
           && p.getOriginFormatName().length()>0) {
-        ds = model.addNew(dataSource.class, NameToSId(p.getOriginFormatName())+"_DataSource");
+        ds = getModel().addNew(dataSource.class, NameToSId(p.getOriginFormatName())+"_DataSource");
         pathwayComponentCreated(ds);
         ds.setNAME(Collections.singleton(p.getOriginFormatName()+" Data"));
         ret.add(ds);
       }
-    } else if (model.getLevel() ==BioPAXLevel.L3) {
-      Provenance ds = model.addNew(Provenance.class, NameToSId(System.getProperty("app.name"))+"_DataSource");
+    } else if (getModel().getLevel() ==BioPAXLevel.L3) {
+      Provenance ds = getModel().addNew(Provenance.class, NameToSId(System.getProperty("app.name"))+"_DataSource");
       pathwayComponentCreated(ds);
       //      ds.setName(Collections.singleton(System.getProperty("app.name")));
       ds.setDisplayName(System.getProperty("app.name"));
@@ -478,7 +523,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       ds.addXref((Xref) getPublicationXref());
       ret.add(ds);
       
-      ds = model.addNew(Provenance.class, "KEGG_DataSource");
+      ds = getModel().addNew(Provenance.class, "KEGG_DataSource");
       pathwayComponentCreated(ds);
       //      ds.setName(Collections.singleton("KEGG Data"));
       //ds.setStandardName("KEGG database"); // No need to duplicate information
@@ -488,7 +533,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       
       if (p!=null && p.getOriginFormatName()!=null && !p.getOriginFormatName().equalsIgnoreCase("kgml")
           && p.getOriginFormatName().length()>0) {
-        ds = model.addNew(Provenance.class, NameToSId(p.getOriginFormatName())+"_DataSource");
+        ds = getModel().addNew(Provenance.class, NameToSId(p.getOriginFormatName())+"_DataSource");
         pathwayComponentCreated(ds);
         ds.setName(Collections.singleton(p.getOriginFormatName()+" Data"));
         ret.add(ds);
@@ -523,9 +568,10 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       if (infos.queryWasSuccessfull()) {
         
         // Add all EC Numbers
-        if (infos.getEnzymes()!=null) {
+        String[] enzymes = CompactKeggInfos.getEnzymes(infos);
+        if (enzymes!=null) {
           Set<String> ec = new HashSet<String>();
-          ec.addAll(Arrays.asList(infos.getEnzymes().split("\\s")));
+          ec.addAll(Arrays.asList(enzymes));
           ec.remove(""); ec.remove(null);
           if (reaction instanceof biochemicalReaction) {
             ((biochemicalReaction) reaction).setEC_NUMBER(ec);
@@ -563,8 +609,9 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
         }
         
         
-        if (infos.getPathways() != null) {
-          for (String pwId : infos.getPathways().split(",")) {
+        String[] pathways = CompactKeggInfos.getPathwayIDs(infos);
+        if (pathways != null) {
+          for (String pwId : pathways) {
             xr = createXRef(IdentifierDatabases.KEGG_Pathway, pwId, 2);
             if (xr!=null) {
               if (reaction instanceof XReferrable) {
@@ -616,8 +663,9 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       if (infos.queryWasSuccessfull()) {
         
         // HTML Information
-        if (infos.getNames()!=null) {
-          for (String synonym: infos.getNames().split("((;)|(,\\s))")) {
+        String[] synonyms = CompactKeggInfos.getSynonyms(infos);
+        if (synonyms!=null) {
+          for (String synonym: synonyms) {
             if (synonym.trim().length()>0) {
               if (element instanceof entity) {
                 ((entity) element).addSYNONYMS(synonym);
@@ -652,7 +700,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
               // should always be true
               SmallMoleculeReference ref = (SmallMoleculeReference) refNative;
               if (ref ==null) {
-                ref = model.addNew(SmallMoleculeReference.class,
+                ref = getModel().addNew(SmallMoleculeReference.class,
                   ensureUniqueRDFId(element.getRDFId() + KEGG2BioPAX_level3.EntityReferenceSuffix));
                 pathwayComponentCreated(ref);
                 ((SmallMolecule) element).setEntityReference(ref);
@@ -823,7 +871,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   
   
   /**
-   * Adds all KEGG {@link Reaction}s to the BioPAX {@link #model}.
+   * Adds all KEGG {@link Reaction}s to the BioPAX {@link #getModel()}.
    * @param p
    */
   public void createReactions(Pathway p) {
@@ -833,6 +881,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     
     // All species added. Parse reactions and relations.
     for (Reaction r : p.getReactions()) {
+      checkCancelled();
       if (!reactionHasAtLeastOneSubstrateAndProduct(r, p)) {
         continue;
       }
@@ -888,10 +937,11 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
    * @param reaction BioPAX reaction
    */
   private void setReactionToReactionEntry(Pathway p, Reaction r, BioPAXElement reaction) {
-    if (!entriesWithTypeReactionAvailable) {
+    if (!getContext().entriesWithTypeReactionAvailable) {
       return;
     }
     for (Entry e: p.getEntries()) {
+      checkCancelled();
       if (e.getType().equals(EntryType.reaction)) {
         if (e.getCustom()==null && e.getName().contains(r.getName())) {
           e.setCustom(reaction);
@@ -902,7 +952,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   
   
   /**
-   * Adds all KEGG {@link Relation}s to the BioPAX {@link #model}.
+   * Adds all KEGG {@link Relation}s to the BioPAX {@link #getModel()}.
    * @param p
    */
   public void createRelations(Pathway p) {
@@ -918,6 +968,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     int addedReverseReactions = 0;
     Set<String> avoidDuplicates = new HashSet<String>();
     for (Relation r : p.getRelations()) {
+      checkCancelled();
       Collection<String> subtypes = r.getSubtypesNames();
       
       // Avoid duplicates
@@ -957,7 +1008,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   }
   
   /**
-   * Adds all entries of the given pathway to the BioPAX model.
+   * Adds all entries of the given pathway to the BioPAX getModel().
    * @param p
    */
   public void createPhysicalEntities(Pathway p) {
@@ -965,10 +1016,11 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     ArrayList<Entry> entries = p.getEntries();
     Set<String> addedEntries = new HashSet<String>(); // contains just entrys with KEGG ids (no "undefined" entries)
     for (Entry entry : entries) {
-      progress.DisplayBar();
+      checkCancelled();
+      getProgressBar().DisplayBar();
       BioPAXElement spec = null;
       if (entry.getType().equals(EntryType.reaction)) {
-        entriesWithTypeReactionAvailable=true;
+        getContext().entriesWithTypeReactionAvailable=true;
       }
       
       /*
@@ -1013,9 +1065,9 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     String rfid = getVocabularyID(st, false);
     BioPAXElement voc=null;
     if (level == BioPAXLevel.L3) {
-      voc = model.getByID(rfid);
+      voc = getModel().getByID(rfid);
     } else if (level == BioPAXLevel.L2) {
-      voc = model.getByID(rfid);
+      voc = getModel().getByID(rfid);
     }
     
     // Term is not yet available => create it.
@@ -1025,14 +1077,14 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
       String termName = miTerm!=null?miTerm.getA():null;//formattedName;
       
       if (level == BioPAXLevel.L3) {
-        voc = model.addNew(InteractionVocabulary.class, rfid);
+        voc = getModel().addNew(InteractionVocabulary.class, rfid);
         pathwayComponentCreated(voc);
         if (termName!=null) {
           ((InteractionVocabulary)voc).addTerm(termName);
         }
         ((InteractionVocabulary)voc).addComment(formattedName);// In all cases, add the original KEGG name
       } else if (level == BioPAXLevel.L2) {
-        voc = model.addNew(openControlledVocabulary.class, rfid);
+        voc = getModel().addNew(openControlledVocabulary.class, rfid);
         pathwayComponentCreated(voc);
         if (termName!=null) {
           ((openControlledVocabulary)voc).addTERM(termName);
@@ -1156,7 +1208,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   
   /**
    * Please implement this method to add the given {@link Entry}
-   * {@code e} as appropriate BioPAX entity to the {@link #model}.
+   * {@code e} as appropriate BioPAX entity to the {@link #getModel()}.
    * @param e
    * @param p
    * @return created {@link BioPAXElement}
@@ -1165,7 +1217,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   
   /**
    * Please implement this method to add the given {@link Reaction}
-   * {@code r} as appropriate BioPAX entity to the {@link #model}.
+   * {@code r} as appropriate BioPAX entity to the {@link #getModel()}.
    * @param r
    * @param p
    * @return created {@link BioPAXElement}
@@ -1174,7 +1226,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   
   /**
    * Please implement this method to add the given {@link Relation}
-   * {@code r} as appropriate BioPAX entity to the {@link #model}.
+   * {@code r} as appropriate BioPAX entity to the {@link #getModel()}.
    * @param r
    * @param p
    * @return created {@link BioPAXElement}
@@ -1188,9 +1240,9 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   protected void pathwayComponentCreated(BioPAXElement element) {
     if (element != null) {
       if (element instanceof pathwayComponent) {
-        ((org.biopax.paxtools.model.level2.pathway) pathway).addPATHWAY_COMPONENTS((pathwayComponent) element);
+        ((org.biopax.paxtools.model.level2.pathway) getPathway()).addPATHWAY_COMPONENTS((pathwayComponent) element);
       } else if (element instanceof org.biopax.paxtools.model.level3.Process) {
-        ((org.biopax.paxtools.model.level3.Pathway) pathway).addPathwayComponent((org.biopax.paxtools.model.level3.Process) element);
+        ((org.biopax.paxtools.model.level3.Pathway) getPathway()).addPathwayComponent((org.biopax.paxtools.model.level3.Process) element);
       }
     }
   }
@@ -1222,17 +1274,17 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
   
   /**
    * Ensures the given {@code id} is unique in the current
-   * {@link #model}.
+   * {@link #getModel()}.
    * <p><b>If possible, use {@link #NameToSId(String)} instead of this method!!!</b></p>
    * @param id
    * @return
    */
   protected String ensureUniqueRDFId(String id) {
     String originalID = id;
-    if (model.containsID(id)) {
+    if (getModel().containsID(id)) {
       int i = 2;
       id = originalID.concat(Integer.toString(i));
-      while (model.containsID(id)) {
+      while (getModel().containsID(id)) {
         i++;
         id = originalID.concat(Integer.toString(i));
       }
@@ -1253,7 +1305,7 @@ public abstract class KEGG2BioPAX extends AbstractKEGGtranslator<Model> {
     if (element instanceof SimplePhysicalEntity) {
       return ((SimplePhysicalEntity) element).getEntityReference();
     }
-    return (EntityReference) model.getByID(element.getRDFId() + KEGG2BioPAX_level3.EntityReferenceSuffix);
+    return (EntityReference) getModel().getByID(element.getRDFId() + KEGG2BioPAX_level3.EntityReferenceSuffix);
   }
   
 }
@@ -84,11 +84,6 @@ import de.zbit.util.Utils;
  */
 public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
   
-  /**
-   * The root {@link pathway} of our BioPAX conversion.
-   */
-  private pathway pathway;
-  
   /**
    * Initialize a new {@link KEGG2BioPAX} object, using a new Cache and a new KeggAdaptor.
    */
@@ -109,7 +104,7 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
    */
   @Override
   protected BioPAXElement createPathwayInstance(Pathway p) {
-    pathway = model.addNew(pathway.class, p.getName());
+    pathway pathway = getModel().addNew(pathway.class, p.getName());
     pathway.setAVAILABILITY(Collections.singleton(String.format("This file has been generated by %s version %s", System.getProperty("app.name"), System.getProperty("app.version"))));
     pathway.setNAME((p.getTitle())); // Paxtools escapes chars for HTML automatically
     
@@ -204,8 +199,8 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
       }
       
       // Remember already queried objects (save cache)
-      if (AbstractKEGGtranslator.getKeggInfoManager().hasChanged()) {
-        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, AbstractKEGGtranslator.getKeggInfoManager());
+      if (k2s.getCache().hasChanged()) {
+        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, k2s.getCache());
       }
       
       return;
@@ -222,8 +217,8 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
       k2s.translate("files/KGMLsamplefiles/hsa00010.xml", "files/KGMLsamplefiles/hsa00010.sbml.xml");
       
       // Remember already queried objects
-      if (AbstractKEGGtranslator.getKeggInfoManager().hasChanged()) {
-        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, AbstractKEGGtranslator.getKeggInfoManager());
+      if (k2s.getCache().hasChanged()) {
+        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, k2s.getCache());
       }
       
     } catch (Exception e) {
@@ -302,7 +297,7 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
     }
     
     // Create the actual element
-    BioPAXElement element = model.addNew(instantiate, '#'+NameToSId(entry.getName().length()>45?entry.getName().substring(0, 45):entry.getName()));
+    BioPAXElement element = getModel().addNew(instantiate, '#'+NameToSId(entry.getName().length()>45?entry.getName().substring(0, 45):entry.getName()));
     pathwayComponentCreated(element);
     
     // NOTE: we can cast to entity, as all used classes are derived from entity
@@ -318,7 +313,7 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
     ((entity)element).setSHORT_NAME(name); // Intenligent name
     // TODO in level 3: setStandardName( and setDisplayName( in L3
     // ---
-    ((entity)element).setDATA_SOURCE(pathway.getDATA_SOURCE());
+    ((entity)element).setDATA_SOURCE(((pathway) getPathway()).getDATA_SOURCE());
     
     // For complex:
     if (entry.hasComponents() && (element instanceof complex)) {
@@ -361,10 +356,10 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
   private physicalEntityParticipant getParticipant(BioPAXElement ceb) {
     // It's stupid, but we are required to create a new participant each time!
     // else, we get an error: "Illegal attempt to reuse a PEP!".
-    //    physicalEntityParticipant participant = (physicalEntityParticipant) model.getByID(ceb.getRDFId() + "_participant");
+    //    physicalEntityParticipant participant = (physicalEntityParticipant) getModel().getByID(ceb.getRDFId() + "_participant");
     //    if (participant==null) {
     Class<? extends physicalEntityParticipant> instantiate2 = (ceb instanceof sequenceEntity) ? sequenceParticipant.class : physicalEntityParticipant.class;
-    physicalEntityParticipant participant = model.addNew(instantiate2, NameToSId(ceb.getRDFId() + "_participant"));
+    physicalEntityParticipant participant = getModel().addNew(instantiate2, NameToSId(ceb.getRDFId() + "_participant"));
     pathwayComponentCreated(participant);
     if (ceb instanceof physicalEntity) {
       participant.setPHYSICAL_ENTITY((physicalEntity) ceb);
@@ -389,7 +384,7 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
     }
     
     // Create the actual reaction or catalysis
-    BioPAXElement element = model.addNew(instantiate, '#'+NameToSId(r.getName()));
+    BioPAXElement element = getModel().addNew(instantiate, '#'+NameToSId(r.getName()));
     pathwayComponentCreated(element);
     biochemicalReaction reaction;
     if ((element instanceof catalysis)) {
@@ -413,11 +408,11 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
       if (r.isSetType()) {
         ((catalysis) element).setDIRECTION(r.getType()==ReactionType.reversible?Direction.REVERSIBLE:Direction.IRREVERSIBLE_LEFT_TO_RIGHT);
       }
-      ((catalysis) element).setDATA_SOURCE(pathway.getDATA_SOURCE());
+      ((catalysis) element).setDATA_SOURCE(((pathway) getPathway()).getDATA_SOURCE());
       ((catalysis) element).setNAME(r.getName()+"_catalysis");
       
       // create actual reaction
-      reaction = model.addNew(biochemicalReaction.class, '#'+NameToSId(r.getName()));
+      reaction = getModel().addNew(biochemicalReaction.class, '#'+NameToSId(r.getName()));
       pathwayComponentCreated(reaction);
       ((catalysis) element).addCONTROLLED(reaction);
     } else {
@@ -426,7 +421,7 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
     
     
     reaction.setNAME(r.getName());
-    reaction.setDATA_SOURCE(pathway.getDATA_SOURCE());
+    reaction.setDATA_SOURCE(((pathway) getPathway()).getDATA_SOURCE());
     
     // Add all reaction components
     for (ReactionComponent rc : r.getSubstrates()) {
@@ -548,11 +543,11 @@ public class KEGG2BioPAX_level2 extends KEGG2BioPAX {
     }
     
     // Create the relation
-    physicalInteraction bpe = (physicalInteraction) model.addNew(instantiate, '#'+NameToSId("KEGGrelation"));
+    physicalInteraction bpe = (physicalInteraction) getModel().addNew(instantiate, '#'+NameToSId("KEGGrelation"));
     pathwayComponentCreated(bpe);
     
     // Add Annotations
-    bpe.setDATA_SOURCE(pathway.getDATA_SOURCE());
+    bpe.setDATA_SOURCE(((pathway) getPathway()).getDATA_SOURCE());
     if (subtype.size()>0) {
       if (!subtype.contains(SubType.COMPOUND)) {
         bpe.addCOMMENT("LINE-TYPE: " + r.getSubtypes().iterator().next().getValue());
@@ -105,14 +105,14 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
   
   
   /**
-   * The root {@link Pathway} of our BioPAX conversion.
+   * The state of one translation.
    */
-  private org.biopax.paxtools.model.level3.Pathway pathway;
-  
-  /**
-   * {@link BioSource} for the organism
-   */
-  private BioSource organism = null;
+  protected static class Level3Context extends BioPAXContext {
+    /**
+     * {@link BioSource} for the organism
+     */
+    private BioSource organism = null;
+  }
   
   /**
    * A common suffix for all {@link EntityReference}s.
@@ -138,6 +138,22 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     super(BioPAXLevel.L3, manager);
   }
   
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.KEGG2BioPAX#createContext()
+   */
+  @Override
+  protected TranslationContext createContext() {
+    return new Level3Context();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.KEGG2BioPAX#getContext()
+   */
+  @Override
+  protected Level3Context getContext() {
+    return (Level3Context) super.getContext();
+  }
+  
   /* (non-Javadoc)
    * @see de.zbit.kegg.io.KEGG2BioPAX#addEntry(de.zbit.kegg.parser.pathway.Entry, de.zbit.kegg.parser.pathway.Pathway)
    */
@@ -203,7 +219,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     
     // Create the actual element
     String eId = '#'+NameToSId(entry.getName().length()>45?entry.getName().substring(0, 45):entry.getName());
-    BioPAXElement element = model.addNew(instantiate, eId);
+    BioPAXElement element = getModel().addNew(instantiate, eId);
     pathwayComponentCreated(element);
     
     // NOTE: we can cast to Entity, as all used classes are derived from Entity
@@ -296,7 +312,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
       // Further set Organism and names (do not set organism on h2o and similar).
       if (er instanceof SequenceEntityReference &&
           !er.getModelInterface().equals(SmallMoleculeReference.class)) {
-        ((SequenceEntityReference) er).setOrganism(organism);
+        ((SequenceEntityReference) er).setOrganism(getContext().organism);
       }
       if (er instanceof Named && element instanceof Named) {
         ((Named) er).setStandardName(((Named) element).getStandardName());
@@ -321,24 +337,24 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     EntityReference bpEr = null;
     
     if (element instanceof SmallMolecule){
-      bpEr = model.addNew(SmallMoleculeReference.class, id);
+      bpEr = getModel().addNew(SmallMoleculeReference.class, id);
       // must set to unknown, default is 0.0 which makes no sense...
       ((SmallMoleculeReference)bpEr).setMolecularWeight(BioPAXElement.UNKNOWN_FLOAT);
       
     } else if (element instanceof Protein) {
-      bpEr = model.addNew(ProteinReference.class, id);
+      bpEr = getModel().addNew(ProteinReference.class, id);
       
     } else if (element instanceof Rna) {
-      bpEr = model.addNew(RnaReference.class, id);
+      bpEr = getModel().addNew(RnaReference.class, id);
       
     } else if (element instanceof Dna) {
-      bpEr = model.addNew(DnaReference.class, id);
+      bpEr = getModel().addNew(DnaReference.class, id);
       
     } else if (element instanceof RnaRegion) {
-      bpEr = model.addNew(RnaRegionReference.class, id);
+      bpEr = getModel().addNew(RnaRegionReference.class, id);
       
     } else if (element instanceof DnaRegion) {
-      bpEr = model.addNew(DnaRegionReference.class, id);
+      bpEr = getModel().addNew(DnaRegionReference.class, id);
       
     } else {
       // We can't create entity references for complexes
@@ -349,7 +365,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     // Adjust organism, names and xrefs (ATP has no organism...)
     if (bpEr instanceof SequenceEntityReference &&
         !bpEr.getModelInterface().equals(SmallMoleculeReference.class)) {
-      ((SequenceEntityReference)bpEr).setOrganism(organism);
+      ((SequenceEntityReference)bpEr).setOrganism(getContext().organism);
     }
     
     
@@ -365,7 +381,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
    */
   private void addDataSources(BioPAXElement element) {
     if (element instanceof Entity) {
-      for (Provenance ds : pathway.getDataSource()) {
+      for (Provenance ds : ((org.biopax.paxtools.model.level3.Pathway) getPathway()).getDataSource()) {
         ((Entity)element).addDataSource(ds);
       }
     }
@@ -376,7 +392,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
    */
   @Override
   protected BioPAXElement createPathwayInstance(Pathway p) {
-    pathway = model.addNew(org.biopax.paxtools.model.level3.Pathway.class, p.getName());
+    org.biopax.paxtools.model.level3.Pathway pathway = getModel().addNew(org.biopax.paxtools.model.level3.Pathway.class, p.getName());
     pathway.addAvailability(String.format("This file has been generated by %s version %s", System.getProperty("app.name"), System.getProperty("app.version")));
     String htmlName = (p.getTitle()); // Escaping is done automatically in Paxtools!
     pathway.addName(htmlName);
@@ -394,7 +410,8 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     }
     
     // Retrieve further information via Kegg Adaptor
-    organism = (BioSource) createBioSource(p);
+    BioSource organism = (BioSource) createBioSource(p);
+    getContext().organism = organism;
     pathway.setOrganism(organism);
     
     // Get PW infos from KEGG Api for Description and GO ids.
@@ -439,7 +456,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     }
     
     // Create the actual reaction or Catalysis
-    BioPAXElement element = model.addNew(instantiate, '#'+NameToSId(r.getName()));
+    BioPAXElement element = getModel().addNew(instantiate, '#'+NameToSId(r.getName()));
     pathwayComponentCreated(element);
     BiochemicalReaction reaction;
     if ((element instanceof Catalysis)) {
@@ -463,7 +480,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
       ((Catalysis) element).addName(r.getName()+"_Catalysis");
       
       // Create actual reaction
-      reaction = model.addNew(BiochemicalReaction.class, '#'+NameToSId(r.getName()));
+      reaction = getModel().addNew(BiochemicalReaction.class, '#'+NameToSId(r.getName()));
       pathwayComponentCreated(reaction);
       ((Catalysis) element).addControlled(reaction);
     } else {
@@ -524,7 +541,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     
     // Set the stoichiometry
     Integer stoich = rc.getStoichiometry();
-    Stoichiometry s = model.addNew(Stoichiometry.class, '#'+NameToSId(ce.getName()+"_"+getNameForElement(reaction)+"_stoich"));
+    Stoichiometry s = getModel().addNew(Stoichiometry.class, '#'+NameToSId(ce.getName()+"_"+getNameForElement(reaction)+"_stoich"));
     pathwayComponentCreated(s);
     s.setPhysicalEntity((PhysicalEntity) ceb);
     s.setStoichiometricCoefficient(stoich==null?1f:(float)stoich);
@@ -654,7 +671,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     }
     
     // Create the relation
-    Interaction bpe = (Interaction) model.addNew(instantiate, '#'+NameToSId("KEGGrelation"));
+    Interaction bpe = (Interaction) getModel().addNew(instantiate, '#'+NameToSId("KEGGrelation"));
     pathwayComponentCreated(bpe);
     bpe.setDisplayName(createDisplayName(ArrayUtils.implode(subtype, ", ") + " of " + getNameForElement(qTwo)));
     
@@ -736,7 +753,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     }
     
     // Create the controller
-    Control controller = model.addNew(instantiate, '#'+NameToSId("KEGGrelationController"));
+    Control controller = getModel().addNew(instantiate, '#'+NameToSId("KEGGrelationController"));
     pathwayComponentCreated(controller);
     addDataSources(controller);
     String name = getNameForElement(qOne);
@@ -811,10 +828,10 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
       
       // Modification types are UNIQUE for a certain [combination of] subtypes.
       String modID = '#'+modifiedName.trim().replace(' ', '_').replace("/", "_or_");
-      ModificationFeature mod = (ModificationFeature) model.getByID(modID);
+      ModificationFeature mod = (ModificationFeature) getModel().getByID(modID);
       boolean modificationDidAlreadyExist = mod!=null;
       if (mod==null) {
-        mod = model.addNew(ModificationFeature.class, modID);
+        mod = getModel().addNew(ModificationFeature.class, modID);
         pathwayComponentCreated(mod);
         addDataSources(mod);
       }
@@ -870,18 +887,18 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     }
     
     // Avoid duplicate entries, search if exactly this one has already been creted once
-    List<BioPAXElement> objects = new ArrayList<BioPAXElement>(model.getObjects());
+    List<BioPAXElement> objects = new ArrayList<BioPAXElement>(getModel().getObjects());
     boolean checkTwo = true, checkThree = true;
     for (BioPAXElement e : objects) {
       if (e == qTwo || e == qThree) {
         // The same pointer, not only equal!
         continue;
       } else if (checkTwo && e.isEquivalent(qTwo)) {
-        model.remove(qTwo);
+        getModel().remove(qTwo);
         qTwo = e;
         checkTwo = false;
       } else if (checkThree && e.isEquivalent(qThree)) {
-        model.remove(qThree);
+        getModel().remove(qThree);
         qThree = e;
         checkThree = false;
       }
@@ -938,7 +955,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     }
     
     EntityReference eRef = ((SimplePhysicalEntity) entity).getEntityReference();
-    BioPAXElement modEntity = model.getByID(entity.getRDFId() + ENTITY_MODIFICATION_SUFFIX);
+    BioPAXElement modEntity = getModel().getByID(entity.getRDFId() + ENTITY_MODIFICATION_SUFFIX);
     int i = 1;
     while (modEntity!=null) {
       // Are both derived from the same thing?
@@ -959,7 +976,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
         
       }
       i++;
-      modEntity = model.getByID(entity.getRDFId() + ENTITY_MODIFICATION_SUFFIX + i);
+      modEntity = getModel().getByID(entity.getRDFId() + ENTITY_MODIFICATION_SUFFIX + i);
     }
     
     return null;
@@ -975,12 +992,12 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
     String formattedName = st.getName().trim().replace(' ', '_').replace("/", "_or_");
     //String rfid = "#modification_type_" + formattedName;
     String rfid = getVocabularyID(st, true);
-    SequenceModificationVocabulary voc = (SequenceModificationVocabulary) model.getByID(rfid);
+    SequenceModificationVocabulary voc = (SequenceModificationVocabulary) getModel().getByID(rfid);
     
     // Term is not yet available => create it.
     if (voc==null) {
       // Create the object
-      voc = model.addNew(SequenceModificationVocabulary.class, rfid);
+      voc = getModel().addNew(SequenceModificationVocabulary.class, rfid);
       pathwayComponentCreated(voc);
       
       // For methylation, phosphorylation, etc. we have MOD terms
@@ -1056,7 +1073,7 @@ public class KEGG2BioPAX_level3 extends KEGG2BioPAX {
   }
   public BioPAXElement createCopy(BioPAXElement element, Class<? extends BioPAXElement> typeOfCopy) {
     String eId = ensureUniqueRDFId(element.getRDFId() + ENTITY_MODIFICATION_SUFFIX); // Make unique
-    BioPAXElement newElement = model.addNew(typeOfCopy, eId);
+    BioPAXElement newElement = getModel().addNew(typeOfCopy, eId);
     pathwayComponentCreated(newElement);
     
     // Names
@@ -75,12 +75,22 @@ import de.zbit.kegg.parser.pathway.SubType;
  */
 public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
   
-  private ObjectFactory objectFactory = new ObjectFactory();
+  private final ObjectFactory objectFactory = new ObjectFactory();
   
-  private Sbgn sbgn = objectFactory.createSbgn();
-  private org.sbgn.bindings.Map map = objectFactory.createMap();
-  private HashMap<Glyph, String> glyphNamesForGlyphStates = new HashMap<Glyph, String>();
-  private int id = 0;
+  /**
+   * The state of one translation, i.e., the created document and the
+   * ids of all created glyphs.
+   */
+  protected class SBGNContext extends TranslationContext {
+    private Sbgn sbgn = objectFactory.createSbgn();
+    private org.sbgn.bindings.Map map = objectFactory.createMap();
+    private HashMap<Glyph, String> glyphNamesForGlyphStates = new HashMap<Glyph, String>();
+    private int id = 0;
+    
+    public SBGNContext() {
+      sbgn.setMap(map);
+    }
+  }
   
   /**
    * Constructor
@@ -91,12 +101,25 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
     super(manager);
   }
   
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.AbstractKEGGtranslator#createContext()
+   */
+  @Override
+  protected TranslationContext createContext() {
+    return new SBGNContext();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.AbstractKEGGtranslator#getContext()
+   */
+  @Override
+  protected SBGNContext getContext() {
+    return (SBGNContext) super.getContext();
+  }
+  
   @Override
   protected Sbgn translateWithoutPreprocessing(Pathway p) {
     
-    // set the map
-    sbgn.setMap(map);
-    
     // for every entry in the pathway
     handleAllEntries(p);
     
@@ -110,7 +133,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
       handleAllReactions(p);
     }
     
-    return sbgn;
+    return getContext().sbgn;
   }
   
   /**
@@ -125,6 +148,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
     
     // for every entry
     for (Entry e : p.getEntries()) {
+      checkCancelled();
       // create a glyph with the proper id
       Glyph g = createGlyphWithID();
       
@@ -188,7 +212,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
       e.setCustom(g);
       
       // put the glyph into the map
-      sbgn.getMap().getGlyph().add(g);
+      getContext().map.getGlyph().add(g);
     }
     
   }
@@ -203,6 +227,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
     
     // for every relation
     for (Relation relation : p.getRelations()) {
+      checkCancelled();
       
       // get the relation partners
       Entry one = p.getEntryForId(relation.getEntry1());
@@ -323,6 +348,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
    */
   private void handleAllReactions(Pathway p) {
     for (Reaction reaction : p.getReactions()) {
+      checkCancelled();
       
       // create arraylists for the sources, targets and reactionModifiers
       ArrayList<Glyph> sources = new ArrayList<Glyph>();
@@ -389,9 +415,9 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
     // create a new glyph
     Glyph glyph = objectFactory.createGlyph();
     // name the glyph and add the id globally
-    glyph.setId("glyph" + id++);
+    glyph.setId("glyph" + getContext().id++);
     // put the glyph in the hashmap with the number of the next subglyph
-    glyphNamesForGlyphStates.put(glyph, "a");
+    getContext().glyphNamesForGlyphStates.put(glyph, "a");
     return glyph;
   }
   
@@ -405,14 +431,14 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
     // set the clazz to state variable
     g.setClazz(GlyphType.state_variable.toString());
     // get the id of the parent glyph
-    String subId = glyphNamesForGlyphStates.get(glyph);
+    String subId = getContext().glyphNamesForGlyphStates.get(glyph);
     // set it as id
     g.setId(glyph.getId() + subId);
     // increment it
     StringBuffer s = new StringBuffer(subId);
     s.setCharAt(0, (char) (s.charAt(0)+1));
     subId = String.valueOf(s.charAt(0));
-    glyphNamesForGlyphStates.put(glyph, subId);
+    getContext().glyphNamesForGlyphStates.put(glyph, subId);
     return g;
   }
   
@@ -461,7 +487,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
     connection.setTarget(target);
     
     // add the connection to the arc list
-    sbgn.getMap().getArc().add(connection);
+    getContext().map.getArc().add(connection);
   }
   
   /**
@@ -506,7 +532,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
         connection.setTarget(portIn);
         
         // add the connection to the map
-        map.getArc().add(connection);
+        getContext().map.getArc().add(connection);
       }
       
       
@@ -530,7 +556,7 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
         connection.setTarget(target);
         
         // add the connection to the map
-        map.getArc().add(connection);
+        getContext().map.getArc().add(connection);
       }
       
       
@@ -555,14 +581,14 @@ public class KEGG2SBGN extends AbstractKEGGtranslator<Sbgn> {
         connection.setTarget(process);
         
         // add the connection to the map
-        map.getArc().add(connection);
+        getContext().map.getArc().add(connection);
         
       }
       
     }
     
     // add the process glyph to the map
-    map.getGlyph().add(process);
+    getContext().map.getGlyph().add(process);
   }
   
   public static void main(String[] args) throws JAXBException, SAXException {
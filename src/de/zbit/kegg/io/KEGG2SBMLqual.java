@@ -102,11 +102,16 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
   private boolean considerReactions = false;
   
   /**
-   * All transitions that are added to the model.
-   * Identified as "inputQualitativeSpecies ouptutQualitativeSpecies [SBOterm]",
-   * used to check for duplicates.
+   * The state of one translation.
    */
-  private Set<String> containedTransitions = new HashSet<String>();
+  protected static class QualContext extends TranslationContext {
+    /**
+     * All transitions that are added to the model.
+     * Identified as "inputQualitativeSpecies ouptutQualitativeSpecies [SBOterm]",
+     * used to check for duplicates.
+     */
+    private final Set<String> containedTransitions = new HashSet<String>();
+  }
   
   
   /**
@@ -159,6 +164,22 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
   /** Load the default preferences from the SBPreferences object. */
   private void loadPreferences() {}
   
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.AbstractKEGGtranslator#createContext()
+   */
+  @Override
+  protected TranslationContext createContext() {
+    return new QualContext();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.io.AbstractKEGGtranslator#getContext()
+   */
+  @Override
+  protected QualContext getContext() {
+    return (QualContext) super.getContext();
+  }
+  
   /**
    * 
    * @return the level and version of the SBML core (2,4)
@@ -174,9 +195,6 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
   @Override
   protected SBMLDocument translateWithoutPreprocessing(Pathway p) throws XMLStreamException {
     
-    // Don't forget to clear all previous caches
-    containedTransitions.clear();
-    
     // Translate to normal SBML
     SBMLDocument doc = super.translateWithoutPreprocessing(p);
     
@@ -213,6 +231,7 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
       log.fine("File does not contain any relations. Graph will look quite boring...");
     } else {
       for (Relation r : p.getRelations()) {
+        checkCancelled();
         addKGMLRelation(r, p, qualModel);
       }
     }
@@ -238,6 +257,7 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
    */
   private void createQualSpecies(Pathway p, QualModelPlugin qualModel) {
     for (Entry e : p.getEntries()) {
+      checkCancelled();
       Object s = e.getCustom();
       if ((s != null) && (s instanceof Species)) {
         QualitativeSpecies qs = createQualitativeSpeciesFromSpecies((Species) s, qualModel);
@@ -406,7 +426,7 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
     
     // Don't add same relations twice
     String transitionIdentifier = in.getQualitativeSpecies() + " " + out.getQualitativeSpecies() + " " + (t.isSetSBOTerm() ? t.getSBOTermID():"");
-    if (!containedTransitions.add(transitionIdentifier)) {
+    if (!getContext().containedTransitions.add(transitionIdentifier)) {
       qualModel.getListOfTransitions().remove(t);
       t=null;
     }
@@ -521,8 +541,8 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
       }
       
       // Remember already queried objects (save cache)
-      if (AbstractKEGGtranslator.getKeggInfoManager().hasChanged()) {
-        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, AbstractKEGGtranslator.getKeggInfoManager());
+      if (k2s.getCache().hasChanged()) {
+        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, k2s.getCache());
       }
       
       return;
@@ -541,8 +561,8 @@ public class KEGG2SBMLqual extends KEGG2jSBML {
       TidySBMLWriter.write(doc, "files/KGMLsamplefiles/hsa04210.sbml.xml", ' ', (short) 2);
       
       // Remember already queried objects
-      if (AbstractKEGGtranslator.getKeggInfoManager().hasChanged()) {
-        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, AbstractKEGGtranslator.getKeggInfoManager());
+      if (k2s.getCache().hasChanged()) {
+        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, k2s.getCache());
       }
       
     } catch (Exception e) {
@@ -64,6 +64,7 @@ import de.zbit.kegg.KEGGtranslatorOptions;
 import de.zbit.kegg.Translator;
 import de.zbit.kegg.api.KeggInfos;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.cache.CompactKeggInfos;
 import de.zbit.kegg.parser.KeggParser;
 import de.zbit.kegg.parser.pathway.Entry;
 import de.zbit.kegg.parser.pathway.EntryType;
@@ -322,7 +323,7 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
   @Override
   public boolean writeToFile(SBMLDocument doc, String outFile) {
     if (new File(outFile).exists()) {
-      lastFileWasOverwritten=true;
+      markFileOverwritten();
     }
     try {
       TidySBMLWriter.write(doc, outFile, System.getProperty("app.name"), System
@@ -547,7 +548,8 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
     List<Entry> entries = getEntriesWithGroupsAsLast(p);
     Set<String> addedEntries = new HashSet<String>(); // contains just entrys with KEGG ids (no "undefined" entries)
     for (Entry entry : entries) {
-      progress.DisplayBar();
+      checkCancelled();
+      getProgressBar().DisplayBar();
       SBase spec = null;
       
       
@@ -596,6 +598,7 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
       
       // All species added. Parse reactions and relations.
       for (Reaction r : p.getReactions()) {
+        checkCancelled();
         if (processedReactions.add(r.getName())) {
           org.sbml.jsbml.Reaction sbReaction = addKGMLReaction(r,p,model,compartment,reactionModifiers);
           
@@ -858,18 +861,20 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
         String reactionImageURL = Pathway.getReactionPreviewPicture(ko_id, false);
         notes.append(String.format("<a href=\"%s\">", reactionImageURL));
         notes.append(String.format("<img src=\"%s\"/></a>\n", reactionImageURL));
-        if (infos.getPathwayDescriptions() != null) {
+        String[] descriptions = CompactKeggInfos.getPathwayDescriptions(infos);
+        if (descriptions != null) {
           notes.append("<br/>\n<b>Occurs in:</b><br/>\n");
           notes.append("<ul>\n");
-          for (String desc : infos.getPathwayDescriptions().split(",")) { // e.g. ",Glycolysis / Gluconeogenesis,Metabolic pathways"
+          for (String desc : descriptions) { // e.g. ",Glycolysis / Gluconeogenesis,Metabolic pathways"
             notes.append("<li>"+ formatTextForHTMLnotes(desc) + "</li>\n");
           }
           notes.append("</ul><br/>\n");
         }
         notes.append("</p>");
         
-        if ((rePWs != null) && (infos.getPathways() != null)) {
-          for (String pwId : infos.getPathways().split(",")) {
+        String[] pathways = CompactKeggInfos.getPathwayIDs(infos);
+        if ((rePWs != null) && (pathways != null)) {
+          for (String pwId : pathways) {
             String urn = AnnotationUtils.convertURN2URI(KeggInfos.miriam_urn_kgPathway + KeggInfos.suffix(pwId));
             if ((urn != null) && !rePWs.getResources().contains(urn)){
               rePWs.addResource(urn);
@@ -991,8 +996,23 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
    * @param entry
    * @param spec
    * @throws XMLStreamException
+   * @deprecated use {@link #addMiriamURNs(Entry, SBase, KeggInfoManagement)}.
    */
+  @Deprecated
   public static void addMiriamURNs(Entry entry, SBase spec) throws XMLStreamException {
+    addMiriamURNs(entry, spec, Translator.getManager());
+  }
+  
+  /**
+   * Adds all available MIRIAM URNs and ids to the given species.
+   * AND adds a description and more information from the KEGG api to the
+   * species's description.
+   * @param entry
+   * @param spec
+   * @param manager the cache to query.
+   * @throws XMLStreamException
+   */
+  public static void addMiriamURNs(Entry entry, SBase spec, KeggInfoManagement manager) throws XMLStreamException {
     // Get a map of existing identifiers or create a new one
     Map<DatabaseIdentifiers.IdentifierDatabases, Collection<String>> ids = new HashMap<DatabaseIdentifiers.IdentifierDatabases, Collection<String>>();
     if (entry instanceof EntryExtended) {
@@ -1350,7 +1370,7 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
     spec.setSBOTerm(SBOMapping.getSBOTerm(entry));
     
     // Add Miriam URNs and Description
-    addMiriamURNs(entry, spec);
+    addMiriamURNs(entry, spec, manager);
     
     // Finally, add the fully configured species.
     spec.setName(name);
@@ -1533,8 +1553,8 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
       }
       
       // Remember already queried objects (save cache)
-      if (AbstractKEGGtranslator.getKeggInfoManager().hasChanged()) {
-        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, AbstractKEGGtranslator.getKeggInfoManager());
+      if (k2s.getCache().hasChanged()) {
+        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, k2s.getCache());
       }
       
       return;
@@ -1551,8 +1571,8 @@ public class KEGG2jSBML extends AbstractKEGGtranslator<SBMLDocument>  {
       k2s.translate("files/KGMLsamplefiles/hsa00010.xml", "files/KGMLsamplefiles/hsa00010.sbml.xml");
       
       // Remember already queried objects
-      if (AbstractKEGGtranslator.getKeggInfoManager().hasChanged()) {
-        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, AbstractKEGGtranslator.getKeggInfoManager());
+      if (k2s.getCache().hasChanged()) {
+        KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, k2s.getCache());
       }
       
     } catch (Exception e) {
@@ -152,7 +152,8 @@ public class KEGG2yGraph extends AbstractKEGGtranslator<Graph2D> {
   /**
    * Important: This determines the output format. E.g. a GraphMLIOHandler
    * will write a graphML file, a GMLIOHandler will write a GML file.
-   * 
+   * The writer is not thread-safe. Hence, unlike most other translators,
+   * one instance must not be used by multiple threads at once.
    */
   private Graph2Dwriter outputHandler = null;
   
@@ -528,7 +529,7 @@ public class KEGG2yGraph extends AbstractKEGGtranslator<Graph2D> {
   protected Graph2D translateWithoutPreprocessing(Pathway p) {
     Graph2D graph = new Graph2D();
     ArrayList<String> PWReferenceNodeTexts = new ArrayList<String>();
-    boolean showProgressForRelations = KeggInfoManagement.offlineMode;
+    boolean showProgressForRelations = !isRetrieveKeggAnnots();
     
     //Create graph annotation maps
     NodeMap nodeDescription = graph.createNodeMap();
@@ -582,7 +583,8 @@ public class KEGG2yGraph extends AbstractKEGGtranslator<Graph2D> {
     Set<Node> toLayout = new HashSet<Node>();
     Map<Node, Entry> node2entry = new HashMap<Node, Entry>();
     for (int i=0; i<p.getEntries().size(); i++) {
-      progress.DisplayBar("Node " + (i+1) + "/" + p.getEntries().size());
+      checkCancelled();
+      getProgressBar().DisplayBar("Node " + (i+1) + "/" + p.getEntries().size());
       Entry e = p.getEntries().get(i);
       if (skipCompounds && e.getType().equals(EntryType.compound)) {
         continue;
@@ -996,8 +998,9 @@ public class KEGG2yGraph extends AbstractKEGGtranslator<Graph2D> {
     
     // Add Edges for all Relations
     for (int i=0; i<p.getRelations().size(); i++) {
+      checkCancelled();
       if (showProgressForRelations) {
-        progress.DisplayBar("Relation " + (i+1) + "/" + p.getRelations().size());
+        getProgressBar().DisplayBar("Relation " + (i+1) + "/" + p.getRelations().size());
       }
       Relation r = p.getRelations().get(i);
       Entry one = p.getEntryForId(r.getEntry1());
@@ -1110,6 +1113,7 @@ public class KEGG2yGraph extends AbstractKEGGtranslator<Graph2D> {
       // (maybe its intended? e.g. R00014 in hsa00010.xml)
       List<String> processedReactions = new SortedArrayList<String>();
       for (Reaction r : p.getReactions()) {
+        checkCancelled();
         if (!processedReactions.contains(r.getName())) {
           Node reactionNode = addKGMLReaction(r,p,graph,reactionModifiers);
           if (reactionNode!=null) {
@@ -0,0 +1,527 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Reads the files of a zip or (optionally gzip compressed) tar archive
+ * one after another, without extracting them. Every file is streamed
+ * directly into a {@link KGMLReader}. Files inside the archive may be
+ * gzip compressed themselves, e.g., a tar archive of '.xml.gz' files.
+ * Only regular files are returned, i.e., directories, links and the
+ * like are skipped.
+ *
+ * <p>Tar archives are read in the POSIX (ustar) format, including GNU
+ * long names and the path of pax extended headers.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KGMLArchive implements Closeable {
+  
+  /**
+   * Separates the path of an archive from the name of a file inside
+   * the archive, e.g., 'hsa.tar.gz!/hsa/hsa00010.xml'.
+   */
+  public static final String ENTRY_SEPARATOR = "!/";
+  
+  /**
+   * Size of a tar header and the unit of all tar entries.
+   */
+  private static final int BLOCK_SIZE = 512;
+  
+  /**
+   * The archive.
+   */
+  private final File file;
+  
+  /**
+   * The underlying stream, i.e., the uncompressed tar stream or a
+   * {@link ZipInputStream}.
+   */
+  private final InputStream in;
+  
+  /**
+   * {@code true} for a zip archive.
+   */
+  private final boolean zip;
+  
+  /**
+   * Buffer for tar headers.
+   */
+  private final byte[] header = new byte[BLOCK_SIZE];
+  
+  /**
+   * Name of the current file or {@code null} if {@link #next()} has not
+   * been called or there are no more files.
+   */
+  private String name = null;
+  
+  /**
+   * Uncompressed size of the current file or -1 if unknown.
+   */
+  private long size = -1;
+  
+  /**
+   * Unread bytes of the current tar entry.
+   */
+  private long remaining = 0;
+  
+  /**
+   * Bytes after the current tar entry up to the next header.
+   */
+  private long padding = 0;
+  
+  /**
+   * @param file a zip, tar or gzip compressed tar archive.
+   * @throws IOException if the file can not be opened.
+   */
+  public KGMLArchive(File file) throws IOException {
+    this.file = file;
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      byte[] magic = KGMLSniffer.peekHeader(in);
+      if (KGMLSniffer.isZIP(magic)) {
+        in = new ZipInputStream(in);
+        zip = true;
+      } else {
+        if (KGMLSniffer.isGZIP(magic)) {
+          in = new BufferedInputStream(new GZIPInputStream(in));
+        }
+        zip = false;
+      }
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+    this.in = in;
+  }
+  
+  /**
+   * @param path a path of the form 'archive!/name'.
+   * @return {@code true} if the given path denotes a file inside an
+   * archive, i.e., the archive exists.
+   */
+  public static boolean isEntryPath(String path) {
+    int pos = path.indexOf(ENTRY_SEPARATOR);
+    return (pos > 0) && new File(path.substring(0, pos)).isFile();
+  }
+  
+  /**
+   * Opens a single file inside an archive.
+   * @param path a path of the form 'archive!/name' (see {@link #isEntryPath(String)}).
+   * @return a reader for all pathways in the given file. Must be closed
+   * by the caller.
+   * @throws IOException if the archive can not be read or does not contain
+   * a KGML document with the given name.
+   * @throws XMLStreamException if the prolog of the file can not be parsed.
+   */
+  public static KGMLReader openEntry(String path) throws IOException, XMLStreamException {
+    int pos = path.indexOf(ENTRY_SEPARATOR);
+    String entry = path.substring(pos + ENTRY_SEPARATOR.length());
+    KGMLArchive archive = new KGMLArchive(new File(path.substring(0, pos)));
+    boolean done = false;
+    try {
+      while (archive.next()) {
+        if (archive.getName().equals(entry)) {
+          KGMLReader reader = archive.openReader();
+          if (reader == null) {
+            break;
+          }
+          done = true;
+          return reader;
+        }
+      }
+      throw new IOException(MessageFormat.format("No KGML document {0} in {1}.", entry, archive.file));
+    } finally {
+      if (!done) {
+        archive.close();
+      }
+    }
+  }
+  
+  /**
+   * @return the archive.
+   */
+  public File getFile() {
+    return file;
+  }
+  
+  /**
+   * @return the path of the current file inside the archive (with '/'
+   * as separator).
+   */
+  public String getName() {
+    return name;
+  }
+  
+  /**
+   * @return the uncompressed size of the current file (without
+   * decompressing a gzip compressed file in the archive) or -1 if unknown.
+   */
+  public long getSize() {
+    return size;
+  }
+  
+  /**
+   * @return the path of the current file, including the path of the
+   * archive (see {@link #ENTRY_SEPARATOR}).
+   */
+  public String getPath() {
+    return file.getPath() + ENTRY_SEPARATOR + name;
+  }
+  
+  /**
+   * Reads the uncompressed sizes of all files in the given archive.
+   * For a plain tar archive, this skips over the content of all files.
+   * @param file a zip, tar or gzip compressed tar archive.
+   * @return the size of the largest file.
+   * @throws IOException
+   */
+  public static long getLargestEntrySize(File file) throws IOException {
+    KGMLArchive archive = new KGMLArchive(file);
+    try {
+      long max = 0;
+      while (archive.next()) {
+        max = Math.max(max, archive.getSize());
+      }
+      return max;
+    } finally {
+      archive.close();
+    }
+  }
+  
+  /**
+   * Skips the rest of the current file and moves to the next regular file.
+   * @return {@code false} if there are no more files.
+   * @throws IOException if the archive can not be read.
+   */
+  public boolean next() throws IOException {
+    name = null;
+    size = -1;
+    if (zip) {
+      ZipEntry entry;
+      while ((entry = ((ZipInputStream) in).getNextEntry()) != null) {
+        if (!entry.isDirectory()) {
+          name = entry.getName();
+          size = entry.getSize();
+          return true;
+        }
+      }
+      return false;
+    }
+    
+    skipFully(remaining + padding);
+    remaining = padding = 0;
+    String longName = null;
+    while (readHeader()) {
+      long length = parseSize(header, 124, 12);
+      byte type = header[156];
+      if ((type == 'L') || (type == 'x')) {
+        // The name of the next entry (GNU) or its extended header (pax).
+        byte[] data = new byte[(int) length];
+        readFully(data);
+        skipFully(getPadding(length));
+        String value = (type == 'L') ? parseString(data, 0, data.length) : parsePaxPath(data);
+        if (value != null) {
+          longName = value;
+        }
+        continue;
+      }
+      remaining = length;
+      padding = getPadding(length);
+      if ((type == '0') || (type == 0) || (type == '7')) {
+        name = (longName != null) ? longName : parseName(header);
+        size = length;
+        return true;
+      }
+      // Directories, links, global pax headers, etc.
+      skipFully(remaining + padding);
+      remaining = padding = 0;
+      longName = null;
+    }
+    return false;
+  }
+  
+  /**
+   * @return the content of the current file, decompressed if the file is
+   * gzip compressed. Closing the returned stream does not close the archive.
+   * @throws IOException
+   */
+  public InputStream getInputStream() throws IOException {
+    InputStream entry = new BufferedInputStream(zip ? new FilterInputStream(in) {
+      /* (non-Javadoc)
+       * @see java.io.FilterInputStream#close()
+       */
+      @Override
+      public void close() throws IOException {
+        // Keep the archive open.
+      }
+    } : new TarEntryStream());
+    if (KGMLSniffer.isGZIP(KGMLSniffer.peekHeader(entry))) {
+      entry = new BufferedInputStream(new GZIPInputStream(entry));
+    }
+    return entry;
+  }
+  
+  /**
+   * Opens the current file for reading its pathways.
+   * @return a reader for the current file or {@code null} if it is not a
+   * KGML document. The archive remains open, if the reader is closed.
+   * @throws IOException if the archive can not be read.
+   * @throws XMLStreamException if the prolog of the file can not be parsed.
+   */
+  public KGMLReader openReader() throws IOException, XMLStreamException {
+    InputStream entry = getInputStream();
+    if (!KGMLSniffer.isKGML(KGMLSniffer.peekHeader(entry))) {
+      return null;
+    }
+    return new KGMLReader(entry, file.toURI().toString() + ENTRY_SEPARATOR + name);
+  }
+  
+  /**
+   * Opens all KGML documents in this archive for reading their pathways,
+   * one document after another.
+   * @return a reader for all pathways in this archive. Closing the reader
+   * closes this archive.
+   */
+  KGMLReader openAll() {
+    return new KGMLReader(this);
+  }
+  
+  /* (non-Javadoc)
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+  
+  /**
+   * Reads the next tar header.
+   * @return {@code false} at the end of the archive.
+   * @throws IOException
+   */
+  private boolean readHeader() throws IOException {
+    int length = 0, read;
+    while ((length < BLOCK_SIZE) && ((read = in.read(header, length, BLOCK_SIZE - length)) > 0)) {
+      length += read;
+    }
+    if (length < BLOCK_SIZE) {
+      return false; // Truncated archive without end marker.
+    }
+    for (byte b : header) {
+      if (b != 0) {
+        return true;
+      }
+    }
+    return false; // End marker
+  }
+  
+  /**
+   * @param data
+   * @throws IOException if the archive ends before the given array is filled.
+   */
+  private void readFully(byte[] data) throws IOException {
+    int length = 0, read;
+    while (length < data.length) {
+      if ((read = in.read(data, length, data.length - length)) < 0) {
+        throw new EOFException(MessageFormat.format("Unexpected end of archive {0}.", file));
+      }
+      length += read;
+    }
+  }
+  
+  /**
+   * @param n number of bytes to skip in the tar stream.
+   * @throws IOException
+   */
+  private void skipFully(long n) throws IOException {
+    while (n > 0) {
+      long skipped = in.skip(n);
+      if (skipped <= 0) {
+        if (in.read() < 0) {
+          return;
+        }
+        skipped = 1;
+      }
+      n -= skipped;
+    }
+  }
+  
+  /**
+   * @param length length of a tar entry
+   * @return number of bytes up to the next full block.
+   */
+  private static long getPadding(long length) {
+    return (BLOCK_SIZE - (length % BLOCK_SIZE)) % BLOCK_SIZE;
+  }
+  
+  /**
+   * @param header
+   * @return the name of the entry, including the prefix of an ustar header.
+   */
+  private static String parseName(byte[] header) {
+    String name = parseString(header, 0, 100);
+    if ((header[257] == 'u') && (header[258] == 's') && (header[259] == 't') && (header[260] == 'a') && (header[261] == 'r')
+        && (header[345] != 0)) {
+      name = parseString(header, 345, 155) + '/' + name;
+    }
+    return name;
+  }
+  
+  /**
+   * @param data the content of a pax extended header, i.e., records of the
+   * form 'length key=value\n'.
+   * @return the value of the 'path' key or {@code null}.
+   * @throws IOException
+   */
+  private static String parsePaxPath(byte[] data) throws IOException {
+    int pos = 0;
+    while (pos < data.length) {
+      int space = pos;
+      while ((space < data.length) && (data[space] != ' ')) {
+        space++;
+      }
+      int length;
+      try {
+        length = Integer.parseInt(new String(data, pos, space - pos, "US-ASCII").trim());
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if ((length <= 0) || (pos + length > data.length)) {
+        return null;
+      }
+      String record = new String(data, space + 1, pos + length - space - 2, "UTF-8");
+      if (record.startsWith("path=")) {
+        return record.substring(5);
+      }
+      pos += length;
+    }
+    return null;
+  }
+  
+  /**
+   * @param header
+   * @param offset
+   * @param length
+   * @return the null terminated string in the given field.
+   */
+  private static String parseString(byte[] header, int offset, int length) {
+    int end = offset;
+    while ((end < offset + length) && (header[end] != 0)) {
+      end++;
+    }
+    try {
+      return new String(header, offset, end - offset, "UTF-8");
+    } catch (IOException e) {
+      return new String(header, offset, end - offset);
+    }
+  }
+  
+  /**
+   * @param header
+   * @param offset
+   * @param length
+   * @return the octal or (for large files) binary number in the given field.
+   */
+  private static long parseSize(byte[] header, int offset, int length) {
+    long value = 0;
+    if ((header[offset] & 0x80) != 0) {
+      // base-256 (GNU)
+      value = header[offset] & 0x7F;
+      for (int i = offset + 1; i < offset + length; i++) {
+        value = (value << 8) | (header[i] & 0xFF);
+      }
+      return value;
+    }
+    for (int i = offset; i < offset + length; i++) {
+      byte b = header[i];
+      if ((b >= '0') && (b <= '7')) {
+        value = (value << 3) | (b - '0');
+      } else if ((b == 0) || ((b == ' ') && (value > 0))) {
+        break;
+      }
+    }
+    return value;
+  }
+  
+  /**
+   * The content of the current tar entry. Closing it does not close the
+   * archive.
+   */
+  private class TarEntryStream extends InputStream {
+    
+    /* (non-Javadoc)
+     * @see java.io.InputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.io.InputStream#available()
+     */
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+  
+  }
+  
+}
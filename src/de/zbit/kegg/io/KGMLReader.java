@@ -0,0 +1,918 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.EntryType;
+import de.zbit.kegg.parser.pathway.Graphics;
+import de.zbit.kegg.parser.pathway.GraphicsType;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.ReactionType;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.RelationType;
+import de.zbit.kegg.parser.pathway.SubType;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.kegg.parser.pathway.ext.EntryTypeExtended;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * Reads {@link Pathway}s from a KGML document, one at a time. Unlike
+ * {@link KeggParser}, which builds a DOM tree of the whole document
+ * before creating the first {@link Pathway}, this reader creates all
+ * objects directly from a StAX stream. Hence, only the pathway that is
+ * currently read is kept in memory. Repeated attribute values (e.g.,
+ * entry names, colors and subtypes) are shared among all objects read
+ * by one reader.
+ *
+ * <p>The result is the same as that of {@link KeggParser#parse(String)}.
+ * The KGML DTD is always read from the copy bundled with this class
+ * (see {@link #DTD}), i.e., never from the network. It provides the
+ * default values of the graphics attributes.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KGMLReader implements Closeable {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(KGMLReader.class.getName());
+  
+  /**
+   * Name of the bundled KGML DTD resource.
+   */
+  public static final String DTD = "KGML_v0.7.0_.dtd";
+  
+  /**
+   * System identifier in the document type declaration.
+   */
+  private static final Pattern SYSTEM_ID = Pattern.compile("(?:SYSTEM|PUBLIC\\s+([\"']).*?\\1)\\s+([\"'])(.*?)\\2", Pattern.DOTALL);
+  
+  /**
+   * An attribute declaration with a default value in a DTD.
+   */
+  private static final Pattern ATTLIST = Pattern.compile("<!ATTLIST\\s+(\\S+)\\s+(\\S+)\\s+(?:\\([^)]*\\)|[^\\s\"]+)\\s+\"([^\"]*)\"\\s*>");
+  
+  /**
+   * Default values of all attributes in the bundled {@link #DTD}, by
+   * element and attribute name. Not all StAX implementations provide them.
+   */
+  private static final Map<String, Map<String, String>> defaults = loadDefaults();
+  
+  /**
+   * All {@link IdentifierDatabases} by the name of the corresponding
+   * attribute of an {@link EntryExtended}.
+   */
+  private static final Map<String, IdentifierDatabases> databases = new HashMap<String, IdentifierDatabases>();
+  static {
+    for (IdentifierDatabases db : IdentifierDatabases.values()) {
+      databases.put(db.toString(), db);
+    }
+  }
+  
+  /**
+   * Removes all occurrences of '&amp;keywords=' from a stream, like
+   * {@link KeggParser} does for old KGML documents (version 0.5 and
+   * earlier). These contain unescaped ampersands in their links, which
+   * would make the document invalid. Since such a sequence is not allowed
+   * in any well-formed XML document, it is removed regardless of the version.
+   */
+  private static class KeywordsFilter extends PushbackInputStream {
+    
+    /**
+     * The unescaped query parameter of old KGML links.
+     */
+    private static final byte[] KEYWORDS = {'&', 'k', 'e', 'y', 'w', 'o', 'r', 'd', 's', '='};
+    
+    /**
+     * @param in
+     */
+    public KeywordsFilter(InputStream in) {
+      // Large enough for unread bytes and a partial match.
+      super(in, 2 * KEYWORDS.length);
+    }
+    
+    /* (non-Javadoc)
+     * @see java.io.PushbackInputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != KEYWORDS[0]) {
+        return b;
+      }
+      byte[] next = new byte[KEYWORDS.length - 1];
+      int length = 0, read;
+      while ((length < next.length) && ((read = super.read()) >= 0)) {
+        next[length++] = (byte) read;
+        if (next[length - 1] != KEYWORDS[length]) {
+          break;
+        }
+      }
+      if (length == next.length) {
+        return read(); // Skipped all of KEYWORDS.
+      }
+      unread(next, 0, length);
+      return b;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.io.PushbackInputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      int read = super.read(b, off, len);
+      if (read <= 0) {
+        return read;
+      }
+      int end = off + read;
+      for (int i = off; i < end; i++) {
+        if (b[i] != KEYWORDS[0]) {
+          continue;
+        }
+        int k = 1;
+        while ((k < KEYWORDS.length) && (i + k < end) && (b[i + k] == KEYWORDS[k])) {
+          k++;
+        }
+        if (k == KEYWORDS.length) {
+          System.arraycopy(b, i + k, b, i, end - i - k);
+          end -= k;
+          i--;
+        } else if (i + k == end) {
+          // Maybe the beginning of KEYWORDS, which is continued in the next block.
+          unread(b, i, k);
+          end = i;
+          if (end == off) {
+            int c = read();
+            if (c < 0) {
+              return -1;
+            }
+            b[off] = (byte) c;
+            return 1;
+          }
+        }
+      }
+      return end > off ? end - off : read(b, off, len);
+    }
+  
+  }
+  
+  /**
+   * The system identifier of the last DTD, that has been resolved in the
+   * current thread. Some StAX implementations do not report the whole
+   * document type declaration, if the stream is read in small chunks.
+   */
+  private static final ThreadLocal<String> resolved = new ThreadLocal<String>();
+  
+  /**
+   * Shared by all readers. Synchronize on it when creating a reader.
+   */
+  private static XMLInputFactory factory = null;
+  
+  /**
+   * The underlying stream.
+   */
+  private final XMLStreamReader reader;
+  
+  /**
+   * The stream to close with {@link #reader}, may be {@code null}.
+   */
+  private final Closeable source;
+  
+  /**
+   * Pathways that have been read by other means, if this reader has been
+   * created with {@link #KGMLReader(List)}.
+   */
+  private final Iterator<Pathway> preloaded;
+  
+  /**
+   * The archive, if this reader has been created with
+   * {@link #KGMLReader(KGMLArchive)}.
+   */
+  private final KGMLArchive archive;
+  
+  /**
+   * The reader for the current document in the {@link #archive}.
+   */
+  private KGMLReader current = null;
+  
+  /**
+   * Shared instances of repeated attribute values.
+   */
+  private final Map<String, String> values = new HashMap<String, String>();
+  
+  /**
+   * Buffer for the components of an entry.
+   */
+  private int[] components = new int[16];
+  
+  /**
+   * Version of the KGML document, as given in its DTD.
+   */
+  private double version = 0;
+  
+  /**
+   * The comment after the document type declaration, e.g., the creation
+   * date.
+   */
+  private String comment = null;
+  
+  /**
+   * {@code true} if no element or comment has been read since the
+   * document type declaration.
+   */
+  private boolean afterDTD = false;
+  
+  /**
+   *
+   */
+  private boolean closed = false;
+  
+  /**
+   * @param file a KGML file.
+   * @throws IOException if the file can not be opened.
+   * @throws XMLStreamException if the prolog of the file can not be parsed.
+   */
+  public KGMLReader(File file) throws IOException, XMLStreamException {
+    this(new BufferedInputStream(new FileInputStream(file)), file.toURI().toString());
+  }
+  
+  /**
+   * @param in a KGML document. It is closed by {@link #close()}, as
+   * soon as all pathways have been read or if it can not be parsed.
+   * @param systemId the location of the document (used in error messages),
+   * may be {@code null}.
+   * @throws XMLStreamException if the prolog of the document can not be parsed.
+   */
+  public KGMLReader(InputStream in, String systemId) throws XMLStreamException {
+    XMLInputFactory factory = getFactory();
+    XMLStreamReader reader;
+    try {
+      synchronized (factory) {
+        reader = factory.createXMLStreamReader(systemId, new KeywordsFilter(in));
+      }
+    } catch (XMLStreamException e) {
+      try {
+        in.close();
+      } catch (IOException e1) {
+        logger.fine(e1.getLocalizedMessage());
+      }
+      throw e;
+    }
+    this.reader = reader;
+    this.source = in;
+    this.preloaded = null;
+    this.archive = null;
+  }
+  
+  /**
+   * Creates a reader that returns the given pathways, e.g., none for an
+   * empty archive, instead of parsing a document.
+   * @param pathways
+   */
+  KGMLReader(List<Pathway> pathways) {
+    reader = null;
+    source = null;
+    preloaded = pathways.iterator();
+    archive = null;
+  }
+  
+  /**
+   * Creates a reader that returns the pathways of all KGML documents in
+   * the given archive, one document after another. Documents that can
+   * not be parsed are skipped.
+   * @param archive
+   */
+  KGMLReader(KGMLArchive archive) {
+    reader = null;
+    source = archive;
+    preloaded = null;
+    this.archive = archive;
+  }
+  
+  /**
+   * @return a factory that resolves the KGML DTD from the bundled copy.
+   */
+  private static synchronized XMLInputFactory getFactory() {
+    if (factory == null) {
+      factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.TRUE);
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+      factory.setXMLResolver(new XMLResolver() {
+        /* (non-Javadoc)
+         * @see javax.xml.stream.XMLResolver#resolveEntity(java.lang.String, java.lang.String, java.lang.String, java.lang.String)
+         */
+        @Override
+        public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+          InputStream dtd = null;
+          resolved.set(systemID);
+          if ((systemID != null) && systemID.contains("KGML")) {
+            dtd = KGMLReader.class.getResourceAsStream(DTD);
+          }
+          if (dtd == null) {
+            // Never fetch anything from the network.
+            logger.fine(MessageFormat.format("Ignoring external entity ''{0}''.", systemID));
+            dtd = new ByteArrayInputStream(new byte[0]);
+          }
+          return dtd;
+        }
+      });
+    }
+    return factory;
+  }
+  
+  /**
+   * @return the default values of all attributes in the bundled {@link #DTD}.
+   */
+  private static Map<String, Map<String, String>> loadDefaults() {
+    Map<String, Map<String, String>> defaults = new HashMap<String, Map<String, String>>();
+    InputStream in = KGMLReader.class.getResourceAsStream(DTD);
+    if (in == null) {
+      logger.warning(MessageFormat.format("Could not find the KGML DTD {0}.", DTD));
+      return defaults;
+    }
+    try {
+      try {
+        ByteArrayOutputStream dtd = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          dtd.write(buffer, 0, read);
+        }
+        Matcher m = ATTLIST.matcher(dtd.toString("UTF-8"));
+        while (m.find()) {
+          Map<String, String> attributes = defaults.get(m.group(1));
+          if (attributes == null) {
+            attributes = new HashMap<String, String>();
+            defaults.put(m.group(1), attributes);
+          }
+          attributes.put(m.group(2), m.group(3));
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not read the KGML DTD {0}.", DTD), e);
+    }
+    return defaults;
+  }
+  
+  /**
+   * Reads all pathways from the given file.
+   * @param file a KGML file.
+   * @return all pathways in the given file.
+   * @throws IOException if the file can not be read.
+   * @throws XMLStreamException if the file is not well-formed.
+   */
+  public static List<Pathway> parse(File file) throws IOException, XMLStreamException {
+    return readAll(new KGMLReader(file));
+  }
+  
+  /**
+   * Reads all pathways from the given stream.
+   * @param in a KGML document, which is closed afterwards.
+   * @param systemId the location of the document, may be {@code null}.
+   * @return all pathways in the given document.
+   * @throws IOException if the stream can not be closed.
+   * @throws XMLStreamException if the document is not well-formed.
+   */
+  public static List<Pathway> parse(InputStream in, String systemId) throws IOException, XMLStreamException {
+    return readAll(new KGMLReader(in, systemId));
+  }
+  
+  /**
+   * @param reader
+   * @return all remaining pathways of the given reader.
+   * @throws IOException
+   * @throws XMLStreamException
+   */
+  private static List<Pathway> readAll(KGMLReader reader) throws IOException, XMLStreamException {
+    try {
+      List<Pathway> pw = new ArrayList<Pathway>(1);
+      Pathway p;
+      while ((p = reader.read()) != null) {
+        pw.add(p);
+      }
+      return pw;
+    } finally {
+      reader.close();
+    }
+  }
+  
+  /**
+   * Reads the next pathway. The reader is closed after the last one.
+   * @return the next pathway or {@code null} if there are no more pathways.
+   * @throws XMLStreamException if the document is not well-formed.
+   */
+  public Pathway read() throws XMLStreamException {
+    if (preloaded != null) {
+      return preloaded.hasNext() ? preloaded.next() : null;
+    }
+    if (closed) {
+      return null;
+    }
+    if (archive != null) {
+      return readArchive();
+    }
+    boolean done = false;
+    try {
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.DTD:
+            String systemId = resolved.get();
+            resolved.remove();
+            readDTD(systemId != null ? systemId : reader.getText());
+            afterDTD = true;
+            break;
+    
+          case XMLStreamConstants.COMMENT:
+            // Only the comment directly after the DTD, as in KeggParser.
+            if (afterDTD) {
+              comment = reader.getText().trim();
+              if (comment.length() < 1) {
+                comment = null;
+              }
+              afterDTD = false;
+            }
+            break;
+    
+          case XMLStreamConstants.START_ELEMENT:
+            afterDTD = false;
+            if (reader.getLocalName().equalsIgnoreCase("pathway")) {
+              Pathway p = readPathway();
+              if (p != null) {
+                done = true;
+                return p;
+              }
+            }
+            // Any other element is searched for nested pathways.
+            break;
+    
+          default:
+            break;
+        }
+      }
+      done = true;
+      close();
+      return null;
+    } catch (IOException e) {
+      throw new XMLStreamException(e);
+    } finally {
+      if (!done) {
+        closeQuietly();
+      }
+    }
+  }
+  
+  /**
+   * Reads the next pathway from the {@link #archive}.
+   * @return the next pathway or {@code null} if there are no more pathways.
+   * @throws XMLStreamException if the archive can not be read.
+   */
+  private Pathway readArchive() throws XMLStreamException {
+    try {
+      while (true) {
+        if (current == null) {
+          if (!archive.next()) {
+            close();
+            return null;
+          }
+          try {
+            current = archive.openReader(); // null if not a KGML document
+          } catch (XMLStreamException e) {
+            logger.warning(MessageFormat.format("Skipping {0}: {1}", archive.getPath(), e.getLocalizedMessage()));
+          }
+          continue;
+        }
+        try {
+          Pathway p = current.read();
+          if (p != null) {
+            return p;
+          }
+        } catch (XMLStreamException e) {
+          logger.warning(MessageFormat.format("Skipping {0}: {1}", archive.getPath(), e.getLocalizedMessage()));
+        }
+        current = null; // Closed after the last pathway or an error.
+      }
+    } catch (IOException e) {
+      closeQuietly();
+      throw new XMLStreamException(e);
+    }
+  }
+  
+  /**
+   * Determines the {@link #version} from the document type declaration.
+   * @param dtd the system identifier of the DTD or the whole declaration.
+   */
+  private void readDTD(String dtd) {
+    String systemId = dtd;
+    if (dtd.startsWith("<")) {
+      Matcher m = SYSTEM_ID.matcher(dtd);
+      if (!m.find()) {
+        return;
+      }
+      systemId = m.group(3);
+    }
+    int v = systemId.lastIndexOf('v');
+    if (v >= 0) {
+      try {
+        version = KeggParser.parseNextDouble(systemId, v, true);
+      } catch (NumberFormatException e) {
+        logger.warning(MessageFormat.format("Could not parse pathway version from ''{0}''.", systemId));
+      }
+    }
+    if ((version > 0) && (version < 0.7)) {
+      logger.warning(MessageFormat.format("Your KGML document is rather old. It is written in KGML version {0}. This parser is for version 0.7 / 0.71. Trying to read your document in compatibility mode.", version));
+    } else if (version >= 0.8) {
+      logger.warning(MessageFormat.format("Your KGML document is rather new. It is written in KGML version {0}. This parser is for version 0.7 / 0.71. Trying to read your document anyways.", version));
+    }
+  }
+  
+  /**
+   * Reads the pathway at the current start element up to its end element.
+   * @return the pathway or {@code null} if the element is empty.
+   * @throws XMLStreamException
+   */
+  private Pathway readPathway() throws XMLStreamException {
+    Pathway p = new Pathway(value("name"), shared(value("org")), intValue("number"),
+      value("title"), value("image"), value("link"), value("additionalText"));
+    boolean empty = true;
+    int event;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      empty = false;
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String name = reader.getLocalName();
+      if (name.equalsIgnoreCase("entry") || name.equalsIgnoreCase("entryExtended")) {
+        p.addEntry(readEntry(p));
+      } else if (name.equalsIgnoreCase("reaction")) {
+        p.addReaction(readReaction(p));
+      } else if (name.equalsIgnoreCase("relation")) {
+        p.addRelation(readRelation());
+      } else {
+        skipElement();
+      }
+    }
+    if (empty) {
+      return null;
+    }
+    p.getEntries().trimToSize();
+    p.getRelations().trimToSize();
+    p.getReactions().trimToSize();
+    p.setVersion(version);
+    p.setComment(comment);
+    
+    // Create back references from the components of groups to the group.
+    for (Entry entry : p.getEntries()) {
+      if (entry.hasComponents()) {
+        for (Integer component : entry.getComponents()) {
+          Entry child = p.getEntryForId(component.intValue());
+          if (child != null) {
+            child.setParentNode(entry);
+          }
+        }
+      }
+    }
+    return p;
+  }
+  
+  /**
+   * Reads the entry at the current start element up to its end element.
+   * @param p
+   * @return the entry, which has not yet been added to the given pathway.
+   * @throws XMLStreamException
+   */
+  private Entry readEntry(Pathway p) throws XMLStreamException {
+    int id = intValue("id");
+    String name = shared(value("name"));
+    EntryType type = EntryType.valueOf(value("type"));
+    String link = shared(value("link"));
+    String reaction = shared(value("reaction"));
+    
+    // Additional attributes of KEGGtranslator's own extension.
+    String geneType = null, compartment = null;
+    Map<IdentifierDatabases, String> identifiers = null;
+    for (int i = reader.getAttributeCount() - 1; i >= 0; i--) {
+      String attribute = reader.getAttributeLocalName(i);
+      String value = reader.getAttributeValue(i);
+      if ((value == null) || (value.trim().length() < 1)) {
+        continue;
+      }
+      if (attribute.equals("geneType")) {
+        geneType = value;
+      } else if (attribute.equals("compartment")) {
+        compartment = value;
+      } else if (databases.containsKey(attribute)) {
+        if (identifiers == null) {
+          identifiers = new EnumMap<IdentifierDatabases, String>(IdentifierDatabases.class);
+        }
+        identifiers.put(databases.get(attribute), value);
+      }
+    }
+    
+    Entry entry;
+    if ((geneType != null) || (compartment != null) || (identifiers != null)) {
+      EntryExtended extended = new EntryExtended(p, id, name, type, link, reaction);
+      extended.setCompartment(compartment);
+      if (geneType != null) {
+        try {
+          extended.setGeneType(EntryTypeExtended.valueOf(geneType));
+        } catch (Exception e) {
+          logger.warning(MessageFormat.format("Invalid EntryExtendedType: {0}", geneType));
+        }
+      }
+      if (identifiers != null) {
+        for (Map.Entry<IdentifierDatabases, String> identifier : identifiers.entrySet()) {
+          extended.addDatabaseIdentifier(identifier.getKey(), identifier.getValue());
+        }
+      }
+      entry = extended;
+    } else {
+      entry = new Entry(p, id, name, type, link, reaction);
+    }
+    
+    int count = 0;
+    boolean gene = (type == EntryType.gene) || (type == EntryType.genes);
+    int event;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String child = reader.getLocalName();
+      if (child.equalsIgnoreCase("component")) {
+        if (count == components.length) {
+          int[] larger = new int[count * 2];
+          System.arraycopy(components, 0, larger, 0, count);
+          components = larger;
+        }
+        components[count++] = intValue("id");
+      } else if (child.equals("graphics")) {
+        Graphics g = new Graphics(shared(value("name")), intValue("x"), intValue("y"),
+          GraphicsType.valueOf(value("type")), intValue("width"), intValue("height"),
+          shared(value("fgcolor")), shared(value("bgcolor")), gene);
+        String coords = value("coords");
+        if (coords.contains(",")) {
+          g.setCoordsString(coords);
+        }
+        entry.addGraphics(g);
+      }
+      skipElement();
+    }
+    if (count > 0) {
+      List<Integer> list = new ArrayList<Integer>(count);
+      for (int i = 0; i < count; i++) {
+        list.add(Integer.valueOf(components[i]));
+      }
+      entry.setComponents(list);
+    }
+    return entry;
+  }
+  
+  /**
+   * Reads the reaction at the current start element up to its end element.
+   * @param p
+   * @return the reaction, which has not yet been added to the given pathway.
+   * @throws XMLStreamException
+   */
+  private Reaction readReaction(Pathway p) throws XMLStreamException {
+    Reaction reaction = new Reaction(p, Integer.valueOf(intValue("id")), shared(value("name")),
+      ReactionType.valueOf(value("type")));
+    int event;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      String child = reader.getLocalName();
+      if (child.equalsIgnoreCase("substrate")) {
+        reaction.addSubstrate(readReactionComponent());
+      } else if (child.equals("product")) {
+        reaction.addProduct(readReactionComponent());
+      } else {
+        skipElement();
+      }
+    }
+    return reaction;
+  }
+  
+  /**
+   * Reads the substrate, product or alternative at the current start
+   * element up to its end element.
+   * @return the reaction component.
+   * @throws XMLStreamException
+   */
+  private ReactionComponent readReactionComponent() throws XMLStreamException {
+    ReactionComponent component = new ReactionComponent(Integer.valueOf(intValue("id")), shared(value("name")));
+    int event;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (reader.getLocalName().equalsIgnoreCase("alt")) {
+        component.setAlt(readReactionComponent());
+      } else {
+        skipElement();
+      }
+    }
+    return component;
+  }
+  
+  /**
+   * Reads the relation at the current start element up to its end element.
+   * @return the relation.
+   * @throws XMLStreamException
+   */
+  private Relation readRelation() throws XMLStreamException {
+    Relation relation = new Relation(intValue("entry1"), intValue("entry2"), RelationType.valueOf(value("type")));
+    int event;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      if (reader.getLocalName().equalsIgnoreCase("subtype")) {
+        relation.addSubtype(new SubType(shared(value("name")), shared(value("value"))));
+      }
+      skipElement();
+    }
+    return relation;
+  }
+  
+  /**
+   * Skips the remainder of the current element, including its end element.
+   * @throws XMLStreamException
+   */
+  private void skipElement() throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+  
+  /**
+   * @param attribute
+   * @return the value of the given attribute of the current element,
+   * its default value or an empty string if it has none.
+   */
+  private String value(String attribute) {
+    String value = attribute(attribute);
+    return value != null ? value : "";
+  }
+  
+  /**
+   * @param attribute
+   * @return the value of the given attribute of the current element, its
+   * default value in the {@link #DTD} or {@code null} if it has none.
+   */
+  private String attribute(String attribute) {
+    String value = reader.getAttributeValue(null, attribute);
+    if (value == null) {
+      Map<String, String> attributes = defaults.get(reader.getLocalName());
+      if (attributes != null) {
+        value = attributes.get(attribute);
+      }
+    }
+    return value;
+  }
+  
+  /**
+   * Parses an integer attribute like {@link KeggParser#getNodeValueInt(org.w3c.dom.NamedNodeMap, String)},
+   * i.e., ignores all non-digits if the value is not a number.
+   * @param attribute
+   * @return the value of the given attribute of the current element or
+   * zero if it is not set or contains no digits.
+   */
+  private int intValue(String attribute) {
+    String value = attribute(attribute);
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      StringBuilder digits = new StringBuilder(value.length());
+      for (int i = 0; i < value.length(); i++) {
+        if (Character.isDigit(value.charAt(i))) {
+          digits.append(value.charAt(i));
+        }
+      }
+      logger.warning(MessageFormat.format("Invalid number ''{0}'' in attribute ''{1}''.", value, attribute));
+      try {
+        return digits.length() > 0 ? Integer.parseInt(digits.toString()) : 0;
+      } catch (NumberFormatException e2) {
+        return 0;
+      }
+    }
+  }
+  
+  /**
+   * @param value
+   * @return an equal string, that is shared by all objects of this reader.
+   */
+  private String shared(String value) {
+    String shared = values.get(value);
+    if (shared == null) {
+      values.put(value, value);
+      shared = value;
+    }
+    return shared;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    if (((reader == null) && (archive == null)) || closed) {
+      return;
+    }
+    closed = true;
+    values.clear();
+    if (archive != null) {
+      try {
+        if (current != null) {
+          current.close();
+        }
+      } finally {
+        archive.close();
+      }
+      return;
+    }
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    } finally {
+      source.close();
+    }
+  }
+  
+  /**
+   * Closes this reader after an error.
+   */
+  private void closeQuietly() {
+    try {
+      close();
+    } catch (IOException e) {
+      logger.fine(e.getLocalizedMessage());
+    }
+  }
+  
+}
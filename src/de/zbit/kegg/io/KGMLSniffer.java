@@ -0,0 +1,420 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+import de.zbit.io.filefilter.SBFileFilter;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * Determines the type of a (possibly compressed) input file from its
+ * first bytes, i.e., without parsing the whole file.
+ * Use {@link #sniff(File)} to classify a file and {@link #open(File)}
+ * or {@link #load(File)} to read its {@link Pathway}s with the
+ * appropriate loader. Archives with several files are read with a
+ * {@link KGMLArchive}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KGMLSniffer {
+  
+  /**
+   * The content of a file.
+   */
+  public static enum Type {
+    /**
+     * A KGML document.
+     */
+    KGML,
+    /**
+     * A zip or tar archive with several files, each of which may be a
+     * (compressed) KGML document (see {@link KGMLArchive}).
+     */
+    ARCHIVE,
+    /**
+     * Anything else. Such files are skipped.
+     */
+    UNKNOWN;
+  }
+  
+  /**
+   * The compression of a file.
+   */
+  public static enum Compression {
+    /**
+     *
+     */
+    NONE,
+    /**
+     * A gzip compressed file.
+     */
+    GZIP,
+    /**
+     * A zip archive. If it contains a single file, only this file is
+     * considered. Else, it is an {@link Type#ARCHIVE}.
+     */
+    ZIP;
+  }
+  
+  /**
+   * Maximum number of (uncompressed) bytes that are read to determine the type.
+   */
+  private static final int HEADER_SIZE = 512;
+  
+  /**
+   * Offset of the magic number 'ustar' in a tar header.
+   */
+  private static final int TAR_MAGIC_OFFSET = 257;
+  
+  /**
+   * A sniffed file that is neither KGML nor an archive.
+   */
+  private static final KGMLSniffer UNKNOWN = new KGMLSniffer(Type.UNKNOWN, Compression.NONE);
+  
+  /**
+   *
+   */
+  private final Type type;
+  
+  /**
+   *
+   */
+  private final Compression compression;
+  
+  /**
+   * @param type
+   * @param compression
+   */
+  private KGMLSniffer(Type type, Compression compression) {
+    this.type = type;
+    this.compression = compression;
+  }
+  
+  /**
+   * @return the content type of the sniffed file.
+   */
+  public Type getType() {
+    return type;
+  }
+  
+  /**
+   * @return the compression of the sniffed file.
+   */
+  public Compression getCompression() {
+    return compression;
+  }
+  
+  /**
+   * @return {@code true} if the sniffed file (probably) contains a pathway.
+   */
+  public boolean isPathway() {
+    return type != Type.UNKNOWN;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return compression == Compression.NONE ? type.toString() : type + " (" + compression + ')';
+  }
+  
+  /**
+   * Determines the type of the given file by reading at most a few
+   * hundred (uncompressed) bytes from its beginning. The file is read
+   * only once, through a single stream. Only for a zip archive, the
+   * stream is read up to the second file, if any.
+   * @param file
+   * @return the type and compression of the given file.
+   * @throws IOException if the file can not be read.
+   */
+  public static KGMLSniffer sniff(File file) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      return sniff(file, in);
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * @param file
+   * @param in a buffered stream of the given file.
+   * @return the type and compression of the given file.
+   * @throws IOException
+   */
+  private static KGMLSniffer sniff(File file, InputStream in) throws IOException {
+    byte[] header = peekHeader(in);
+    Compression compression = Compression.NONE;
+    if (isGZIP(header)) {
+      compression = Compression.GZIP;
+      InputStream gzip = new GZIPInputStream(in);
+      try {
+        header = readHeader(gzip);
+      } finally {
+        gzip.close();
+      }
+    } else if (isZIP(header)) {
+      compression = Compression.ZIP;
+      ZipInputStream zip = new ZipInputStream(in);
+      try {
+        if (!nextFile(zip)) {
+          return UNKNOWN;
+        }
+        header = readHeader(zip);
+        if (hasNextFile(zip)) {
+          return new KGMLSniffer(Type.ARCHIVE, compression);
+        }
+      } finally {
+        zip.close();
+      }
+    }
+    
+    if (isTAR(header) && (compression != Compression.ZIP)) {
+      return new KGMLSniffer(Type.ARCHIVE, compression);
+    }
+    if (isKGML(header)) {
+      return new KGMLSniffer(Type.KGML, compression);
+    } else if ((compression == Compression.NONE) && (header.length == HEADER_SIZE)
+        && new String(header, "ISO-8859-1").trim().startsWith("<?xml") && SBFileFilter.isKGML(file)) {
+      // Very long XML prolog, e.g., with many comments.
+      return new KGMLSniffer(Type.KGML, compression);
+    }
+    return UNKNOWN;
+  }
+  
+  /**
+   * Opens any supported input for reading its pathways: a (compressed)
+   * KGML document, all KGML documents in an archive
+   * or a single document in an archive, given as 'archive!/name' (see
+   * {@link KGMLArchive#ENTRY_SEPARATOR}).
+   * @param file
+   * @return a reader for all pathways in the given file. Must be closed
+   * by the caller.
+   * @throws IOException if the file can not be read.
+   * @throws XMLStreamException if the prolog of the file can not be parsed.
+   */
+  public static KGMLReader openAny(File file) throws IOException, XMLStreamException {
+    if (!file.exists() && KGMLArchive.isEntryPath(file.getPath())) {
+      return KGMLArchive.openEntry(file.getPath());
+    }
+    try {
+      return sniff(file).open(file);
+    } catch (IOException e) {
+      throw e;
+    } catch (XMLStreamException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(MessageFormat.format("Could not read {0}.", file), e);
+    }
+  }
+  
+  /**
+   * Reads all pathways from the given file, which must have been
+   * classified as this type.
+   * @param file
+   * @return all pathways in the given file or {@code null} if the file
+   * does not contain a {@link Pathway}.
+   * @throws Exception if the file could not be read or parsed.
+   */
+  public List<Pathway> load(File file) throws Exception {
+    KGMLReader reader = open(file);
+    try {
+      List<Pathway> pw = new LinkedList<Pathway>();
+      Pathway p;
+      while ((p = reader.read()) != null) {
+        pw.add(p);
+      }
+      return (pw.isEmpty() && (type != Type.KGML)) ? null : pw;
+    } finally {
+      reader.close();
+    }
+  }
+  
+  /**
+   * Opens the given file, which must have been classified as this type,
+   * for reading its pathways one at a time.
+   * @param file
+   * @return a reader for all pathways in the given file. Must be closed
+   * by the caller.
+   * @throws Exception if the file could not be read.
+   */
+  public KGMLReader open(File file) throws Exception {
+    switch (type) {
+      case KGML:
+        if (compression == Compression.NONE) {
+          return new KGMLReader(file);
+        }
+        InputStream in = (compression == Compression.GZIP) ? openGZIP(file) : openZIP(file);
+        if (in == null) {
+          return new KGMLReader(new LinkedList<Pathway>());
+        }
+        return new KGMLReader(in, file.toURI().toString());
+        
+      case ARCHIVE:
+        return new KGMLArchive(file).openAll();
+        
+      default:
+        return new KGMLReader(new LinkedList<Pathway>());
+    }
+  }
+  
+  /**
+   * Reads up to {@link #HEADER_SIZE} bytes without consuming them.
+   * @param in a stream that supports {@link InputStream#mark(int)}.
+   * @return the first bytes of the given stream.
+   * @throws IOException
+   */
+  static byte[] peekHeader(InputStream in) throws IOException {
+    in.mark(HEADER_SIZE);
+    try {
+      return readHeader(in);
+    } finally {
+      in.reset();
+    }
+  }
+  
+  /**
+   * @param in
+   * @return up to {@link #HEADER_SIZE} bytes from the given stream.
+   * @throws IOException
+   */
+  private static byte[] readHeader(InputStream in) throws IOException {
+    byte[] buffer = new byte[HEADER_SIZE];
+    int length = 0;
+    int read;
+    while ((length < buffer.length) && ((read = in.read(buffer, length, buffer.length - length)) > 0)) {
+      length += read;
+    }
+    if (length < buffer.length) {
+      byte[] header = new byte[length];
+      System.arraycopy(buffer, 0, header, 0, length);
+      return header;
+    }
+    return buffer;
+  }
+  
+  /**
+   * @param file
+   * @return the uncompressed content of the given gzip file.
+   * @throws IOException
+   */
+  private static InputStream openGZIP(File file) throws IOException {
+    return new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
+  }
+  
+  /**
+   * @param file
+   * @return the content of the first file in the given zip archive or
+   * {@code null} if it contains no file.
+   * @throws IOException
+   */
+  private static InputStream openZIP(File file) throws IOException {
+    ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+    if (nextFile(zip)) {
+      return zip;
+    }
+    zip.close();
+    return null;
+  }
+  
+  /**
+   * Moves the given stream to the next entry that is not a directory.
+   * @param zip
+   * @return {@code false} if there is no further file.
+   * @throws IOException
+   */
+  private static boolean nextFile(ZipInputStream zip) throws IOException {
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      if (!entry.isDirectory()) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * @param zip a zip archive, positioned at its first file.
+   * @return {@code true} if the given archive contains a further file.
+   */
+  private static boolean hasNextFile(ZipInputStream zip) {
+    try {
+      return nextFile(zip);
+    } catch (IOException e) {
+      return false; // Try to read its first file.
+    }
+  }
+  
+  /**
+   * @param header
+   * @return {@code true} if the given bytes start like a KGML document.
+   * @throws IOException
+   */
+  static boolean isKGML(byte[] header) throws IOException {
+    String text = new String(header, "ISO-8859-1").trim();
+    if (text.startsWith("\u00EF\u00BB\u00BF")) {
+      text = text.substring(3); // UTF-8 byte order mark
+    }
+    return text.startsWith("<") && (text.contains("<!DOCTYPE pathway") || text.contains("<pathway"));
+  }
+  
+  /**
+   * @param header
+   * @return {@code true} if the given bytes start with a tar header.
+   */
+  private static boolean isTAR(byte[] header) {
+    int i = TAR_MAGIC_OFFSET;
+    return (header.length >= i + 5) && (header[i] == 'u') && (header[i + 1] == 's') && (header[i + 2] == 't')
+        && (header[i + 3] == 'a') && (header[i + 4] == 'r');
+  }
+  
+  /**
+   * @param header
+   * @return {@code true} if the given bytes start with the gzip magic number.
+   */
+  static boolean isGZIP(byte[] header) {
+    return (header.length >= 2) && ((header[0] & 0xFF) == 0x1F) && ((header[1] & 0xFF) == 0x8B);
+  }
+  
+  /**
+   * @param header
+   * @return {@code true} if the given bytes start with a zip local file header.
+   */
+  static boolean isZIP(byte[] header) {
+    return (header.length >= 4) && (header[0] == 'P') && (header[1] == 'K') && (header[2] == 3) && (header[3] == 4);
+  }
+  
+}
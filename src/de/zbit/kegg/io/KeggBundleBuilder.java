@@ -0,0 +1,288 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.kegg.Translator;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggFunctionManagement;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.api.cache.KeggQuery;
+import de.zbit.kegg.cache.KeggBundle;
+import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.util.objectwrapper.CustomObject;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * Builds a {@link KeggBundle} for all KGML files in a directory, e.g., to
+ * translate them later on a machine without access to KEGG (see
+ * {@link de.zbit.kegg.KEGGtranslatorCommandLineOnlyOptions#KEGG_BUNDLE}).
+ * Every pathway is translated to the given formats (without writing the
+ * result) and every KEGG ID that is requested by the translators is
+ * written to the bundle. Thus, the bundle contains exactly the information
+ * that is needed to translate these files with the current options.
+ * Further, the list of organisms and the pathways of every organism in
+ * the directory are written.
+ *
+ * <p>Usage: {@code KeggBundleBuilder <KGML directory> <bundle file> [formats]},
+ * where formats is a comma separated list of {@link Format}s (default: SBML).
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KeggBundleBuilder {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(KeggBundleBuilder.class.getName());
+  
+  /**
+   * Passes all requests to another cache and writes every result to the bundle.
+   */
+  private static class Recorder extends KeggInfoManagement {
+    /**
+     * Generated serial version identifier.
+     */
+    private static final long serialVersionUID = -7407781440563214932L;
+    /**
+     * The cache that fetches from KEGG.
+     */
+    private final transient KeggInfoManagement manager;
+    /**
+     *
+     */
+    private final transient KeggBundle.Writer writer;
+    
+    /**
+     * @param manager
+     * @param writer
+     */
+    Recorder(KeggInfoManagement manager, KeggBundle.Writer writer) {
+      super(manager.getCacheSize());
+      this.manager = manager;
+      this.writer = writer;
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchInformation(java.lang.String)
+     */
+    @Override
+    protected KeggInfos fetchInformation(String id) throws TimeoutException, UnsuccessfulRetrieveException {
+      KeggInfos infos = manager.getInformation(id);
+      record(id, infos);
+      if (infos == null) {
+        throw new UnsuccessfulRetrieveException();
+      }
+      return infos;
+    }
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchMultipleInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+     */
+    @Override
+    protected KeggInfos[] fetchMultipleInformations(String[] ids, AbstractProgressBar progress)
+        throws TimeoutException, UnsuccessfulRetrieveException {
+      KeggInfos[] infos = manager.getInformations(ids, progress);
+      for (int i = 0; i < ids.length; i++) {
+        record(ids[i], (infos != null) && (i < infos.length) ? infos[i] : null);
+      }
+      return infos;
+    }
+    
+    /**
+     * @param id
+     * @param infos
+     */
+    private void record(String id, KeggInfos infos) {
+      try {
+        writer.put(id, infos);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+  
+  /**
+   * The cache that fetches from KEGG.
+   */
+  private final KeggInfoManagement manager;
+  
+  /**
+   * Fetches organisms and pathways from KEGG.
+   */
+  private final KeggFunctionManagement functions;
+  
+  /**
+   * Formats to translate to.
+   */
+  private List<Format> formats = new ArrayList<Format>();
+  
+  /**
+   * @param manager the cache that fetches the information from KEGG.
+   * @param functions fetches the lists of organisms and pathways.
+   */
+  public KeggBundleBuilder(KeggInfoManagement manager, KeggFunctionManagement functions) {
+    this.manager = manager;
+    this.functions = functions;
+    formats.add(Format.SBML);
+  }
+  
+  /**
+   * @param formats the formats to translate to. The bundle contains all
+   * information that is requested by any of these translators.
+   */
+  public void setFormats(List<Format> formats) {
+    this.formats = formats;
+  }
+  
+  /**
+   * Writes a bundle for all KGML files in the given directory and all
+   * subdirectories.
+   * @param dir
+   * @param bundle the bundle to write.
+   * @return the number of KEGG IDs in the bundle.
+   * @throws IOException if the bundle can not be written.
+   */
+  public int build(File dir, File bundle) throws IOException {
+    KeggBundle.Writer writer = new KeggBundle.Writer(bundle);
+    Recorder recorder = new Recorder(manager, writer);
+    List<KEGGtranslator<?>> translators = new ArrayList<KEGGtranslator<?>>();
+    for (Format format : formats) {
+      KEGGtranslator<?> translator = BatchKEGGtranslator.getTranslator(format, recorder);
+      if (translator instanceof AbstractKEGGtranslator) {
+        // Regardless of the offline mode
+        ((AbstractKEGGtranslator<?>) translator).setRetrieveKeggAnnots(true);
+      }
+      if (translator != null) {
+        translators.add(translator);
+      }
+    }
+    
+    Set<String> organisms = new LinkedHashSet<String>();
+    int files = 0;
+    DirectoryWalker.Walk walk = new DirectoryWalker(dir).iterator();
+    try {
+      while (walk.hasNext()) {
+        File file = walk.next();
+        KGMLReader pw;
+        try {
+          KGMLSniffer sniffed = KGMLSniffer.sniff(file);
+          if (!sniffed.isPathway()) {
+            continue;
+          }
+          pw = sniffed.open(file);
+        } catch (Exception e) {
+          logger.log(Level.WARNING, MessageFormat.format("Could not read {0}.", file), e);
+          continue;
+        }
+        logger.info(MessageFormat.format("Collecting KEGG information of ''{0}''...", file));
+        try {
+          Pathway p;
+          while ((p = pw.read()) != null) {
+            if (p.getOrg() != null) {
+              organisms.add(p.getOrg());
+            }
+            for (KEGGtranslator<?> translator : translators) {
+              try {
+                translator.translate(PathwayCodec.copyOf(p));
+              } catch (Exception e) {
+                logger.log(Level.WARNING, MessageFormat.format("Could not translate pathway {0} with {1}.",
+                  p.getName(), translator.getClass().getSimpleName()), e);
+              }
+            }
+          }
+        } catch (Exception e) {
+          logger.log(Level.WARNING, MessageFormat.format("Could not read {0}.", file), e);
+        } finally {
+          try {
+            pw.close();
+          } catch (IOException e) {
+            logger.log(Level.FINE, e.getLocalizedMessage(), e);
+          }
+        }
+        files++;
+      }
+    } finally {
+      walk.close();
+    }
+    
+    record(writer, new KeggQuery(KeggQuery.getOrganisms, null));
+    for (String organism : organisms) {
+      record(writer, new KeggQuery(KeggQuery.getPathways, organism));
+    }
+    writer.close();
+    logger.info(MessageFormat.format("Wrote {0} KEGG IDs of {1} files to {2}.", writer.size(), files, bundle));
+    return writer.size();
+  }
+  
+  /**
+   * Writes the result of the given query to the bundle.
+   * @param writer
+   * @param query
+   * @throws IOException
+   */
+  private void record(KeggBundle.Writer writer, KeggQuery query) throws IOException {
+    CustomObject<Object> result = null;
+    try {
+      result = functions.getInformation(query);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, MessageFormat.format("Could not query {0}.", query), e);
+    }
+    writer.put(query, result);
+  }
+  
+  /**
+   * @param args KGML directory, bundle file and, optionally, a comma
+   * separated list of formats.
+   */
+  public static void main(String[] args) {
+    if ((args == null) || (args.length < 2)) {
+      System.err.println("Usage: KeggBundleBuilder <KGML directory> <bundle file> [formats]");
+      return;
+    }
+    KeggBundleBuilder builder = new KeggBundleBuilder(Translator.getManager(), Translator.getFunctionManager());
+    if (args.length > 2) {
+      builder.setFormats(BatchKEGGtranslator.parseFormats(args[2]));
+    }
+    try {
+      builder.build(new File(args[0]), new File(args[1]));
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, MessageFormat.format("Could not write {0}.", args[1]), e);
+    } finally {
+      // Remember already queried objects (save cache)
+      Translator.saveCache();
+    }
+  }
+  
+}
@@ -0,0 +1,809 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.cache.OfflineKeggInfoManagement;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.EntryType;
+import de.zbit.kegg.parser.pathway.Graphics;
+import de.zbit.kegg.parser.pathway.GraphicsType;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.ReactionType;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.RelationType;
+import de.zbit.kegg.parser.pathway.SubType;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.kegg.parser.pathway.ext.EntryTypeExtended;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+import de.zbit.util.StringUtil;
+
+/**
+ * A compact binary encoding of a {@link Pathway}, including everything
+ * that {@link AbstractKEGGtranslator#preProcessPathway(Pathway)} adds to
+ * a parsed pathway: autocompleted entries and reactions, the
+ * stoichiometry of reaction components and the synonyms of entries
+ * (e.g., the compound of a glycan), which are registered when KEGG
+ * information is fetched. Objects that translators attach to entries
+ * ({@link Entry#getCustom()}) are not encoded. The lookup indices of a
+ * pathway (e.g., {@link Pathway#getEntriesForName(String)}) are rebuilt
+ * from the decoded entries and reactions. Hence, they list equivalent
+ * entries in the order of the entries and no longer contain components
+ * that have been removed from a reaction.
+ *
+ * <p>All integers are written as variable-length quantities and every
+ * distinct string (including the names of enumeration constants) only
+ * once per pathway. Later occurrences refer to the first one. Thus, an
+ * encoded pathway is usually much smaller than its KGML document and it
+ * is decoded without XML parsing. The encoding starts with a
+ * {@link #VERSION}, pathways of other versions are rejected.
+ *
+ * <p>{@link #copyOf(Pathway)} uses this encoding to create independent
+ * copies of a pathway, e.g., for several translators.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class PathwayCodec {
+  
+  /**
+   * Version of the encoding. Must be increased on every change.
+   */
+  public static final int VERSION = 1;
+  
+  /**
+   * Reference to {@code null} in the string table.
+   */
+  private static final int NULL_STRING = 0;
+  
+  /**
+   * Reference to a string that is not yet in the string table and follows.
+   */
+  private static final int NEW_STRING = 1;
+  
+  /**
+   * Marks an {@link EntryExtended}.
+   */
+  private static final int EXTENDED = 1;
+  
+  /**
+   * Utility class.
+   */
+  private PathwayCodec() {
+  }
+  
+  /**
+   * Encodes the given pathway without synonyms.
+   * @param p
+   * @return the encoded pathway.
+   * @see #encode(Pathway, KeggInfoManagement)
+   */
+  public static byte[] encode(Pathway p) {
+    return encode(p, null);
+  }
+  
+  /**
+   * Encodes the given pathway. The synonyms of all entries are looked up
+   * in the given cache, exactly like
+   * {@link de.zbit.kegg.KeggTools#preFetchInformation(Pathway, KeggInfoManagement, boolean, de.zbit.util.progressbar.AbstractProgressBar)}
+   * does. Hence, it should be the cache of the translator that preprocessed
+   * the pathway and {@code null} if the translator did not fetch any KEGG
+   * information. Only entries that are already in the cache are used.
+   * @param p
+   * @param synonyms cache to look up the synonyms of all entries or
+   * {@code null} for none.
+   * @return the encoded pathway.
+   */
+  public static byte[] encode(Pathway p, KeggInfoManagement synonyms) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+    Encoder out = new Encoder(new DataOutputStream(bytes));
+    try {
+      out.write(p, (synonyms != null) ? new OfflineKeggInfoManagement(synonyms) : null);
+      out.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // Can not happen in memory.
+    }
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * @param encoded a pathway, encoded with {@link #encode(Pathway, KeggInfoManagement)}.
+   * @return a new pathway, equal to the encoded one.
+   * @throws IOException if the given bytes are no valid encoding of this
+   * {@link #VERSION}.
+   */
+  public static Pathway decode(byte[] encoded) throws IOException {
+    return decode(encoded, 0, encoded.length);
+  }
+  
+  /**
+   * @param encoded
+   * @param offset
+   * @param length
+   * @return a new pathway, equal to the pathway encoded in the given range.
+   * @throws IOException if the given bytes are no valid encoding of this
+   * {@link #VERSION}.
+   */
+  public static Pathway decode(byte[] encoded, int offset, int length) throws IOException {
+    Decoder in = new Decoder(new DataInputStream(new ByteArrayInputStream(encoded, offset, length)));
+    try {
+      return in.readPathway();
+    } catch (IllegalArgumentException e) {
+      throw new IOException(MessageFormat.format("Invalid encoded pathway: {0}", e.getLocalizedMessage()), e);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException(MessageFormat.format("Invalid encoded pathway: {0}", e.getLocalizedMessage()), e);
+    }
+  }
+  
+  /**
+   * Creates a deep copy of the given {@link Pathway}, e.g., to translate
+   * one preprocessed pathway with several translators. The synonyms of
+   * entries are not copied.
+   * @param p
+   * @return an independent copy of {@code p}.
+   * @see #encode(Pathway, KeggInfoManagement)
+   */
+  public static Pathway copyOf(Pathway p) {
+    try {
+      return decode(encode(p));
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // Encoded by this version.
+    }
+  }
+  
+  /**
+   * @param e
+   * @param manager
+   * @return all KEGG IDs, the given entry is the same as (see
+   * {@link KeggInfos#getSameAs()}).
+   */
+  private static List<String> getSynonyms(Entry e, KeggInfoManagement manager) {
+    if ((manager == null) || (e.getName() == null)) {
+      return Collections.emptyList();
+    }
+    List<String> synonyms = new ArrayList<String>();
+    for (String id : e.getName().split(" ")) {
+      KeggInfos infos = KeggInfos.get(id, manager);
+      if ((infos != null) && (infos.getSameAs() != null)) {
+        for (String synonym : infos.getSameAs().split("\\s")) {
+          if ((synonym != null) && (synonym.trim().length() > 0)) {
+            synonyms.add(synonym);
+          }
+        }
+      }
+    }
+    return synonyms;
+  }
+  
+  /**
+   * Writes the encoding.
+   */
+  private static class Encoder {
+    /**
+     *
+     */
+    private final DataOutputStream out;
+    /**
+     * Index of every string that has been written.
+     */
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    
+    /**
+     * @param out
+     */
+    Encoder(DataOutputStream out) {
+      this.out = out;
+    }
+    
+    /**
+     * @throws IOException
+     */
+    void flush() throws IOException {
+      out.flush();
+    }
+    
+    /**
+     * @param p
+     * @param manager to look up synonyms or {@code null}.
+     * @throws IOException
+     */
+    void write(Pathway p, KeggInfoManagement manager) throws IOException {
+      writeInt(VERSION);
+      writeString(p.getName());
+      writeString(p.getOrg());
+      writeSignedInt(p.getNumber());
+      writeString(p.getTitle());
+      writeString(p.getImage());
+      writeString(p.getLink());
+      writeString(p.getAdditionalText());
+      writeString(p.getComment());
+      writeString(p.getOriginFormatName());
+      out.writeDouble(p.getVersion());
+      writeIdentifiers(p.getDatabaseIdentifiers());
+    
+      writeInt(p.getEntries().size());
+      for (Entry e : p.getEntries()) {
+        write(e, manager);
+      }
+      // Parents may follow their children
+      for (Entry e : p.getEntries()) {
+        writeEntryReference(p, e.getParentNode());
+      }
+      writeInt(p.getReactions().size());
+      for (Reaction r : p.getReactions()) {
+        write(p, r);
+      }
+      writeInt(p.getRelations().size());
+      for (Relation r : p.getRelations()) {
+        write(r);
+      }
+    }
+    
+    /**
+     * @param e
+     * @param manager
+     * @throws IOException
+     */
+    private void write(Entry e, KeggInfoManagement manager) throws IOException {
+      boolean extended = e instanceof EntryExtended;
+      writeInt(extended ? EXTENDED : 0);
+      writeSignedInt(e.getId());
+      writeString(e.getName());
+      writeEnum(e.getType());
+      writeString(e.getLink());
+      // Blank separated, like the reaction attribute in KGML
+      writeString(e.hasReaction() ? StringUtil.implode(e.getReactions(), " ") : null);
+      // getMoreGraphics() does not contain the first graphics.
+      List<Graphics> more = e.hasGraphics() ? e.getMoreGraphics() : Collections.<Graphics>emptyList();
+      writeInt(e.hasGraphics() ? more.size() + 1 : 0);
+      if (e.hasGraphics()) {
+        write(e.getGraphics());
+      }
+      for (Graphics g : more) {
+        write(g);
+      }
+      // getComponents() is never null
+      writeIntegers(e.isSetComponent() ? e.getComponents() : null);
+      List<String> synonyms = getSynonyms(e, manager);
+      writeInt(synonyms.size());
+      for (String synonym : synonyms) {
+        writeString(synonym);
+      }
+      if (extended) {
+        EntryExtended ex = (EntryExtended) e;
+        writeEnum(ex.getGeneType());
+        writeIdentifiers(ex.getDatabaseIdentifiers());
+        writeString(ex.getCompartment());
+      }
+    }
+    
+    /**
+     * @param g
+     * @throws IOException
+     */
+    private void write(Graphics g) throws IOException {
+      writeString(g.getName());
+      writeSignedInt(g.getX());
+      writeSignedInt(g.getY());
+      writeEnum(g.getType());
+      writeSignedInt(g.getWidth());
+      writeSignedInt(g.getHeight());
+      writeString(g.getFgcolor());
+      writeString(g.getBgcolor());
+      // getCoords() derives the coordinates of unset coords from x and y
+      writeIntegers(g.isSetCoords() ? Arrays.asList(g.getCoords()) : null);
+    }
+    
+    /**
+     * @param p
+     * @param r
+     * @throws IOException
+     */
+    private void write(Pathway p, Reaction r) throws IOException {
+      // getId() fails for reactions without ID
+      String id = r.getKGMLAttributes().get("id");
+      writeNullableInt((id != null) ? Integer.valueOf(id) : null);
+      writeString(r.getName());
+      writeEnum(r.getType());
+      writeInt(r.getSubstrates().size());
+      for (ReactionComponent rc : r.getSubstrates()) {
+        write(p, rc);
+      }
+      writeInt(r.getProducts().size());
+      for (ReactionComponent rc : r.getProducts()) {
+        write(p, rc);
+      }
+      writeIdentifiers(r.getDatabaseIdentifiers());
+    }
+    
+    /**
+     * @param p
+     * @param rc
+     * @throws IOException
+     */
+    private void write(Pathway p, ReactionComponent rc) throws IOException {
+      writeNullableInt(rc.getId());
+      writeString(rc.getName());
+      writeNullableInt(rc.getStoichiometry());
+      writeEntryReference(p, rc.getCorrespondingEntry());
+      out.writeBoolean(rc.isSetAlt());
+      if (rc.isSetAlt()) {
+        write(p, rc.getAlt());
+      }
+    }
+    
+    /**
+     * @param r
+     * @throws IOException
+     */
+    private void write(Relation r) throws IOException {
+      writeSignedInt(r.getEntry1());
+      writeSignedInt(r.getEntry2());
+      writeEnum(r.getType());
+      List<SubType> subtypes = r.getSubtypes();
+      writeInt((subtypes != null) ? subtypes.size() : 0);
+      if (subtypes != null) {
+        for (SubType s : subtypes) {
+          writeString(s.getName());
+          writeString(s.getValue());
+          writeString(s.getEdgeColor());
+        }
+      }
+      writeIdentifiers(r.getDatabaseIdentifiers());
+      writeString(r.getSource());
+    }
+    
+    /**
+     * Writes the ID of the given entry, if it is an entry of the given pathway.
+     * @param p
+     * @param e
+     * @throws IOException
+     */
+    private void writeEntryReference(Pathway p, Entry e) throws IOException {
+      writeNullableInt(((e != null) && (p.getEntryForId(e.getId()) == e)) ? Integer.valueOf(e.getId()) : null);
+    }
+    
+    /**
+     * @param ids
+     * @throws IOException
+     */
+    private void writeIdentifiers(Map<IdentifierDatabases, Collection<String>> ids) throws IOException {
+      if (ids == null) {
+        writeInt(0);
+        return;
+      }
+      writeInt(ids.size());
+      for (Map.Entry<IdentifierDatabases, Collection<String>> e : ids.entrySet()) {
+        writeEnum(e.getKey());
+        Collection<String> values = e.getValue();
+        writeInt((values != null) ? values.size() : 0);
+        if (values != null) {
+          for (String value : values) {
+            writeString(value);
+          }
+        }
+      }
+    }
+    
+    /**
+     * @param values
+     * @throws IOException
+     */
+    private void writeIntegers(List<Integer> values) throws IOException {
+      // 0 for null
+      writeInt((values != null) ? values.size() + 1 : 0);
+      if (values != null) {
+        for (Integer value : values) {
+          writeNullableInt(value);
+        }
+      }
+    }
+    
+    /**
+     * @param e
+     * @throws IOException
+     */
+    private void writeEnum(Enum<?> e) throws IOException {
+      writeString((e != null) ? e.name() : null);
+    }
+    
+    /**
+     * Writes a reference to the string table, followed by the string, if
+     * it is not yet in the table.
+     * @param s
+     * @throws IOException
+     */
+    private void writeString(String s) throws IOException {
+      if (s == null) {
+        writeInt(NULL_STRING);
+        return;
+      }
+      Integer index = strings.get(s);
+      if (index != null) {
+        writeInt(index.intValue() + 2);
+        return;
+      }
+      strings.put(s, Integer.valueOf(strings.size()));
+      byte[] utf8 = s.getBytes("UTF-8");
+      writeInt(NEW_STRING);
+      writeInt(utf8.length);
+      out.write(utf8);
+    }
+    
+    /**
+     * @param value
+     * @throws IOException
+     */
+    private void writeNullableInt(Integer value) throws IOException {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        writeSignedInt(value.intValue());
+      }
+    }
+    
+    /**
+     * Writes a signed integer in zig-zag encoding, i.e., small negative
+     * values are as short as small positive ones.
+     * @param value
+     * @throws IOException
+     */
+    private void writeSignedInt(int value) throws IOException {
+      writeInt((value << 1) ^ (value >> 31));
+    }
+    
+    /**
+     * Writes an integer as variable-length quantity with 7 bits per byte.
+     * @param value treated as unsigned.
+     * @throws IOException
+     */
+    private void writeInt(int value) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        out.writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.writeByte(value);
+    }
+  }
+  
+  /**
+   * Reads the encoding.
+   */
+  private static class Decoder {
+    /**
+     *
+     */
+    private final DataInputStream in;
+    /**
+     * All strings that have been read.
+     */
+    private final List<String> strings = new ArrayList<String>();
+    
+    /**
+     * @param in
+     */
+    Decoder(DataInputStream in) {
+      this.in = in;
+    }
+    
+    /**
+     * @return the decoded pathway.
+     * @throws IOException
+     */
+    Pathway readPathway() throws IOException {
+      int version = readInt();
+      if (version != VERSION) {
+        throw new IOException(MessageFormat.format("Unsupported version {0} of an encoded pathway, expected {1}.", version, VERSION));
+      }
+      Pathway p = new Pathway(readString(), readString(), readSignedInt(), readString(), readString(), readString());
+      p.setAdditionalText(readString());
+      p.setComment(readString());
+      p.setOriginFormatName(readString());
+      p.setVersion(in.readDouble());
+      Map<IdentifierDatabases, Collection<String>> ids = readIdentifiers();
+      if (ids != null) {
+        p.addDatabaseIdentifiers(ids);
+      }
+    
+      int entries = readInt();
+      List<Entry> list = new ArrayList<Entry>(entries);
+      for (int i = 0; i < entries; i++) {
+        list.add(readEntry(p));
+      }
+      for (Entry e : list) {
+        Integer parent = readNullableInt();
+        if (parent != null) {
+          e.setParentNode(p.getEntryForId(parent.intValue()));
+        }
+      }
+      int reactions = readInt();
+      for (int i = 0; i < reactions; i++) {
+        p.addReaction(readReaction(p));
+      }
+      int relations = readInt();
+      for (int i = 0; i < relations; i++) {
+        p.addRelation(readRelation());
+      }
+      return p;
+    }
+    
+    /**
+     * Reads an entry and adds it to the given pathway.
+     * @param p
+     * @return the entry.
+     * @throws IOException
+     */
+    private Entry readEntry(Pathway p) throws IOException {
+      boolean extended = readInt() == EXTENDED;
+      int id = readSignedInt();
+      String name = readString();
+      EntryType type = readEnum(EntryType.class);
+      String link = readString();
+      String reaction = readString();
+      Entry e = extended ? new EntryExtended(p, id, name, type, link, reaction) : new Entry(p, id, name, type, link, reaction);
+      int graphics = readInt();
+      for (int i = 0; i < graphics; i++) {
+        e.addGraphics(readGraphics());
+      }
+      List<Integer> components = readIntegers();
+      if (components != null) {
+        e.setComponents(components);
+      }
+      int count = readInt();
+      List<String> synonyms = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++) {
+        synonyms.add(readString());
+      }
+      if (extended) {
+        EntryExtended ex = (EntryExtended) e;
+        EntryTypeExtended geneType = readEnum(EntryTypeExtended.class);
+        if (geneType != null) {
+          ex.setGeneType(geneType);
+        }
+        Map<IdentifierDatabases, Collection<String>> ids = readIdentifiers();
+        if (ids != null) {
+          ex.addDatabaseIdentifiers(ids);
+        }
+        ex.setCompartment(readString());
+      }
+      p.addEntry(e);
+      for (String synonym : synonyms) {
+        p.putEntrySynonymsInNameMap(e, synonym);
+      }
+      return e;
+    }
+    
+    /**
+     * @return the decoded graphics.
+     * @throws IOException
+     */
+    private Graphics readGraphics() throws IOException {
+      String name = readString();
+      int x = readSignedInt();
+      int y = readSignedInt();
+      GraphicsType type = readEnum(GraphicsType.class);
+      int width = readSignedInt();
+      int height = readSignedInt();
+      Graphics g = new Graphics(name, x, y, type, width, height, readString(), readString(), false);
+      List<Integer> coords = readIntegers();
+      if ((coords != null) && !coords.isEmpty()) {
+        StringBuilder s = new StringBuilder();
+        for (Integer c : coords) {
+          if (s.length() > 0) {
+            s.append(',');
+          }
+          s.append(c);
+        }
+        g.setCoordsString(s.toString());
+      }
+      return g;
+    }
+    
+    /**
+     * @param p
+     * @return the decoded reaction with all its components.
+     * @throws IOException
+     */
+    private Reaction readReaction(Pathway p) throws IOException {
+      Integer id = readNullableInt();
+      String name = readString();
+      ReactionType type = readEnum(ReactionType.class);
+      Reaction r = (id != null) ? new Reaction(p, id, name, type) : new Reaction(p, name, type);
+      int substrates = readInt();
+      for (int i = 0; i < substrates; i++) {
+        r.addSubstrate(readReactionComponent(p));
+      }
+      int products = readInt();
+      for (int i = 0; i < products; i++) {
+        r.addProduct(readReactionComponent(p));
+      }
+      Map<IdentifierDatabases, Collection<String>> ids = readIdentifiers();
+      if (ids != null) {
+        r.addDatabaseIdentifiers(ids);
+      }
+      return r;
+    }
+    
+    /**
+     * @param p
+     * @return the decoded reaction component.
+     * @throws IOException
+     */
+    private ReactionComponent readReactionComponent(Pathway p) throws IOException {
+      Integer id = readNullableInt();
+      ReactionComponent rc = new ReactionComponent(readString());
+      if (id != null) {
+        rc.setId(id);
+      }
+      Integer stoichiometry = readNullableInt();
+      if (stoichiometry != null) {
+        rc.setStoichiometry(stoichiometry);
+      }
+      Integer entry = readNullableInt();
+      if (entry != null) {
+        rc.setCorrespondingEntry(p.getEntryForId(entry.intValue()));
+      }
+      if (in.readBoolean()) {
+        rc.setAlt(readReactionComponent(p));
+      }
+      return rc;
+    }
+    
+    /**
+     * @return the decoded relation.
+     * @throws IOException
+     */
+    private Relation readRelation() throws IOException {
+      int entry1 = readSignedInt();
+      int entry2 = readSignedInt();
+      Relation r = new Relation(entry1, entry2, readEnum(RelationType.class));
+      int subtypes = readInt();
+      for (int i = 0; i < subtypes; i++) {
+        SubType s = new SubType(readString(), readString());
+        s.setEdgeColor(readString());
+        r.addSubtype(s);
+      }
+      Map<IdentifierDatabases, Collection<String>> ids = readIdentifiers();
+      if (ids != null) {
+        r.addDatabaseIdentifiers(ids);
+      }
+      r.setSource(readString());
+      return r;
+    }
+    
+    /**
+     * @return the decoded identifiers or {@code null} if there are none.
+     * @throws IOException
+     */
+    private Map<IdentifierDatabases, Collection<String>> readIdentifiers() throws IOException {
+      int databases = readInt();
+      if (databases == 0) {
+        return null;
+      }
+      Map<IdentifierDatabases, Collection<String>> ids = new LinkedHashMap<IdentifierDatabases, Collection<String>>();
+      for (int i = 0; i < databases; i++) {
+        IdentifierDatabases db = readEnum(IdentifierDatabases.class);
+        int count = readInt();
+        Collection<String> values = new ArrayList<String>(count);
+        for (int j = 0; j < count; j++) {
+          values.add(readString());
+        }
+        ids.put(db, values);
+      }
+      return ids;
+    }
+    
+    /**
+     * @return the decoded list or {@code null}.
+     * @throws IOException
+     */
+    private List<Integer> readIntegers() throws IOException {
+      int size = readInt() - 1;
+      if (size < 0) {
+        return null;
+      }
+      List<Integer> values = new ArrayList<Integer>(size);
+      for (int i = 0; i < size; i++) {
+        values.add(readNullableInt());
+      }
+      return values;
+    }
+    
+    /**
+     * @param type
+     * @return the decoded constant or {@code null}.
+     * @throws IOException
+     */
+    private <T extends Enum<T>> T readEnum(Class<T> type) throws IOException {
+      String name = readString();
+      return (name != null) ? Enum.valueOf(type, name) : null;
+    }
+    
+    /**
+     * @return the decoded string.
+     * @throws IOException
+     */
+    private String readString() throws IOException {
+      int index = readInt();
+      if (index == NULL_STRING) {
+        return null;
+      } else if (index != NEW_STRING) {
+        return strings.get(index - 2);
+      }
+      byte[] utf8 = new byte[readInt()];
+      in.readFully(utf8);
+      String s = new String(utf8, "UTF-8");
+      strings.add(s);
+      return s;
+    }
+    
+    /**
+     * @return the decoded integer or {@code null}.
+     * @throws IOException
+     */
+    private Integer readNullableInt() throws IOException {
+      return in.readBoolean() ? Integer.valueOf(readSignedInt()) : null;
+    }
+    
+    /**
+     * @return the decoded integer (zig-zag encoding).
+     * @throws IOException
+     */
+    private int readSignedInt() throws IOException {
+      int value = readInt();
+      return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * @return the decoded variable-length quantity.
+     * @throws IOException
+     */
+    private int readInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = in.readUnsignedByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed variable-length integer.");
+    }
+  }
+  
+}
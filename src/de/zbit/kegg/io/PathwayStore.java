@@ -0,0 +1,366 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * A persistent, append-only store for {@link PreprocessedPathway}s (see
+ * {@link AbstractKEGGtranslator#preprocess(Pathway)}), encoded with the
+ * {@link PathwayCodec}. All records are appended to one file:
+ * <pre>
+ * header: int magic, int version
+ * record: int length, UTF pathwayID, UTF preprocessingKey, UTF source,
+ *         int ordinal, boolean last, long time, byte[] pathway
+ * </pre>
+ * Every record is stored for the
+ * {@link AbstractKEGGtranslator#getPreprocessingKey()} of the translator
+ * that preprocessed it, since other settings yield a different pathway.
+ * The source identifies the input the pathway has been read from (e.g.,
+ * the hash of a KGML document) and the ordinal is the position of the
+ * pathway in this input. Thus, all pathways of an input can be read
+ * from the store instead of parsing and preprocessing the input again
+ * (see {@link #count(String, String)}). Additionally, the latest record
+ * of every pathway is indexed by its ID (see {@link #get(String, String)}).
+ *
+ * <p>Opening the store only reads the header of every record; pathways
+ * are read on demand. An incomplete record at the end of the file (e.g.,
+ * after a crash) is discarded on opening. A store of another version is
+ * cleared. The store must not be written by several processes at once.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class PathwayStore implements Closeable {
+  
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(PathwayStore.class.getName());
+  
+  /**
+   * 'KTPS'
+   */
+  private static final int MAGIC = 0x4B545053;
+  
+  /**
+   * Version of the file format. Includes the {@link PathwayCodec#VERSION}.
+   */
+  private static final int VERSION = 1000 + PathwayCodec.VERSION;
+  
+  /**
+   * Size of the file header in bytes.
+   */
+  private static final int HEADER_SIZE = 8;
+  
+  /**
+   * Maximum length of a record in bytes. Larger values indicate a corrupt record.
+   */
+  private static final int MAX_RECORD_LENGTH = 256 * 1024 * 1024;
+  
+  /**
+   * The store.
+   */
+  private final File file;
+  
+  /**
+   * Reads and writes {@link #file}.
+   */
+  private final RandomAccessFile raf;
+  
+  /**
+   * Length of the valid part of the file. New records are appended here.
+   */
+  private long size;
+  
+  /**
+   * Position of the latest record per pathway ID and preprocessing key.
+   */
+  private final Map<String, Long> byID = new HashMap<String, Long>();
+  
+  /**
+   * All pathways per source and preprocessing key.
+   */
+  private final Map<String, Source> bySource = new HashMap<String, Source>();
+  
+  /**
+   * Number of records, appended since this store has been opened.
+   */
+  private int appended = 0;
+  
+  /**
+   * The pathways of one source.
+   */
+  private static class Source {
+    /**
+     * Position of the latest record per ordinal (or {@code null}).
+     */
+    final List<Long> records = new ArrayList<Long>(1);
+    /**
+     * Number of pathways of the source or -1 if the last one has not yet
+     * been stored.
+     */
+    int count = -1;
+  }
+  
+  /**
+   * Opens or creates the store in the given file.
+   * @param file
+   * @throws IOException if the file can not be opened or is no store.
+   */
+  public PathwayStore(File file) throws IOException {
+    this.file = file;
+    raf = new RandomAccessFile(file, "rw");
+    try {
+      if (raf.length() >= HEADER_SIZE) {
+        if (raf.readInt() != MAGIC) {
+          throw new IOException(MessageFormat.format("{0} is not a pathway store.", file));
+        }
+        if (raf.readInt() == VERSION) {
+          size = scan();
+        } else {
+          logger.info(MessageFormat.format("Clearing {0}, since it has been written by another version.", file));
+        }
+      }
+      if (size < HEADER_SIZE) {
+        raf.setLength(0);
+        raf.writeInt(MAGIC);
+        raf.writeInt(VERSION);
+        size = HEADER_SIZE;
+      }
+    } catch (IOException e) {
+      raf.close();
+      throw e;
+    }
+    logger.fine(MessageFormat.format("Opened {0} with {1} pathways.", file, byID.size()));
+  }
+  
+  /**
+   * Builds the indices from all records and discards an incomplete
+   * record at the end.
+   * @return the length of the valid part of the file.
+   * @throws IOException
+   */
+  private long scan() throws IOException {
+    long length = raf.length();
+    long position = HEADER_SIZE;
+    while (position + 4 <= length) {
+      raf.seek(position);
+      int recordLength = raf.readInt();
+      long end = position + 4 + recordLength;
+      if ((recordLength < 0) || (recordLength > MAX_RECORD_LENGTH) || (end > length)) {
+        break;
+      }
+      try {
+        index(position, raf.readUTF(), raf.readUTF(), raf.readUTF(), raf.readInt(), raf.readBoolean());
+      } catch (IOException e) {
+        break;
+      }
+      position = end;
+    }
+    if (position < length) {
+      logger.warning(MessageFormat.format("Discarding {0,number,#} bytes of an incomplete record at the end of {1}.",
+        length - position, file));
+      raf.setLength(position);
+    }
+    return position;
+  }
+  
+  /**
+   * Adds a record to the indices.
+   * @param position
+   * @param id
+   * @param key
+   * @param source
+   * @param ordinal
+   * @param last
+   */
+  private void index(long position, String id, String key, String source, int ordinal, boolean last) {
+    Long pos = Long.valueOf(position);
+    byID.put(id + '\n' + key, pos);
+    if (source.length() < 1) {
+      return;
+    }
+    Source s = bySource.get(source + '\n' + key);
+    if (s == null) {
+      s = new Source();
+      bySource.put(source + '\n' + key, s);
+    }
+    while (s.records.size() <= ordinal) {
+      s.records.add(null);
+    }
+    s.records.set(ordinal, pos);
+    if (last) {
+      s.count = ordinal + 1;
+    }
+  }
+  
+  /**
+   * @return the file of this store.
+   */
+  public File getFile() {
+    return file;
+  }
+  
+  /**
+   * @return the IDs of all stored pathways (see {@link Pathway#getName()}).
+   */
+  public synchronized Set<String> getPathwayIDs() {
+    Set<String> ids = new TreeSet<String>();
+    for (String id : byID.keySet()) {
+      ids.add(id.substring(0, id.indexOf('\n')));
+    }
+    return ids;
+  }
+  
+  /**
+   * @param id the ID of a pathway (see {@link Pathway#getName()}).
+   * @param preprocessingKey see {@link AbstractKEGGtranslator#getPreprocessingKey()}.
+   * @return the latest stored pathway with the given ID, preprocessed with
+   * the given key, or {@code null} if there is none.
+   * @throws IOException if the pathway can not be read.
+   */
+  public synchronized PreprocessedPathway get(String id, String preprocessingKey) throws IOException {
+    Long position = byID.get(id + '\n' + preprocessingKey);
+    return (position != null) ? read(position.longValue()) : null;
+  }
+  
+  /**
+   * @param source the source of the pathways, e.g., a hash of the input file.
+   * @param preprocessingKey see {@link AbstractKEGGtranslator#getPreprocessingKey()}.
+   * @return the number of pathways of the given source, preprocessed with
+   * the given key, or -1 if not all of them are stored.
+   */
+  public synchronized int count(String source, String preprocessingKey) {
+    Source s = bySource.get(source + '\n' + preprocessingKey);
+    if ((s == null) || (s.count < 0) || s.records.subList(0, s.count).contains(null)) {
+      return -1;
+    }
+    return s.count;
+  }
+  
+  /**
+   * @param source the source of the pathway, e.g., a hash of the input file.
+   * @param preprocessingKey see {@link AbstractKEGGtranslator#getPreprocessingKey()}.
+   * @param ordinal position of the pathway in the source, starting with zero.
+   * @return the stored pathway or {@code null} if it is not stored.
+   * @throws IOException if the pathway can not be read.
+   */
+  public synchronized PreprocessedPathway get(String source, String preprocessingKey, int ordinal) throws IOException {
+    Source s = bySource.get(source + '\n' + preprocessingKey);
+    Long position = ((s != null) && (ordinal < s.records.size())) ? s.records.get(ordinal) : null;
+    return (position != null) ? read(position.longValue()) : null;
+  }
+  
+  /**
+   * Appends a preprocessed pathway to the store.
+   * @param p the preprocessed pathway.
+   * @param source the source of the pathway, e.g., a hash of the input
+   * file, or {@code null} if unknown.
+   * @param ordinal position of the pathway in the source, starting with zero.
+   * @param last whether it is the last pathway of the source.
+   * @throws IOException if the pathway could not be written.
+   */
+  public void put(PreprocessedPathway p, String source, int ordinal, boolean last) throws IOException {
+    byte[] encoded = p.getEncoded();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(encoded.length + 256);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0); // Length, see below
+    out.writeUTF(p.getName());
+    out.writeUTF(p.getPreprocessingKey());
+    out.writeUTF(source != null ? source : "");
+    out.writeInt(ordinal);
+    out.writeBoolean(last);
+    out.writeLong(System.currentTimeMillis());
+    out.write(encoded);
+    out.close();
+    byte[] record = bytes.toByteArray();
+    int length = record.length - 4;
+    record[0] = (byte) (length >>> 24);
+    record[1] = (byte) (length >>> 16);
+    record[2] = (byte) (length >>> 8);
+    record[3] = (byte) length;
+    
+    synchronized (this) {
+      raf.seek(size);
+      raf.write(record);
+      index(size, p.getName(), p.getPreprocessingKey(), source != null ? source : "", ordinal, last);
+      size += record.length;
+      appended++;
+    }
+  }
+  
+  /**
+   * @param position
+   * @return the pathway of the record at the given position.
+   * @throws IOException
+   */
+  private PreprocessedPathway read(long position) throws IOException {
+    raf.seek(position);
+    int length = raf.readInt();
+    String id = raf.readUTF();
+    String key = raf.readUTF();
+    raf.readUTF(); // source
+    raf.readInt(); // ordinal
+    raf.readBoolean(); // last
+    raf.readLong(); // time
+    byte[] encoded = new byte[(int) (position + 4 + length - raf.getFilePointer())];
+    raf.readFully(encoded);
+    return new PreprocessedPathway(key, id, encoded);
+  }
+  
+  /**
+   * Forces all appended records to the disk.
+   * @throws IOException
+   */
+  public synchronized void flush() throws IOException {
+    raf.getFD().sync();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (appended > 0) {
+      logger.fine(MessageFormat.format("Appended {0,number,integer} pathways to {1}.", appended, file));
+    }
+    raf.close();
+  }
+  
+}
@@ -0,0 +1,137 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * The immutable result of {@link AbstractKEGGtranslator#preprocess(Pathway)}.
+ * It can be translated by every translator with the same
+ * {@link AbstractKEGGtranslator#getPreprocessingKey()} (see
+ * {@link AbstractKEGGtranslator#translate(PreprocessedPathway)}), any
+ * number of times and from several threads. Thus, one expensive
+ * preprocessing can be shared by several output formats.
+ *
+ * <p>The pathway is kept in the compact encoding of the {@link PathwayCodec}
+ * and {@link #getPathway()} decodes a new copy for every translation,
+ * since translators modify the pathways they translate. Instances can be
+ * kept in a {@link PathwayStore}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public final class PreprocessedPathway {
+  
+  /**
+   * {@link AbstractKEGGtranslator#getPreprocessingKey()} of the translator
+   * that preprocessed the pathway.
+   */
+  private final String preprocessingKey;
+  
+  /**
+   * {@link Pathway#getName()}
+   */
+  private final String name;
+  
+  /**
+   * The pathway, encoded with the {@link PathwayCodec}. Never modified.
+   */
+  private final byte[] encoded;
+  
+  /**
+   * @param p a preprocessed pathway, which is encoded immediately. Thus,
+   * later changes of {@code p} are not reflected.
+   * @param preprocessingKey the {@link AbstractKEGGtranslator#getPreprocessingKey()}
+   * of the translator that preprocessed the pathway.
+   * @param synonyms the cache of this translator or {@code null} (see
+   * {@link PathwayCodec#encode(Pathway, KeggInfoManagement)}).
+   */
+  PreprocessedPathway(Pathway p, String preprocessingKey, KeggInfoManagement synonyms) {
+    this(preprocessingKey, p.getName(), PathwayCodec.encode(p, synonyms));
+  }
+  
+  /**
+   * @param preprocessingKey
+   * @param name
+   * @param encoded the encoded pathway, which must not be modified afterwards.
+   */
+  PreprocessedPathway(String preprocessingKey, String name, byte[] encoded) {
+    this.preprocessingKey = preprocessingKey;
+    this.name = name;
+    this.encoded = encoded;
+  }
+  
+  /**
+   * @return the {@link AbstractKEGGtranslator#getPreprocessingKey()} of
+   * the translator that preprocessed this pathway.
+   */
+  public String getPreprocessingKey() {
+    return preprocessingKey;
+  }
+  
+  /**
+   * @return the name of the pathway, e.g., 'path:hsa00010'.
+   */
+  public String getName() {
+    return name;
+  }
+  
+  /**
+   * @return the size of the encoded pathway in bytes.
+   */
+  public int getSize() {
+    return encoded.length;
+  }
+  
+  /**
+   * @return a new copy of the preprocessed pathway, which may be modified
+   * or translated.
+   * @throws IllegalStateException if the pathway has been read from a
+   * corrupt {@link PathwayStore}.
+   */
+  public Pathway getPathway() {
+    try {
+      return PathwayCodec.decode(encoded);
+    } catch (IOException e) {
+      throw new IllegalStateException(MessageFormat.format("Could not decode pathway {0}.", name), e);
+    }
+  }
+  
+  /**
+   * @return the encoded pathway. Must not be modified.
+   */
+  byte[] getEncoded() {
+    return encoded;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return MessageFormat.format("{0}[{1}, {2,number,integer} bytes, {3}]", getClass().getSimpleName(), name, encoded.length, preprocessingKey);
+  }
+  
+}
@@ -0,0 +1,61 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+/**
+ * Thrown by {@link AbstractKEGGtranslator}, if a translation has been
+ * cancelled (see {@link AbstractKEGGtranslator#cancel()}) or exceeded its
+ * timeout (see {@link AbstractKEGGtranslator#setTimeout(long)}).
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class TranslationCancelledException extends RuntimeException {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 2793105460251796413L;
+  
+  /**
+   * {@code true} if the translation exceeded its timeout, {@code false}
+   * if it has been cancelled explicitly.
+   */
+  private final boolean timeout;
+  
+  /**
+   * @param message
+   * @param timeout {@code true} if the translation exceeded its timeout.
+   */
+  public TranslationCancelledException(String message, boolean timeout) {
+    super(message);
+    this.timeout = timeout;
+  }
+  
+  /**
+   * @return {@code true} if the translation exceeded its timeout,
+   * {@code false} if it has been cancelled explicitly.
+   */
+  public boolean isTimeout() {
+    return timeout;
+  }
+  
+}
@@ -0,0 +1,187 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * The state of one call to {@link AbstractKEGGtranslator#translate(Pathway)},
+ * {@link AbstractKEGGtranslator#preProcessPathway(Pathway)} or
+ * {@link AbstractKEGGtranslator#translatePreprocessed(Pathway)}. A new
+ * context is created for every outermost call and only used by the
+ * thread that made this call. Thus, one translator can translate multiple
+ * pathways at once in different threads.
+ *
+ * <p>Translators that need further state while translating one document
+ * (e.g., the document itself) should extend this class and override
+ * {@link AbstractKEGGtranslator#createContext()}, instead of keeping
+ * this state in fields of the translator.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class TranslationContext {
+  
+  /**
+   * The pathway that is being translated. Read by other threads once
+   * the translation has finished.
+   */
+  private volatile Pathway pathway = null;
+  
+  /**
+   * Contains all ids already assigned to an element in, e.g., the sbml document.
+   * Used for avoiding giving the same id to two or more different elements.
+   */
+  private final Set<String> SIds = new HashSet<String>();
+  
+  /**
+   * ProgressBar for this translation.
+   */
+  private AbstractProgressBar progress = null;
+  
+  /**
+   * Time (see {@link System#currentTimeMillis()}) at which this
+   * translation exceeds its timeout. Zero for no limit.
+   */
+  private long deadline = 0;
+  
+  /**
+   * Set by {@link #cancel()}, possibly from another thread.
+   */
+  private volatile boolean cancelled = false;
+  
+  /**
+   * Time in milliseconds spent for fetching KEGG information.
+   */
+  private long prefetchTime = 0;
+  
+  /**
+   * Set if this translation has overwritten an existing file. Read by
+   * other threads once the translation has finished.
+   */
+  private volatile boolean fileOverwritten = false;
+  
+  /**
+   * Depth of nested translation calls in this context.
+   */
+  int depth = 0;
+  
+  /**
+   * @return the pathway that is being translated or {@code null} if
+   * it is only being preprocessed.
+   */
+  public Pathway getPathway() {
+    return pathway;
+  }
+  
+  /**
+   * @param pathway the pathway that is being translated.
+   */
+  public void setPathway(Pathway pathway) {
+    this.pathway = pathway;
+  }
+  
+  /**
+   * @return all ids already assigned to an element in the translated
+   * document.
+   */
+  public Set<String> getSIds() {
+    return SIds;
+  }
+  
+  /**
+   * @return the progress bar of this translation or {@code null}.
+   */
+  public AbstractProgressBar getProgressBar() {
+    return progress;
+  }
+  
+  /**
+   * @param progress
+   */
+  public void setProgressBar(AbstractProgressBar progress) {
+    this.progress = progress;
+  }
+  
+  /**
+   * @return the time (see {@link System#currentTimeMillis()}) at which
+   * this translation exceeds its timeout, zero for no limit.
+   */
+  public long getDeadline() {
+    return deadline;
+  }
+  
+  /**
+   * @param deadline see {@link #getDeadline()}.
+   */
+  void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+  
+  /**
+   * Cancels this translation. May be called from any thread.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+  
+  /**
+   * @return {@code true} if {@link #cancel()} has been called.
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+  
+  /**
+   * @return the time in milliseconds spent for fetching (or looking up)
+   * information from KEGG.
+   */
+  public long getPrefetchTime() {
+    return prefetchTime;
+  }
+  
+  /**
+   * @param millis time in milliseconds to add to {@link #getPrefetchTime()}.
+   */
+  void addPrefetchTime(long millis) {
+    prefetchTime += millis;
+  }
+  
+  /**
+   * @return {@code true} if this translation has overwritten an existing
+   * file.
+   */
+  public boolean isFileOverwritten() {
+    return fileOverwritten;
+  }
+  
+  /**
+   * @param fileOverwritten see {@link #isFileOverwritten()}.
+   */
+  void setFileOverwritten(boolean fileOverwritten) {
+    this.fileOverwritten = fileOverwritten;
+  }
+  
+}
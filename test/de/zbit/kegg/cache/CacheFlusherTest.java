@@ -0,0 +1,184 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * Tests that a {@link CacheFlusher} replaces the cache file atomically
+ * and writes the cache when the JVM shuts down.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class CacheFlusherTest {
+
+  /**
+   * Maximum time in milliseconds to wait for the background thread or
+   * another JVM.
+   */
+  private static final long TIMEOUT = 30000;
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * @param id
+   * @return information about the given ID, without network access.
+   */
+  static KeggInfos createInfos(String id) {
+    return new KeggInfos(id, "ENTRY       " + id + "\nNAME        test\n///\n");
+  }
+
+  /**
+   * @param file
+   * @param content
+   * @throws IOException
+   */
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * @param file
+   * @return the cache in the given file.
+   * @throws IOException
+   */
+  private static KeggInfoManagement load(File file) throws IOException {
+    return (KeggInfoManagement) KeggInfoManagement.loadFromFilesystem(file);
+  }
+
+  /**
+   * The temporary file is in the same directory (i.e., on the same file
+   * system) and replaces an existing file.
+   * @throws Exception
+   */
+  @Test
+  public void testReplace() throws Exception {
+    File file = new File(dir.getRoot(), "cache.dat");
+    File tmp = CacheFlusher.getTemporaryFile(file);
+    assertEquals(file.getAbsoluteFile().getParentFile(), tmp.getParentFile());
+    assertFalse(file.getName().equals(tmp.getName()));
+
+    write(file, "old");
+    write(tmp, "new");
+    CacheFlusher.replace(tmp, file);
+    assertFalse(tmp.exists());
+    assertEquals(3, file.length());
+  }
+
+  /**
+   * The background thread writes a modified cache, replacing an existing
+   * (here: corrupt) file, and leaves no temporary file behind.
+   * @throws Exception
+   */
+  @Test
+  public void testFlush() throws Exception {
+    File file = new File(dir.getRoot(), "cache.dat");
+    write(file, "corrupt");
+    KeggInfoManagement cache = new KeggInfoManagement(100);
+    CacheFlusher flusher = new CacheFlusher(cache, file, 0);
+    try {
+      cache.addInformation("hsa:1", createInfos("hsa:1"));
+      long end = System.currentTimeMillis() + TIMEOUT;
+      while ((file.length() == "corrupt".length()) && (System.currentTimeMillis() < end)) {
+        Thread.sleep(100);
+      }
+    } finally {
+      flusher.close();
+    }
+    assertFalse(CacheFlusher.getTemporaryFile(file).exists());
+    KeggInfoManagement loaded = load(file);
+    assertEquals(1, loaded.getNumberOfCachedIDs());
+  }
+
+  /**
+   * A cache that has been modified after the last write is written by
+   * the shutdown hook, if the JVM exits without closing the flusher.
+   * @throws Exception
+   */
+  @Test
+  public void testShutdownHook() throws Exception {
+    File file = new File(dir.getRoot(), "cache.dat");
+    ProcessBuilder builder = new ProcessBuilder(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(),
+      "-cp", System.getProperty("java.class.path"), Exiting.class.getName(), file.getPath());
+    builder.redirectErrorStream(true);
+    Process process = builder.start();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    InputStream in = process.getInputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) >= 0) {
+      output.write(buffer, 0, n);
+    }
+    assertEquals(output.toString(), 0, process.waitFor());
+
+    assertTrue(output.toString(), file.exists());
+    KeggInfoManagement loaded = load(file);
+    assertNotNull(loaded);
+    assertEquals(2, loaded.getNumberOfCachedIDs());
+  }
+
+  /**
+   * Modifies a cache and exits the JVM, without closing the
+   * {@link CacheFlusher} and before its interval has passed.
+   */
+  public static class Exiting {
+
+    /**
+     * @param args the cache file.
+     */
+    public static void main(String[] args) {
+      KeggInfoManagement cache = new KeggInfoManagement(100);
+      new CacheFlusher(cache, new File(args[0]), Long.MAX_VALUE);
+      cache.addInformation("hsa:1", createInfos("hsa:1"));
+      cache.addInformation("hsa:2", createInfos("hsa:2"));
+      System.exit(0);
+    }
+
+  }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggInfos;
+
+/**
+ * Tests that a {@link CompactKeggInfos} returns the same values as the
+ * {@link KeggInfos} it has been created from, also after serialization.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class CompactKeggInfosTest {
+
+  /**
+   * A gene entry.
+   */
+  private static final String GENE = "ENTRY       3098              CDS       T01001\n"
+      + "NAME        HK1, HK1-ta, HK1-tb, HK1-tc, HKD, HKI, HMSNR, HXK1, hexokinase\n"
+      + "DEFINITION  hexokinase 1\n"
+      + "ORTHOLOGY   K00844  hexokinase [EC:2.7.1.1]\n"
+      + "ORGANISM    hsa  Homo sapiens (human)\n"
+      + "PATHWAY     hsa00010  Glycolysis / Gluconeogenesis\n"
+      + "            hsa00051  Fructose and mannose metabolism\n"
+      + "            hsa00052  Galactose metabolism\n"
+      + "DBLINKS     NCBI-GeneID: 3098\n"
+      + "            OMIM: 142600\n"
+      + "            HGNC: 4922\n"
+      + "            Ensembl: ENSG00000156515\n"
+      + "            UniProt: P19367 Q5VTB1\n"
+      + "///\n";
+
+  /**
+   * A compound entry.
+   */
+  private static final String COMPOUND = "ENTRY       C00031                      Compound\n"
+      + "NAME        D-Glucose;\n"
+      + "            Grape sugar;\n"
+      + "            Dextrose\n"
+      + "FORMULA     C6H12O6\n"
+      + "EXACT_MASS  180.0634\n"
+      + "MOL_WEIGHT  180.1559\n"
+      + "ENZYME      1.1.1.118       1.1.1.119       1.1.1.121       2.7.1.1\n"
+      + "            2.7.1.2         3.2.1.10\n"
+      + "PATHWAY     map00010  Glycolysis / Gluconeogenesis\n"
+      + "            map00052  Galactose metabolism\n"
+      + "DBLINKS     CAS: 50-99-7\n"
+      + "            PubChem: 3333\n"
+      + "            ChEBI: 4167\n"
+      + "            KNApSAcK: C00001176\n"
+      + "            PDB-CCD: GLC\n"
+      + "            3DMET: B00006\n"
+      + "            LipidBank: XPR1234\n"
+      + "///\n";
+
+  /**
+   * A reaction entry.
+   */
+  private static final String REACTION = "ENTRY       R00299                      Reaction\n"
+      + "NAME        ATP:D-glucose 6-phosphotransferase\n"
+      + "DEFINITION  ATP + D-Glucose <=> ADP + D-Glucose 6-phosphate\n"
+      + "EQUATION    C00002 + C00031 <=> C00008 + C00092\n"
+      + "ENZYME      2.7.1.1         2.7.1.2\n"
+      + "PATHWAY     rn00010  Glycolysis / Gluconeogenesis\n"
+      + "///\n";
+
+  /**
+   * @return all getters of {@link KeggInfos} without parameters.
+   */
+  private static List<Method> getGetters() {
+    List<Method> getters = new ArrayList<Method>();
+    for (Method m : KeggInfos.class.getMethods()) {
+      if ((m.getParameterTypes().length == 0) && (m.getDeclaringClass() != Object.class)
+          && (m.getName().startsWith("get") || m.getName().startsWith("is") || m.getName().startsWith("contains"))
+          // The raw text is dropped after parsing.
+          && !m.getName().equals("getInformationFromKeggAdaptor")) {
+        getters.add(m);
+      }
+    }
+    return getters;
+  }
+
+  /**
+   * @param expected
+   * @param actual
+   * @throws Exception
+   */
+  private static void assertSameValues(KeggInfos expected, KeggInfos actual) throws Exception {
+    for (Method getter : getGetters()) {
+      Object e = invoke(getter, expected);
+      Object a = invoke(getter, actual);
+      if ((e instanceof Object[]) && (a instanceof Object[])) {
+        assertArrayEquals(getter.getName(), (Object[]) e, (Object[]) a);
+      } else {
+        assertEquals(getter.getName(), e, a);
+      }
+    }
+    assertArrayEquals(split(expected.getPathways(), ","), CompactKeggInfos.getPathwayIDs(actual));
+    assertArrayEquals(split(expected.getPathwayDescriptions(), ","), CompactKeggInfos.getPathwayDescriptions(actual));
+    assertArrayEquals(CompactKeggInfos.getEnzymes(expected), CompactKeggInfos.getEnzymes(actual));
+    assertArrayEquals(CompactKeggInfos.getSynonyms(expected), CompactKeggInfos.getSynonyms(actual));
+  }
+
+  /**
+   * @param getter
+   * @param infos
+   * @return the result of the getter or, if the getter fails (e.g., some
+   * getters of {@link KeggInfos} fail for missing values), the class of
+   * the exception.
+   * @throws Exception
+   */
+  private static Object invoke(Method getter, KeggInfos infos) throws Exception {
+    try {
+      return getter.invoke(infos);
+    } catch (InvocationTargetException e) {
+      return e.getCause().getClass();
+    }
+  }
+
+  /**
+   * @param s
+   * @param regex
+   * @return {@code s.split(regex)} or {@code null}.
+   */
+  private static String[] split(String s, String regex) {
+    return s != null ? s.split(regex) : null;
+  }
+
+  /**
+   * @param id
+   * @param entry
+   * @return the parsed entry.
+   */
+  private static KeggInfos parse(String id, String entry) {
+    KeggInfos infos = new KeggInfos(id, entry);
+    assertTrue(id, infos.queryWasSuccessfull());
+    return infos;
+  }
+
+  /**
+   * @param infos
+   * @return a deserialized copy of the given object.
+   * @throws Exception
+   */
+  private static KeggInfos copy(KeggInfos infos) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(infos);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    try {
+      return (KeggInfos) in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testSameValues() throws Exception {
+    for (String[] entry : new String[][] {{"hsa:3098", GENE}, {"cpd:C00031", COMPOUND}, {"rn:R00299", REACTION}}) {
+      KeggInfos infos = parse(entry[0], entry[1]);
+      KeggInfos compact = CompactKeggInfos.compact(infos);
+      assertTrue(compact instanceof CompactKeggInfos);
+      assertSameValues(infos, compact);
+      assertSame(compact, CompactKeggInfos.compact(compact));
+    }
+    // The samples actually contain the pre-split lists.
+    KeggInfos gene = parse("hsa:3098", GENE);
+    assertNotNull(gene.getPathways());
+    assertNotNull(gene.getNames());
+    KeggInfos compound = parse("cpd:C00031", COMPOUND);
+    assertNotNull(compound.getEnzymes());
+    assertNotNull(compound.getFormula());
+  }
+
+  /**
+   * A serialized and loaded entry returns the same values, and its list
+   * elements are shared with other entries again.
+   * @throws Exception
+   */
+  @Test
+  public void testSerialization() throws Exception {
+    KeggInfos infos = parse("cpd:C00031", COMPOUND);
+    KeggInfos loaded = copy(CompactKeggInfos.compact(infos));
+    assertTrue(loaded instanceof CompactKeggInfos);
+    assertSameValues(infos, loaded);
+
+    KeggInfos other = CompactKeggInfos.compact(parse("rn:R00299", REACTION));
+    String[] enzymes = CompactKeggInfos.getEnzymes(loaded);
+    String[] otherEnzymes = CompactKeggInfos.getEnzymes(other);
+    int i = Arrays.asList(enzymes).indexOf("2.7.1.1");
+    assertTrue(i >= 0);
+    assertSame(enzymes[i], otherEnzymes[0]);
+  }
+
+  /**
+   * Unsuccessful queries are not compacted.
+   */
+  @Test
+  public void testUnsuccessful() {
+    assertNull(CompactKeggInfos.compact(null));
+    KeggInfos failed = new KeggInfos("hsa:unknown", "");
+    assertSame(failed, CompactKeggInfos.compact(failed));
+  }
+
+}
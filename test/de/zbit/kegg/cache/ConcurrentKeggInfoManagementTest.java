@@ -0,0 +1,199 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+
+/**
+ * Tests {@link ConcurrentKeggInfoManagement}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class ConcurrentKeggInfoManagementTest {
+
+  /**
+   * Maximum time in seconds to wait for another thread.
+   */
+  private static final long TIMEOUT = 5;
+
+  /**
+   * A {@link KeggAdaptor} that answers every request without network
+   * access. The name of every entry is the number of the request, and
+   * requests wait for {@link #release}.
+   */
+  private static class VersionedKeggAdaptor extends KeggAdaptor {
+
+    /**
+     * Counted down whenever a request starts.
+     */
+    private final CountDownLatch entered = new CountDownLatch(1);
+
+    /**
+     * Requests wait for this latch.
+     */
+    private final CountDownLatch release;
+
+    /**
+     * Number of requests.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * @param release
+     */
+    public VersionedKeggAdaptor(CountDownLatch release) {
+      this.release = release;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+     */
+    @Override
+    public String get(String operation, String... arguments) throws IOException {
+      int request = requests.incrementAndGet();
+      entered.countDown();
+      try {
+        if (!release.await(TIMEOUT, TimeUnit.SECONDS)) {
+          throw new IOException("Timed out.");
+        }
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return "ENTRY       " + arguments[arguments.length - 1] + "\nNAME        v" + request + "\n///\n";
+    }
+
+  }
+
+  /**
+   * Runs the lookups.
+   */
+  private ExecutorService executor;
+
+  /**
+   * The wrapped cache.
+   */
+  private ExpiringKeggInfoManagement cache;
+
+  /**
+   * The view on {@link #cache}.
+   */
+  private ConcurrentKeggInfoManagement view;
+
+  /**
+   *
+   */
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+    cache = new ExpiringKeggInfoManagement(100);
+    view = new ConcurrentKeggInfoManagement(cache);
+  }
+
+  /**
+   *
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * @param id
+   * @return the lookup of the given ID in another thread.
+   */
+  private Future<KeggInfos> lookup(final String id) {
+    return executor.submit(new Callable<KeggInfos>() {
+      @Override
+      public KeggInfos call() throws Exception {
+        return view.getInformation(id);
+      }
+    });
+  }
+
+  /**
+   * A thread that misses an ID, which is being fetched by another thread,
+   * waits for the other thread instead of sending the same request.
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentMissesCollapsed() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    VersionedKeggAdaptor adaptor = new VersionedKeggAdaptor(release);
+    cache.setKeggAdaptor(adaptor);
+
+    Future<KeggInfos> first = lookup("hsa:1");
+    assertTrue(adaptor.entered.await(TIMEOUT, TimeUnit.SECONDS));
+    Future<KeggInfos> second = lookup("hsa:1");
+    // Give the second lookup the chance to send its own request.
+    Thread.sleep(100);
+    release.countDown();
+    assertNotNull(first.get(TIMEOUT, TimeUnit.SECONDS));
+    assertNotNull(second.get(TIMEOUT, TimeUnit.SECONDS));
+    assertEquals(1, adaptor.requests.get());
+    assertEquals(2, view.getLookups());
+    assertEquals(1, view.getFetched());
+  }
+
+  /**
+   * An expired entry is refreshed in the background, and later lookups
+   * through the view return the refreshed entry.
+   * @throws Exception
+   */
+  @Test
+  public void testExpiredEntryRefreshed() throws Exception {
+    VersionedKeggAdaptor adaptor = new VersionedKeggAdaptor(new CountDownLatch(0));
+    cache.setKeggAdaptor(adaptor);
+    assertEquals("v1", view.getInformation("hsa:1").getName());
+
+    cache.setTimeToLive(1);
+    Thread.sleep(10);
+    // Still answered with the expired entry, which triggers the refresh.
+    assertEquals("v1", view.getInformation("hsa:1").getName());
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+    String name;
+    do {
+      Thread.sleep(10);
+      name = view.getInformation("hsa:1").getName();
+    } while (!"v2".equals(name) && (System.currentTimeMillis() < deadline));
+    assertEquals("v2", name);
+    assertEquals(2, adaptor.requests.get());
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+
+/**
+ * Tests that an {@link ExpiringKeggInfoManagement} refreshes entries after
+ * their time to live or a change of the KEGG release, and that it keeps
+ * only a bounded number of fetch times.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class ExpiringKeggInfoManagementTest {
+
+  /**
+   * Maximum time in milliseconds to wait for a background refresh.
+   */
+  private static final long TIMEOUT = 5000;
+
+  /**
+   * A {@link KeggAdaptor} that answers every request without network
+   * access. The name of every entry is the number of the request. The
+   * ID 'hsa:unknown' is not retrievable.
+   */
+  private static class VersionedKeggAdaptor extends KeggAdaptor {
+
+    /**
+     * Number of requests.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+     */
+    @Override
+    public String get(String operation, String... arguments) throws IOException {
+      int request = requests.incrementAndGet();
+      StringBuilder response = new StringBuilder();
+      for (String id : arguments[arguments.length - 1].split("\\+")) {
+        if (!id.equals("hsa:unknown")) {
+          response.append("ENTRY       ").append(id).append("\nNAME        v").append(request).append("\n///\n");
+        }
+      }
+      return response.toString();
+    }
+
+  }
+
+  /**
+   * The adaptor of {@link #cache}.
+   */
+  private VersionedKeggAdaptor adaptor;
+
+  /**
+   * The cache to test.
+   */
+  private ExpiringKeggInfoManagement cache;
+
+  /**
+   *
+   */
+  @Before
+  public void setUp() {
+    adaptor = new VersionedKeggAdaptor();
+    cache = new ExpiringKeggInfoManagement(500);
+    cache.setKeggAdaptor(adaptor);
+  }
+
+  /**
+   * @param id
+   * @param name
+   * @return {@code true} if the entry of the given ID has been refreshed
+   * to the given name within {@link #TIMEOUT}.
+   * @throws InterruptedException
+   */
+  private boolean awaitName(String id, String name) throws InterruptedException {
+    long end = System.currentTimeMillis() + TIMEOUT;
+    while (System.currentTimeMillis() < end) {
+      if (name.equals(cache.getInformation(id).getName())) {
+        return true;
+      }
+      Thread.sleep(10);
+    }
+    return false;
+  }
+
+  /**
+   * Entries are not fetched again within their time to live.
+   */
+  @Test
+  public void testWithinTimeToLive() {
+    cache.setTimeToLive(60000);
+    assertEquals("v1", cache.getInformation("hsa:1").getName());
+    assertEquals("v1", cache.getInformation("hsa:1").getName());
+    assertEquals(1, adaptor.requests.get());
+  }
+
+  /**
+   * An expired entry is still returned, and refreshed in the background.
+   * @throws Exception
+   */
+  @Test
+  public void testTimeToLive() throws Exception {
+    cache.setTimeToLive(20);
+    assertEquals("v1", cache.getInformation("hsa:1").getName());
+    Thread.sleep(50);
+    assertEquals("v1", cache.getInformation("hsa:1").getName());
+    assertTrue(awaitName("hsa:1", "v2"));
+    // Refreshed at most once per session.
+    Thread.sleep(50);
+    cache.getInformation("hsa:1");
+    Thread.sleep(50);
+    assertEquals(2, adaptor.requests.get());
+  }
+
+  /**
+   * A changed release expires all entries that have been fetched before,
+   * regardless of their age.
+   * @throws Exception
+   */
+  @Test
+  public void testRelease() throws Exception {
+    cache.setRelease("70.0");
+    assertEquals("70.0", cache.getRelease());
+    assertEquals("v1", cache.getInformation("hsa:1").getName());
+    cache.setRelease(" 70.0 ");
+    cache.setRelease(null);
+    cache.getInformation("hsa:1");
+    Thread.sleep(50);
+    assertEquals(1, adaptor.requests.get());
+
+    Thread.sleep(5);
+    cache.setRelease("71.0");
+    assertEquals("71.0", cache.getRelease());
+    cache.getInformation("hsa:1");
+    assertTrue(awaitName("hsa:1", "v2"));
+    assertEquals(2, adaptor.requests.get());
+  }
+
+  /**
+   * IDs that could not be retrieved are not asked again, until the fail
+   * cache is cleared.
+   */
+  @Test
+  public void testFailIndex() {
+    assertNull(cache.getInformation("hsa:unknown"));
+    assertTrue(cache.getFailIndex().contains("hsa:unknown"));
+    int requests = adaptor.requests.get();
+    assertNull(cache.getInformation("hsa:unknown"));
+    assertNull(cache.getInformations(new String[] {"hsa:unknown"})[0]);
+    assertEquals(requests, adaptor.requests.get());
+
+    cache.clearFailCache();
+    cache.getInformation("hsa:unknown");
+    assertEquals(requests + 1, adaptor.requests.get());
+  }
+
+  /**
+   * The fetch times of evicted entries are dropped, such that they do
+   * not grow without bounds. The times of recent entries are kept.
+   */
+  @Test
+  public void testPrune() {
+    cache.setTimeToLive(60000);
+    for (int i = 0; i < 3000; i++) {
+      String id = "hsa:" + i;
+      cache.addInformation(id, new KeggInfos(id, "ENTRY       " + id + "\nNAME        added\n///\n"));
+    }
+    assertTrue(String.valueOf(cache.getFetchTimeCount()), cache.getFetchTimeCount() <= 1000);
+    assertTrue(String.valueOf(cache.getFetchTimeCount()), cache.getFetchTimeCount() >= 500);
+    // Neither expired nor fetched again
+    assertEquals("added", cache.getInformation("hsa:2999").getName());
+    assertEquals(0, adaptor.requests.get());
+  }
+
+}
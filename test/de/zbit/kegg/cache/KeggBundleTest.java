@@ -0,0 +1,187 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.api.cache.KeggQuery;
+import de.zbit.util.objectwrapper.CustomObject;
+
+/**
+ * Tests that a {@link KeggBundle} answers all lookups of a
+ * {@link BundledKeggInfoManagement} and a
+ * {@link BundledKeggFunctionManagement} without access to KEGG.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KeggBundleTest {
+
+  /**
+   * A {@link KeggAdaptor} that counts, but never answers requests.
+   */
+  private static class OfflineKeggAdaptor extends KeggAdaptor {
+
+    /**
+     * Number of requests.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+     */
+    @Override
+    public String get(String operation, String... arguments) throws IOException {
+      requests.incrementAndGet();
+      throw new IOException("Offline.");
+    }
+
+  }
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * {@link KeggInfoManagement#offlineMode} before the test.
+   */
+  private boolean offlineMode;
+
+  /**
+   * The bundle file.
+   */
+  private File file;
+
+  /**
+   * A query, whose result is in the bundle.
+   */
+  private final KeggQuery query = new KeggQuery(KeggQuery.getIdentifier, "hsa:1");
+
+  /**
+   * Writes a bundle with two IDs (one of them not retrievable) and one
+   * query and switches to offline mode.
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException {
+    file = new File(dir.getRoot(), "kegg.bundle");
+    KeggBundle.Writer writer = new KeggBundle.Writer(file);
+    writer.put("hsa:1", new KeggInfos("hsa:1", "ENTRY       hsa:1\nNAME        first\n///\n"));
+    writer.put("hsa:2", null);
+    writer.put(query, new CustomObject<Object>("result"));
+    assertEquals(2, writer.size());
+    writer.close();
+
+    offlineMode = KeggInfoManagement.offlineMode;
+    KeggInfoManagement.offlineMode = true;
+  }
+
+  /**
+   *
+   */
+  @After
+  public void tearDown() {
+    KeggInfoManagement.offlineMode = offlineMode;
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testBundle() throws Exception {
+    KeggBundle bundle = new KeggBundle(file);
+    assertEquals(2, bundle.size());
+    assertTrue(bundle.contains("hsa:1"));
+    assertTrue(bundle.contains("hsa:2"));
+    assertFalse(bundle.contains("hsa:3"));
+    assertEquals("first", bundle.get("hsa:1").getName());
+    assertNull(bundle.get("hsa:2"));
+    assertTrue(bundle.contains(query));
+    assertEquals("result", bundle.get(query).getObject());
+    assertNull(bundle.get(new KeggQuery(KeggQuery.getIdentifier, "hsa:2")));
+  }
+
+  /**
+   * All lookups are answered from the bundle, even in offline mode. IDs
+   * that are not in the bundle are not retrievable.
+   * @throws Exception
+   */
+  @Test
+  public void testLookupOffline() throws Exception {
+    KeggBundle bundle = new KeggBundle(file);
+    OfflineKeggAdaptor adaptor = new OfflineKeggAdaptor();
+    BundledKeggInfoManagement infos = new BundledKeggInfoManagement(10, bundle);
+    infos.setKeggAdaptor(adaptor);
+
+    KeggInfos first = infos.getInformation("hsa:1");
+    assertNotNull(first);
+    assertEquals("first", first.getName());
+    assertNull(infos.getInformation("hsa:2"));
+    assertNull(infos.getInformation("hsa:3"));
+    KeggInfos[] multiple = infos.getInformations(new String[] {"hsa:1", "hsa:2", "hsa:3"});
+    assertEquals("first", multiple[0].getName());
+    assertNull(multiple[1]);
+    assertNull(multiple[2]);
+
+    BundledKeggFunctionManagement functions = new BundledKeggFunctionManagement(10, bundle);
+    assertEquals("result", functions.getInformation(query).getObject());
+    assertNull(functions.getInformation(new KeggQuery(KeggQuery.getIdentifier, "hsa:3")));
+    assertEquals(0, adaptor.requests.get());
+  }
+
+  /**
+   * A file that is no bundle is rejected.
+   * @throws Exception
+   */
+  @Test(expected = IOException.class)
+  public void testInvalidFile() throws Exception {
+    File invalid = new File(dir.getRoot(), "invalid.bundle");
+    OutputStream out = new FileOutputStream(invalid);
+    try {
+      out.write(new byte[64]);
+    } finally {
+      out.close();
+    }
+    new KeggBundle(invalid);
+  }
+
+}
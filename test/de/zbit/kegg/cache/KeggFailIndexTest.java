@@ -0,0 +1,183 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link KeggFailIndex}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KeggFailIndexTest {
+
+  /**
+   * Initial number of slots of a {@link KeggFailIndex}.
+   */
+  private static final int SLOTS = 1024;
+
+  /**
+   * @param slot
+   * @param n
+   * @return {@code n} IDs, whose hashes all start at the given slot of an
+   * empty index, i.e., that form one cluster.
+   */
+  private static List<String> collide(int slot, int n) {
+    List<String> ids = new ArrayList<String>(n);
+    for (int i = 0; ids.size() < n; i++) {
+      String id = "cpd:C" + i;
+      if (((int) KeggFailIndex.hash(id) & (SLOTS - 1)) == slot) {
+        ids.add(id);
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * @param index
+   * @param expected
+   * @param all
+   */
+  private static void assertContainsExactly(KeggFailIndex index, Set<String> expected, List<String> all) {
+    assertEquals(expected.size(), index.size());
+    for (String id : all) {
+      assertEquals(id, expected.contains(id), index.contains(id));
+    }
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testAddAndRemove() {
+    KeggFailIndex index = new KeggFailIndex();
+    assertFalse(index.contains("hsa:1"));
+    assertFalse(index.contains(null));
+    index.add("hsa:1");
+    index.add("hsa:1");
+    index.add(null);
+    assertEquals(1, index.size());
+    assertTrue(index.contains("hsa:1"));
+    assertFalse(index.contains("hsa:2"));
+    index.remove("hsa:2");
+    index.remove(null);
+    assertEquals(1, index.size());
+    index.remove("hsa:1");
+    assertEquals(0, index.size());
+    assertFalse(index.contains("hsa:1"));
+  }
+
+  /**
+   * Removing an ID from the middle of a cluster must keep the following
+   * IDs of the cluster reachable, also if the cluster wraps around the end
+   * of the table.
+   */
+  @Test
+  public void testRemoveFromCluster() {
+    for (int slot : new int[] {10, SLOTS - 2}) {
+      List<String> ids = collide(slot, 5);
+      // Starts right behind the cluster, i.e., is moved by the removal
+      List<String> all = new ArrayList<String>(ids);
+      all.addAll(collide((slot + 5) & (SLOTS - 1), 2));
+      for (int removed = 0; removed < ids.size(); removed++) {
+        KeggFailIndex index = new KeggFailIndex();
+        Set<String> expected = new HashSet<String>(all);
+        for (String id : all) {
+          index.add(id);
+        }
+        index.remove(ids.get(removed));
+        expected.remove(ids.get(removed));
+        assertContainsExactly(index, expected, all);
+
+        index.add(ids.get(removed));
+        expected.add(ids.get(removed));
+        assertContainsExactly(index, expected, all);
+      }
+    }
+  }
+
+  /**
+   * Random additions and removals, including resizes, must match a
+   * {@link HashSet}.
+   */
+  @Test
+  public void testRandom() {
+    Random random = new Random(42);
+    List<String> all = new ArrayList<String>();
+    for (int i = 0; i < 3000; i++) {
+      all.add("hsa:" + i);
+    }
+    KeggFailIndex index = new KeggFailIndex();
+    Set<String> expected = new HashSet<String>();
+    for (int i = 0; i < 20000; i++) {
+      String id = all.get(random.nextInt(all.size()));
+      if (random.nextInt(3) == 0) {
+        index.remove(id);
+        expected.remove(id);
+      } else {
+        index.add(id);
+        expected.add(id);
+      }
+    }
+    assertContainsExactly(index, expected, all);
+    index.clear();
+    assertContainsExactly(index, new HashSet<String>(), all);
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testSerialization() throws Exception {
+    KeggFailIndex index = new KeggFailIndex();
+    List<String> all = collide(7, 3);
+    for (String id : all) {
+      index.add(id);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(index);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    try {
+      index = (KeggFailIndex) in.readObject();
+    } finally {
+      in.close();
+    }
+    assertContainsExactly(index, new HashSet<String>(all), all);
+  }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.api.KeggInfos;
+
+/**
+ * Tests {@link KeggInfoStore}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KeggInfoStoreTest {
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * @param id
+   * @param name
+   * @return a new {@link KeggInfos} for the given ID.
+   */
+  private static KeggInfos infos(String id, String name) {
+    return new KeggInfos(id, "ENTRY       " + id + "\nNAME        " + name + "\n///\n");
+  }
+
+  /**
+   * @return a file for a new store.
+   */
+  private File newStoreFile() {
+    return new File(dir.getRoot(), "cache.store");
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testPutAndGet() throws Exception {
+    KeggInfoStore store = new KeggInfoStore(newStoreFile());
+    try {
+      assertEquals(0, store.size());
+      assertNull(store.get("hsa:1"));
+      store.put("hsa:1", infos("hsa:1", "first"));
+      store.put("hsa:2", null);
+      assertEquals(2, store.size());
+      assertEquals("first", store.get("hsa:1").getName());
+      assertTrue(store.contains("hsa:2"));
+      assertNull(store.get("hsa:2"));
+      assertFalse(store.contains("hsa:3"));
+      assertEquals(2, store.getUnflushed());
+      store.flush();
+      assertEquals(0, store.getUnflushed());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * The latest record of an ID must be valid after reopening the store.
+   * @throws Exception
+   */
+  @Test
+  public void testReopen() throws Exception {
+    File file = newStoreFile();
+    KeggInfoStore store = new KeggInfoStore(file);
+    try {
+      store.put("hsa:1", infos("hsa:1", "first"));
+      store.put("hsa:2", infos("hsa:2", "second"));
+      store.put("hsa:1", infos("hsa:1", "updated"));
+      store.put("hsa:2", null);
+    } finally {
+      store.close();
+    }
+
+    store = new KeggInfoStore(file);
+    try {
+      assertEquals(2, store.size());
+      assertEquals(0, store.getAppended());
+      assertEquals("updated", store.get("hsa:1").getName());
+      assertTrue(store.contains("hsa:2"));
+      assertNull(store.get("hsa:2"));
+      // Records appended after opening are not yet mapped
+      store.put("hsa:3", infos("hsa:3", "third"));
+      assertEquals("third", store.get("hsa:3").getName());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * An incomplete record at the end of the log must be discarded and
+   * overwritten by the next record.
+   * @throws Exception
+   */
+  @Test
+  public void testIncompleteRecord() throws Exception {
+    File file = newStoreFile();
+    KeggInfoStore store = new KeggInfoStore(file);
+    long complete;
+    try {
+      store.put("hsa:1", infos("hsa:1", "first"));
+      complete = file.length();
+      store.put("hsa:2", infos("hsa:2", "second"));
+    } finally {
+      store.close();
+    }
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(file.length() - 10);
+    } finally {
+      raf.close();
+    }
+
+    store = new KeggInfoStore(file);
+    try {
+      assertEquals(complete, file.length());
+      assertEquals(1, store.size());
+      assertFalse(store.contains("hsa:2"));
+      store.put("hsa:3", infos("hsa:3", "third"));
+    } finally {
+      store.close();
+    }
+
+    store = new KeggInfoStore(file);
+    try {
+      assertEquals(2, store.size());
+      assertEquals("first", store.get("hsa:1").getName());
+      assertEquals("third", store.get("hsa:3").getName());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testNoStore() throws Exception {
+    File file = newStoreFile();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write("This is no store.".getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    try {
+      new KeggInfoStore(file).close();
+      fail("Opened a file that is no store.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Reopening reads the saved index and only scans the records that
+   * have been appended after it has been saved.
+   * @throws Exception
+   */
+  @Test
+  public void testIndexFile() throws Exception {
+    File file = newStoreFile();
+    KeggInfoStore store = new KeggInfoStore(file);
+    try {
+      store.put("hsa:1", infos("hsa:1", "first"));
+      store.put("hsa:2", null);
+    } finally {
+      store.close();
+    }
+    assertTrue(store.getIndexFile().exists());
+
+    // Appended without flushing, i.e., without saving the index.
+    KeggInfoStore killed = new KeggInfoStore(file);
+    killed.put("hsa:3", infos("hsa:3", "third"));
+    killed.put("hsa:1", infos("hsa:1", "updated"));
+
+    store = new KeggInfoStore(file);
+    try {
+      assertEquals(3, store.size());
+      assertEquals("updated", store.get("hsa:1").getName());
+      assertTrue(store.contains("hsa:2"));
+      assertNull(store.get("hsa:2"));
+      assertEquals("third", store.get("hsa:3").getName());
+    } finally {
+      store.close();
+      killed.close();
+    }
+  }
+
+  /**
+   * An index that does not belong to the log is ignored.
+   * @throws Exception
+   */
+  @Test
+  public void testInvalidIndexFile() throws Exception {
+    File file = newStoreFile();
+    KeggInfoStore store = new KeggInfoStore(file);
+    try {
+      store.put("hsa:1", infos("hsa:1", "first"));
+    } finally {
+      store.close();
+    }
+    FileOutputStream out = new FileOutputStream(store.getIndexFile());
+    try {
+      out.write("This is no index.".getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+
+    store = new KeggInfoStore(file);
+    try {
+      assertEquals(1, store.size());
+      assertEquals("first", store.get("hsa:1").getName());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Two stores on the same file see the records of each other, once
+   * they append themselves.
+   * @throws Exception
+   */
+  @Test
+  public void testSharedFile() throws Exception {
+    File file = newStoreFile();
+    KeggInfoStore first = new KeggInfoStore(file);
+    KeggInfoStore second = new KeggInfoStore(file);
+    try {
+      first.put("hsa:1", infos("hsa:1", "first"));
+      second.put("hsa:2", infos("hsa:2", "second"));
+      first.put("hsa:3", infos("hsa:3", "third"));
+      assertEquals("second", first.get("hsa:2").getName());
+      assertEquals("first", second.get("hsa:1").getName());
+      assertEquals(3, first.size());
+    } finally {
+      first.close();
+      second.close();
+    }
+
+    KeggInfoStore store = new KeggInfoStore(file);
+    try {
+      assertEquals(3, store.size());
+      assertEquals("first", store.get("hsa:1").getName());
+      assertEquals("second", store.get("hsa:2").getName());
+      assertEquals("third", store.get("hsa:3").getName());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Records that are read right after they have been appended are
+   * mapped in segments, which are merged if there are too many.
+   * @throws Exception
+   */
+  @Test
+  public void testAppendAndRead() throws Exception {
+    KeggInfoStore store = new KeggInfoStore(newStoreFile());
+    try {
+      for (int i = 0; i < 200; i++) {
+        String id = "hsa:" + i;
+        store.put(id, infos(id, "name" + i));
+        assertEquals("name" + i, store.get(id).getName());
+        assertEquals("name" + (i / 2), store.get("hsa:" + (i / 2)).getName());
+      }
+    } finally {
+      store.close();
+    }
+  }
+
+}
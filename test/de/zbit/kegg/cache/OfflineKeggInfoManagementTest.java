@@ -0,0 +1,139 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * Tests that an {@link OfflineKeggInfoManagement} never fetches IDs from
+ * KEGG and does not affect other views on the same cache.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class OfflineKeggInfoManagementTest {
+
+  /**
+   * A {@link KeggAdaptor} that answers every request without network
+   * access.
+   */
+  private static class CountingKeggAdaptor extends KeggAdaptor {
+
+    /**
+     * Number of requests.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+     */
+    @Override
+    public String get(String operation, String... arguments) throws IOException {
+      requests.incrementAndGet();
+      return "ENTRY       " + arguments[arguments.length - 1] + "\nNAME        test\n///\n";
+    }
+
+  }
+
+  /**
+   * The wrapped cache.
+   */
+  private KeggInfoManagement cache;
+
+  /**
+   * The adaptor of {@link #cache}.
+   */
+  private CountingKeggAdaptor adaptor;
+
+  /**
+   *
+   */
+  @Before
+  public void setUp() {
+    cache = new KeggInfoManagement(100);
+    adaptor = new CountingKeggAdaptor();
+    cache.setKeggAdaptor(adaptor);
+  }
+
+  /**
+   * Cached IDs are answered, missing IDs are not fetched and the global
+   * {@link KeggInfoManagement#offlineMode} is never touched.
+   */
+  @Test
+  public void testOfflineLookup() {
+    cache.addInformation("hsa:cached", new KeggInfos("hsa:cached", "ENTRY       hsa:cached\n///\n"));
+    OfflineKeggInfoManagement offline = new OfflineKeggInfoManagement(cache);
+
+    assertNotNull(offline.getInformation("hsa:cached"));
+    assertNull(offline.getInformation("hsa:missed"));
+    KeggInfos[] infos = offline.getInformations(new String[] {"hsa:cached", "hsa:missed"});
+    assertNotNull(infos[0]);
+    assertNull(infos[1]);
+    assertEquals(0, adaptor.requests.get());
+    assertFalse(KeggInfoManagement.offlineMode);
+    assertFalse(OfflineKeggInfoManagement.isOffline());
+  }
+
+  /**
+   * An online view on the same cache still fetches missing IDs.
+   */
+  @Test
+  public void testOnlineViewOnSameCache() {
+    OfflineKeggInfoManagement offline = new OfflineKeggInfoManagement(cache);
+    SynchronizedKeggInfoManagement online = new SynchronizedKeggInfoManagement(cache);
+
+    assertNull(offline.getInformation("hsa:1"));
+    assertNotNull(online.getInformation("hsa:1"));
+    assertEquals(1, adaptor.requests.get());
+    assertNotNull(offline.getInformation("hsa:1"));
+    assertEquals(1, adaptor.requests.get());
+  }
+
+  /**
+   * An offline miss behind a {@link ConcurrentKeggInfoManagement} must
+   * neither fetch the ID nor be remembered for online lookups.
+   */
+  @Test
+  public void testBehindConcurrentCache() {
+    ConcurrentKeggInfoManagement shared = new ConcurrentKeggInfoManagement(cache);
+    OfflineKeggInfoManagement offline = new OfflineKeggInfoManagement(shared);
+
+    assertNull(offline.getInformation("hsa:1"));
+    assertEquals(0, adaptor.requests.get());
+    assertFalse(KeggInfoManagement.offlineMode);
+    assertNotNull(shared.getInformation("hsa:1"));
+    assertEquals(1, adaptor.requests.get());
+  }
+
+}
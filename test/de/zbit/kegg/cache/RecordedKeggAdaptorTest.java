@@ -0,0 +1,197 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * Tests that a {@link RecordedKeggAdaptor} replays recorded responses and
+ * how it answers requests without a recorded response.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class RecordedKeggAdaptorTest {
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * The adaptor, serving the responses in {@link #dir}.
+   */
+  private RecordedKeggAdaptor adaptor;
+
+  /**
+   * @param id
+   * @param name
+   * @return a KEGG flat file entry.
+   */
+  private static String entry(String id, String name) {
+    return "ENTRY       " + id + "\nNAME        " + name + "\n///\n";
+  }
+
+  /**
+   * @param path relative path in {@link #dir}.
+   * @param content
+   * @throws IOException
+   */
+  private void record(String path, String content) throws IOException {
+    File file = new File(dir.getRoot(), path);
+    file.getParentFile().mkdirs();
+    Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Records two entries and one list.
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException {
+    record("get/hsa_1", entry("1", "first"));
+    record("get/hsa_2", entry("2", "second"));
+    record("list/organism", "T01001\thsa\tHomo sapiens (human)\n");
+    adaptor = new RecordedKeggAdaptor(dir.getRoot());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testReplay() throws Exception {
+    assertEquals(entry("1", "first"), adaptor.get("get", "hsa:1"));
+    assertEquals(entry("1", "first"), adaptor.get("get", "HSA:1"));
+    assertEquals("T01001\thsa\tHomo sapiens (human)\n", adaptor.get("list", "organism"));
+    assertEquals(3, adaptor.getRequestCount());
+    assertEquals(0, adaptor.getMissCount());
+  }
+
+  /**
+   * A request for multiple entries returns all recorded entries and omits
+   * the others, like KEGG omits unknown IDs.
+   * @throws Exception
+   */
+  @Test
+  public void testMultipleEntries() throws Exception {
+    assertEquals(entry("1", "first") + entry("2", "second"), adaptor.get("get", "hsa:1+hsa:3+hsa:2"));
+    assertEquals(1, adaptor.getMissCount());
+    assertEquals("", adaptor.get("get", "hsa:3+hsa:4"));
+    assertEquals(3, adaptor.getMissCount());
+  }
+
+  /**
+   * Other requests without a recorded response fail, instead of
+   * accessing KEGG. No request leaves the directory.
+   * @throws Exception
+   */
+  @Test
+  public void testMissingResponse() throws Exception {
+    for (String[] request : new String[][] {{"list", "pathway"}, {"list", "..", "..", "secret"}}) {
+      try {
+        adaptor.get(request[0], request[1]);
+        throw new AssertionError("Answered " + request[0] + '/' + request[1]);
+      } catch (FileNotFoundException e) {
+        // expected
+      }
+    }
+    assertEquals(2, adaptor.getMissCount());
+  }
+
+  /**
+   * A {@link KeggInfoManagement} gets recorded entries, and treats IDs
+   * without a recorded entry as not retrievable.
+   */
+  @Test
+  public void testKeggInfoManagement() {
+    KeggInfoManagement manager = new KeggInfoManagement(10, adaptor);
+    KeggInfos infos = manager.getInformation("hsa:2");
+    assertEquals("second", infos.getName());
+    assertNull(manager.getInformation("hsa:3"));
+    assertTrue(adaptor.getMissCount() > 0);
+  }
+
+  /**
+   * Injected failures are reproducible for the same seed.
+   * @throws Exception
+   */
+  @Test
+  public void testFailureRate() throws Exception {
+    adaptor.setFailureRate(1d);
+    try {
+      adaptor.get("get", "hsa:1");
+      throw new AssertionError("No failure injected.");
+    } catch (IOException e) {
+      assertEquals(1, adaptor.getFailureCount());
+    }
+
+    RecordedKeggAdaptor other = new RecordedKeggAdaptor(dir.getRoot());
+    adaptor.setFailureRate(0.5d);
+    other.setFailureRate(0.5d);
+    adaptor.setSeed(42);
+    other.setSeed(42);
+    List<Integer> failed = failures(adaptor);
+    assertTrue(failed.size() > 0 && failed.size() < 20);
+    assertEquals(failed, failures(other));
+  }
+
+  /**
+   * @param adaptor
+   * @return the indices of 20 requests that failed.
+   */
+  private static List<Integer> failures(RecordedKeggAdaptor adaptor) {
+    List<Integer> failed = new ArrayList<Integer>();
+    for (int i = 0; i < 20; i++) {
+      try {
+        adaptor.get("list", "organism");
+      } catch (IOException e) {
+        failed.add(Integer.valueOf(i));
+      }
+    }
+    return failed;
+  }
+
+}
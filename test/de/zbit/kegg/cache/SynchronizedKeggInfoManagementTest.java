@@ -0,0 +1,215 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * Tests that a {@link SynchronizedKeggInfoManagement} only holds the lock
+ * of the wrapped cache while the cache is read or modified.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class SynchronizedKeggInfoManagementTest {
+
+  /**
+   * Maximum time in seconds to wait for another thread.
+   */
+  private static final long TIMEOUT = 5;
+
+  /**
+   * A {@link KeggAdaptor} that answers every request without network
+   * access, but waits for the given latch first.
+   */
+  private static class BlockingKeggAdaptor extends KeggAdaptor {
+
+    /**
+     * Counted down whenever a request starts.
+     */
+    private final CountDownLatch entered;
+
+    /**
+     * Requests wait for this latch.
+     */
+    private final CountDownLatch release;
+
+    /**
+     * Number of requests.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * @param entered
+     * @param release
+     */
+    public BlockingKeggAdaptor(CountDownLatch entered, CountDownLatch release) {
+      this.entered = entered;
+      this.release = release;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+     */
+    @Override
+    public String get(String operation, String... arguments) throws IOException {
+      requests.incrementAndGet();
+      entered.countDown();
+      try {
+        if (!release.await(TIMEOUT, TimeUnit.SECONDS)) {
+          throw new IOException("Timed out.");
+        }
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return "ENTRY       " + arguments[arguments.length - 1] + "\nNAME        test\n///\n";
+    }
+
+  }
+
+  /**
+   * Runs the lookups.
+   */
+  private ExecutorService executor;
+
+  /**
+   * The wrapped cache.
+   */
+  private KeggInfoManagement cache;
+
+  /**
+   * The view on {@link #cache}.
+   */
+  private SynchronizedKeggInfoManagement view;
+
+  /**
+   *
+   */
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+    cache = new KeggInfoManagement(100);
+    view = new SynchronizedKeggInfoManagement(cache);
+  }
+
+  /**
+   *
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * @param id
+   * @return the lookup of the given ID in another thread.
+   */
+  private Future<KeggInfos> lookup(final String id) {
+    return executor.submit(new Callable<KeggInfos>() {
+      @Override
+      public KeggInfos call() throws Exception {
+        return view.getInformation(id);
+      }
+    });
+  }
+
+  /**
+   * Two threads that miss different IDs must be able to wait for KEGG at
+   * the same time.
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentFetches() throws Exception {
+    CountDownLatch entered = new CountDownLatch(2);
+    BlockingKeggAdaptor adaptor = new BlockingKeggAdaptor(entered, entered);
+    cache.setKeggAdaptor(adaptor);
+
+    Future<KeggInfos> first = lookup("hsa:1");
+    Future<KeggInfos> second = lookup("hsa:2");
+    assertTrue("The second request has not been sent while the first one was pending.",
+      entered.await(TIMEOUT, TimeUnit.SECONDS));
+    assertNotNull(first.get(TIMEOUT, TimeUnit.SECONDS));
+    assertNotNull(second.get(TIMEOUT, TimeUnit.SECONDS));
+    assertEquals(2, adaptor.requests.get());
+    assertEquals(2, view.getFetched());
+    assertEquals(2, view.getLookups());
+  }
+
+  /**
+   * A cached ID must be answered while another thread waits for KEGG.
+   * @throws Exception
+   */
+  @Test
+  public void testCachedLookupDuringFetch() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    cache.setKeggAdaptor(new BlockingKeggAdaptor(entered, release));
+    view.addInformation("hsa:cached", new KeggInfos("hsa:cached", "ENTRY       hsa:cached\n///\n"));
+
+    Future<KeggInfos> missed = lookup("hsa:missed");
+    assertTrue(entered.await(TIMEOUT, TimeUnit.SECONDS));
+    try {
+      assertNotNull(lookup("hsa:cached").get(TIMEOUT, TimeUnit.SECONDS));
+      assertTrue(SynchronizedKeggInfoManagement.getLock(cache).tryLock(TIMEOUT, TimeUnit.SECONDS));
+      SynchronizedKeggInfoManagement.getLock(cache).unlock();
+    } finally {
+      release.countDown();
+    }
+    assertNotNull(missed.get(TIMEOUT, TimeUnit.SECONDS));
+    assertEquals(1, view.getFetched());
+  }
+
+  /**
+   * The cache replaces its adaptor by a plain {@link KeggAdaptor} when it
+   * is saved. Requests must still go through the original adaptor.
+   * @throws Exception
+   */
+  @Test
+  public void testAdaptorReplacedBySave() throws Exception {
+    CountDownLatch done = new CountDownLatch(0);
+    BlockingKeggAdaptor adaptor = new BlockingKeggAdaptor(done, done);
+    cache.setKeggAdaptor(adaptor);
+    assertNotNull(lookup("hsa:1").get(TIMEOUT, TimeUnit.SECONDS));
+    cache.setKeggAdaptor(new KeggAdaptor());
+    assertNotNull(lookup("hsa:2").get(TIMEOUT, TimeUnit.SECONDS));
+    assertEquals(2, adaptor.requests.get());
+  }
+
+}
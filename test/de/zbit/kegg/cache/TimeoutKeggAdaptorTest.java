@@ -0,0 +1,165 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * Tests {@link TimeoutKeggAdaptor} against a local server.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class TimeoutKeggAdaptorTest {
+
+  /**
+   * Accepts connections, but only answers if {@link #respond} is set.
+   */
+  private ServerSocket server;
+
+  /**
+   * Whether the server answers requests.
+   */
+  private volatile boolean respond = false;
+
+  /**
+   * All accepted connections, closed by {@link #tearDown()}.
+   */
+  private final List<Socket> connections = new ArrayList<Socket>();
+
+  /**
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException {
+    server = new ServerSocket(0);
+    Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            Socket socket = server.accept();
+            synchronized (connections) {
+              connections.add(socket);
+            }
+            if (respond) {
+              OutputStream out = socket.getOutputStream();
+              out.write("HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\n\r\nENTRY       hsa:1\n///\n".getBytes("UTF-8"));
+              out.flush();
+              socket.close();
+            }
+          }
+        } catch (IOException e) {
+          // Closed by tearDown()
+        }
+      }
+    }, "Test server");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * @throws IOException
+   */
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+    synchronized (connections) {
+      for (Socket socket : connections) {
+        socket.close();
+      }
+    }
+  }
+
+  /**
+   * @return the URL prefix of the local server.
+   */
+  private String getPrefix() {
+    return "http://127.0.0.1:" + server.getLocalPort() + "/";
+  }
+
+  /**
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testResponse() throws IOException {
+    respond = true;
+    assertEquals("ENTRY       hsa:1\n///\n", new TimeoutKeggAdaptor(getPrefix(), 5000).get("get", "hsa:1"));
+  }
+
+  /**
+   * A request that is never answered fails after the timeout, instead
+   * of blocking the calling thread.
+   * @throws IOException
+   */
+  @Test
+  public void testReadTimeout() throws IOException {
+    TimeoutKeggAdaptor adaptor = new TimeoutKeggAdaptor(getPrefix(), 200);
+    long start = System.currentTimeMillis();
+    try {
+      adaptor.get("get", "hsa:1");
+      throw new AssertionError("The request did not time out.");
+    } catch (SocketTimeoutException e) {
+      // expected
+    }
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  /**
+   * Only plain adaptors are replaced.
+   */
+  @Test
+  public void testInstall() {
+    KeggInfoManagement cache = new KeggInfoManagement(10);
+    TimeoutKeggAdaptor.install(cache, 1000);
+    assertTrue(cache.getKeggAdaptor() instanceof TimeoutKeggAdaptor);
+    TimeoutKeggAdaptor.install(new SynchronizedKeggInfoManagement(cache), 2000);
+    assertEquals(2000, ((TimeoutKeggAdaptor) cache.getKeggAdaptor()).getTimeout());
+
+    KeggInfoManagement recorded = new KeggInfoManagement(10);
+    KeggAdaptor adaptor = new RecordedKeggAdaptor(new File("."));
+    recorded.setKeggAdaptor(adaptor);
+    TimeoutKeggAdaptor.install(recorded, 1000);
+    assertSame(adaptor, recorded.getKeggAdaptor());
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link BatchClaims}. Two instances act as two processes.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchClaimsTest {
+
+  /**
+   * Lease time of all claims.
+   */
+  private static final long LEASE = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * The output directory.
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   *
+   */
+  private BatchClaims first, second;
+
+  /**
+   *
+   */
+  private File claim;
+
+  /**
+   *
+   */
+  @Before
+  public void setUp() {
+    first = new BatchClaims(LEASE);
+    second = new BatchClaims(LEASE);
+    claim = BatchClaims.getClaimFile(dir.getRoot().getPath(), "hsa00010.xml", "abc");
+  }
+
+  /**
+   *
+   */
+  @After
+  public void tearDown() {
+    first.close();
+    second.close();
+  }
+
+  /**
+   * Lets the claim expire.
+   */
+  private void expire() {
+    assertTrue(claim.setLastModified(System.currentTimeMillis() - 2 * LEASE));
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testClaim() {
+    assertTrue(first.claim(claim));
+    assertFalse(second.claim(claim));
+    assertFalse(first.claim(claim));
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testDone() {
+    assertTrue(first.claim(claim));
+    assertTrue(first.done(claim));
+    assertFalse(second.claim(claim));
+    // A finished claim never expires.
+    expire();
+    assertFalse(second.claim(claim));
+    assertArrayEquals(new String[] {claim.getName()}, dir.getRoot().list());
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testRelease() {
+    assertTrue(first.claim(claim));
+    first.release(claim);
+    assertFalse(claim.exists());
+    assertTrue(second.claim(claim));
+  }
+
+  /**
+   * A process that lost its expired claim must not modify the claim of
+   * the new owner.
+   */
+  @Test
+  public void testTakeOver() {
+    assertTrue(first.claim(claim));
+    expire();
+    assertTrue(second.claim(claim));
+    assertArrayEquals(new String[] {claim.getName()}, dir.getRoot().list());
+
+    assertFalse(first.done(claim));
+    first.release(claim);
+    assertTrue(claim.exists());
+    assertFalse(first.claim(claim));
+
+    assertTrue(second.done(claim));
+    assertFalse(first.claim(claim));
+  }
+
+  /**
+   * Claims held on close are released, but not those of other processes.
+   */
+  @Test
+  public void testClose() {
+    assertTrue(first.claim(claim));
+    expire();
+    assertTrue(second.claim(claim));
+    first.close();
+    assertTrue(claim.exists());
+    second.close();
+    assertFalse(claim.exists());
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+
+/**
+ * Tests {@link BatchJob}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchJobTest {
+
+  /**
+   * Written files and durations are collected per format.
+   */
+  @Test
+  public void testWritten() {
+    BatchJob job = new BatchJob();
+    job.init(EnumSet.of(Format.SBML, Format.GraphML));
+    assertEquals(0, job.getDuration(Format.SBML));
+    assertTrue(job.outputs.get(Format.GraphML).isEmpty());
+
+    long start = System.currentTimeMillis() - 100;
+    job.written(Format.SBML, Arrays.asList("a.xml"), start);
+    job.written(Format.SBML, Arrays.asList("b.xml", "c.xml"), start);
+    assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml"), job.outputs.get(Format.SBML));
+    assertTrue(job.getDuration(Format.SBML) >= 200);
+    assertTrue(job.outputs.get(Format.GraphML).isEmpty());
+    assertTrue(job.failed.isEmpty());
+  }
+
+  /**
+   * Only a {@link TranslationCancelledException} due to the timeout marks
+   * a format as timed out.
+   */
+  @Test
+  public void testFailed() {
+    BatchJob job = new BatchJob();
+    job.init(EnumSet.of(Format.SBML, Format.GraphML, Format.SBGN));
+    job.failed(Format.SBML, new TranslationCancelledException("timeout", true));
+    job.failed(Format.GraphML, new TranslationCancelledException("cancelled", false));
+    job.failed(Format.SBGN, new RuntimeException());
+    assertEquals(EnumSet.of(Format.SBML, Format.GraphML, Format.SBGN), job.failed);
+    assertEquals(EnumSet.of(Format.SBML), job.timedOut);
+  }
+
+}
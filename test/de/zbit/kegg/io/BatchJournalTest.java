@@ -0,0 +1,188 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.io.BatchJournal.Change;
+import de.zbit.kegg.io.BatchJournal.Status;
+import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+
+/**
+ * Tests {@link BatchJournal}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchJournalTest {
+
+  /**
+   * The output directory.
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * @param f
+   * @param content
+   * @return the given file.
+   * @throws IOException
+   */
+  private static File write(File f, String content) throws IOException {
+    OutputStream out = new FileOutputStream(f);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    return f;
+  }
+
+  /**
+   * @param f
+   * @return the content of the given file.
+   * @throws IOException
+   */
+  private static String read(File f) throws IOException {
+    byte[] content = new byte[(int) f.length()];
+    DataInputStream in = new DataInputStream(new FileInputStream(f));
+    try {
+      in.readFully(content);
+    } finally {
+      in.close();
+    }
+    return new String(content, "UTF-8");
+  }
+
+  /**
+   * @throws IOException
+   */
+  @Test
+  public void testCompare() throws IOException {
+    BatchJournal journal = new BatchJournal(dir.getRoot());
+    assertEquals(Change.NEW, journal.compare("a.xml", Format.SBML, "c1", "o1"));
+
+    journal.log(Status.STARTED, "a.xml", Format.SBML, "c1", "o1", 0, null);
+    assertEquals(Change.INCOMPLETE, journal.compare("a.xml", Format.SBML, "c1", "o1"));
+
+    journal.log(Status.DONE, "a.xml", Format.SBML, "c1", "o1", 10, Arrays.asList("a.sbml.xml"));
+    assertEquals(Change.UNCHANGED, journal.compare("a.xml", Format.SBML, "c1", "o1"));
+    assertTrue(journal.isDone("a.xml", Format.SBML, null, "o1"));
+    assertEquals(Change.INPUT_CHANGED, journal.compare("a.xml", Format.SBML, "c2", "o1"));
+    assertEquals(Change.OPTIONS_CHANGED, journal.compare("a.xml", Format.SBML, "c1", "o2"));
+    // Records are kept per format.
+    assertEquals(Change.NEW, journal.compare("a.xml", Format.GraphML, "c1", "o1"));
+
+    journal.log(Status.FAILED, "a.xml", Format.SBML, "c1", "o1", 10, null);
+    assertEquals(Change.INCOMPLETE, journal.compare("a.xml", Format.SBML, "c1", "o1"));
+    journal.close();
+  }
+
+  /**
+   * Records must survive reopening the journal.
+   * @throws IOException
+   */
+  @Test
+  public void testReopen() throws IOException {
+    BatchJournal journal = new BatchJournal(dir.getRoot());
+    journal.log(Status.DONE, "a.xml", Format.SBML, "c1", "o1", 10, Arrays.asList("a.sbml.xml"));
+    journal.log(Status.STARTED, "b.xml", Format.SBML, "c2", "o1", 0, null);
+    journal.close();
+
+    journal = new BatchJournal(dir.getRoot());
+    assertEquals(Change.UNCHANGED, journal.compare("a.xml", Format.SBML, "c1", "o1"));
+    assertEquals(Change.INCOMPLETE, journal.compare("b.xml", Format.SBML, "c2", "o1"));
+    assertNotNull(journal.getLatest("a.xml", Format.SBML));
+    assertEquals("a.sbml.xml", journal.getLatest("a.xml", Format.SBML).getOutput());
+    journal.close();
+  }
+
+  /**
+   * Every process writes its own journal, but reads all of them.
+   * @throws IOException
+   */
+  @Test
+  public void testNodes() throws IOException {
+    BatchJournal first = new BatchJournal(dir.getRoot(), "node1");
+    first.log(Status.DONE, "a.xml", Format.SBML, "c1", "o1", 10, null);
+    first.close();
+    BatchJournal second = new BatchJournal(dir.getRoot(), "node2");
+    assertEquals(Change.UNCHANGED, second.compare("a.xml", Format.SBML, "c1", "o1"));
+    assertFalse(first.getFile().equals(second.getFile()));
+    assertTrue(BatchJournal.isJournal(second.getFile().getName()));
+    second.close();
+  }
+
+  /**
+   * @throws IOException
+   */
+  @Test
+  public void testCommit() throws IOException {
+    File target = write(dir.newFile("out.xml"), "old");
+    File tmp = write(BatchJournal.getTemporaryFile(target), "new");
+    assertTrue(BatchJournal.commit(tmp, target));
+    assertFalse(tmp.exists());
+    assertEquals("new", read(target));
+    assertFalse(BatchJournal.getBackupFile(target).exists());
+  }
+
+  /**
+   * A commit that has been interrupted after the old file has been moved
+   * to its backup.
+   * @throws IOException
+   */
+  @Test
+  public void testRestore() throws IOException {
+    File target = new File(dir.getRoot(), BatchJournal.FILE_NAME);
+    write(BatchJournal.getBackupFile(target),
+      "# KEGGtranslator batch journal, version 1\n");
+    BatchJournal journal = new BatchJournal(dir.getRoot());
+    journal.log(Status.DONE, "a.xml", Format.SBML, "c1", "o1", 10, null);
+    journal.close();
+    assertTrue(target.exists());
+    assertFalse(BatchJournal.getBackupFile(target).exists());
+    assertFalse(BatchJournal.restore(target));
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testHashContent() {
+    assertEquals("d41d8cd98f00b204e9800998ecf8427e", BatchJournal.hashContent(new byte[0]));
+  }
+
+}
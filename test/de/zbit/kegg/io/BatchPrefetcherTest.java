@@ -0,0 +1,143 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * Tests that {@link BatchPrefetcher} hands what it has learned about a
+ * file to the translation.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchPrefetcherTest {
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * Answers every request without network access.
+   */
+  private static class CountingKeggAdaptor extends KeggAdaptor {
+
+    /**
+     * Number of requests.
+     */
+    final AtomicInteger requests = new AtomicInteger();
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#get(java.lang.String, java.lang.String[])
+     */
+    @Override
+    public String get(String operation, String... arguments) throws IOException {
+      requests.incrementAndGet();
+      return "";
+    }
+
+  }
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.offlineVersion = true;
+    KeggParser.silent = true;
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testTake() throws Exception {
+    File text = dir.newFile("readme.txt");
+    FileOutputStream out = new FileOutputStream(text);
+    try {
+      out.write("No pathway.".getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    File kgml = PathwayCodecTest.HSA00010;
+    File skipped = new File("files/KGMLsamplefiles/aac02010.xml");
+
+    KeggInfoManagement manager = new KeggInfoManagement(10000);
+    CountingKeggAdaptor adaptor = new CountingKeggAdaptor();
+    manager.setKeggAdaptor(adaptor);
+    final File accepted = kgml;
+    BatchPrefetcher prefetcher = new BatchPrefetcher(Arrays.asList(text, kgml, skipped).iterator(), manager, 2, false,
+      new BatchPrefetcher.Filter() {
+      @Override
+      public boolean accept(BatchPrefetcher.Prefetched file) {
+        file.setContentHash("hash");
+        return file.getFile().equals(accepted);
+      }
+    });
+    try {
+      assertEquals(text, prefetcher.next());
+      BatchPrefetcher.Prefetched info = prefetcher.take(text);
+      assertFalse(info.getSniffed().isPathway());
+      assertNull(info.getContentHash());
+
+      assertEquals(kgml, prefetcher.next());
+      info = prefetcher.take(kgml);
+      assertEquals(KGMLSniffer.Type.KGML, info.getSniffed().getType());
+      assertEquals("hash", info.getContentHash());
+      List<Pathway> pathways = info.getPathways();
+      assertEquals(1, pathways.size());
+      assertEquals(PathwayCodecTest.parse(kgml), pathways.get(0));
+      assertNull(prefetcher.take(kgml));
+
+      assertEquals(skipped, prefetcher.next());
+      info = prefetcher.take(skipped);
+      assertEquals("hash", info.getContentHash());
+      assertNull(info.getPathways());
+      assertFalse(prefetcher.hasNext());
+      assertTrue(adaptor.requests.get() > 0);
+    } finally {
+      prefetcher.close();
+    }
+  }
+
+}
@@ -0,0 +1,478 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.Translator;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * Runs a {@link BatchKEGGtranslator} on a directory of KGML files, using a
+ * translator that neither accesses KEGG nor depends on other libraries.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchRunTest {
+
+  /**
+   * File extension of the {@link RecordingTranslator} (see
+   * {@link BatchKEGGtranslator#getFileExtension(KEGGtranslator)}).
+   */
+  static final String EXTENSION = ".translated";
+
+  /**
+   * Writes the name and the number of entries of every pathway and
+   * remembers all pathways it has translated.
+   */
+  static class RecordingTranslator implements KEGGtranslator<String> {
+
+    /**
+     * Names of all written files, in the order of translation.
+     */
+    final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#translate(java.io.File)
+     */
+    @Override
+    public String translate(File f) throws IOException {
+      try {
+        return translate(KeggParser.parse(f.getPath()).get(0));
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#translate(de.zbit.kegg.parser.pathway.Pathway)
+     */
+    @Override
+    public String translate(Pathway p) {
+      return p.getName() + ' ' + p.getEntries().size();
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#translate(de.zbit.kegg.parser.pathway.Pathway, java.lang.String)
+     */
+    @Override
+    public boolean translate(Pathway p, String outFile) {
+      return writeToFile(translate(p), outFile);
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#translate(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void translate(String infile, String outfile) throws Exception {
+      writeToFile(translate(new File(infile)), outfile);
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#isLastFileWasOverwritten()
+     */
+    @Override
+    public boolean isLastFileWasOverwritten() {
+      return false;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#getLastTranslatedPathway()
+     */
+    @Override
+    public Pathway getLastTranslatedPathway() {
+      return null;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#writeToFile(java.lang.Object, java.lang.String)
+     */
+    @Override
+    public boolean writeToFile(String doc, String outFile) {
+      try {
+        Writer w = new OutputStreamWriter(new FileOutputStream(outFile), "UTF-8");
+        try {
+          w.write(doc);
+        } finally {
+          w.close();
+        }
+      } catch (IOException e) {
+        return false;
+      }
+      written.add(outFile);
+      return true;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#isGraphicalOutput()
+     */
+    @Override
+    public boolean isGraphicalOutput() {
+      return false;
+    }
+
+  }
+
+  /**
+   * An {@link AbstractKEGGtranslator} without KEGG annotations that
+   * never finishes its first translation, unless it is cancelled.
+   */
+  static class HangingTranslator extends AbstractKEGGtranslator<String> {
+
+    /**
+     * Number of translated pathways.
+     */
+    final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     *
+     */
+    public HangingTranslator() {
+      super(new KeggInfoManagement(10));
+      setRetrieveKeggAnnots(false);
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#considerRelations()
+     */
+    @Override
+    protected boolean considerRelations() {
+      return true;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#considerReactions()
+     */
+    @Override
+    protected boolean considerReactions() {
+      return false;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#writeToFile(java.lang.Object, java.lang.String)
+     */
+    @Override
+    public boolean writeToFile(String doc, String outFile) {
+      return new RecordingTranslator().writeToFile(doc, outFile);
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#translateWithoutPreprocessing(de.zbit.kegg.parser.pathway.Pathway)
+     */
+    @Override
+    protected String translateWithoutPreprocessing(Pathway p) {
+      if (calls.incrementAndGet() == 1) {
+        while (true) {
+          checkCancelled();
+          Thread.yield();
+        }
+      }
+      return p.getName();
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#isGraphicalOutput()
+     */
+    @Override
+    public boolean isGraphicalOutput() {
+      return false;
+    }
+
+  }
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.offlineVersion = true;
+    KeggParser.silent = true;
+  }
+
+  /**
+   * Creates an input directory with copies of a sample file in several
+   * subdirectories.
+   * @param name name of the input directory.
+   * @param count number of files.
+   * @return the input directory.
+   * @throws IOException
+   */
+  File createInput(String name, int count) throws IOException {
+    File in = dir.newFolder(name);
+    for (int i = 0; i < count; i++) {
+      File sub = new File(in, "dir" + (i % 3));
+      sub.mkdirs();
+      copy(PathwayCodecTest.HSA00010, new File(sub, "p" + i + ".xml"));
+    }
+    return in;
+  }
+
+  /**
+   * @param from
+   * @param to
+   * @throws IOException
+   */
+  static void copy(File from, File to) throws IOException {
+    OutputStream out = new FileOutputStream(to);
+    try {
+      KGMLSnifferTest.copy(from, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * @param in input directory.
+   * @param out output directory.
+   * @param translator
+   * @return a batch translator for the given directories, which translates
+   * all files sequentially to the format of the given translator, without
+   * any further settings from the preferences.
+   */
+  static BatchKEGGtranslator createBatch(File in, File out, KEGGtranslator<?> translator) {
+    BatchKEGGtranslator batch = new BatchKEGGtranslator();
+    batch.setOrgOutdir(in.getPath());
+    batch.setChangeOutdirTo(out.getPath());
+    batch.setTranslator(translator);
+    batch.setOutFormat(Format.GraphML);
+    batch.setAdditionalFormats(null);
+    batch.setNumberOfThreads(1);
+    batch.setShard(0, 0);
+    batch.setIncludes("");
+    batch.setExcludes("");
+    batch.setMaxDepth(-1);
+    batch.setTimeout(0);
+    batch.setMetricsFile("");
+    batch.setCacheFlushInterval(0);
+    batch.setPrefetchWindow(0);
+    batch.setClaimLease(0);
+    batch.setArchiveOutput(false);
+    batch.setPathwayStore("");
+    return batch;
+  }
+
+  /**
+   * @param out output directory.
+   * @return the paths of all output files, relative to the given directory.
+   */
+  static Set<String> outputs(File out) {
+    Set<String> files = new TreeSet<String>();
+    collect(out, "", files);
+    return files;
+  }
+
+  /**
+   * @param dir
+   * @param prefix
+   * @param files
+   */
+  private static void collect(File dir, String prefix, Set<String> files) {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File f : children) {
+      if (f.isDirectory()) {
+        collect(f, prefix + f.getName() + '/', files);
+      } else if (f.getName().endsWith(EXTENSION)) {
+        files.add(prefix + f.getName());
+      }
+    }
+  }
+
+  /**
+   * Two shards divide a directory into disjoint sets of files, that
+   * together contain every file.
+   * @throws Exception
+   */
+  @Test
+  public void testShardsSplitDirectory() throws Exception {
+    int count = 20;
+    File in = createInput("in", count);
+    File out1 = dir.newFolder("out1");
+    File out2 = dir.newFolder("out2");
+
+    BatchKEGGtranslator first = createBatch(in, out1, new RecordingTranslator());
+    first.setShard(1, 2);
+    first.parseDirAndSubDir();
+    BatchKEGGtranslator second = createBatch(in, out2, new RecordingTranslator());
+    second.setShard(2, 2);
+    second.parseDirAndSubDir();
+
+    Set<String> shard1 = outputs(out1);
+    Set<String> shard2 = outputs(out2);
+    assertFalse(shard1.isEmpty());
+    assertFalse(shard2.isEmpty());
+    Set<String> both = new HashSet<String>(shard1);
+    both.retainAll(shard2);
+    assertTrue("Files translated by both shards: " + both, both.isEmpty());
+
+    Set<String> all = new TreeSet<String>(shard1);
+    all.addAll(shard2);
+    Set<String> expected = new TreeSet<String>();
+    for (int i = 0; i < count; i++) {
+      expected.add("dir" + (i % 3) + "/p" + i + EXTENSION);
+    }
+    assertEquals(expected, all);
+  }
+
+  /**
+   * A translation that exceeds the timeout is skipped, without affecting
+   * the translation of the next file in the same thread.
+   * @throws Exception
+   */
+  @Test
+  public void testTimeout() throws Exception {
+    File in = createInput("in", 3);
+    File out = dir.newFolder("out");
+    HangingTranslator translator = new HangingTranslator();
+    BatchKEGGtranslator batch = createBatch(in, out, translator);
+    batch.setTimeout(1);
+    long start = System.currentTimeMillis();
+    batch.parseDirAndSubDir();
+
+    assertTrue(System.currentTimeMillis() - start < 30000);
+    assertEquals(3, translator.calls.get());
+    assertEquals(2, outputs(out).size());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  /**
+   * A second run skips all inputs that did not change since the first run.
+   * @throws Exception
+   */
+  @Test
+  public void testUnchangedInputSkipped() throws Exception {
+    File in = createInput("in", 6);
+    File out = dir.newFolder("out");
+    RecordingTranslator first = new RecordingTranslator();
+    createBatch(in, out, first).parseDirAndSubDir();
+    assertEquals(6, first.written.size());
+
+    RecordingTranslator second = new RecordingTranslator();
+    createBatch(in, out, second).parseDirAndSubDir();
+    assertTrue("Translated again: " + second.written, second.written.isEmpty());
+    assertEquals(6, outputs(out).size());
+  }
+
+  /**
+   * A modified input is translated again, even though its output exists.
+   * @throws Exception
+   */
+  @Test
+  public void testChangedInputTranslated() throws Exception {
+    File in = createInput("in", 6);
+    File out = dir.newFolder("out");
+    createBatch(in, out, new RecordingTranslator()).parseDirAndSubDir();
+
+    Writer w = new OutputStreamWriter(new FileOutputStream(new File(in, "dir1/p4.xml"), true), "UTF-8");
+    try {
+      w.write("\n<!-- modified -->\n");
+    } finally {
+      w.close();
+    }
+    RecordingTranslator second = new RecordingTranslator();
+    createBatch(in, out, second).parseDirAndSubDir();
+    assertEquals(1, second.written.size());
+    // The translator writes to a temporary file in the output directory.
+    File written = new File(second.written.get(0));
+    assertEquals(new File(out, "dir1"), written.getParentFile());
+    assertTrue(written.getName(), written.getName().endsWith("p4" + EXTENSION));
+  }
+
+  /**
+   * Changed options that influence the output cause all inputs to be
+   * translated again.
+   * @throws Exception
+   */
+  @Test
+  public void testChangedOptionsTranslated() throws Exception {
+    File in = createInput("in", 6);
+    File out = dir.newFolder("out");
+    createBatch(in, out, new RecordingTranslator()).parseDirAndSubDir();
+
+    boolean path2models = Translator.path2models;
+    Translator.path2models = !path2models;
+    try {
+      RecordingTranslator second = new RecordingTranslator();
+      createBatch(in, out, second).parseDirAndSubDir();
+      assertEquals(6, second.written.size());
+    } finally {
+      Translator.path2models = path2models;
+    }
+  }
+
+  /**
+   * Every worker gets its own yGraph translator, while all other
+   * translators are shared.
+   */
+  @Test
+  public void testWorkerTranslators() {
+    KeggInfoManagement manager = new KeggInfoManagement(10);
+    BatchKEGGtranslator batch = createBatch(dir.getRoot(), dir.getRoot(), null);
+    Map<Format, KEGGtranslator<?>> shared = new LinkedHashMap<Format, KEGGtranslator<?>>();
+    shared.put(Format.GraphML, KEGG2yGraph.createKEGG2GraphML(manager));
+    shared.put(Format.SBML, new RecordingTranslator());
+
+    Map<Format, KEGGtranslator<?>> worker = batch.createWorkerTranslators(shared, manager);
+    assertEquals(shared.keySet(), worker.keySet());
+    assertTrue(worker.get(Format.GraphML) instanceof KEGG2yGraph);
+    assertNotSame(shared.get(Format.GraphML), worker.get(Format.GraphML));
+    assertSame(shared.get(Format.SBML), worker.get(Format.SBML));
+    assertNotSame(worker.get(Format.GraphML), batch.createWorkerTranslators(shared, manager).get(Format.GraphML));
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link BatchScheduler}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchSchedulerTest {
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * @param name
+   * @param padding number of bytes appended to the sample file.
+   * @return a KGML file of (roughly) the size of the sample plus padding.
+   * @throws IOException
+   */
+  private File createFile(String name, int padding) throws IOException {
+    File file = dir.newFile(name);
+    OutputStream out = new FileOutputStream(file);
+    try {
+      KGMLSnifferTest.copy(PathwayCodecTest.HSA00010, out);
+      byte[] comment = new byte[padding];
+      Arrays.fill(comment, (byte) ' ');
+      out.write(comment);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  /**
+   * @param scheduler
+   * @param files
+   * @return all files in the order in which they are scheduled.
+   */
+  private static List<File> schedule(BatchScheduler scheduler, List<File> files) {
+    List<File> order = new ArrayList<File>();
+    Iterator<File> it = files.iterator();
+    BatchScheduler.Task task;
+    while ((task = scheduler.next(it)) != null) {
+      order.add(task.getFile());
+    }
+    return order;
+  }
+
+  /**
+   * Within the window, the largest files are scheduled first.
+   * @throws Exception
+   */
+  @Test
+  public void testLargestFirst() throws Exception {
+    File small = createFile("small.xml", 0);
+    File large = createFile("large.xml", 200000);
+    File medium = createFile("medium.xml", 100000);
+    List<File> files = Arrays.asList(small, large, medium);
+
+    assertEquals(Arrays.asList(large, medium, small), schedule(new BatchScheduler(Long.MAX_VALUE, 3), files));
+    // A window of one keeps the order of the directory walk.
+    assertEquals(files, schedule(new BatchScheduler(Long.MAX_VALUE, 1), files));
+    // Only the first two files are compared before the first is scheduled.
+    assertEquals(Arrays.asList(large, medium, small), schedule(new BatchScheduler(Long.MAX_VALUE, 2), files));
+    assertNull(new BatchScheduler(Long.MAX_VALUE, 2).next(new ArrayList<File>().iterator()));
+  }
+
+  /**
+   * The cost of a compressed file is estimated from its uncompressed size.
+   * Files that are no KGML cost nothing.
+   * @throws Exception
+   */
+  @Test
+  public void testEstimateCost() throws Exception {
+    File plain = createFile("plain.xml", 1000);
+    File gzip = dir.newFile("plain.xml.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(gzip));
+    try {
+      KGMLSnifferTest.copy(plain, out);
+    } finally {
+      out.close();
+    }
+    assertTrue(BatchScheduler.estimateCost(plain) > plain.length());
+    assertEquals(BatchScheduler.estimateCost(plain), BatchScheduler.estimateCost(gzip));
+
+    File text = dir.newFile("readme.txt");
+    assertEquals(0, BatchScheduler.estimateCost(text));
+  }
+
+  /**
+   * A task that does not fit into the remaining budget waits until
+   * enough other tasks are released.
+   * @throws Exception
+   */
+  @Test(timeout = 10000)
+  public void testAdmitWithinBudget() throws Exception {
+    final BatchScheduler scheduler = new BatchScheduler(100, 1);
+    BatchScheduler.Task first = new BatchScheduler.Task(new File("first"), 40);
+    BatchScheduler.Task second = new BatchScheduler.Task(new File("second"), 50);
+    final BatchScheduler.Task third = new BatchScheduler.Task(new File("third"), 30);
+    scheduler.admit(first);
+    scheduler.admit(second);
+
+    final AtomicBoolean admitted = new AtomicBoolean();
+    Thread waiting = new Thread() {
+      /* (non-Javadoc)
+       * @see java.lang.Thread#run()
+       */
+      @Override
+      public void run() {
+        try {
+          scheduler.admit(third);
+          admitted.set(true);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    waiting.start();
+    Thread.sleep(200);
+    assertFalse(admitted.get());
+
+    scheduler.release(second);
+    waiting.join();
+    assertTrue(admitted.get());
+  }
+
+  /**
+   * A single file that exceeds the whole budget is admitted, if no
+   * other task is running, but never together with another task.
+   * @throws Exception
+   */
+  @Test(timeout = 10000)
+  public void testAdmitOversizedFile() throws Exception {
+    final BatchScheduler scheduler = new BatchScheduler(100, 1);
+    final BatchScheduler.Task huge = new BatchScheduler.Task(new File("huge"), 1000);
+    BatchScheduler.Task small = new BatchScheduler.Task(new File("small"), 10);
+    scheduler.admit(huge);
+    scheduler.release(huge);
+
+    scheduler.admit(small);
+    final AtomicBoolean admitted = new AtomicBoolean();
+    Thread waiting = new Thread() {
+      /* (non-Javadoc)
+       * @see java.lang.Thread#run()
+       */
+      @Override
+      public void run() {
+        try {
+          scheduler.admit(huge);
+          admitted.set(true);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    waiting.start();
+    Thread.sleep(200);
+    assertFalse(admitted.get());
+
+    scheduler.release(small);
+    waiting.join();
+    assertTrue(admitted.get());
+  }
+
+}
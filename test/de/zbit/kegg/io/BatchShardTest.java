@@ -0,0 +1,94 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link BatchShard}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchShardTest {
+
+  /**
+   *
+   */
+  @Test
+  public void testParse() {
+    BatchShard shard = BatchShard.parse(" 2 / 4 ");
+    assertTrue(shard.isEnabled());
+    assertEquals(2, shard.getIndex());
+    assertEquals(4, shard.getCount());
+    assertEquals("shard-2-of-4", shard.getNodeName());
+
+    assertSame(BatchShard.ALL, BatchShard.parse(""));
+    assertSame(BatchShard.ALL, BatchShard.parse(null));
+    assertFalse(BatchShard.ALL.isEnabled());
+    assertNull(BatchShard.ALL.getNodeName());
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testParseInvalid() {
+    for (String invalid : new String[] {"2", "0/2", "3/2", "a/b", "1/2/3", "-1/2"}) {
+      try {
+        BatchShard.parse(invalid);
+        throw new AssertionError("Accepted " + invalid);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Every input belongs to exactly one shard.
+   */
+  @Test
+  public void testContains() {
+    int count = 3;
+    BatchShard[] shards = new BatchShard[count];
+    for (int k = 0; k < count; k++) {
+      shards[k] = new BatchShard(k + 1, count);
+    }
+    for (int i = 0; i < 100; i++) {
+      String input = "dir" + (i % 7) + "/hsa" + i + ".xml";
+      int owners = 0;
+      for (BatchShard shard : shards) {
+        if (shard.contains(input)) {
+          owners++;
+        }
+      }
+      assertEquals(input, 1, owners);
+      assertTrue(BatchShard.ALL.contains(input));
+    }
+  }
+
+}
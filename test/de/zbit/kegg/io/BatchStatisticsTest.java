@@ -0,0 +1,185 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.io.BatchJournal.Status;
+
+/**
+ * Tests {@link BatchStatistics}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchStatisticsTest {
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * @param input
+   * @return a record with fixed times of 1, 2, 3 and 4 ms for parsing,
+   * preprocessing, translation and writing.
+   */
+  private static BatchStatistics.Record createRecord(String input) {
+    BatchStatistics.Record r = new BatchStatistics.Record(input);
+    r.formats = 2;
+    r.parse = 1;
+    r.preprocess = 2;
+    r.prefetch = 1;
+    r.translate = 3;
+    r.write = 4;
+    r.bytes = 100;
+    r.entries = 5;
+    r.relations = 6;
+    r.reactions = 7;
+    r.lookups = 8;
+    r.misses = 2;
+    return r;
+  }
+
+  /**
+   * @param file
+   * @return all lines of the given file.
+   * @throws IOException
+   */
+  private static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = r.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      r.close();
+    }
+    return lines;
+  }
+
+  /**
+   * The total time contains all stages, but the prefetching only once
+   * (as part of the preprocessing).
+   */
+  @Test
+  public void testTotal() {
+    assertEquals(10, createRecord("a.xml").getTotal());
+  }
+
+  /**
+   * The summary reports the number of files, the failures, the
+   * percentiles per stage and the cache lookups.
+   */
+  @Test
+  public void testSummary() {
+    BatchStatistics statistics = new BatchStatistics();
+    for (int i = 1; i <= 100; i++) {
+      BatchStatistics.Record r = createRecord("p" + i + ".xml");
+      r.parse = i;
+      if (i == 7) {
+        r.status = Status.FAILED;
+      }
+      statistics.add(r);
+    }
+    statistics.finish();
+    assertEquals(100, statistics.size());
+
+    String summary = statistics.getSummary();
+    assertTrue(summary, summary.startsWith("Translated 100 files (1 failed) in "));
+    assertTrue(summary, summary.contains("\n  parse: 50 / 90 / 99 / 100"));
+    assertTrue(summary, summary.contains("\n  total: 59 / 99 / 108 / 109"));
+    assertTrue(summary, summary.contains("\n  write: 4 / 4 / 4 / 4"));
+    assertTrue(summary, summary.contains("KEGG cache: 800 lookups, 200 misses"));
+  }
+
+  /**
+   * Without any file, only the throughput is reported.
+   */
+  @Test
+  public void testEmptySummary() {
+    BatchStatistics statistics = new BatchStatistics();
+    statistics.finish();
+    String summary = statistics.getSummary();
+    assertTrue(summary, summary.startsWith("Translated 0 files (0 failed) in "));
+    assertFalse(summary, summary.contains("\n"));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testWriteCSV() throws Exception {
+    BatchStatistics statistics = new BatchStatistics();
+    statistics.add(createRecord("dir/a\"b.xml"));
+    File file = new File(dir.getRoot(), "metrics.csv");
+    statistics.write(file);
+
+    List<String> lines = readLines(file);
+    assertEquals(2, lines.size());
+    assertEquals("input,status,formats,parse_ms,preprocess_ms,prefetch_ms,translate_ms,write_ms,total_ms,"
+        + "output_bytes,entries,relations,reactions,cache_lookups,cache_misses", lines.get(0));
+    assertEquals("\"dir/a\"\"b.xml\",DONE,2,1,2,1,3,4,10,100,5,6,7,8,2", lines.get(1));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testWriteJSON() throws Exception {
+    BatchStatistics statistics = new BatchStatistics();
+    statistics.add(createRecord("dir/a\"b.xml"));
+    BatchStatistics.Record failed = createRecord("c.xml");
+    failed.status = Status.TIMEOUT;
+    statistics.add(failed);
+    File file = new File(dir.getRoot(), "metrics.json");
+    statistics.write(file);
+
+    StringBuilder json = new StringBuilder();
+    for (String line : readLines(file)) {
+      json.append(line).append('\n');
+    }
+    String s = json.toString();
+    assertTrue(s, s.startsWith("{\n  \"wall_ms\": "));
+    assertTrue(s, s.contains("{\"input\": \"dir/a\\\"b.xml\", \"status\": \"DONE\", \"formats\": 2, \"parse_ms\": 1, "));
+    assertTrue(s, s.contains("\"total_ms\": 10, \"output_bytes\": 100, "));
+    assertTrue(s, s.contains("{\"input\": \"c.xml\", \"status\": \"TIMEOUT\""));
+    assertTrue(s, s.endsWith("\n  ]\n}\n"));
+  }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link BatchWorkerPool}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class BatchWorkerPoolTest {
+
+  /**
+   * Counts the running translations and remembers their maximum.
+   */
+  private static class Counting implements Runnable {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final AtomicInteger finished = new AtomicInteger();
+
+    /* (non-Javadoc)
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      int now = running.incrementAndGet();
+      synchronized (maxRunning) {
+        maxRunning.set(Math.max(maxRunning.get(), now));
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      running.decrementAndGet();
+      finished.incrementAndGet();
+    }
+  }
+
+  /**
+   * @param name
+   * @param cost
+   * @return a task for a (non-existing) file with the given cost.
+   */
+  private static BatchScheduler.Task task(String name, long cost) {
+    return new BatchScheduler.Task(new File(name), cost);
+  }
+
+  /**
+   * Files that do not fit into the heap budget together are translated
+   * one after another, even if threads are idle.
+   * @throws Exception
+   */
+  @Test(timeout = 10000)
+  public void testBudget() throws Exception {
+    BatchWorkerPool workers = new BatchWorkerPool(4, new BatchScheduler(100, 1));
+    Counting translation = new Counting();
+    for (int i = 0; i < 4; i++) {
+      workers.execute(task("f" + i, 60), translation);
+    }
+    workers.shutdown();
+    workers.awaitTermination();
+    assertEquals(4, translation.finished.get());
+    assertEquals(1, translation.maxRunning.get());
+  }
+
+  /**
+   * Small files are translated concurrently by all threads, but never
+   * more than twice the number of threads are submitted.
+   * @throws Exception
+   */
+  @Test(timeout = 10000)
+  public void testSlots() throws Exception {
+    final BatchWorkerPool workers = new BatchWorkerPool(2, new BatchScheduler(Long.MAX_VALUE, 1));
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger submitted = new AtomicInteger();
+    final AtomicInteger finished = new AtomicInteger();
+    Thread producer = new Thread() {
+      /* (non-Javadoc)
+       * @see java.lang.Thread#run()
+       */
+      @Override
+      public void run() {
+        try {
+          for (int i = 0; i < 6; i++) {
+            workers.execute(task("f" + i, 1), new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                finished.incrementAndGet();
+              }
+            });
+            submitted.incrementAndGet();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    producer.start();
+    Thread.sleep(300);
+    assertEquals(4, submitted.get());
+
+    release.countDown();
+    producer.join();
+    workers.shutdown();
+    workers.awaitTermination();
+    assertEquals(6, finished.get());
+  }
+
+  /**
+   * A failing translation neither stops the worker nor keeps its share
+   * of the heap budget.
+   * @throws Exception
+   */
+  @Test(timeout = 10000)
+  public void testFailure() throws Exception {
+    BatchWorkerPool workers = new BatchWorkerPool(1, new BatchScheduler(100, 1));
+    workers.execute(task("failing", 60), new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException("Expected by the test.");
+      }
+    });
+    Counting translation = new Counting();
+    workers.execute(task("next", 60), translation);
+    workers.shutdown();
+    workers.awaitTermination();
+    assertEquals(1, translation.finished.get());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+}
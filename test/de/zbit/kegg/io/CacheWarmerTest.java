@@ -0,0 +1,189 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.cache.RecordedKeggAdaptor;
+import de.zbit.kegg.parser.KeggParser;
+
+/**
+ * Warms a {@link KeggInfoManagement} with a {@link CacheWarmer} from
+ * recorded KEGG responses (see {@link RecordedKeggAdaptor}).
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class CacheWarmerTest {
+
+  /**
+   * IDs in {@link PathwayCodecTest#HSA00010} and their recorded names.
+   */
+  private static final String[][] ENTRIES = new String[][] {
+    {"cpd:C00033", "C00033                      Compound", "Acetate"},
+    {"hsa:10327", "10327             CDS       T01001", "AKR1A1"},
+    {"hsa:226", "226               CDS       T01001", "ALDOA"}
+  };
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * The recorded responses.
+   */
+  private RecordedKeggAdaptor adaptor;
+
+  /**
+   * The cache to warm.
+   */
+  private KeggInfoManagement manager;
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.silent = true;
+  }
+
+  /**
+   * @param path relative path of the response.
+   * @param content
+   * @throws IOException
+   */
+  private void record(String path, String content) throws IOException {
+    File file = new File(dir.getRoot(), path);
+    file.getParentFile().mkdirs();
+    Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Records the list of human pathways (just one), its KGML and a few
+   * of its entries.
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException {
+    record("list/pathway/hsa", "path:hsa00010\tGlycolysis / Gluconeogenesis - Homo sapiens (human)\n");
+    File kgml = new File(dir.getRoot(), "get/hsa00010/kgml");
+    kgml.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(kgml);
+    try {
+      KGMLSnifferTest.copy(PathwayCodecTest.HSA00010, out);
+    } finally {
+      out.close();
+    }
+    for (String[] entry : ENTRIES) {
+      record("get/" + entry[0].replace(':', '_').toLowerCase(),
+        "ENTRY       " + entry[1] + "\nNAME        " + entry[2] + "\n///\n");
+    }
+    adaptor = new RecordedKeggAdaptor(dir.getRoot());
+    manager = new KeggInfoManagement(1000, adaptor);
+  }
+
+  /**
+   * @param warmer
+   */
+  private void assertWarmed(CacheWarmer warmer) {
+    assertEquals(1, warmer.getWarmedPathways());
+    assertTrue(warmer.getFetchedIDs() > ENTRIES.length);
+    // All recorded entries are cached, i.e., no further request is made.
+    int requests = adaptor.getRequestCount();
+    for (String[] entry : ENTRIES) {
+      assertEquals(entry[2], manager.getInformation(entry[0]).getName());
+    }
+    assertEquals(requests, adaptor.getRequestCount());
+  }
+
+  /**
+   * All pathways of an organism are listed, downloaded and their IDs
+   * put into the cache.
+   */
+  @Test
+  public void testOrganism() {
+    CacheWarmer warmer = new CacheWarmer(manager, "hsa", 2, false);
+    warmer.run();
+    assertWarmed(warmer);
+  }
+
+  /**
+   * Pathways can be given directly, with or without 'path:' prefix.
+   * Pathways without recorded KGML are skipped.
+   */
+  @Test
+  public void testPathways() {
+    CacheWarmer warmer = new CacheWarmer(manager, "path:hsa00010, hsa04010", 2, false);
+    warmer.run();
+    assertWarmed(warmer);
+  }
+
+  /**
+   * The warm-up runs in the background.
+   * @throws Exception
+   */
+  @Test(timeout = 30000)
+  public void testStart() throws Exception {
+    CacheWarmer warmer = new CacheWarmer(manager, "hsa00010", 1, false);
+    warmer.start();
+    while (warmer.isRunning()) {
+      Thread.sleep(10);
+    }
+    assertWarmed(warmer);
+  }
+
+  /**
+   * A cancelled warm-up does not fetch anything.
+   */
+  @Test
+  public void testCancel() {
+    CacheWarmer warmer = new CacheWarmer(manager, "hsa00010", 1, false);
+    warmer.cancel();
+    warmer.run();
+    assertEquals(0, warmer.getWarmedPathways());
+    assertEquals(0, warmer.getFetchedIDs());
+    assertFalse(warmer.isRunning());
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link DirectoryWalker}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class DirectoryWalkerTest {
+
+  /**
+   * The root directory.
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   * Creates the tree
+   * <pre>
+   * a.xml
+   * b.txt
+   * hsa/c.xml
+   * hsa/deep/d.xml
+   * mmu/e.xml
+   * </pre>
+   * @throws IOException
+   */
+  @Before
+  public void setUp() throws IOException {
+    for (String path : new String[] {"a.xml", "b.txt", "hsa/c.xml", "hsa/deep/d.xml", "mmu/e.xml"}) {
+      File f = new File(dir.getRoot(), path);
+      f.getParentFile().mkdirs();
+      assertTrue(f.createNewFile());
+    }
+  }
+
+  /**
+   * @param walker
+   * @return the paths of all files, relative to the root.
+   */
+  private List<String> list(DirectoryWalker walker) {
+    List<String> paths = new ArrayList<String>();
+    int prefix = dir.getRoot().getPath().length() + 1;
+    for (File f : walker) {
+      paths.add(f.getPath().substring(prefix).replace(File.separatorChar, '/'));
+    }
+    return paths;
+  }
+
+  /**
+   * @param glob
+   * @param path
+   * @return {@code true} if the glob matches the path.
+   */
+  private static boolean matches(String glob, String path) {
+    Pattern p = DirectoryWalker.toPattern(glob);
+    return p.matcher(path).matches();
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testToPattern() {
+    // Without '/', the name is matched in any directory.
+    assertTrue(matches("*.xml", "a.xml"));
+    assertTrue(matches("*.xml", "hsa/deep/d.xml"));
+    assertFalse(matches("*.xml", "b.txt"));
+    // With '/', the path relative to the root is matched.
+    assertTrue(matches("hsa/*.xml", "hsa/c.xml"));
+    assertFalse(matches("hsa/*.xml", "hsa/deep/d.xml"));
+    assertTrue(matches("hsa/**", "hsa/deep/d.xml"));
+    assertFalse(matches("hsa/**", "mmu/e.xml"));
+    assertTrue(matches("?.xml", "a.xml"));
+    assertFalse(matches("?.xml", "ab.xml"));
+    // Regular expression characters are literals.
+    assertTrue(matches("a+b.xml", "a+b.xml"));
+    assertFalse(matches("a.xml", "abxml"));
+  }
+
+  /**
+   * Files of a directory come before those of its subdirectories, both
+   * in alphabetical order.
+   */
+  @Test
+  public void testWalk() {
+    assertEquals(Arrays.asList("a.xml", "b.txt", "hsa/c.xml", "hsa/deep/d.xml", "mmu/e.xml"),
+      list(new DirectoryWalker(dir.getRoot())));
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testMaxDepth() {
+    DirectoryWalker walker = new DirectoryWalker(dir.getRoot());
+    walker.setMaxDepth(0);
+    assertEquals(Arrays.asList("a.xml", "b.txt"), list(walker));
+    walker.setMaxDepth(1);
+    assertEquals(Arrays.asList("a.xml", "b.txt", "hsa/c.xml", "mmu/e.xml"), list(walker));
+  }
+
+  /**
+   *
+   */
+  @Test
+  public void testIncludesAndExcludes() {
+    DirectoryWalker walker = new DirectoryWalker(dir.getRoot());
+    walker.setIncludes("*.xml");
+    walker.setExcludes("deep, mmu/*");
+    assertEquals(Arrays.asList("a.xml", "hsa/c.xml"), list(walker));
+  }
+
+  /**
+   * A symbolic link to a parent directory must not lead to an endless walk.
+   * @throws Exception
+   */
+  @Test(timeout = 10000)
+  public void testSymbolicLinkLoop() throws Exception {
+    File link = new File(dir.getRoot(), "hsa/deep/loop");
+    boolean created;
+    try {
+      Process ln = Runtime.getRuntime().exec(new String[] {"ln", "-s", dir.getRoot().getPath(), link.getPath()});
+      created = (ln.waitFor() == 0) && link.isDirectory();
+    } catch (IOException e) {
+      created = false;
+    }
+    assumeTrue(created);
+    assertEquals(Arrays.asList("a.xml", "b.txt", "hsa/c.xml", "hsa/deep/d.xml", "mmu/e.xml"),
+      list(new DirectoryWalker(dir.getRoot())));
+  }
+
+  /**
+   * Closing an abandoned walk stops the background thread.
+   * @throws IOException
+   */
+  @Test(timeout = 10000)
+  public void testClose() throws IOException {
+    for (int i = 0; i < 20; i++) {
+      assertTrue(new File(dir.getRoot(), "f" + i + ".xml").createNewFile());
+    }
+    DirectoryWalker walker = new DirectoryWalker(dir.getRoot());
+    walker.setQueueSize(2);
+    DirectoryWalker.Walk walk = walker.iterator();
+    assertTrue(walk.hasNext());
+    walk.next();
+    walk.close();
+    assertFalse(walk.hasNext());
+  }
+
+}
@@ -0,0 +1,355 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * Tests how {@link KGMLArchive} iterates over the files of zip and tar
+ * archives.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KGMLArchiveTest {
+
+  /**
+   * Directory of the sample files.
+   */
+  private static final File DIR = new File("files/KGMLsamplefiles");
+
+  /**
+   * A name that does not fit into the name field of a tar header.
+   */
+  private static final String LONG_NAME = "kgml/" + repeat('x', 120) + "/hsa04115.xml";
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.offlineVersion = true;
+    KeggParser.silent = true;
+  }
+
+  /**
+   * @param c
+   * @param n
+   * @return a string of n times the given character.
+   */
+  private static String repeat(char c, int n) {
+    StringBuilder sb = new StringBuilder(n);
+    for (int i = 0; i < n; i++) {
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param file
+   * @return the content of the given file.
+   * @throws IOException
+   */
+  private static byte[] read(File file) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    KGMLSnifferTest.copy(file, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * @param data
+   * @return the given data, gzip compressed.
+   * @throws IOException
+   */
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gz = new GZIPOutputStream(out);
+    gz.write(data);
+    gz.close();
+    return out.toByteArray();
+  }
+
+  /**
+   * @param header
+   * @param offset
+   * @param value
+   */
+  private static void put(byte[] header, int offset, String value) {
+    byte[] b = value.getBytes();
+    System.arraycopy(b, 0, header, offset, b.length);
+  }
+
+  /**
+   * Writes a tar entry in the ustar format.
+   * @param out
+   * @param prefix the ustar prefix of the name or {@code null}.
+   * @param name
+   * @param type
+   * @param data
+   * @throws IOException
+   */
+  private static void tarEntry(OutputStream out, String prefix, String name, char type, byte[] data) throws IOException {
+    byte[] header = new byte[512];
+    put(header, 0, name);
+    put(header, 100, "0000644");
+    put(header, 108, "0000000");
+    put(header, 116, "0000000");
+    put(header, 124, String.format("%011o", data.length));
+    put(header, 136, "00000000000");
+    put(header, 148, "        ");
+    header[156] = (byte) type;
+    put(header, 257, "ustar");
+    put(header, 263, "00");
+    if (prefix != null) {
+      put(header, 345, prefix);
+    }
+    int sum = 0;
+    for (byte b : header) {
+      sum += b & 0xFF;
+    }
+    put(header, 148, String.format("%06o", sum));
+    out.write(header);
+    out.write(data);
+    out.write(new byte[(512 - (data.length % 512)) % 512]);
+  }
+
+  /**
+   * @param key
+   * @param value
+   * @return a record of a pax extended header.
+   */
+  private static byte[] paxRecord(String key, String value) {
+    String record = ' ' + key + '=' + value + '\n';
+    int length = record.length();
+    length += Integer.toString(length + Integer.toString(length).length()).length();
+    return (length + record).getBytes();
+  }
+
+  /**
+   * Creates a gzip compressed tar archive with a directory, a plain, a
+   * gzip compressed and a non-KGML file, and files with names in the
+   * ustar prefix, a GNU long name and a pax extended header.
+   * @return the archive.
+   * @throws IOException
+   */
+  private File createTar() throws IOException {
+    File tar = dir.newFile("kgml.tar.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(tar));
+    try {
+      tarEntry(out, null, "kgml/", '5', new byte[0]);
+      tarEntry(out, null, "kgml/hsa00010.xml", '0', read(new File(DIR, "hsa00010.xml")));
+      tarEntry(out, null, "kgml/README", '0', "Not a KGML document.\n".getBytes());
+      tarEntry(out, null, "kgml/aac02010.xml.gz", '0', gzip(read(new File(DIR, "aac02010.xml"))));
+      tarEntry(out, null, "kgml/link.xml", '2', new byte[0]);
+      tarEntry(out, "kgml/prefix", "hsa05212.xml", '0', read(new File(DIR, "hsa05212.xml")));
+      tarEntry(out, null, "././@LongLink", 'L', (LONG_NAME + '\0').getBytes());
+      tarEntry(out, null, "truncated", '0', read(new File(DIR, "hsa04115.xml")));
+      tarEntry(out, null, "PaxHeader", 'x', paxRecord("path", "kgml/pax/hsa04310.xml"));
+      tarEntry(out, null, "truncated", '0', read(new File(DIR, "hsa04310.xml")));
+      out.write(new byte[1024]);
+    } finally {
+      out.close();
+    }
+    return tar;
+  }
+
+  /**
+   * @return a zip archive with a directory, a KGML and a non-KGML file.
+   * @throws IOException
+   */
+  private File createZip() throws IOException {
+    File zip = dir.newFile("kgml.zip");
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+    try {
+      out.putNextEntry(new ZipEntry("kgml/"));
+      out.closeEntry();
+      out.putNextEntry(new ZipEntry("kgml/README"));
+      out.write("Not a KGML document.\n".getBytes());
+      out.closeEntry();
+      out.putNextEntry(new ZipEntry("kgml/hsa00010.xml"));
+      KGMLSnifferTest.copy(new File(DIR, "hsa00010.xml"), out);
+      out.closeEntry();
+    } finally {
+      out.close();
+    }
+    return zip;
+  }
+
+  /**
+   * @param archive
+   * @return the names of all remaining files.
+   * @throws IOException
+   */
+  private static List<String> names(KGMLArchive archive) throws IOException {
+    List<String> names = new ArrayList<String>();
+    try {
+      while (archive.next()) {
+        names.add(archive.getName());
+      }
+    } finally {
+      archive.close();
+    }
+    return names;
+  }
+
+  /**
+   * Only regular files are returned, with their full names.
+   * @throws Exception
+   */
+  @Test
+  public void testTarEntries() throws Exception {
+    File tar = createTar();
+    List<String> expected = new ArrayList<String>();
+    expected.add("kgml/hsa00010.xml");
+    expected.add("kgml/README");
+    expected.add("kgml/aac02010.xml.gz");
+    expected.add("kgml/prefix/hsa05212.xml");
+    expected.add(LONG_NAME);
+    expected.add("kgml/pax/hsa04310.xml");
+    assertEquals(expected, names(new KGMLArchive(tar)));
+    long largest = 0;
+    for (String sample : new String[] {"hsa00010", "hsa05212", "hsa04115", "hsa04310"}) {
+      largest = Math.max(largest, new File(DIR, sample + ".xml").length());
+    }
+    assertEquals(largest, KGMLArchive.getLargestEntrySize(tar));
+  }
+
+  /**
+   * Directories are skipped in zip archives as well.
+   * @throws Exception
+   */
+  @Test
+  public void testZipEntries() throws Exception {
+    List<String> expected = new ArrayList<String>();
+    expected.add("kgml/README");
+    expected.add("kgml/hsa00010.xml");
+    assertEquals(expected, names(new KGMLArchive(createZip())));
+  }
+
+  /**
+   * Files that are not read completely are skipped, compressed files are
+   * decompressed and non-KGML files are not opened.
+   * @throws Exception
+   */
+  @Test
+  public void testOpenReader() throws Exception {
+    KGMLArchive archive = new KGMLArchive(createTar());
+    try {
+      assertTrue(archive.next());
+      InputStream in = archive.getInputStream();
+      assertTrue(in.read() >= 0);
+      in.close();
+      assertTrue(archive.next());
+      assertNull(archive.openReader());
+      assertTrue(archive.next());
+      assertEquals("kgml/aac02010.xml.gz", archive.getName());
+      KGMLReader reader = archive.openReader();
+      assertNotNull(reader);
+      assertEquals(KeggParser.parse(new File(DIR, "aac02010.xml").getPath()).get(0), reader.read());
+      reader.close();
+      assertTrue(archive.next());
+      assertEquals("kgml/prefix/hsa05212.xml", archive.getName());
+    } finally {
+      archive.close();
+    }
+  }
+
+  /**
+   * A single file is opened by its path inside the archive.
+   * @throws Exception
+   */
+  @Test
+  public void testOpenEntry() throws Exception {
+    File tar = createTar();
+    String path = tar.getPath() + KGMLArchive.ENTRY_SEPARATOR + "kgml/pax/hsa04310.xml";
+    assertTrue(KGMLArchive.isEntryPath(path));
+    assertFalse(KGMLArchive.isEntryPath(new File(dir.getRoot(), "missing.tar").getPath() + KGMLArchive.ENTRY_SEPARATOR + "a.xml"));
+    KGMLReader reader = KGMLArchive.openEntry(path);
+    try {
+      assertEquals(KeggParser.parse(new File(DIR, "hsa04310.xml").getPath()).get(0), reader.read());
+    } finally {
+      reader.close();
+    }
+
+    try {
+      KGMLArchive.openEntry(tar.getPath() + KGMLArchive.ENTRY_SEPARATOR + "kgml/README").close();
+      fail("A non-KGML file must not be opened.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * All KGML documents of an archive are read one after another.
+   * @throws Exception
+   */
+  @Test
+  public void testOpenAll() throws Exception {
+    KGMLReader reader = new KGMLArchive(createTar()).openAll();
+    List<String> names = new ArrayList<String>();
+    try {
+      Pathway p;
+      while ((p = reader.read()) != null) {
+        names.add(p.getName());
+      }
+    } finally {
+      reader.close();
+    }
+    List<String> expected = new ArrayList<String>();
+    for (String sample : new String[] {"hsa00010", "aac02010", "hsa05212", "hsa04115", "hsa04310"}) {
+      expected.add(KeggParser.parse(new File(DIR, sample + ".xml").getPath()).get(0).getName());
+    }
+    assertEquals(expected, names);
+  }
+
+}
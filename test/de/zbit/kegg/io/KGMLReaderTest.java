@@ -0,0 +1,124 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * Tests that {@link KGMLReader} reads the same pathways as the DOM-based
+ * {@link KeggParser}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KGMLReaderTest {
+
+  /**
+   * Sample files of metabolic, signaling, reference and KO pathways.
+   */
+  private static final String[] SAMPLES = {
+    "hsa00010.xml", "hsa04010.xml", "hsa04115.xml", "hsa05212.xml",
+    "aac02010.xml", "ko02010.xml", "map04010.xml", "_ko00010.xml", "_map04010hsa.xml"
+  };
+
+  /**
+   * Directory of the {@link #SAMPLES}.
+   */
+  private static final File DIR = new File("files/KGMLsamplefiles");
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.offlineVersion = true;
+    KeggParser.silent = true;
+  }
+
+  /**
+   * @param expected
+   * @param actual
+   */
+  private static void assertSamePathway(Pathway expected, Pathway actual) {
+    String name = expected.getName();
+    assertEquals(name, expected, actual);
+    assertEquals(name, expected.getEntries(), actual.getEntries());
+    assertEquals(name, expected.getRelations(), actual.getRelations());
+    assertEquals(name, expected.getReactions(), actual.getReactions());
+  }
+
+  /**
+   * Both parsers must read equal pathways from all sample files.
+   * @throws Exception
+   */
+  @Test
+  public void testSameAsDomParser() throws Exception {
+    for (String sample : SAMPLES) {
+      File file = new File(DIR, sample);
+      List<Pathway> expected = KeggParser.parse(file.getPath());
+      List<Pathway> actual = KGMLReader.parse(file);
+      assertEquals(sample, expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertSamePathway(expected.get(i), actual.get(i));
+      }
+    }
+  }
+
+  /**
+   * Reading from a stream gives the same result as reading the file.
+   * @throws Exception
+   */
+  @Test
+  public void testStream() throws Exception {
+    File file = new File(DIR, "hsa00010.xml");
+    List<Pathway> actual = KGMLReader.parse(new FileInputStream(file), file.toURI().toString());
+    assertEquals(1, actual.size());
+    assertSamePathway(KeggParser.parse(file.getPath()).get(0), actual.get(0));
+  }
+
+  /**
+   * The reader returns {@code null} after the last pathway.
+   * @throws Exception
+   */
+  @Test
+  public void testReadAfterLast() throws Exception {
+    KGMLReader reader = new KGMLReader(new File(DIR, "hsa00010.xml"));
+    try {
+      assertNotNull(reader.read());
+      assertNull(reader.read());
+    } finally {
+      reader.close();
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.io.KGMLSniffer.Compression;
+import de.zbit.kegg.io.KGMLSniffer.Type;
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Pathway;
+
+/**
+ * Tests {@link KGMLSniffer}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class KGMLSnifferTest {
+
+  /**
+   *
+   */
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.offlineVersion = true;
+    KeggParser.silent = true;
+  }
+
+  /**
+   * @param in
+   * @param out
+   * @throws IOException
+   */
+  static void copy(File in, OutputStream out) throws IOException {
+    InputStream is = new FileInputStream(in);
+    try {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+    } finally {
+      is.close();
+    }
+  }
+
+  /**
+   * @param name
+   * @param entries the names of all entries, each containing {@link PathwayCodecTest#HSA00010}.
+   * @return a new zip archive.
+   * @throws IOException
+   */
+  File zip(String name, String... entries) throws IOException {
+    File f = dir.newFile(name);
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f));
+    try {
+      out.putNextEntry(new ZipEntry("dir/"));
+      out.closeEntry();
+      for (String entry : entries) {
+        out.putNextEntry(new ZipEntry(entry));
+        copy(PathwayCodecTest.HSA00010, out);
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return f;
+  }
+
+  /**
+   * @param name
+   * @return {@link PathwayCodecTest#HSA00010}, gzipped.
+   * @throws IOException
+   */
+  File gzip(String name) throws IOException {
+    File f = dir.newFile(name);
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(f));
+    try {
+      copy(PathwayCodecTest.HSA00010, out);
+    } finally {
+      out.close();
+    }
+    return f;
+  }
+
+  /**
+   * @param sniffed
+   * @param type
+   * @param compression
+   */
+  private static void assertSniffed(KGMLSniffer sniffed, Type type, Compression compression) {
+    assertEquals(type, sniffed.getType());
+    assertEquals(compression, sniffed.getCompression());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testPlain() throws Exception {
+    KGMLSniffer sniffed = KGMLSniffer.sniff(PathwayCodecTest.HSA00010);
+    assertSniffed(sniffed, Type.KGML, Compression.NONE);
+    List<Pathway> pathways = sniffed.load(PathwayCodecTest.HSA00010);
+    assertEquals(1, pathways.size());
+    assertEquals("path:hsa00010", pathways.get(0).getName());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testGZIP() throws Exception {
+    File f = gzip("hsa00010.xml.gz");
+    KGMLSniffer sniffed = KGMLSniffer.sniff(f);
+    assertSniffed(sniffed, Type.KGML, Compression.GZIP);
+    assertEquals(PathwayCodecTest.parse(PathwayCodecTest.HSA00010), sniffed.load(f).get(0));
+  }
+
+  /**
+   * A zip archive with a single file is read like that file.
+   * @throws Exception
+   */
+  @Test
+  public void testZIP() throws Exception {
+    File f = zip("single.zip", "dir/hsa00010.xml");
+    KGMLSniffer sniffed = KGMLSniffer.sniff(f);
+    assertSniffed(sniffed, Type.KGML, Compression.ZIP);
+    assertEquals(1, sniffed.load(f).size());
+
+    f = zip("several.zip", "a.xml", "b.xml");
+    assertSniffed(KGMLSniffer.sniff(f), Type.ARCHIVE, Compression.ZIP);
+
+    f = zip("empty.zip");
+    assertFalse(KGMLSniffer.sniff(f).isPathway());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testUnknown() throws Exception {
+    File f = dir.newFile("other.xml");
+    OutputStream out = new FileOutputStream(f);
+    try {
+      out.write("<?xml version=\"1.0\"?>\n<sbml/>\n".getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    assertFalse(KGMLSniffer.sniff(f).isPathway());
+    assertFalse(KGMLSniffer.sniff(dir.newFile("empty.xml")).isPathway());
+  }
+
+}
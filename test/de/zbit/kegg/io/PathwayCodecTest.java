@@ -0,0 +1,173 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.EntryType;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.kegg.parser.pathway.ext.EntryTypeExtended;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * Tests {@link PathwayCodec}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class PathwayCodecTest {
+
+  /**
+   * A metabolic pathway with reactions and relations.
+   */
+  static final File HSA00010 = new File("files/KGMLsamplefiles/hsa00010.xml");
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.offlineVersion = true;
+    KeggParser.silent = true;
+  }
+
+  /**
+   * @param file
+   * @return the first pathway in the given file, as parsed by {@link KeggParser}.
+   * @throws Exception
+   */
+  static Pathway parse(File file) throws Exception {
+    return KeggParser.parse(file.getPath()).get(0);
+  }
+
+  /**
+   * Every format of a multi-format batch translation gets its own copy,
+   * which it may modify.
+   * @throws Exception
+   */
+  @Test
+  public void testCopyOfIsIndependent() throws Exception {
+    Pathway p = parse(HSA00010);
+    Pathway copy = PathwayCodec.copyOf(p);
+    assertNotSame(p, copy);
+    assertEquals(p, copy);
+    assertEquals(p.getEntries().size(), copy.getEntries().size());
+    assertEquals(p.getRelations().size(), copy.getRelations().size());
+    assertEquals(p.getReactions().size(), copy.getReactions().size());
+
+    Entry first = copy.getEntries().get(0);
+    assertNotSame(p.getEntries().get(0), first);
+    first.setName("cpd:C99999");
+    copy.removeEntry(copy.getEntries().get(1));
+    copy.getReactions().clear();
+    copy.setTitle("Modified");
+
+    assertEquals(parse(HSA00010), p);
+    assertFalse("cpd:C99999".equals(p.getEntries().get(0).getName()));
+  }
+
+  /**
+   * @param expected
+   * @param actual
+   */
+  private static void assertSamePathway(Pathway expected, Pathway actual) {
+    assertEquals(expected, actual);
+    assertEquals(expected.getEntries(), actual.getEntries());
+    assertEquals(expected.getRelations(), actual.getRelations());
+    assertEquals(expected.getReactions(), actual.getReactions());
+    for (int i = 0; i < expected.getEntries().size(); i++) {
+      assertArrayEquals(expected.getEntries().get(i).getReactions(), actual.getEntries().get(i).getReactions());
+    }
+  }
+
+  /**
+   * Decoding an encoded pathway gives an equal pathway.
+   * @throws Exception
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (String sample : new String[] {"hsa00010.xml", "hsa04010.xml", "ko02010.xml", "_map04010hsa.xml"}) {
+      Pathway p = parse(new File(HSA00010.getParentFile(), sample));
+      assertSamePathway(p, PathwayCodec.decode(PathwayCodec.encode(p)));
+    }
+  }
+
+  /**
+   * Entries with several reactions and the additional information of an
+   * {@link EntryExtended} are kept.
+   * @throws Exception
+   */
+  @Test
+  public void testRoundTripExtended() throws Exception {
+    Pathway p = parse(HSA00010);
+    int id = p.getMaxEntryId() + 1;
+    EntryExtended e = new EntryExtended(p, id, "hsa:3098", EntryType.gene, EntryTypeExtended.protein);
+    e.setReaction("rn:R00299 rn:R01786");
+    e.addDatabaseIdentifier(IdentifierDatabases.EntrezGene, "3098");
+    e.setCompartment("cytoplasm");
+    p.addEntry(e);
+
+    // Embedded in a larger array, e.g., a record of a store
+    byte[] encoded = PathwayCodec.encode(p);
+    byte[] record = new byte[encoded.length + 8];
+    System.arraycopy(encoded, 0, record, 4, encoded.length);
+    Pathway decoded = PathwayCodec.decode(record, 4, encoded.length);
+    assertSamePathway(p, decoded);
+
+    Entry d = decoded.getEntryForId(id);
+    assertTrue(d instanceof EntryExtended);
+    assertArrayEquals(new String[] {"rn:R00299", "rn:R01786"}, d.getReactions());
+    assertEquals(EntryTypeExtended.protein, ((EntryExtended) d).getGeneType());
+    assertEquals(e.getDatabaseIdentifiers(), ((EntryExtended) d).getDatabaseIdentifiers());
+    assertEquals("cytoplasm", ((EntryExtended) d).getCompartment());
+  }
+
+  /**
+   * A truncated encoding is rejected.
+   * @throws Exception
+   */
+  @Test
+  public void testTruncated() throws Exception {
+    byte[] encoded = PathwayCodec.encode(parse(HSA00010));
+    try {
+      PathwayCodec.decode(Arrays.copyOf(encoded, encoded.length / 2));
+      fail("A truncated encoding must not be decoded.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+}
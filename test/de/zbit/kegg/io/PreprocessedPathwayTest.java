@@ -0,0 +1,186 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of KEGGtranslator, a program to convert KGML files
+ * from the KEGG database into various other formats, e.g., SBML, GML,
+ * GraphML, and many more. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/KEGGtranslator> to
+ * obtain the latest version of KEGGtranslator.
+ *
+ * Copyright (C) 2011-2015 by the University of Tuebingen, Germany.
+ *
+ * KEGGtranslator is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.kegg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.kegg.parser.KeggParser;
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Relation;
+
+/**
+ * Tests that translators with the same
+ * {@link AbstractKEGGtranslator#getPreprocessingKey()} can share one
+ * {@link PreprocessedPathway}.
+ *
+ * @since 2.6
+ * @version $Rev$
+ */
+public class PreprocessedPathwayTest {
+
+  /**
+   * An offline translator that lists the entries or relations of a
+   * pathway. Like the real translators, it attaches custom objects to
+   * the entries and modifies the pathway while translating.
+   */
+  static class ListingTranslator extends AbstractKEGGtranslator<String> {
+
+    /**
+     * List relations instead of entries.
+     */
+    private final boolean relations;
+
+    /**
+     * @param relations
+     */
+    public ListingTranslator(boolean relations) {
+      super(new KeggInfoManagement(10));
+      this.relations = relations;
+      setRetrieveKeggAnnots(false);
+      setRemoveOrphans(true);
+      setRemoveWhiteNodes(true);
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#considerRelations()
+     */
+    @Override
+    protected boolean considerRelations() {
+      return true;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#considerReactions()
+     */
+    @Override
+    protected boolean considerReactions() {
+      return false;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#writeToFile(java.lang.Object, java.lang.String)
+     */
+    @Override
+    public boolean writeToFile(String doc, String outFile) {
+      return false;
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.AbstractKEGGtranslator#translateWithoutPreprocessing(de.zbit.kegg.parser.pathway.Pathway)
+     */
+    @Override
+    protected String translateWithoutPreprocessing(Pathway p) {
+      StringBuilder doc = new StringBuilder(p.getName());
+      if (relations) {
+        for (Relation r : p.getRelations()) {
+          doc.append('\n').append(r.getEntry1()).append(' ').append(r.getType()).append(' ').append(r.getEntry2());
+        }
+      }
+      for (Entry e : p.getEntries()) {
+        if (!relations) {
+          doc.append('\n').append(e.getId()).append(' ').append(e.getName()).append(' ').append(e.getType());
+        }
+        // Custom objects of other translators must never be visible.
+        if (e.getCustom() != null) {
+          doc.append("\ncustom ").append(e.getCustom());
+        }
+        e.setCustom(relations ? "relation" : "entry");
+      }
+      p.getEntries().clear();
+      return doc.toString();
+    }
+
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.io.KEGGtranslator#isGraphicalOutput()
+     */
+    @Override
+    public boolean isGraphicalOutput() {
+      return false;
+    }
+
+  }
+
+  /**
+   *
+   */
+  @BeforeClass
+  public static void setUpClass() {
+    KeggParser.offlineVersion = true;
+    KeggParser.silent = true;
+  }
+
+  /**
+   * Two formats with the same preprocessing key give the same output,
+   * whether they share one preprocessed pathway or each preprocess
+   * their own.
+   * @throws Exception
+   */
+  @Test
+  public void testSharedEqualsOwn() throws Exception {
+    Pathway p = PathwayCodecTest.parse(PathwayCodecTest.HSA00010);
+    ListingTranslator entries = new ListingTranslator(false);
+    ListingTranslator relations = new ListingTranslator(true);
+    assertEquals(entries.getPreprocessingKey(), relations.getPreprocessingKey());
+
+    PreprocessedPathway shared = entries.preprocess(p);
+    assertTrue(relations.isCompatible(shared));
+    // Preprocessing does remove entries (orphans), otherwise this test were trivial.
+    assertTrue(shared.getPathway().getEntries().size() < p.getEntries().size());
+    String sharedEntries = entries.translate(shared);
+    String sharedRelations = relations.translate(shared);
+
+    String ownEntries = entries.translate(entries.preprocess(p));
+    String ownRelations = relations.translate(relations.preprocess(p));
+    assertEquals(ownEntries, sharedEntries);
+    assertEquals(ownRelations, sharedRelations);
+    assertFalse(sharedRelations.contains("custom"));
+
+    // Both equal the plain translation, which preprocesses the pathway in place.
+    assertEquals(ownEntries, entries.translate(PathwayCodec.copyOf(p)));
+    assertEquals(ownRelations, relations.translate(PathwayCodec.copyOf(p)));
+
+    // The shared pathway stays unchanged and can be translated again.
+    assertEquals(sharedEntries, entries.translate(shared));
+  }
+
+  /**
+   * A pathway, preprocessed with other settings, is rejected.
+   * @throws Exception
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testIncompatible() throws Exception {
+    Pathway p = PathwayCodecTest.parse(PathwayCodecTest.HSA00010);
+    ListingTranslator entries = new ListingTranslator(false);
+    ListingTranslator relations = new ListingTranslator(true);
+    relations.setRemoveOrphans(false);
+    PreprocessedPathway shared = entries.preprocess(p);
+    assertFalse(relations.isCompatible(shared));
+    relations.translate(shared);
+  }
+
+}